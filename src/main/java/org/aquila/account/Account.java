@@ -61,21 +61,18 @@ public class Account {
 	// Balance manipulations - assetId is 0 for UNCIA
 
 	public long getConfirmedBalance(long assetId) throws DataException {
-		AccountBalanceData accountBalanceData;
-
 		if (Settings.getInstance().isLite()) {
 			// Lite nodes request data from peers instead of the local db
-			accountBalanceData = LiteNode.getInstance().fetchAccountBalance(this.address, assetId);
-		}
-		else {
-			// All other node types fetch from the local db
-			accountBalanceData = this.repository.getAccountRepository().getBalance(this.address, assetId);
-		}
+			AccountBalanceData accountBalanceData = LiteNode.getInstance().fetchAccountBalance(this.address, assetId);
 
-		if (accountBalanceData == null)
-			return 0;
+			if (accountBalanceData == null)
+				return 0;
 
-		return accountBalanceData.getBalance();
+			return accountBalanceData.getBalance();
+		}
+
+		// All other node types fetch from the local db, or balance cache
+		return AccountBalanceCache.getBalance(this.repository, this.address, assetId);
 	}
 
 	public void setConfirmedBalance(long assetId, long balance) throws DataException {
@@ -88,13 +85,18 @@ public class Account {
 
 		// Delete account balance record instead of setting balance to zero
 		if (balance == 0) {
-			this.repository.getAccountRepository().delete(this.address, assetId);
+			this.deleteBalance(assetId);
 			return;
 		}
 
 		// Can't have a balance without an account - make sure it exists!
 		this.ensureAccount();
 
+		if (AccountBalanceCache.setBalance(this.repository, this.address, assetId, balance)) {
+			LOGGER.trace(() -> String.format("%s balance now %s [assetId %s]", this.address, prettyAmount(balance), assetId));
+			return;
+		}
+
 		AccountBalanceData accountBalanceData = new AccountBalanceData(this.address, assetId, balance);
 		this.repository.getAccountRepository().save(accountBalanceData);
 
@@ -103,7 +105,7 @@ public class Account {
 
 	// Convenience method
 	public void modifyAssetBalance(long assetId, long deltaBalance) throws DataException {
-		this.repository.getAccountRepository().modifyAssetBalance(this.getAddress(), assetId, deltaBalance);
+		AccountBalanceCache.modifyBalance(this.repository, this.getAddress(), assetId, deltaBalance);
 
 		LOGGER.trace(() -> String.format("%s balance %s by %s [assetId %s]",
 				this.address,
@@ -113,9 +115,19 @@ public class Account {
 	}
 
 	public void deleteBalance(long assetId) throws DataException {
+		if (AccountBalanceCache.setBalance(this.repository, this.address, assetId, 0L))
+			return;
+
 		this.repository.getAccountRepository().delete(this.address, assetId);
 	}
 
+	/** Deletes account, and hence its balances, from repository, discarding any cached balance changes. */
+	public void delete() throws DataException {
+		AccountBalanceCache.forgetAccount(this.repository, this.address);
+
+		this.repository.getAccountRepository().delete(this.address);
+	}
+
 	// Reference manipulations
 
 	/**
@@ -0,0 +1,273 @@
+package org.aquila.account;
+
+import static org.aquila.utils.Amounts.prettyAmount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.aquila.data.account.AccountBalanceData;
+import org.aquila.data.account.AccountData;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.utils.Pair;
+
+/**
+ * Account balance write-behind caching
+ * <p>
+ * When processing a batch of transactions, e.g. during block processing or validation,
+ * each transaction typically modifies several account balances, often the same accounts
+ * (e.g. sender paying fees) many times over. Each modification would normally cost
+ * one or two repository round trips.
+ * <p>
+ * Instead, this cache fetches each account balance from the repository at most once,
+ * then tracks changes in memory, so that only the net changes are written to the repository,
+ * in batches, via {@link AccountBalanceCache#commit()}.
+ * <p>
+ * Unlike {@link AccountRefCache}, values returned by {@link #getBalance(Repository, String, long)}
+ * <b>do</b> reflect prior changes made within the same cache, as later transactions
+ * rely on balances left by earlier transactions.
+ * <p>
+ * Accounts receiving funds are still created in the repository immediately, as other
+ * processing expects the account to exist from that point.
+ * <p>
+ * Getting and modifying balances are done the usual way via {@link Account#getConfirmedBalance(long)},
+ * {@link Account#setConfirmedBalance(long, long)}, {@link Account#modifyAssetBalance(long, long)}
+ * and {@link Account#deleteBalance(long)}, which call package-visibility methods in <tt>AccountBalanceCache</tt>.
+ * Accounts must be deleted via {@link Account#delete()} so that their cached balances are discarded,
+ * rather than written back to a deleted account.
+ * <p>
+ * Balances changed directly via the repository, bypassing <tt>Account</tt>, are not seen by the cache,
+ * so caching is only in effect while processing or orphaning transactions and ATs, which only use <tt>Account</tt>.
+ * <p>
+ * <tt>AccountBalanceCache</tt> implements <tt>AutoCloseable</tt> for (typical) use in a try-with-resources block.
+ *
+ * @see Account#getConfirmedBalance(long)
+ * @see Account#modifyAssetBalance(long, long)
+ * @see org.aquila.block.Block#process()
+ * @see org.aquila.block.Block#orphan()
+ */
+public class AccountBalanceCache implements AutoCloseable {
+
+	private static final Map<Repository, BalanceCache> CACHE = new HashMap<>();
+
+	private static class BalanceEntry {
+		/** Balance from repository, or set outright. Only valid if <tt>isFetched</tt>. */
+		private long balance;
+		/** Change to <tt>balance</tt> yet to be written to repository. */
+		private long delta;
+		private boolean isFetched;
+		/** Whether balance was set outright, so <tt>balance</tt> is written, not <tt>delta</tt>. */
+		private boolean isSet;
+	}
+
+	private static class BalanceCache {
+		private final Map<Pair<String, Long>, BalanceEntry> balanceEntries = new HashMap<>();
+		private final Set<String> ensuredAddresses = new HashSet<>();
+
+		private BalanceEntry fetchEntry(Repository repository, String address, long assetId) throws DataException {
+			BalanceEntry balanceEntry = this.balanceEntries.computeIfAbsent(new Pair<>(address, assetId), key -> new BalanceEntry());
+
+			if (!balanceEntry.isFetched) {
+				AccountBalanceData accountBalanceData = repository.getAccountRepository().getBalance(address, assetId);
+				balanceEntry.balance = accountBalanceData != null ? accountBalanceData.getBalance() : 0L;
+				balanceEntry.isFetched = true;
+			}
+
+			return balanceEntry;
+		}
+
+		public synchronized long getBalance(Repository repository, String address, long assetId) throws DataException {
+			BalanceEntry balanceEntry = fetchEntry(repository, address, assetId);
+			return balanceEntry.balance + balanceEntry.delta;
+		}
+
+		public synchronized void setBalance(String address, long assetId, long balance) {
+			BalanceEntry balanceEntry = this.balanceEntries.computeIfAbsent(new Pair<>(address, assetId), key -> new BalanceEntry());
+
+			balanceEntry.balance = balance;
+			balanceEntry.delta = 0L;
+			balanceEntry.isFetched = true;
+			balanceEntry.isSet = true;
+		}
+
+		public synchronized void modifyBalance(Repository repository, String address, long assetId, long deltaBalance) throws DataException {
+			if (deltaBalance == 0)
+				return;
+
+			BalanceEntry balanceEntry;
+
+			if (deltaBalance < 0) {
+				// We need to know actual balance to refuse negative balances, as repository would
+				balanceEntry = fetchEntry(repository, address, assetId);
+
+				long newBalance = balanceEntry.balance + balanceEntry.delta + deltaBalance;
+				if (newBalance < 0)
+					throw new DataException(String.format("Refusing to set negative balance %s [assetId %d] for %s", prettyAmount(newBalance), assetId, address));
+			} else {
+				// Can't have a balance without an account - make sure it exists!
+				if (this.ensuredAddresses.add(address))
+					repository.getAccountRepository().ensureAccount(new AccountData(address));
+
+				balanceEntry = this.balanceEntries.computeIfAbsent(new Pair<>(address, assetId), key -> new BalanceEntry());
+			}
+
+			balanceEntry.delta += deltaBalance;
+		}
+
+		public synchronized void forgetAccount(String address) {
+			this.balanceEntries.keySet().removeIf(key -> key.getA().equals(address));
+			this.ensuredAddresses.remove(address);
+		}
+
+		Pair<List<AccountBalanceData>, List<AccountBalanceData>> getNewBalances() {
+			List<AccountBalanceData> setBalances = new ArrayList<>();
+			List<AccountBalanceData> balanceDeltas = new ArrayList<>();
+
+			for (Entry<Pair<String, Long>, BalanceEntry> entry : this.balanceEntries.entrySet()) {
+				String address = entry.getKey().getA();
+				long assetId = entry.getKey().getB();
+				BalanceEntry balanceEntry = entry.getValue();
+
+				if (balanceEntry.isSet)
+					setBalances.add(new AccountBalanceData(address, assetId, balanceEntry.balance + balanceEntry.delta));
+				else if (balanceEntry.delta != 0)
+					balanceDeltas.add(new AccountBalanceData(address, assetId, balanceEntry.delta));
+			}
+
+			return new Pair<>(setBalances, balanceDeltas);
+		}
+	}
+
+	private Repository repository;
+
+	/**
+	 * Constructs a new account balance cache, unique to passed <tt>repository</tt> handle.
+	 *
+	 * @param repository
+	 * @throws IllegalStateException if a cache already exists for <tt>repository</tt>
+	 */
+	public AccountBalanceCache(Repository repository) {
+		BalanceCache balanceCache = new BalanceCache();
+
+		synchronized (CACHE) {
+			if (CACHE.putIfAbsent(repository, balanceCache) != null)
+				throw new IllegalStateException("Account balance cache entry already exists");
+		}
+
+		this.repository = repository;
+	}
+
+	/**
+	 * Save net account balance changes into repository, in batches.
+	 * <p>
+	 * Closes cache so future balance changes go directly to repository.
+	 *
+	 * @throws DataException
+	 */
+	public void commit() throws DataException {
+		BalanceCache balanceCache;
+
+		// Also duplicated in close(), this prevents future cached changes post-commit.
+		synchronized (CACHE) {
+			balanceCache = CACHE.remove(this.repository);
+		}
+
+		if (balanceCache == null)
+			throw new IllegalStateException("Tried to commit non-existent account balance cache");
+
+		Pair<List<AccountBalanceData>, List<AccountBalanceData>> newBalances = balanceCache.getNewBalances();
+
+		this.repository.getAccountRepository().setAssetBalances(newBalances.getA());
+		this.repository.getAccountRepository().modifyAssetBalances(newBalances.getB());
+	}
+
+	@Override
+	public void close() {
+		synchronized (CACHE) {
+			CACHE.remove(this.repository);
+		}
+	}
+
+	private static BalanceCache getBalanceCache(Repository repository) {
+		synchronized (CACHE) {
+			return CACHE.get(repository);
+		}
+	}
+
+	/**
+	 * Returns account's balance, or zero if no balance.
+	 * <p>
+	 * If cache is in effect, returned balance includes prior changes made while caching.
+	 * <p>
+	 * Typically called by corresponding method in Account class.
+	 */
+	/*package*/ static long getBalance(Repository repository, String address, long assetId) throws DataException {
+		BalanceCache balanceCache = getBalanceCache(repository);
+
+		if (balanceCache == null) {
+			AccountBalanceData accountBalanceData = repository.getAccountRepository().getBalance(address, assetId);
+			return accountBalanceData != null ? accountBalanceData.getBalance() : 0L;
+		}
+
+		return balanceCache.getBalance(repository, address, assetId);
+	}
+
+	/**
+	 * Returns whether balance was set in cache.
+	 * <p>
+	 * If cache is not in effect for passed <tt>repository</tt> handle, then returns false
+	 * and caller should set balance directly in repository.
+	 * <p>
+	 * Typically called by corresponding method in Account class.
+	 */
+	/*package*/ static boolean setBalance(Repository repository, String address, long assetId, long balance) {
+		BalanceCache balanceCache = getBalanceCache(repository);
+
+		if (balanceCache == null)
+			return false;
+
+		balanceCache.setBalance(address, assetId, balance);
+		return true;
+	}
+
+	/**
+	 * Modifies account's balance by <tt>deltaBalance</tt>.
+	 * <p>
+	 * If cache is not in effect for passed <tt>repository</tt> handle,
+	 * then this method modifies balance directly in repository.
+	 * <p>
+	 * Typically called by corresponding method in Account class.
+	 */
+	/*package*/ static void modifyBalance(Repository repository, String address, long assetId, long deltaBalance) throws DataException {
+		BalanceCache balanceCache = getBalanceCache(repository);
+
+		if (balanceCache == null) {
+			repository.getAccountRepository().modifyAssetBalance(address, assetId, deltaBalance);
+			return;
+		}
+
+		balanceCache.modifyBalance(repository, address, assetId, deltaBalance);
+	}
+
+	/**
+	 * Discards any cached balances for account, e.g. because account is being deleted from repository.
+	 * <p>
+	 * Does nothing if cache is not in effect for passed <tt>repository</tt> handle.
+	 * <p>
+	 * Typically called by corresponding method in Account class.
+	 */
+	/*package*/ static void forgetAccount(Repository repository, String address) {
+		BalanceCache balanceCache = getBalanceCache(repository);
+
+		if (balanceCache == null)
+			return;
+
+		balanceCache.forgetAccount(address);
+	}
+
+}
@@ -10,9 +10,13 @@ import org.aquila.data.block.BlockSummaryData;
 import org.aquila.data.network.PeerData;
 import org.aquila.network.Handshake;
 import org.aquila.network.Peer;
+import org.aquila.network.SendPriority;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ConnectedPeer {
@@ -22,6 +26,28 @@ public class ConnectedPeer {
         OUTBOUND;
     }
 
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class SendQueueStats {
+        public SendPriority priority;
+        public int depth;
+        public long count;
+        @Schema(description = "mean time (ms) messages waited before being written")
+        public Long meanWaitTime;
+        @Schema(description = "maximum time (ms) a message waited before being written")
+        public Long maxWaitTime;
+
+        protected SendQueueStats() {
+        }
+
+        public SendQueueStats(Peer peer, SendPriority priority) {
+            this.priority = priority;
+            this.depth = peer.getSendQueueDepth(priority);
+            this.count = peer.getSendQueueMessageCount(priority);
+            this.meanWaitTime = peer.getSendQueueMeanWaitTime(priority);
+            this.maxWaitTime = peer.getSendQueueMaxWaitTime(priority);
+        }
+    }
+
     public Direction direction;
     public Handshake handshakeStatus;
     public Long lastPing;
@@ -40,6 +66,7 @@ public class ConnectedPeer {
     public UUID connectionId;
     public String age;
     public Boolean isTooDivergent;
+    public List<SendQueueStats> sendQueues;
 
     protected ConnectedPeer() {
     }
@@ -74,6 +101,10 @@ public class ConnectedPeer {
             this.lastBlockTimestamp = peerChainTipData.getTimestamp();
         }
 
+        this.sendQueues = Arrays.stream(SendPriority.values())
+                .map(priority -> new SendQueueStats(peer, priority))
+                .collect(Collectors.toList());
+
         // Only include isTooDivergent decision if we've had the opportunity to request block summaries this peer
         if (peer.getLastTooDivergentTime() != null) {
             this.isTooDivergent = Controller.wasRecentlyTooDivergent.test(peer);
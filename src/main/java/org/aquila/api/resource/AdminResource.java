@@ -41,6 +41,7 @@ import org.aquila.api.*;
 import org.aquila.api.model.ActivitySummary;
 import org.aquila.api.model.NodeInfo;
 import org.aquila.api.model.NodeStatus;
+import org.aquila.at.ATStats;
 import org.aquila.block.BlockChain;
 import org.aquila.controller.Controller;
 import org.aquila.controller.Synchronizer;
@@ -48,6 +49,7 @@ import org.aquila.controller.Synchronizer.SynchronizationResult;
 import org.aquila.controller.repository.BlockArchiveRebuilder;
 import org.aquila.data.account.MintingAccountData;
 import org.aquila.data.account.RewardShareData;
+import org.aquila.event.EventBus;
 import org.aquila.network.Network;
 import org.aquila.network.Peer;
 import org.aquila.network.PeerAddress;
@@ -283,6 +285,54 @@ public class AdminResource {
 		return Controller.getInstance().getStatsSnapshot();
 	}
 
+	@GET
+	@Path("/atstats")
+	@Operation(
+		summary = "Fetch AT execution statistics",
+		description = "Op-code dispatch counts, calls and time per Aquila function code, and per-block AT cache hits/misses",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					schema = @Schema(
+						implementation = ATStats.Snapshot.class
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public ATStats.Snapshot getAtStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return ATStats.getInstance().getSnapshot();
+	}
+
+	@GET
+	@Path("/eventbusstats")
+	@Operation(
+		summary = "Fetch event bus listener statistics",
+		description = "Delivered, dropped and coalesced events, pending queue size and latency per listener",
+		responses = {
+			@ApiResponse(
+				content = @Content(
+					mediaType = MediaType.APPLICATION_JSON,
+					array = @ArraySchema(
+						schema = @Schema(
+							implementation = EventBus.ListenerStats.class
+						)
+					)
+				)
+			)
+		}
+	)
+	@SecurityRequirement(name = "apiKey")
+	public List<EventBus.ListenerStats> getEventBusStats(@HeaderParam(Security.API_KEY_HEADER) String apiKey) {
+		Security.checkApiCallAllowed(request);
+
+		return EventBus.INSTANCE.getListenerStats();
+	}
+
 	@GET
 	@Path("/mintingaccounts")
 	@Operation(
@@ -29,6 +29,7 @@ import org.aquila.controller.tradebot.TradeBot;
 import org.aquila.crosschain.ACCT;
 import org.aquila.crosschain.AcctMode;
 import org.aquila.crosschain.SupportedBlockchain;
+import org.aquila.crosschain.TradeOfferIndex;
 import org.aquila.crypto.Crypto;
 import org.aquila.data.at.ATData;
 import org.aquila.data.at.ATStateData;
@@ -87,25 +88,15 @@ public class CrossChainResource {
 		if (limit != null && limit > 100)
 			throw ApiExceptionFactory.INSTANCE.createException(request, ApiError.INVALID_CRITERIA);
 
-		final boolean isExecutable = true;
 		List<CrossChainTradeData> crossChainTrades = new ArrayList<>();
 
 		try (final Repository repository = RepositoryManager.getRepository()) {
-			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
+			TradeOfferIndex.Snapshot tradeOffers = TradeOfferIndex.getInstance().getSnapshot(repository);
 
-			for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-				byte[] codeHash = acctInfo.getKey().value;
-				ACCT acct = acctInfo.getValue().get();
+			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(foreignBlockchain);
 
-				List<ATData> atsData = repository.getATRepository().getATsByFunctionality(codeHash, isExecutable, limit, offset, reverse);
-
-				for (ATData atData : atsData) {
-					CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atData);
-					if (crossChainTradeData.mode == AcctMode.OFFERING) {
-						crossChainTrades.add(crossChainTradeData);
-					}
-				}
-			}
+			for (ByteArray codeHash : acctsByCodeHash.keySet())
+				crossChainTrades.addAll(tradeOffers.getTrades(codeHash.value, AcctMode.OFFERING));
 
 			// Sort the trades by timestamp
 			if (reverse != null && reverse) {
@@ -115,6 +106,11 @@ public class CrossChainResource {
 				crossChainTrades.sort((a, b) -> Longs.compare(a.creationTimestamp, b.creationTimestamp));
 			}
 
+			if (offset != null && offset > 0) {
+				int lowerLimit = Math.min(offset, crossChainTrades.size());
+				crossChainTrades = crossChainTrades.subList(lowerLimit, crossChainTrades.size());
+			}
+
 			if (limit != null && limit > 0) {
 				// Make sure to not return more than the limit
 				int upperLimit = Math.min(limit, crossChainTrades.size());
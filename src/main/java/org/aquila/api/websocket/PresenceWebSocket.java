@@ -95,7 +95,7 @@ public class PresenceWebSocket extends ApiWebSocket implements Listener {
 			return;
 		}
 
-		EventBus.INSTANCE.addListener(this::listen);
+		EventBus.INSTANCE.addListener(this::listen, EventBus.DeliveryMode.ASYNC);
 	}
 
 	@Override
@@ -3,34 +3,19 @@ package org.aquila.api.websocket;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.api.model.CrossChainOfferSummary;
-import org.aquila.controller.Controller;
-import org.aquila.controller.Synchronizer;
-import org.aquila.crosschain.ACCT;
-import org.aquila.crosschain.AcctMode;
 import org.aquila.crosschain.SupportedBlockchain;
-import org.aquila.data.at.ATStateData;
-import org.aquila.data.block.BlockData;
-import org.aquila.data.crosschain.CrossChainTradeData;
-import org.aquila.event.Event;
-import org.aquila.event.EventBus;
-import org.aquila.event.Listener;
+import org.aquila.crosschain.TradeOfferIndex;
 import org.aquila.repository.DataException;
 import org.aquila.repository.Repository;
 import org.aquila.repository.RepositoryManager;
-import org.aquila.utils.ByteArray;
-import org.aquila.utils.NTP;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
@@ -41,130 +26,45 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 
 @WebSocket
 @SuppressWarnings("serial")
-public class TradeOffersWebSocket extends ApiWebSocket implements Listener {
+public class TradeOffersWebSocket extends ApiWebSocket {
 
 	private static final Logger LOGGER = LogManager.getLogger(TradeOffersWebSocket.class);
 
-	private static class CachedOfferInfo {
-		public final Map<String, AcctMode> previousAtModes = new HashMap<>();
-
-		// OFFERING
-		public final Map<String, CrossChainOfferSummary> currentSummaries = new HashMap<>();
-		// REDEEMED/REFUNDED/CANCELLED
-		public final Map<String, CrossChainOfferSummary> historicSummaries = new HashMap<>();
-	}
-	// Manual synchronization
-	private static final Map<String, CachedOfferInfo> cachedInfoByBlockchain = new HashMap<>();
-
-	private static final Predicate<CrossChainOfferSummary> isHistoric = offerSummary
-			-> offerSummary.getMode() == AcctMode.REDEEMED
-			|| offerSummary.getMode() == AcctMode.REFUNDED
-			|| offerSummary.getMode() == AcctMode.CANCELLED;
-
 	private static final Map<Session, String> sessionBlockchain = Collections.synchronizedMap(new HashMap<>());
 
 	@Override
 	public void configure(WebSocketServletFactory factory) {
 		factory.register(TradeOffersWebSocket.class);
 
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			populateCurrentSummaries(repository);
+		TradeOfferIndex tradeOfferIndex = TradeOfferIndex.getInstance();
 
-			populateHistoricSummaries(repository);
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Build index now, rather than when first session connects
+			tradeOfferIndex.getSnapshot(repository);
 		} catch (DataException e) {
-			// How to fail properly?
-			return;
+			// Index will be built on next chain tip change
+			LOGGER.warn(String.format("Repository issue while building trade offer index: %s", e.getMessage()));
 		}
 
-		EventBus.INSTANCE.addListener(this::listen);
+		tradeOfferIndex.addOfferListener(this::onOfferChanges);
 	}
 
-	@Override
-	public void listen(Event event) {
-		if (!(event instanceof Synchronizer.NewChainTipEvent))
-			return;
-
-		BlockData blockData = ((Synchronizer.NewChainTipEvent) event).getNewChainTip();
-
-		// Process any new info
-
-		try (final Repository repository = RepositoryManager.getRepository()) {
-			// Find any new/changed trade ATs since this block
-			final Boolean isFinished = null;
-			final Integer dataByteOffset = null;
-			final Long expectedValue = null;
-			final Integer minimumFinalHeight = blockData.getHeight();
-
-			for (SupportedBlockchain blockchain : SupportedBlockchain.values()) {
-				Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(blockchain);
-
-				List<CrossChainOfferSummary> crossChainOfferSummaries = new ArrayList<>();
-
-				synchronized (cachedInfoByBlockchain) {
-					CachedOfferInfo cachedInfo = cachedInfoByBlockchain.computeIfAbsent(blockchain.name(), k -> new CachedOfferInfo());
-
-					for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-						byte[] codeHash = acctInfo.getKey().value;
-						ACCT acct = acctInfo.getValue().get();
-
-						List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
-								isFinished, dataByteOffset, expectedValue, minimumFinalHeight,
-								null, null, null);
+	private void onOfferChanges(Map<String, List<CrossChainOfferSummary>> changedOffersByBlockchain) {
+		for (Map.Entry<String, List<CrossChainOfferSummary>> changedOffers : changedOffersByBlockchain.entrySet()) {
+			String blockchain = changedOffers.getKey();
 
-						crossChainOfferSummaries.addAll(produceSummaries(repository, acct, atStates, blockData.getTimestamp()));
-					}
+			if (LOGGER.isTraceEnabled())
+				for (CrossChainOfferSummary offerSummary : changedOffers.getValue())
+					LOGGER.trace(String.format("%s AT: %s, mode: %s", blockchain, offerSummary.getAquilaAtAddress(), offerSummary.getMode().name()));
 
-					// Remove any entries unchanged from last time
-					crossChainOfferSummaries.removeIf(offerSummary -> cachedInfo.previousAtModes.get(offerSummary.getAquilaAtAddress()) == offerSummary.getMode());
-
-					// Skip to next blockchain if nothing has changed (for this blockchain)
-					if (crossChainOfferSummaries.isEmpty())
-						continue;
-
-					// Update
-					for (CrossChainOfferSummary offerSummary : crossChainOfferSummaries) {
-						String offerAtAddress = offerSummary.getAquilaAtAddress();
-
-						cachedInfo.previousAtModes.put(offerAtAddress, offerSummary.getMode());
-						LOGGER.trace(() -> String.format("Block height: %d, AT: %s, mode: %s", blockData.getHeight(), offerAtAddress, offerSummary.getMode().name()));
-
-						switch (offerSummary.getMode()) {
-							case OFFERING:
-								cachedInfo.currentSummaries.put(offerAtAddress, offerSummary);
-								cachedInfo.historicSummaries.remove(offerAtAddress);
-								break;
-
-							case REDEEMED:
-							case REFUNDED:
-							case CANCELLED:
-								cachedInfo.currentSummaries.remove(offerAtAddress);
-								cachedInfo.historicSummaries.put(offerAtAddress, offerSummary);
-								break;
-
-							case TRADING:
-								cachedInfo.currentSummaries.remove(offerAtAddress);
-								cachedInfo.historicSummaries.remove(offerAtAddress);
-								break;
-						}
-					}
-
-					// Remove any historic offers that are over 24 hours old
-					final long tooOldTimestamp = NTP.getTime() - 24 * 60 * 60 * 1000L;
-					cachedInfo.historicSummaries.values().removeIf(historicSummary -> historicSummary.getTimestamp() < tooOldTimestamp);
-				}
-
-				// Notify sessions
-				for (Session session : getSessions()) {
-					// Only send if this session has this/no preferred blockchain
-					String preferredBlockchain = sessionBlockchain.get(session);
-
-					if (preferredBlockchain == null || preferredBlockchain.equals(blockchain.name()))
-						sendOfferSummaries(session, crossChainOfferSummaries);
-				}
+			// Notify sessions
+			for (Session session : getSessions()) {
+				// Only send if this session has this/no preferred blockchain
+				String preferredBlockchain = sessionBlockchain.get(session);
 
+				if (preferredBlockchain == null || preferredBlockchain.equals(blockchain))
+					sendOfferSummaries(session, changedOffers.getValue());
 			}
-		} catch (DataException e) {
-			// No output this time
 		}
 	}
 
@@ -192,22 +92,19 @@ public class TradeOffersWebSocket extends ApiWebSocket implements Listener {
 
 		// We might need to exclude the initial data from the response
 		if (!excludeInitialData) {
-			synchronized (cachedInfoByBlockchain) {
-				Collection<CachedOfferInfo> cachedInfos;
-
-				if (foreignBlockchain == null)
-					// No preferred blockchain, so iterate through all of them
-					cachedInfos = cachedInfoByBlockchain.values();
-				else
-					cachedInfos = Collections.singleton(cachedInfoByBlockchain.computeIfAbsent(foreignBlockchain, k -> new CachedOfferInfo()));
-
-				for (CachedOfferInfo cachedInfo : cachedInfos) {
-					crossChainOfferSummaries.addAll(cachedInfo.currentSummaries.values());
-
-					if (includeHistoric)
-						crossChainOfferSummaries.addAll(cachedInfo.historicSummaries.values());
+			TradeOfferIndex.Snapshot snapshot = TradeOfferIndex.getInstance().getLatestSnapshot();
+
+			if (snapshot == null) {
+				// Index wasn't built on start-up
+				try (final Repository repository = RepositoryManager.getRepository()) {
+					snapshot = TradeOfferIndex.getInstance().getSnapshot(repository);
+				} catch (DataException e) {
+					session.close(4001, "repository issue fetching trade offers");
+					return;
 				}
 			}
+
+			crossChainOfferSummaries.addAll(snapshot.getOfferSummaries(foreignBlockchain, includeHistoric));
 		}
 
 		if (!sendOfferSummaries(session, crossChainOfferSummaries)) {
@@ -252,105 +149,4 @@ public class TradeOffersWebSocket extends ApiWebSocket implements Listener {
 		return true;
 	}
 
-	private static void populateCurrentSummaries(Repository repository) throws DataException {
-		// We want ALL OFFERING trades
-		Boolean isFinished = Boolean.FALSE;
-		Long expectedValue = (long) AcctMode.OFFERING.value;
-		Integer minimumFinalHeight = null;
-
-		for (SupportedBlockchain blockchain : SupportedBlockchain.values()) {
-			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(blockchain);
-
-			CachedOfferInfo cachedInfo = cachedInfoByBlockchain.computeIfAbsent(blockchain.name(), k -> new CachedOfferInfo());
-
-			for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-				byte[] codeHash = acctInfo.getKey().value;
-				ACCT acct = acctInfo.getValue().get();
-
-				Integer dataByteOffset = acct.getModeByteOffset();
-				List<ATStateData> initialAtStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
-					isFinished, dataByteOffset, expectedValue, minimumFinalHeight,
-					null, null, null);
-
-				if (initialAtStates == null)
-					throw new DataException("Couldn't fetch current trades from repository");
-
-				// Save initial AT modes
-				cachedInfo.previousAtModes.putAll(initialAtStates.stream().collect(Collectors.toMap(ATStateData::getATAddress, atState -> AcctMode.OFFERING)));
-
-				// Convert to offer summaries
-				cachedInfo.currentSummaries.putAll(produceSummaries(repository, acct, initialAtStates, null).stream()
-										.collect(Collectors.toMap(CrossChainOfferSummary::getAquilaAtAddress, offerSummary -> offerSummary)));
-			}
-		}
-	}
-
-	private static void populateHistoricSummaries(Repository repository) throws DataException {
-		// We want REDEEMED/REFUNDED/CANCELLED trades over the last 24 hours
-		long timestamp = System.currentTimeMillis() - 24 * 60 * 60 * 1000L;
-		int minimumFinalHeight = repository.getBlockRepository().getHeightFromTimestamp(timestamp);
-
-		if (minimumFinalHeight == 0)
-			throw new DataException("Couldn't fetch block timestamp from repository");
-
-		Boolean isFinished = Boolean.TRUE;
-		Integer dataByteOffset = null;
-		Long expectedValue = null;
-		++minimumFinalHeight; // because height is just *before* timestamp
-
-		for (SupportedBlockchain blockchain : SupportedBlockchain.values()) {
-			Map<ByteArray, Supplier<ACCT>> acctsByCodeHash = SupportedBlockchain.getFilteredAcctMap(blockchain);
-
-			CachedOfferInfo cachedInfo = cachedInfoByBlockchain.computeIfAbsent(blockchain.name(), k -> new CachedOfferInfo());
-
-			for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : acctsByCodeHash.entrySet()) {
-				byte[] codeHash = acctInfo.getKey().value;
-				ACCT acct = acctInfo.getValue().get();
-
-				List<ATStateData> historicAtStates = repository.getATRepository().getMatchingFinalATStates(codeHash,
-					isFinished, dataByteOffset, expectedValue, minimumFinalHeight,
-					null, null, null);
-
-				if (historicAtStates == null)
-					throw new DataException("Couldn't fetch historic trades from repository");
-
-				for (ATStateData historicAtState : historicAtStates) {
-					CrossChainOfferSummary historicOfferSummary = produceSummary(repository, acct, historicAtState, null);
-
-					if (!isHistoric.test(historicOfferSummary))
-						continue;
-
-					// Add summary to initial burst
-					cachedInfo.historicSummaries.put(historicOfferSummary.getAquilaAtAddress(), historicOfferSummary);
-
-					// Save initial AT mode
-					cachedInfo.previousAtModes.put(historicOfferSummary.getAquilaAtAddress(), historicOfferSummary.getMode());
-				}
-			}
-		}
-	}
-
-	private static CrossChainOfferSummary produceSummary(Repository repository, ACCT acct, ATStateData atState, Long timestamp) throws DataException {
-		CrossChainTradeData crossChainTradeData = acct.populateTradeData(repository, atState);
-
-		long atStateTimestamp;
-
-		if (crossChainTradeData.mode == AcctMode.OFFERING)
-			// We want when trade was created, not when it was last updated
-			atStateTimestamp = crossChainTradeData.creationTimestamp;
-		else
-			atStateTimestamp = timestamp != null ? timestamp : repository.getBlockRepository().getTimestampFromHeight(atState.getHeight());
-
-		return new CrossChainOfferSummary(crossChainTradeData, atStateTimestamp);
-	}
-
-	private static List<CrossChainOfferSummary> produceSummaries(Repository repository, ACCT acct, List<ATStateData> atStates, Long timestamp) throws DataException {
-		List<CrossChainOfferSummary> offerSummaries = new ArrayList<>();
-
-		for (ATStateData atState : atStates)
-			offerSummaries.add(produceSummary(repository, acct, atState, timestamp));
-
-		return offerSummaries;
-	}
-
 }
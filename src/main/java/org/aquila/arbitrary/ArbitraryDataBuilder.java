@@ -7,6 +7,7 @@ import org.aquila.arbitrary.exception.DataNotPublishedException;
 import org.aquila.arbitrary.exception.MissingDataException;
 import org.aquila.arbitrary.metadata.ArbitraryDataMetadataCache;
 import org.aquila.arbitrary.misc.Service;
+import org.aquila.controller.arbitrary.ArbitraryDataBuildManager;
 import org.aquila.data.transaction.ArbitraryTransactionData;
 import org.aquila.data.transaction.ArbitraryTransactionData.Method;
 import org.aquila.repository.DataException;
@@ -22,6 +23,12 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 public class ArbitraryDataBuilder {
 
@@ -139,48 +146,109 @@ public class ArbitraryDataBuilder {
     private void processTransactions() throws IOException, DataException, MissingDataException {
         List<ArbitraryTransactionData> transactionDataList = new ArrayList<>(this.transactions);
 
-        int count = 0;
-        for (ArbitraryTransactionData transactionData : transactionDataList) {
-            LOGGER.trace("Found arbitrary transaction {}", Base58.encode(transactionData.getSignature()));
-            count++;
-
-            // Build the data file, overwriting anything that was previously there
-            String sig58 = Base58.encode(transactionData.getSignature());
-            ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(sig58, ResourceIdType.TRANSACTION_DATA,
-                    this.service, this.identifier);
-            arbitraryDataReader.setTransactionData(transactionData);
-            arbitraryDataReader.setCanRequestMissingFiles(this.canRequestMissingFiles);
-            boolean hasMissingData = false;
-            try {
-                arbitraryDataReader.loadSynchronously(true);
-            }
-            catch (MissingDataException e) {
-                hasMissingData = true;
+        // Fetch, decrypt and uncompress all layers concurrently, as each uses its own working directory
+        // Only the merging of layers (in buildLatestState) needs to happen in order
+        List<Future<Path>> layerFutures = new ArrayList<>(transactionDataList.size());
+        try {
+            for (ArbitraryTransactionData transactionData : transactionDataList) {
+                LOGGER.trace("Found arbitrary transaction {}", Base58.encode(transactionData.getSignature()));
+                layerFutures.add(this.submitLayer(transactionData, transactionDataList.size()));
             }
 
-            // Handle missing data
-            if (hasMissingData) {
-                if (!this.canRequestMissingFiles) {
-                    throw new MissingDataException("Files are missing but were not requested.");
+            int count = 0;
+            for (ArbitraryTransactionData transactionData : transactionDataList) {
+                Future<Path> layerFuture = layerFutures.get(count);
+                count++;
+
+                String sig58 = Base58.encode(transactionData.getSignature());
+                boolean hasMissingData = false;
+                Path path = null;
+                try {
+                    path = layerFuture.get();
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof MissingDataException) {
+                        hasMissingData = true;
+                    }
+                    else if (cause instanceof DataException) {
+                        throw (DataException) cause;
+                    }
+                    else if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    else {
+                        throw new DataException(String.format("Unable to build data from transaction %s: %s", sig58, cause));
+                    }
+                }
+
+                // Handle missing data
+                if (hasMissingData) {
+                    if (!this.canRequestMissingFiles) {
+                        throw new MissingDataException("Files are missing but were not requested.");
+                    }
+                    if (count == transactionDataList.size()) {
+                        // This is the final transaction in the list, so we need to fail
+                        throw new MissingDataException("Requesting missing files. Please wait and try again.");
+                    }
+                    // There are more transactions, which have already had the opportunity to request data
+                    continue;
+                }
+
+                // By this point we should have all data needed to build the layers
+                if (path == null) {
+                    throw new DataException(String.format("Null path when building data from transaction %s", sig58));
                 }
-                if (count == transactionDataList.size()) {
-                    // This is the final transaction in the list, so we need to fail
-                    throw new MissingDataException("Requesting missing files. Please wait and try again.");
+                if (!Files.exists(path)) {
+                    throw new DataException(String.format("Path doesn't exist when building data from transaction %s", sig58));
                 }
-                // There are more transactions, so we should process them to give them the opportunity to request data
-                continue;
+                paths.add(path);
             }
 
-            // By this point we should have all data needed to build the layers
-            Path path = arbitraryDataReader.getFilePath();
-            if (path == null) {
-                throw new DataException(String.format("Null path when building data from transaction %s", sig58));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataException("Interrupted when building layers");
+
+        } finally {
+            // Don't start layers that are no longer needed, but let running ones finish cleanly
+            for (Future<Path> layerFuture : layerFutures) {
+                layerFuture.cancel(false);
             }
-            if (!Files.exists(path)) {
-                throw new DataException(String.format("Path doesn't exist when building data from transaction %s", sig58));
+        }
+    }
+
+    /**
+     * Fetches, decrypts and uncompresses a single layer, returning a future for the layer's path.
+     * Runs on the calling thread when there's only one layer, or no executor is available.
+     */
+    private Future<Path> submitLayer(ArbitraryTransactionData transactionData, int layerCount) {
+        String sig58 = Base58.encode(transactionData.getSignature());
+        ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(sig58, ResourceIdType.TRANSACTION_DATA,
+                this.service, this.identifier);
+        arbitraryDataReader.setTransactionData(transactionData);
+        arbitraryDataReader.setCanRequestMissingFiles(this.canRequestMissingFiles);
+
+        Callable<Path> layerTask = () -> {
+            // Overwrite anything that was previously there
+            arbitraryDataReader.loadSynchronously(true);
+            return arbitraryDataReader.getFilePath();
+        };
+
+        ExecutorService layerExecutor = ArbitraryDataBuildManager.getInstance().getLayerExecutor();
+        if (layerCount > 1 && !layerExecutor.isShutdown()) {
+            try {
+                return layerExecutor.submit(layerTask);
+            } catch (RejectedExecutionException e) {
+                // Shutting down - fall through to run on this thread
             }
-            paths.add(path);
         }
+
+        FutureTask<Path> futureTask = new FutureTask<>(layerTask);
+        futureTask.run();
+        return futureTask;
     }
 
     private void findLatestSignature() throws DataException {
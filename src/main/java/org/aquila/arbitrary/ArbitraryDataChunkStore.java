@@ -0,0 +1,361 @@
+package org.aquila.arbitrary;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.aquila.settings.Settings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the files in the data directory, keyed by hash.
+ * <p>
+ * Files are still stored per transaction signature, but identical files are hard links to the same
+ * bytes on disk, so they are only stored (and fetched) once. The number of paths holding a hash is
+ * that hash's reference count, and the bytes are only freed once every path has been deleted.
+ * <p>
+ * The index is built by the storage manager's periodic walk of the data directory, and kept up
+ * to date by file writes and deletes in between. Every code path that deletes or moves data files
+ * updates it, so files it holds are known to exist without checking the disk. Files deleted from
+ * outside the node are dropped when the index is next rebuilt, or when linking to them fails.
+ */
+public class ArbitraryDataChunkStore {
+
+    private static final Logger LOGGER = LogManager.getLogger(ArbitraryDataChunkStore.class);
+
+    /** Depth of data files below data directory, i.e. xx/yy/signature58/hash58 or _misc/xx/yy/hash58 */
+    private static final int FILE_DEPTH = 4;
+
+    /** Suffix of files that are still being written */
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /** Result of walking the data directory */
+    private static class Scan {
+        private final Map<String, Set<Path>> pathsByHash58 = new HashMap<>();
+        private long uniqueBytes = 0;
+    }
+
+    private static ArbitraryDataChunkStore instance;
+
+    private final Map<String, Set<Path>> pathsByHash58 = new HashMap<>();
+    private boolean isEnabled = false;
+
+    /** Paths removed while a scan is in progress, which the scan may have already seen */
+    private Set<Path> removedDuringScan = null;
+
+    private ArbitraryDataChunkStore() {
+    }
+
+    public static synchronized ArbitraryDataChunkStore getInstance() {
+        if (instance == null)
+            instance = new ArbitraryDataChunkStore();
+
+        return instance;
+    }
+
+    /**
+     * Returns bytes used by data directory, counting hard-linked files only once.
+     * Warning: this method will walk through the entire data directory
+     */
+    public long calculateUniqueBytes() throws IOException {
+        return this.scan().uniqueBytes;
+    }
+
+    /**
+     * Rebuilds index from data directory, and starts answering lookups from the index.
+     * Warning: this method will walk through the entire data directory
+     *
+     * @return bytes used by data directory, counting hard-linked files only once
+     */
+    public long rebuild() throws IOException {
+        synchronized (this) {
+            this.removedDuringScan = new HashSet<>();
+        }
+
+        Scan scan;
+        try {
+            scan = this.scan();
+        } catch (IOException e) {
+            synchronized (this) {
+                this.removedDuringScan = null;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            this.pathsByHash58.clear();
+            this.pathsByHash58.putAll(scan.pathsByHash58);
+
+            // Forget files that were deleted after the scan saw them
+            for (Path path : this.removedDuringScan) {
+                this.removeFromIndex(path);
+            }
+            this.removedDuringScan = null;
+
+            this.isEnabled = true;
+            LOGGER.debug("Indexed {} unique data files", this.pathsByHash58.size());
+        }
+
+        return scan.uniqueBytes;
+    }
+
+    private Scan scan() throws IOException {
+        Path dataPath = Paths.get(Settings.getInstance().getDataPath()).toAbsolutePath();
+        Scan scan = new Scan();
+        if (!Files.exists(dataPath)) {
+            return scan;
+        }
+
+        Set<Object> fileKeys = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(dataPath)) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Deleted since being listed
+                    continue;
+                }
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+
+                // Only count each set of hard links once
+                Object fileKey = attributes.fileKey();
+                if (fileKey == null || fileKeys.add(fileKey)) {
+                    scan.uniqueBytes += attributes.size();
+                }
+
+                if (dataPath.relativize(path).getNameCount() == FILE_DEPTH && isDataFile(path)) {
+                    scan.pathsByHash58.computeIfAbsent(path.getFileName().toString(), k -> new HashSet<>()).add(path);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            // Directory was probably deleted while we were walking it
+            throw e.getCause();
+        }
+
+        return scan;
+    }
+
+    /** Discards index, so lookups use the filesystem until it is next rebuilt. */
+    public synchronized void clear() {
+        this.pathsByHash58.clear();
+        this.isEnabled = false;
+    }
+
+    public synchronized boolean isEnabled() {
+        return this.isEnabled;
+    }
+
+    /**
+     * Returns whether file at <tt>path</tt> exists.
+     * <p>
+     * Indexed files are known to exist. Anything else is checked on disk, and added to the index if found.
+     */
+    public boolean exists(Path path) {
+        if (path == null) {
+            return false;
+        }
+        path = path.toAbsolutePath();
+
+        synchronized (this) {
+            if (this.isEnabled && this.containsPath(path)) {
+                return true;
+            }
+        }
+
+        if (!Files.exists(path)) {
+            return false;
+        }
+
+        this.add(path);
+        return true;
+    }
+
+    /** Records a data file that has been written to <tt>path</tt>. */
+    public synchronized void add(Path path) {
+        if (!this.isEnabled || path == null || !isDataFile(path)) {
+            return;
+        }
+        path = path.toAbsolutePath();
+
+        // Only files in the data directory are immutable, so safe to link to
+        if (!path.startsWith(Paths.get(Settings.getInstance().getDataPath()).toAbsolutePath())) {
+            return;
+        }
+
+        this.pathsByHash58.computeIfAbsent(path.getFileName().toString(), k -> new HashSet<>()).add(path);
+    }
+
+    /** Records that the data file at <tt>path</tt> has been deleted. */
+    public synchronized void remove(Path path) {
+        if (path == null) {
+            return;
+        }
+        path = path.toAbsolutePath();
+
+        if (this.removedDuringScan != null) {
+            this.removedDuringScan.add(path);
+        }
+
+        this.removeFromIndex(path);
+    }
+
+    /** Records that the data file at <tt>source</tt> has been moved to <tt>destination</tt>. */
+    public void move(Path source, Path destination) {
+        this.remove(source);
+        this.add(destination);
+    }
+
+    /** Records that <tt>directory</tt>, and everything in it, has been deleted. */
+    public synchronized void removeDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        Path absoluteDirectory = directory.toAbsolutePath();
+
+        Iterator<Set<Path>> iterator = this.pathsByHash58.values().iterator();
+        while (iterator.hasNext()) {
+            Set<Path> paths = iterator.next();
+
+            Iterator<Path> pathIterator = paths.iterator();
+            while (pathIterator.hasNext()) {
+                Path path = pathIterator.next();
+                if (path.startsWith(absoluteDirectory)) {
+                    pathIterator.remove();
+
+                    if (this.removedDuringScan != null) {
+                        this.removedDuringScan.add(path);
+                    }
+                }
+            }
+
+            if (paths.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns number of paths (i.e. transactions, plus any unrelocated copy) sharing the bytes for <tt>hash58</tt>.
+     * <p>
+     * Only paths that still exist are counted, and any others are dropped from the index.
+     */
+    public int getReferenceCount(String hash58) {
+        List<Path> paths;
+        synchronized (this) {
+            Set<Path> indexedPaths = this.pathsByHash58.get(hash58);
+            if (indexedPaths == null) {
+                return 0;
+            }
+            paths = new ArrayList<>(indexedPaths);
+        }
+
+        int referenceCount = 0;
+        for (Path path : paths) {
+            if (Files.exists(path)) {
+                referenceCount++;
+            } else {
+                // Deleted from outside the node
+                this.remove(path);
+            }
+        }
+
+        return referenceCount;
+    }
+
+    /**
+     * Creates <tt>path</tt> as a hard link to an existing copy of the same file, if we have one,
+     * avoiding the need to store or fetch it again.
+     *
+     * @return true if link was created, false if there is no copy to link to, or <tt>path</tt> already exists
+     */
+    public boolean linkExisting(Path path) {
+        if (path == null) {
+            return false;
+        }
+        path = path.toAbsolutePath();
+        String hash58 = path.getFileName().toString();
+
+        List<Path> existingPaths;
+        synchronized (this) {
+            if (!this.isEnabled) {
+                return false;
+            }
+
+            Set<Path> paths = this.pathsByHash58.get(hash58);
+            if (paths == null || paths.contains(path)) {
+                return false;
+            }
+            existingPaths = new ArrayList<>(paths);
+        }
+
+        for (Path existingPath : existingPaths) {
+            try {
+                Files.createDirectories(path.getParent());
+                Files.createLink(path, existingPath);
+
+                LOGGER.trace("Linked {} to existing copy {}", path, existingPath);
+                this.add(path);
+                return true;
+
+            } catch (FileAlreadyExistsException e) {
+                this.add(path);
+                return false;
+
+            } catch (NoSuchFileException e) {
+                // Stale entry, so try another copy
+                this.remove(existingPath);
+
+            } catch (IOException | UnsupportedOperationException | SecurityException e) {
+                // Filesystem might not support hard links, in which case we store copies as before
+                LOGGER.debug("Unable to link {} to {}: {}", path, existingPath, e.getMessage());
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean containsPath(Path path) {
+        Set<Path> paths = this.pathsByHash58.get(path.getFileName().toString());
+        return paths != null && paths.contains(path);
+    }
+
+    private void removeFromIndex(Path path) {
+        String hash58 = path.getFileName().toString();
+        Set<Path> paths = this.pathsByHash58.get(hash58);
+        if (paths == null) {
+            return;
+        }
+
+        paths.remove(path);
+        if (paths.isEmpty()) {
+            this.pathsByHash58.remove(hash58);
+        }
+    }
+
+    private static boolean isDataFile(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+
+        // Ignore indicator files (e.g. ".original") and partially written files
+        String name = fileName.toString();
+        return !name.startsWith(".") && !name.endsWith(TEMP_FILE_SUFFIX);
+    }
+
+}
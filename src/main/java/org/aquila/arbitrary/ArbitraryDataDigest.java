@@ -1,20 +1,27 @@
 package org.aquila.arbitrary;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.aquila.repository.DataException;
 import org.aquila.utils.Base58;
 
 public class ArbitraryDataDigest {
 
+    /** Size of buffer used to stream file contents, so memory use doesn't depend on file sizes */
+    private static final int BUFFER_SIZE = 64 * 1024; // bytes
+
     private final Path path;
     private byte[] hash;
 
@@ -23,9 +30,15 @@ public class ArbitraryDataDigest {
     }
 
     public void compute() throws IOException, DataException {
-        List<Path> allPaths = Files.walk(path).filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        List<Path> allPaths;
+        try (Stream<Path> paths = Files.walk(path)) {
+            allPaths = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
         Path basePathAbsolute = this.path.toAbsolutePath();
 
+        // Heap buffer, as MessageDigest copies direct buffers to the heap anyway, and this is allocated per call
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
         MessageDigest sha256;
         try {
             sha256 = MessageDigest.getInstance("SHA-256");
@@ -49,8 +62,14 @@ public class ArbitraryDataDigest {
             sha256.update(filePathBytes);
 
             // Hash contents
-            byte[] fileContent = Files.readAllBytes(path);
-            sha256.update(fileContent);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    sha256.update(buffer);
+                    buffer.clear();
+                }
+            }
         }
         this.hash = sha256.digest();
     }
@@ -10,10 +10,14 @@ import org.aquila.utils.Base58;
 import org.aquila.utils.FilesystemUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -80,22 +84,44 @@ public class ArbitraryDataFile {
     }
 
     public ArbitraryDataFile(byte[] fileContent, byte[] signature) throws DataException {
+        this(fileContent != null ? ByteBuffer.wrap(fileContent) : null, signature);
+    }
+
+    /** Creates file from buffer's remaining bytes, without modifying buffer's position. */
+    public ArbitraryDataFile(ByteBuffer fileContent, byte[] signature) throws DataException {
         if (fileContent == null) {
             LOGGER.error("fileContent is null");
             return;
         }
 
-        this.hash58 = Base58.encode(Crypto.digest(fileContent));
+        this.hash58 = Base58.encode(Crypto.digest(fileContent.duplicate()));
         this.signature = signature;
-        LOGGER.trace(String.format("File digest: %s, size: %d bytes", this.hash58, fileContent.length));
+        LOGGER.trace(String.format("File digest: %s, size: %d bytes", this.hash58, fileContent.remaining()));
 
         Path outputFilePath = getOutputFilePath(this.hash58, signature, true);
-        File outputFile = outputFilePath.toFile();
-        try (FileOutputStream outputStream = new FileOutputStream(outputFile)) {
-            outputStream.write(fileContent);
+
+        // Share bytes with an existing copy (e.g. from another transaction) if we have one
+        if (ArbitraryDataChunkStore.getInstance().linkExisting(outputFilePath)) {
+            this.filePath = outputFilePath;
+            return;
+        }
+
+        // Write to a temporary file first, as the output path may be a hard link that is being read
+        Path tempFilePath = null;
+        try {
+            tempFilePath = getTempFilePath(outputFilePath);
+            try (FileChannel outputChannel = FileChannel.open(tempFilePath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer source = fileContent.duplicate();
+                while (source.hasRemaining()) {
+                    outputChannel.write(source);
+                }
+            }
+
+            moveIntoPlace(tempFilePath, outputFilePath);
             this.filePath = outputFilePath;
         } catch (IOException e) {
-            this.delete();
+            deleteTempFile(tempFilePath);
             throw new DataException(String.format("Unable to write data with hash %s: %s", this.hash58, e.getMessage()));
         }
     }
@@ -130,6 +156,7 @@ public class ArbitraryDataFile {
                     // Wrong path, so relocate (but don't cleanup, as the source folder may still be needed by the caller)
                     Path dest = arbitraryDataFile.getFilePath();
                     FilesystemUtils.moveFile(path, dest, false);
+                    ArbitraryDataChunkStore.getInstance().move(path, dest);
                 }
                 return arbitraryDataFile;
 
@@ -152,7 +179,10 @@ public class ArbitraryDataFile {
         sourcePath = sourcePath.toAbsolutePath();
         Path destPath = outputFilePath.toAbsolutePath();
         try {
-            return Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
+            // REPLACE_EXISTING deletes destination first, rather than overwriting any hard-linked bytes
+            Path path = Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
+            ArbitraryDataChunkStore.getInstance().add(path);
+            return path;
         } catch (IOException e) {
             throw new DataException(String.format("Unable to copy file %s to data directory %s", sourcePath, destPath));
         }
@@ -256,27 +286,35 @@ public class ArbitraryDataFile {
         try {
 
             File file = this.getFile();
-            byte[] buffer = new byte[chunkSize];
             this.chunks = new ArrayList<>();
 
             if (file != null) {
-                try (FileInputStream fileInputStream = new FileInputStream(file);
-                     BufferedInputStream bis = new BufferedInputStream(fileInputStream)) {
-
-                    int numberOfBytes;
-                    while ((numberOfBytes = bis.read(buffer)) > 0) {
-                        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                            out.write(buffer, 0, numberOfBytes);
-                            out.flush();
-
-                            ArbitraryDataFileChunk chunk = new ArbitraryDataFileChunk(out.toByteArray(), this.signature);
-                            ValidationResult validationResult = chunk.isValid();
-                            if (validationResult == ValidationResult.OK) {
-                                this.chunks.add(chunk);
-                            } else {
-                                throw new DataException(String.format("Chunk %s is invalid", chunk));
+                // Single reusable buffer, so heap usage doesn't depend on file size
+                ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+
+                try (FileChannel inputChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    while (true) {
+                        // Fill buffer, as a read can return fewer bytes than requested
+                        buffer.clear();
+                        while (buffer.hasRemaining()) {
+                            if (inputChannel.read(buffer) < 0) {
+                                break;
                             }
                         }
+                        buffer.flip();
+
+                        if (!buffer.hasRemaining()) {
+                            break;
+                        }
+
+                        // Chunk is hashed, then written, from same buffer
+                        ArbitraryDataFileChunk chunk = new ArbitraryDataFileChunk(buffer, this.signature);
+                        ValidationResult validationResult = chunk.isValid();
+                        if (validationResult == ValidationResult.OK) {
+                            this.chunks.add(chunk);
+                        } else {
+                            throw new DataException(String.format("Chunk %s is invalid", chunk));
+                        }
                     }
                 }
             }
@@ -291,42 +329,49 @@ public class ArbitraryDataFile {
         // Ensure we have chunks
         if (this.chunks != null && this.chunks.size() > 0) {
 
-            // Create temporary path for joined file
-            // Use the user-specified temp dir, as it is deterministic, and is more likely to be located on reusable storage hardware
-            String baseDir = Settings.getInstance().getTempDataPath();
-            Path tempDir = Paths.get(baseDir, "join");
+            // Join the chunks straight into the data directory, letting the OS copy the bytes
+            // Callers verify the joined file's hash, and we delete it below if joining fails
+            Path outputPath;
             try {
-                Files.createDirectories(tempDir);
-            } catch (IOException e) {
+                outputPath = getOutputFilePath(this.hash58, this.signature, true);
+            } catch (DataException e) {
+                return false;
+            }
+            if (outputPath == null) {
                 return false;
             }
 
-            // Join the chunks
-            Path outputPath = Paths.get(tempDir.toString(), this.chunks.get(0).digest58());
-            File outputFile = new File(outputPath.toString());
-            try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile))) {
-                for (ArbitraryDataFileChunk chunk : this.chunks) {
-                    File sourceFile = chunk.filePath.toFile();
-                    BufferedInputStream in = new BufferedInputStream(new FileInputStream(sourceFile));
-                    byte[] buffer = new byte[2048];
-                    int inSize;
-                    while ((inSize = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, inSize);
-                    }
-                    in.close();
-                }
-                out.close();
+            // Use the complete file from another transaction, if we have it
+            if (ArbitraryDataChunkStore.getInstance().linkExisting(outputPath)) {
+                this.filePath = outputPath;
+                return true;
+            }
 
-                // Copy temporary file to data directory
-                this.filePath = this.copyToDataDirectory(outputPath, this.signature);
-                if (FilesystemUtils.pathInsideDataOrTempPath(outputPath)) {
-                    Files.delete(outputPath);
+            // Join into a temporary file first, as the output path may be a hard link that is being read
+            Path tempFilePath = null;
+            try {
+                tempFilePath = getTempFilePath(outputPath);
+                try (FileChannel outputChannel = FileChannel.open(tempFilePath,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (ArbitraryDataFileChunk chunk : this.chunks) {
+                        try (FileChannel inputChannel = FileChannel.open(chunk.filePath, StandardOpenOption.READ)) {
+                            long size = inputChannel.size();
+                            long position = 0;
+
+                            // transferTo() can transfer fewer bytes than requested
+                            while (position < size) {
+                                position += inputChannel.transferTo(position, size - position, outputChannel);
+                            }
+                        }
+                    }
                 }
 
+                moveIntoPlace(tempFilePath, outputPath);
+                this.filePath = outputPath;
                 return true;
-            } catch (FileNotFoundException e) {
-                return false;
-            } catch (IOException | DataException e) {
+            } catch (IOException e) {
+                LOGGER.debug("Unable to join chunks for file {}: {}", this.hash58, e.getMessage());
+                deleteTempFile(tempFilePath);
                 return false;
             }
         }
@@ -340,6 +385,7 @@ public class ArbitraryDataFile {
             if (Files.exists(this.filePath)) {
                 try {
                     Files.delete(this.filePath);
+                    ArbitraryDataChunkStore.getInstance().remove(this.filePath);
                     this.cleanupFilesystem();
                     LOGGER.debug("Deleted file {}", this.filePath);
                     return true;
@@ -429,8 +475,46 @@ public class ArbitraryDataFile {
     }
 
     public boolean exists() {
-        File file = this.filePath.toFile();
-        return file.exists();
+        return ArbitraryDataChunkStore.getInstance().exists(this.filePath);
+    }
+
+    /**
+     * Creates file as a link to another transaction's copy, if we have one, so it doesn't need fetching.
+     *
+     * @return true if file was linked, false if there is no copy to link to, or file already exists
+     */
+    public boolean linkExisting() {
+        return ArbitraryDataChunkStore.getInstance().linkExisting(this.filePath);
+    }
+
+    /** Replaces <tt>destination</tt> with <tt>source</tt>, without modifying any other hard links to <tt>destination</tt>. */
+    private static void moveIntoPlace(Path source, Path destination) throws IOException {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        ArbitraryDataChunkStore.getInstance().add(destination);
+    }
+
+    /** Returns a path next to <tt>path</tt> that is unique to this thread, for writing before moving into place. */
+    private static Path getTempFilePath(Path path) {
+        String fileName = String.format("%s.%d%s", path.getFileName(), Thread.currentThread().getId(), ArbitraryDataChunkStore.TEMP_FILE_SUFFIX);
+        return path.resolveSibling(fileName);
+    }
+
+    private static void deleteTempFile(Path tempFilePath) {
+        if (tempFilePath == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(tempFilePath);
+        } catch (IOException e) {
+            // Will be removed along with its directory
+            LOGGER.debug("Unable to delete temporary file {}", tempFilePath);
+        }
     }
 
     public boolean chunkExists(byte[] hash) {
@@ -6,6 +6,7 @@ import org.aquila.repository.DataException;
 import org.aquila.utils.Base58;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 
 
@@ -21,6 +22,10 @@ public class ArbitraryDataFileChunk extends ArbitraryDataFile {
         super(fileContent, signature);
     }
 
+    public ArbitraryDataFileChunk(ByteBuffer fileContent, byte[] signature) throws DataException {
+        super(fileContent, signature);
+    }
+
     public static ArbitraryDataFileChunk fromHash58(String hash58, byte[] signature) throws DataException {
         return new ArbitraryDataFileChunk(hash58, signature);
     }
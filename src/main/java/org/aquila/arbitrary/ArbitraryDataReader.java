@@ -62,6 +62,9 @@ public class ArbitraryDataReader {
     // The resource being read
     ArbitraryDataResource arbitraryDataResource = null;
 
+    // Whether we have told the build manager that we're building, so must tell it when we finish
+    private boolean isBuildInProgress = false;
+
     public ArbitraryDataReader(String resourceId, ResourceIdType resourceIdType, Service service, String identifier) {
         // Ensure names are always lowercase
         if (resourceIdType == ResourceIdType.NAME) {
@@ -199,13 +202,18 @@ public class ArbitraryDataReader {
 
     private void preExecute() throws DataException {
         ArbitraryDataBuildManager.getInstance().setBuildInProgress(true);
+        this.isBuildInProgress = true;
         this.checkEnabled();
         this.createWorkingDirectory();
         this.createUncompressedDirectory();
     }
 
     private void postExecute() {
-        ArbitraryDataBuildManager.getInstance().setBuildInProgress(false);
+        // Cached data may have been returned without starting a build
+        if (this.isBuildInProgress) {
+            ArbitraryDataBuildManager.getInstance().setBuildInProgress(false);
+            this.isBuildInProgress = false;
+        }
     }
 
     private void checkEnabled() throws DataException {
@@ -488,7 +496,9 @@ public class ArbitraryDataReader {
             else if (compression == Compression.NONE) {
                 Files.createDirectories(this.uncompressedPath);
                 Path finalPath = Paths.get(this.uncompressedPath.toString(), "data");
-                this.filePath.toFile().renameTo(finalPath.toFile());
+                if (this.filePath.toFile().renameTo(finalPath.toFile())) {
+                    ArbitraryDataChunkStore.getInstance().remove(this.filePath);
+                }
             }
             else {
                 throw new DataException(String.format("Unrecognized compression type: %s", transactionData.getCompression()));
@@ -506,6 +516,7 @@ public class ArbitraryDataReader {
             if (Files.exists(this.filePath)) {
                 try {
                     Files.delete(this.filePath);
+                    ArbitraryDataChunkStore.getInstance().remove(this.filePath);
                 } catch (IOException e) {
                     // Ignore failures as this isn't an essential step
                     LOGGER.info("Unable to delete file at path {}", this.filePath);
@@ -544,6 +555,7 @@ public class ArbitraryDataReader {
                 if (FilesystemUtils.pathInsideDataOrTempPath(this.filePath)) {
                     File directory = new File(this.filePath.toString());
                     FileUtils.deleteDirectory(directory);
+                    ArbitraryDataChunkStore.getInstance().removeDirectory(this.filePath);
                 }
 
                 // ... and its parent directory if empty
@@ -100,9 +100,18 @@ public class AT {
 	 * @throws DataException
 	 */
 	public List<AtTransaction> run(int blockHeight, long blockTimestamp) throws DataException {
+		return this.run(blockHeight, blockTimestamp, null);
+	}
+
+	/**
+	 * Potentially execute AT, using <tt>blockCache</tt> for repository lookups that are constant for the block.
+	 *
+	 * @see #run(int, long)
+	 */
+	public List<AtTransaction> run(int blockHeight, long blockTimestamp, ATBlockCache blockCache) throws DataException {
 		String atAddress = this.atData.getATAddress();
 
-		AquilaATAPI api = new AquilaATAPI(repository, this.atData, blockTimestamp);
+		AquilaATAPI api = new AquilaATAPI(repository, this.atData, blockTimestamp, blockCache);
 		AquilaAtLoggerFactory loggerFactory = AquilaAtLoggerFactory.getInstance();
 
 		if (!api.willExecute(blockHeight))
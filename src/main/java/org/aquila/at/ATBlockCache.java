@@ -0,0 +1,115 @@
+package org.aquila.at;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aquila.data.block.BlockData;
+import org.aquila.data.block.BlockSummaryData;
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.utils.Pair;
+
+/**
+ * Read cache for repository lookups made by {@link AquilaATAPI}, shared by all ATs run for one block.
+ * <p>
+ * Running ATs doesn't modify the repository, so chain height, blocks, AT creation heights
+ * and confirmed transactions are constant while a block's ATs are being run.
+ * <p>
+ * Thread-safe, as ATs might be run concurrently (see {@link ATExecutor}), but all repository sessions
+ * using the same cache must see the same chain state. Concurrent misses for the same value
+ * might both hit the repository, which is harmless as the values are identical.
+ * <p>
+ * Cache is discarded once block's ATs have been run.
+ */
+public class ATBlockCache {
+
+	private volatile Integer blockchainHeight;
+	private volatile BlockData lastBlockData;
+	private volatile BlockSummaryData previousBlockSummary;
+	private final Map<String, Integer> atCreationHeights = new ConcurrentHashMap<>();
+	private final Map<Pair<Integer, Integer>, TransactionData> transactionsByHeightAndSequence = new ConcurrentHashMap<>();
+
+	public int getBlockchainHeight(Repository repository) throws DataException {
+		Integer height = this.blockchainHeight;
+		if (height != null) {
+			ATStats.getInstance().onBlockCacheHit();
+			return height;
+		}
+
+		ATStats.getInstance().onBlockCacheMiss();
+		height = repository.getBlockRepository().getBlockchainHeight();
+		this.blockchainHeight = height;
+		return height;
+	}
+
+	/** Returns last block in chain, or null if none */
+	public BlockData getLastBlock(Repository repository) throws DataException {
+		BlockData blockData = this.lastBlockData;
+		if (blockData != null) {
+			ATStats.getInstance().onBlockCacheHit();
+			return blockData;
+		}
+
+		ATStats.getInstance().onBlockCacheMiss();
+		blockData = repository.getBlockRepository().getLastBlock();
+		this.lastBlockData = blockData;
+		return blockData;
+	}
+
+	/** Returns summary of block before last block in chain, or null if not found */
+	public BlockSummaryData getPreviousBlockSummary(Repository repository) throws DataException {
+		BlockSummaryData blockSummary = this.previousBlockSummary;
+		if (blockSummary != null) {
+			ATStats.getInstance().onBlockCacheHit();
+			return blockSummary;
+		}
+
+		int previousBlockHeight = this.getBlockchainHeight(repository) - 1;
+
+		ATStats.getInstance().onBlockCacheMiss();
+		List<BlockSummaryData> blockSummaries = repository.getBlockRepository().getBlockSummaries(previousBlockHeight, previousBlockHeight);
+		if (blockSummaries == null || blockSummaries.size() != 1)
+			return null;
+
+		blockSummary = blockSummaries.get(0);
+		this.previousBlockSummary = blockSummary;
+		return blockSummary;
+	}
+
+	/** Returns AT's creation block height, or null if not found */
+	public Integer getATCreationBlockHeight(Repository repository, String atAddress) throws DataException {
+		Integer height = this.atCreationHeights.get(atAddress);
+		if (height != null) {
+			ATStats.getInstance().onBlockCacheHit();
+			return height;
+		}
+
+		ATStats.getInstance().onBlockCacheMiss();
+		height = repository.getATRepository().getATCreationBlockHeight(atAddress);
+		if (height != null)
+			this.atCreationHeights.put(atAddress, height);
+
+		return height;
+	}
+
+	/** Returns confirmed transaction at height and sequence, or null if not found */
+	public TransactionData getTransaction(Repository repository, int height, int sequence) throws DataException {
+		Pair<Integer, Integer> key = new Pair<>(height, sequence);
+
+		TransactionData transactionData = this.transactionsByHeightAndSequence.get(key);
+		if (transactionData != null) {
+			ATStats.getInstance().onBlockCacheHit();
+			return transactionData;
+		}
+
+		ATStats.getInstance().onBlockCacheMiss();
+		transactionData = repository.getTransactionRepository().fromHeightAndSequence(height, sequence);
+		if (transactionData != null)
+			this.transactionsByHeightAndSequence.put(key, transactionData);
+
+		return transactionData;
+	}
+
+}
@@ -0,0 +1,228 @@
+package org.aquila.at;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.aquila.data.at.ATData;
+import org.aquila.data.at.ATStateData;
+import org.aquila.data.block.BlockData;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.settings.Settings;
+import org.aquila.transaction.AtTransaction;
+
+/**
+ * Runs a block's executable ATs, concurrently if possible.
+ * <p>
+ * Running an AT only <i>reads</i> from the repository: AT states and AT-generated transactions
+ * are only saved/processed later, by {@link org.aquila.block.Block#process()}. So every AT in a block
+ * sees the same pre-block state, whatever order ATs are run in, and there are no dependencies between ATs.
+ * <p>
+ * ATs are run by worker threads, each using its own repository session, as sessions are not thread-safe.
+ * Results are returned in the same order as passed ATs (i.e. creation order) so AT states and
+ * AT-generated transactions are identical to running ATs serially.
+ * <p>
+ * Worker sessions only see committed state, so ATs are run serially, using caller's repository session, if:
+ * <ul>
+ * <li>caller's session has uncommitted changes, e.g. orphaned blocks during synchronization</li>
+ * <li>worker sessions see a different chain tip to caller's session</li>
+ * <li>there are too few ATs to make it worthwhile</li>
+ * </ul>
+ */
+public class ATExecutor {
+
+	private static final Logger LOGGER = LogManager.getLogger(ATExecutor.class);
+
+	/** Minimum number of ATs per worker, as each worker needs its own repository session */
+	private static final int MIN_ATS_PER_WORKER = 4;
+
+	public static class Result {
+		private final ATStateData atStateData;
+		private final List<AtTransaction> atTransactions;
+
+		private Result(ATStateData atStateData, List<AtTransaction> atTransactions) {
+			this.atStateData = atStateData;
+			this.atTransactions = atTransactions;
+		}
+
+		/** Returns new AT state data, or null if AT didn't execute (e.g. sleeping) */
+		public ATStateData getATStateData() {
+			return this.atStateData;
+		}
+
+		public List<AtTransaction> getATTransactions() {
+			return this.atTransactions;
+		}
+	}
+
+	private static ATExecutor instance;
+
+	private final ForkJoinPool pool;
+	private final int threadCount;
+
+	private ATExecutor() {
+		this.threadCount = Settings.getInstance().getAtExecutionThreadCount();
+
+		// Fork-join workers are daemon threads so there's no need to shut down the pool
+		this.pool = new ForkJoinPool(this.threadCount, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("ATExecutor-" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+	}
+
+	public static synchronized ATExecutor getInstance() {
+		if (instance == null)
+			instance = new ATExecutor();
+
+		return instance;
+	}
+
+	/**
+	 * Runs ATs for block with passed height and timestamp.
+	 *
+	 * @param repository caller's repository session, used for AT-generated transactions and if running serially
+	 * @param executableATs ATs to run, in creation order
+	 * @return results, in same order as <tt>executableATs</tt>
+	 * @throws DataException
+	 */
+	public List<Result> execute(Repository repository, List<ATData> executableATs, int blockHeight, long blockTimestamp) throws DataException {
+		return this.execute(repository, executableATs, blockHeight, blockTimestamp, this.threadCount);
+	}
+
+	/**
+	 * Runs ATs for block with passed height and timestamp, using at most <tt>maxWorkers</tt> worker threads.
+	 * <p>
+	 * A <tt>maxWorkers</tt> of 1 runs ATs serially using caller's repository session.
+	 */
+	public List<Result> execute(Repository repository, List<ATData> executableATs, int blockHeight, long blockTimestamp, int maxWorkers) throws DataException {
+		int workerCount = Math.min(Math.min(maxWorkers, this.threadCount), executableATs.size() / MIN_ATS_PER_WORKER);
+
+		// Shared by all ATs for this block, then discarded
+		ATBlockCache blockCache = new ATBlockCache();
+
+		if (workerCount < 2 || repository.hasUncommittedChanges())
+			return executeSerially(repository, executableATs, blockHeight, blockTimestamp, blockCache);
+
+		BlockData ourLastBlockData = repository.getBlockRepository().getLastBlock();
+
+		List<Repository> workerRepositories = new ArrayList<>(workerCount);
+		try {
+			while (workerRepositories.size() < workerCount) {
+				// Don't wait for repository connections as we can always fall back to fewer workers
+				Repository workerRepository = RepositoryManager.tryRepository();
+				if (workerRepository == null)
+					break;
+
+				workerRepositories.add(workerRepository);
+
+				BlockData workerLastBlockData = workerRepository.getBlockRepository().getLastBlock();
+				if (!Arrays.equals(ourLastBlockData.getSignature(), workerLastBlockData.getSignature())) {
+					LOGGER.debug(() -> String.format("Running ATs serially as worker sees different chain tip to our height %d", ourLastBlockData.getHeight()));
+					return executeSerially(repository, executableATs, blockHeight, blockTimestamp, blockCache);
+				}
+			}
+
+			if (workerRepositories.size() < 2)
+				return executeSerially(repository, executableATs, blockHeight, blockTimestamp, blockCache);
+
+			return executeConcurrently(repository, workerRepositories, executableATs, blockHeight, blockTimestamp, blockCache);
+		} finally {
+			for (Repository workerRepository : workerRepositories)
+				workerRepository.close();
+		}
+	}
+
+	private static List<Result> executeSerially(Repository repository, List<ATData> executableATs, int blockHeight, long blockTimestamp,
+			ATBlockCache blockCache) throws DataException {
+		ATStats.getInstance().onSerialExecution();
+
+		List<Result> results = new ArrayList<>(executableATs.size());
+
+		for (ATData atData : executableATs)
+			results.add(run(repository, atData, blockHeight, blockTimestamp, blockCache));
+
+		return results;
+	}
+
+	private List<Result> executeConcurrently(Repository repository, List<Repository> workerRepositories, List<ATData> executableATs,
+			int blockHeight, long blockTimestamp, ATBlockCache blockCache) throws DataException {
+		ATStats.getInstance().onConcurrentExecution();
+
+		Result[] results = new Result[executableATs.size()];
+		AtomicInteger nextIndex = new AtomicInteger();
+
+		// Each worker takes next AT to run, so a few slow ATs don't hold up others
+		List<Future<Void>> futures = new ArrayList<>(workerRepositories.size());
+		for (Repository workerRepository : workerRepositories)
+			futures.add(this.pool.submit(() -> {
+				for (int i = nextIndex.getAndIncrement(); i < results.length; i = nextIndex.getAndIncrement())
+					results[i] = run(workerRepository, executableATs.get(i), blockHeight, blockTimestamp, blockCache);
+
+				return null;
+			}));
+
+		try {
+			for (Future<Void> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			// Let remaining workers finish as they are using repository sessions we're about to close
+			nextIndex.set(results.length);
+			awaitQuietly(futures);
+
+			Thread.currentThread().interrupt();
+			throw new DataException("Interrupted while running ATs", e);
+		} catch (ExecutionException e) {
+			nextIndex.set(results.length);
+			awaitQuietly(futures);
+
+			if (e.getCause() instanceof DataException)
+				throw (DataException) e.getCause();
+
+			throw new DataException("Unable to run ATs", e.getCause());
+		}
+
+		// AT-generated transactions need to use caller's repository session when processed
+		List<Result> rebasedResults = new ArrayList<>(results.length);
+		for (Result result : results) {
+			List<AtTransaction> atTransactions = new ArrayList<>(result.atTransactions.size());
+
+			for (AtTransaction atTransaction : result.atTransactions)
+				atTransactions.add(new AtTransaction(repository, atTransaction.getTransactionData()));
+
+			rebasedResults.add(new Result(result.atStateData, atTransactions));
+		}
+
+		return rebasedResults;
+	}
+
+	private static Result run(Repository repository, ATData atData, int blockHeight, long blockTimestamp, ATBlockCache blockCache) throws DataException {
+		AT at = new AT(repository, atData);
+		List<AtTransaction> atTransactions = at.run(blockHeight, blockTimestamp, blockCache);
+
+		return new Result(at.getATStateData(), atTransactions);
+	}
+
+	private static void awaitQuietly(List<Future<Void>> futures) {
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				// Already reporting a failure
+			}
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+package org.aquila.at;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+import org.ciyam.at.OpCode;
+
+/**
+ * AT execution statistics: op-code dispatch counts, calls/time per Aquila function code,
+ * {@link ATBlockCache} effectiveness and how often {@link ATExecutor} ran a block's ATs concurrently.
+ * <p>
+ * Counters are cumulative since node start-up.
+ */
+public class ATStats {
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class OpCodeStats {
+		public String opCode;
+		public long count;
+
+		protected OpCodeStats() {
+		}
+
+		private OpCodeStats(String opCode, long count) {
+			this.opCode = opCode;
+			this.count = count;
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class FunctionCodeStats {
+		public String functionCode;
+		public long calls;
+		public long totalMillis;
+
+		protected FunctionCodeStats() {
+		}
+
+		private FunctionCodeStats(String functionCode, long calls, long totalNanos) {
+			this.functionCode = functionCode;
+			this.calls = calls;
+			this.totalMillis = totalNanos / 1_000_000L;
+		}
+	}
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class Snapshot {
+		public long blockCacheHits;
+		public long blockCacheMisses;
+		/** Blocks whose ATs were run serially, using caller's repository session */
+		public long serialExecutions;
+		/** Blocks whose ATs were run concurrently, using worker repository sessions */
+		public long concurrentExecutions;
+		/** Executed op-codes, most frequent first */
+		public List<OpCodeStats> opCodes = new ArrayList<>();
+		/** Called Aquila function codes, most time-consuming first */
+		public List<FunctionCodeStats> functionCodes = new ArrayList<>();
+
+		protected Snapshot() {
+		}
+	}
+
+	private static final ATStats instance = new ATStats();
+
+	private static final OpCode[] OP_CODES = OpCode.values();
+	private static final AquilaFunctionCode[] FUNCTION_CODES = AquilaFunctionCode.values();
+
+	// Indexed by ordinal
+	private final LongAdder[] opCodeCounts = newAdders(OP_CODES.length);
+	private final LongAdder[] functionCodeCalls = newAdders(FUNCTION_CODES.length);
+	private final LongAdder[] functionCodeNanos = newAdders(FUNCTION_CODES.length);
+
+	private final LongAdder blockCacheHits = new LongAdder();
+	private final LongAdder blockCacheMisses = new LongAdder();
+
+	private final LongAdder serialExecutions = new LongAdder();
+	private final LongAdder concurrentExecutions = new LongAdder();
+
+	private ATStats() {
+	}
+
+	public static ATStats getInstance() {
+		return instance;
+	}
+
+	/* package */ void onOpCode(OpCode opCode) {
+		this.opCodeCounts[opCode.ordinal()].increment();
+	}
+
+	/* package */ void onFunctionCode(AquilaFunctionCode functionCode, long nanos) {
+		this.functionCodeCalls[functionCode.ordinal()].increment();
+		this.functionCodeNanos[functionCode.ordinal()].add(nanos);
+	}
+
+	/* package */ void onBlockCacheHit() {
+		this.blockCacheHits.increment();
+	}
+
+	/* package */ void onBlockCacheMiss() {
+		this.blockCacheMisses.increment();
+	}
+
+	/* package */ void onSerialExecution() {
+		this.serialExecutions.increment();
+	}
+
+	/* package */ void onConcurrentExecution() {
+		this.concurrentExecutions.increment();
+	}
+
+	public Snapshot getSnapshot() {
+		Snapshot snapshot = new Snapshot();
+
+		snapshot.blockCacheHits = this.blockCacheHits.sum();
+		snapshot.blockCacheMisses = this.blockCacheMisses.sum();
+		snapshot.serialExecutions = this.serialExecutions.sum();
+		snapshot.concurrentExecutions = this.concurrentExecutions.sum();
+
+		for (int i = 0; i < OP_CODES.length; ++i) {
+			long count = this.opCodeCounts[i].sum();
+			if (count > 0)
+				snapshot.opCodes.add(new OpCodeStats(OP_CODES[i].name(), count));
+		}
+		snapshot.opCodes.sort(Comparator.comparingLong((OpCodeStats stats) -> stats.count).reversed());
+
+		for (int i = 0; i < FUNCTION_CODES.length; ++i) {
+			long calls = this.functionCodeCalls[i].sum();
+			if (calls > 0)
+				snapshot.functionCodes.add(new FunctionCodeStats(FUNCTION_CODES[i].name(), calls, this.functionCodeNanos[i].sum()));
+		}
+		snapshot.functionCodes.sort(Comparator.comparingLong((FunctionCodeStats stats) -> stats.totalMillis).reversed());
+
+		return snapshot;
+	}
+
+	private static LongAdder[] newAdders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+
+		for (int i = 0; i < count; ++i)
+			adders[i] = new LongAdder();
+
+		return adders;
+	}
+
+}
@@ -50,21 +50,28 @@ public class AquilaATAPI extends API {
 	private ATData atData;
 	private long blockTimestamp;
 	private final CiyamAtSettings ciyamAtSettings;
+	/** Read cache shared by ATs run for same block, or null */
+	private final ATBlockCache blockCache;
 
 	/** List of generated AT transactions */
 	List<AtTransaction> transactions;
 
 	// Constructors
 
-	public AquilaATAPI(Repository repository, ATData atData, long blockTimestamp) {
+	public AquilaATAPI(Repository repository, ATData atData, long blockTimestamp, ATBlockCache blockCache) {
 		this.repository = repository;
 		this.atData = atData;
 		this.transactions = new ArrayList<>();
 		this.blockTimestamp = blockTimestamp;
+		this.blockCache = blockCache;
 
 		this.ciyamAtSettings = BlockChain.getInstance().getCiyamAtSettings();
 	}
 
+	public AquilaATAPI(Repository repository, ATData atData, long blockTimestamp) {
+		this(repository, atData, blockTimestamp, null);
+	}
+
 	// Methods specific to Aquila AT processing, not inherited
 
 	public Repository getRepository() {
@@ -125,6 +132,9 @@ public class AquilaATAPI extends API {
 
 	@Override
 	public int getOpCodeSteps(OpCode opcode) {
+		// Called once per executed op-code
+		ATStats.getInstance().onOpCode(opcode);
+
 		if (opcode.value >= OpCode.EXT_FUN.value && opcode.value <= OpCode.EXT_FUN_RET_DAT_2.value)
 			return this.ciyamAtSettings.stepsPerFunctionCall;
 
@@ -139,6 +149,9 @@ public class AquilaATAPI extends API {
 	@Override
 	public int getCurrentBlockHeight() {
 		try {
+			if (this.blockCache != null)
+				return this.blockCache.getBlockchainHeight(this.repository);
+
 			return this.repository.getBlockRepository().getBlockchainHeight();
 		} catch (DataException e) {
 			throw new RuntimeException("AT API unable to fetch current blockchain height?", e);
@@ -148,6 +161,9 @@ public class AquilaATAPI extends API {
 	@Override
 	public int getATCreationBlockHeight(MachineState state) {
 		try {
+			if (this.blockCache != null)
+				return this.blockCache.getATCreationBlockHeight(this.repository, this.atData.getATAddress());
+
 			return this.repository.getATRepository().getATCreationBlockHeight(this.atData.getATAddress());
 		} catch (DataException e) {
 			throw new RuntimeException("AT API unable to fetch AT's creation block height?", e);
@@ -157,18 +173,27 @@ public class AquilaATAPI extends API {
 	@Override
 	public void putPreviousBlockHashIntoA(MachineState state) {
 		try {
-			int previousBlockHeight = this.repository.getBlockRepository().getBlockchainHeight() - 1;
+			BlockSummaryData previousBlockSummary;
+			if (this.blockCache != null) {
+				previousBlockSummary = this.blockCache.getPreviousBlockSummary(this.repository);
+			} else {
+				int previousBlockHeight = this.repository.getBlockRepository().getBlockchainHeight() - 1;
+
+				// We only need signature, so only request a block summary
+				List<BlockSummaryData> blockSummaries = this.repository.getBlockRepository().getBlockSummaries(previousBlockHeight, previousBlockHeight);
+				previousBlockSummary = blockSummaries != null && blockSummaries.size() == 1 ? blockSummaries.get(0) : null;
+			}
 
-			// We only need signature, so only request a block summary
-			List<BlockSummaryData> blockSummaries = this.repository.getBlockRepository().getBlockSummaries(previousBlockHeight, previousBlockHeight);
-			if (blockSummaries == null || blockSummaries.size() != 1)
+			if (previousBlockSummary == null)
 				throw new RuntimeException("AT API unable to fetch previous block hash?");
 
+			int previousBlockHeight = previousBlockSummary.getHeight();
+
 			// Block's signature is 128 bytes so we need to reduce this to 4 longs (32 bytes)
 			// To be able to use hash to look up block, save height (8 bytes) and partial signature (24 bytes)
 			this.setA1(state, previousBlockHeight);
 
-			byte[] signature = blockSummaries.get(0).getSignature();
+			byte[] signature = previousBlockSummary.getSignature();
 			// Save some of minter's signature and transactions signature, so middle 24 bytes of the full 128 byte signature.
 			this.setA2(state, BitTwiddling.longFromBEBytes(signature, 52));
 			this.setA3(state, BitTwiddling.longFromBEBytes(signature, 60));
@@ -282,7 +307,9 @@ public class AquilaATAPI extends API {
 			TransactionData transactionData = this.getTransactionFromA(state);
 
 			try {
-				BlockData blockData = this.repository.getBlockRepository().getLastBlock();
+				BlockData blockData = this.blockCache != null
+						? this.blockCache.getLastBlock(this.repository)
+						: this.repository.getBlockRepository().getLastBlock();
 
 				if (blockData == null)
 					throw new RuntimeException("AT API unable to fetch latest block?");
@@ -445,7 +472,12 @@ public class AquilaATAPI extends API {
 		if (aquilaFunctionCode == null)
 			throw new IllegalFunctionCodeException("Unknown Aquila function code 0x" + String.format("%04x", rawFunctionCode) + " encountered");
 
-		aquilaFunctionCode.execute(functionData, state, rawFunctionCode);
+		long startTime = System.nanoTime();
+		try {
+			aquilaFunctionCode.execute(functionData, state, rawFunctionCode);
+		} finally {
+			ATStats.getInstance().onFunctionCode(aquilaFunctionCode, System.nanoTime() - startTime);
+		}
 	}
 
 	// Utility methods
@@ -473,8 +505,9 @@ public class AquilaATAPI extends API {
 		Timestamp timestamp = new Timestamp(this.getA1(state));
 
 		try {
-			TransactionData transactionData = this.repository.getTransactionRepository().fromHeightAndSequence(timestamp.blockHeight,
-					timestamp.transactionSequence);
+			TransactionData transactionData = this.blockCache != null
+					? this.blockCache.getTransaction(this.repository, timestamp.blockHeight, timestamp.transactionSequence)
+					: this.repository.getTransactionRepository().fromHeightAndSequence(timestamp.blockHeight, timestamp.transactionSequence);
 
 			if (transactionData == null)
 				throw new RuntimeException("AT API unable to fetch transaction?");
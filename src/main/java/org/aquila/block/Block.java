@@ -18,11 +18,13 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.account.Account;
+import org.aquila.account.AccountBalanceCache;
 import org.aquila.account.AccountRefCache;
 import org.aquila.account.PrivateKeyAccount;
 import org.aquila.account.PublicKeyAccount;
 import org.aquila.asset.Asset;
 import org.aquila.at.AT;
+import org.aquila.at.ATExecutor;
 import org.aquila.block.BlockChain.AccountLevelShareBin;
 import org.aquila.block.BlockChain.BlockTimingByHeight;
 import org.aquila.controller.OnlineAccountsManager;
@@ -54,6 +56,7 @@ import org.aquila.transform.block.BlockTransformer;
 import org.aquila.transform.transaction.TransactionTransformer;
 import org.aquila.utils.Amounts;
 import org.aquila.utils.Base58;
+import org.aquila.utils.ByteArray;
 import org.aquila.utils.NTP;
 
 import com.google.common.primitives.Bytes;
@@ -70,6 +73,7 @@ public class Block {
 		PARENT_DOES_NOT_EXIST(11),
 		BLOCKCHAIN_NOT_EMPTY(12),
 		PARENT_HAS_EXISTING_CHILD(13),
+		SIGNATURE_INCORRECT(14),
 		TIMESTAMP_OLDER_THAN_PARENT(20),
 		TIMESTAMP_IN_FUTURE(21),
 		TIMESTAMP_MS_INCORRECT(22),
@@ -245,6 +249,12 @@ public class Block {
 	/** Opportunistic cache of this block's valid online reward-shares. Only created by call to isValid(). */
 	private List<RewardShareData> cachedOnlineRewardShares = null;
 
+	/** Whether minter and transactions signatures have already been verified by preValidate(). */
+	private volatile boolean isSignaturePreVerified = false;
+
+	/** Online accounts' reward-share public keys whose nonces and aggregate signature have already been verified by preValidate(). */
+	private volatile List<byte[]> preVerifiedOnlineAccountPublicKeys = null;
+
 	// Other useful constants
 
 	public static final BigInteger MAX_DISTANCE;
@@ -399,11 +409,12 @@ public class Block {
 		// This is up to 100x faster than querying each index separately. For 4150 reward share keys, it
 		// was taking around 5000ms to query individually, vs 50ms using this approach.
 		List<byte[]> allRewardSharePublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+		Map<ByteArray, Integer> rewardShareIndexes = getRewardShareIndexes(allRewardSharePublicKeys);
 
 		// Map using index into sorted list of reward-shares as key
 		Map<Integer, OnlineAccountData> indexedOnlineAccounts = new HashMap<>();
 		for (OnlineAccountData onlineAccountData : onlineAccounts) {
-			Integer accountIndex = getRewardShareIndex(onlineAccountData.getPublicKey(), allRewardSharePublicKeys);
+			Integer accountIndex = rewardShareIndexes.get(ByteArray.wrap(onlineAccountData.getPublicKey()));
 			if (accountIndex == null)
 				// Online account (reward-share) with current timestamp but reward-share cancelled
 				continue;
@@ -984,6 +995,10 @@ public class Block {
 	 * @return true if both minter and transaction signatures are valid, false otherwise
 	 */
 	public boolean isSignatureValid() {
+		// Already checked by preValidate()?
+		if (this.isSignaturePreVerified)
+			return true;
+
 		try {
 			// Check minter's signature first
 			if (!this.minter.verify(this.blockData.getMinterSignature(), BlockTransformer.getBytesForMinterSignature(this.blockData)))
@@ -1067,11 +1082,36 @@ public class Block {
 		if (this.blockData.getTimestamp() < signatureRequirementThreshold)
 			return ValidationResult.OK;
 
+		// Online accounts' reward-share public keys, in index order
+		List<byte[]> onlineAccountPublicKeys = onlineRewardShares.stream()
+				.map(RewardShareData::getRewardSharePublicKey)
+				.collect(Collectors.toList());
+
+		// No need to check nonces and signatures again if preValidate() already did so for the same online accounts
+		if (!this.areOnlineAccountsPreVerified(onlineAccountPublicKeys)) {
+			ValidationResult onlineAccountsSignaturesResult = this.areOnlineAccountsSignaturesValid(onlineAccountPublicKeys);
+			if (onlineAccountsSignaturesResult != ValidationResult.OK)
+				return onlineAccountsSignaturesResult;
+		}
+
+		// All online accounts valid, so save our list of online accounts for potential later use
+		this.cachedOnlineRewardShares = onlineRewardShares;
+
+		return ValidationResult.OK;
+	}
+
+
+	/**
+	 * Returns whether block's online accounts nonces and aggregate signature are valid.
+	 *
+	 * @param onlineAccountPublicKeys reward-share public keys of block's online accounts, in index order
+	 */
+	private ValidationResult areOnlineAccountsSignaturesValid(List<byte[]> onlineAccountPublicKeys) {
 		if (this.blockData.getOnlineAccountsSignatures() == null || this.blockData.getOnlineAccountsSignatures().length == 0)
 			return ValidationResult.ONLINE_ACCOUNT_SIGNATURES_MISSING;
 
 		final int signaturesLength = Transformer.SIGNATURE_LENGTH;
-		final int noncesLength = onlineRewardShares.size() * Transformer.INT_LENGTH;
+		final int noncesLength = onlineAccountPublicKeys.size() * Transformer.INT_LENGTH;
 
 		// We expect nonces to be appended to the online accounts signatures
 		if (this.blockData.getOnlineAccountsSignatures().length != signaturesLength + noncesLength)
@@ -1085,16 +1125,16 @@ public class Block {
 
 		// Split online account signatures into signature(s) + nonces, then validate the nonces
 		byte[] extractedSignatures = BlockTransformer.extract(encodedOnlineAccountSignatures, 0, signaturesLength);
-		byte[] extractedNonces = BlockTransformer.extract(encodedOnlineAccountSignatures, signaturesLength, onlineRewardShares.size() * Transformer.INT_LENGTH);
+		byte[] extractedNonces = BlockTransformer.extract(encodedOnlineAccountSignatures, signaturesLength, onlineAccountPublicKeys.size() * Transformer.INT_LENGTH);
 		encodedOnlineAccountSignatures = extractedSignatures;
 
 		List<Integer> nonces = BlockTransformer.decodeOnlineAccountNonces(extractedNonces);
 
 		// Build block's view of online accounts (without signatures, as we don't need them here)
 		Set<OnlineAccountData> onlineAccounts = new HashSet<>();
-		for (int i = 0; i < onlineRewardShares.size(); ++i) {
+		for (int i = 0; i < onlineAccountPublicKeys.size(); ++i) {
 			Integer nonce = nonces.get(i);
-			byte[] publicKey = onlineRewardShares.get(i).getRewardSharePublicKey();
+			byte[] publicKey = onlineAccountPublicKeys.get(i);
 
 			OnlineAccountData onlineAccountData = new OnlineAccountData(onlineTimestamp, null, publicKey, nonce);
 			onlineAccounts.add(onlineAccountData);
@@ -1103,10 +1143,9 @@ public class Block {
 		// Remove those already validated & cached by online accounts manager - no need to re-validate them
 		OnlineAccountsManager.getInstance().removeKnown(onlineAccounts, onlineTimestamp);
 
-		// Validate the rest
-		for (OnlineAccountData onlineAccount : onlineAccounts)
-			if (!OnlineAccountsManager.getInstance().verifyMemoryPoW(onlineAccount, null))
-				return ValidationResult.ONLINE_ACCOUNT_NONCE_INCORRECT;
+		// Validate the rest, in parallel
+		if (!OnlineAccountsManager.getInstance().verifyMemoryPoWs(onlineAccounts))
+			return ValidationResult.ONLINE_ACCOUNT_NONCE_INCORRECT;
 
 		// Cache the valid online accounts as they will likely be needed for the next block
 		OnlineAccountsManager.getInstance().addBlocksOnlineAccounts(onlineAccounts, onlineTimestamp);
@@ -1115,11 +1154,7 @@ public class Block {
 		List<byte[]> onlineAccountsSignatures = BlockTransformer.decodeTimestampSignatures(encodedOnlineAccountSignatures);
 
 		// Aggregate all public keys
-		Collection<byte[]> publicKeys = onlineRewardShares.stream()
-				.map(RewardShareData::getRewardSharePublicKey)
-				.collect(Collectors.toList());
-
-		byte[] aggregatePublicKey = Aquila25519Extras.aggregatePublicKeys(publicKeys);
+		byte[] aggregatePublicKey = Aquila25519Extras.aggregatePublicKeys(onlineAccountPublicKeys);
 
 		byte[] aggregateSignature = onlineAccountsSignatures.get(0);
 
@@ -1127,12 +1162,105 @@ public class Block {
 		if (!Aquila25519Extras.verifyAggregated(aggregatePublicKey, aggregateSignature, onlineTimestampBytes))
 			return ValidationResult.ONLINE_ACCOUNT_SIGNATURE_INCORRECT;
 
-		// All online accounts valid, so save our list of online accounts for potential later use
-		this.cachedOnlineRewardShares = onlineRewardShares;
+		return ValidationResult.OK;
+	}
+
+	private boolean areOnlineAccountsPreVerified(List<byte[]> onlineAccountPublicKeys) {
+		List<byte[]> preVerifiedPublicKeys = this.preVerifiedOnlineAccountPublicKeys;
+		if (preVerifiedPublicKeys == null || preVerifiedPublicKeys.size() != onlineAccountPublicKeys.size())
+			return false;
+
+		for (int i = 0; i < onlineAccountPublicKeys.size(); ++i)
+			if (!Arrays.equals(preVerifiedPublicKeys.get(i), onlineAccountPublicKeys.get(i)))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Returns reward-share public keys for block's online accounts, as currently known to <tt>repository</tt>.
+	 * <p>
+	 * Used by block pre-validation, where repository might not yet reflect this block's parent,
+	 * hence {@link #areOnlineAccountsValid()} re-resolves online accounts before relying on pre-validated results.
+	 *
+	 * @return public keys, or null if online accounts cannot be resolved
+	 * @throws DataException
+	 */
+	public List<byte[]> fetchOnlineAccountPublicKeys(Repository repository) throws DataException {
+		// Doesn't apply for Genesis block!
+		if (this.blockData.getHeight() != null && this.blockData.getHeight() == 1)
+			return null;
+
+		ConciseSet accountIndexes = BlockTransformer.decodeOnlineAccounts(this.blockData.getEncodedOnlineAccounts());
+		if (accountIndexes.size() != this.blockData.getOnlineAccountsCount())
+			return null;
+
+		List<RewardShareData> onlineRewardShares = repository.getAccountRepository().getRewardSharesByIndexes(accountIndexes.toArray());
+		if (onlineRewardShares == null)
+			return null;
+
+		return onlineRewardShares.stream().map(RewardShareData::getRewardSharePublicKey).collect(Collectors.toList());
+	}
+
+	/**
+	 * Performs checks that don't depend on blockchain state, ahead of {@link #isValid()}.
+	 * <p>
+	 * Verifies minter and transactions signatures, individual transaction signatures in parallel,
+	 * and, if <tt>onlineAccountPublicKeys</tt> is supplied, online accounts' nonces and aggregate signature.
+	 * Successful checks are remembered so that {@link #isSignatureValid()} and {@link #isValid()} don't repeat them.
+	 * <p>
+	 * Safe to call from another thread, as long as block was constructed with its transactions,
+	 * e.g. when received over the network. Typically called via {@link BlockPreValidator}.
+	 *
+	 * @param onlineAccountPublicKeys block's online accounts' reward-share public keys, or null to skip online accounts checks
+	 * @return ValidationResult.OK if checks passed, or some other ValidationResult otherwise
+	 */
+	public ValidationResult preValidate(List<byte[]> onlineAccountPublicKeys) {
+		if (this.transactions == null)
+			throw new IllegalStateException("Can't pre-validate block without its transactions");
+
+		try {
+			if (!this.minter.verify(this.blockData.getMinterSignature(), BlockTransformer.getBytesForMinterSignature(this.blockData)))
+				return ValidationResult.SIGNATURE_INCORRECT;
+
+			// Individual transaction signatures are checked separately below
+			if (!this.minter.verify(this.blockData.getTransactionsSignature(), BlockTransformer.getBytesForTransactionsSignature(this, false)))
+				return ValidationResult.SIGNATURE_INCORRECT;
+		} catch (TransformationException e) {
+			return ValidationResult.SIGNATURE_INCORRECT;
+		}
+
+		// Transactions whose signature checks need the repository are left for isSignatureValid()
+		boolean areTransactionSignaturesValid = this.transactions.parallelStream()
+				.filter(transaction -> transaction.getTransactionData().getType() != TransactionType.AT)
+				.filter(Transaction::isSignatureCheckStateless)
+				.allMatch(Transaction::preVerifySignature);
+		if (!areTransactionSignaturesValid)
+			return ValidationResult.SIGNATURE_INCORRECT;
+
+		this.isSignaturePreVerified = this.transactions.stream()
+				.allMatch(transaction -> transaction.getTransactionData().getType() == TransactionType.AT || transaction.isSignaturePreVerified());
+
+		if (onlineAccountPublicKeys != null) {
+			// If block is past a certain age then areOnlineAccountsValid() skips these checks anyway
+			long signatureRequirementThreshold = NTP.getTime() - BlockChain.getInstance().getOnlineAccountSignaturesMinLifetime();
+			if (this.blockData.getTimestamp() >= signatureRequirementThreshold) {
+				ValidationResult onlineAccountsSignaturesResult = this.areOnlineAccountsSignaturesValid(onlineAccountPublicKeys);
+				if (onlineAccountsSignaturesResult != ValidationResult.OK)
+					return onlineAccountsSignaturesResult;
+
+				this.preVerifiedOnlineAccountPublicKeys = onlineAccountPublicKeys;
+			}
+		}
 
 		return ValidationResult.OK;
 	}
 
+	/** Forgets results of {@link #preValidate(List)}, so that {@link #isSignatureValid()} and {@link #isValid()} perform all checks themselves. */
+	public void clearPreValidation() {
+		this.isSignaturePreVerified = false;
+		this.preVerifiedOnlineAccountPublicKeys = null;
+	}
 
 	/**
 	 * Returns whether Block is valid.
@@ -1204,8 +1332,10 @@ public class Block {
 	/** Returns whether block's transactions are valid. */
 	private ValidationResult areTransactionsValid() throws DataException {
 		// We're about to (test-)process a batch of transactions,
-		// so create an account reference cache so get/set correct last-references.
-		try (AccountRefCache accountRefCache = new AccountRefCache(repository)) {
+		// so create an account reference cache so get/set correct last-references,
+		// and a balance cache so balance changes stay in memory.
+		try (AccountRefCache accountRefCache = new AccountRefCache(repository);
+				AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
 			// Create repository savepoint here so we can rollback to it after testing transactions
 			repository.setSavepoint();
 
@@ -1391,16 +1521,17 @@ public class Block {
 		// Find all executable ATs, ordered by earliest creation date first
 		List<ATData> executableATs = this.repository.getATRepository().getAllExecutableATs();
 
-		// Run each AT, appends AT-Transactions and corresponding AT states, to our lists
-		for (ATData atData : executableATs) {
-			AT at = new AT(this.repository, atData);
-			List<AtTransaction> atTransactions = at.run(this.blockData.getHeight(), this.blockData.getTimestamp());
-			ATStateData atStateData = at.getATStateData();
+		// Run ATs, possibly concurrently, but results are in creation order
+		List<ATExecutor.Result> atResults = ATExecutor.getInstance().execute(this.repository, executableATs, this.blockData.getHeight(), this.blockData.getTimestamp());
+
+		// Append each AT's AT-Transactions and corresponding AT state, to our lists
+		for (ATExecutor.Result atResult : atResults) {
+			ATStateData atStateData = atResult.getATStateData();
 			// Didn't execute? (e.g. sleeping)
 			if (atStateData == null)
 				continue;
 
-			allAtTransactions.addAll(atTransactions);
+			allAtTransactions.addAll(atResult.getATTransactions());
 			this.ourAtStates.add(atStateData);
 			this.ourAtFees += atStateData.getFees();
 		}
@@ -1473,8 +1604,10 @@ public class Block {
 		}
 
 		// We're about to (test-)process a batch of transactions,
-		// so create an account reference cache so get/set correct last-references.
-		try (AccountRefCache accountRefCache = new AccountRefCache(this.repository)) {
+		// so create an account reference cache so get/set correct last-references,
+		// and a balance cache so balance changes are written in batches.
+		try (AccountRefCache accountRefCache = new AccountRefCache(this.repository);
+				AccountBalanceCache accountBalanceCache = new AccountBalanceCache(this.repository)) {
 			// Process transactions (we'll link them to this block after saving the block itself)
 			processTransactions();
 
@@ -1484,6 +1617,9 @@ public class Block {
 			// Process AT fees and save AT states into repository
 			processAtFeesAndStates();
 
+			// Commit net balance changes
+			accountBalanceCache.commit();
+
 			// Commit new accounts' last-reference changes
 			accountRefCache.commit();
 		}
@@ -1711,14 +1847,21 @@ public class Block {
 		// Log some debugging info relating to the block weight calculation
 		this.logDebugInfo();
 
-		// Return AT fees and delete AT states from repository
-		orphanAtFeesAndStates();
+		// We're about to orphan a batch of transactions,
+		// so create a balance cache so balance changes are written in batches.
+		try (AccountBalanceCache accountBalanceCache = new AccountBalanceCache(this.repository)) {
+			// Return AT fees and delete AT states from repository
+			orphanAtFeesAndStates();
 
-		// Orphan, and unlink, transactions from this block
-		orphanTransactionsFromBlock();
+			// Orphan, and unlink, transactions from this block
+			orphanTransactionsFromBlock();
 
-		// Undo any group-approval decisions that happen at this block
-		orphanGroupApprovalTransactions();
+			// Undo any group-approval decisions that happen at this block
+			orphanGroupApprovalTransactions();
+
+			// Commit net balance changes
+			accountBalanceCache.commit();
+		}
 
 		if (this.blockData.getHeight() > 1) {
 			// Invalidate expandedAccounts as they may have changed due to orphaning TRANSFER_PRIVS transactions, etc.
@@ -2245,21 +2388,22 @@ public class Block {
 	// Utils
 
 	/**
-	 * Find index of rewardSharePublicKey in list of rewardSharePublicKeys
+	 * Map reward-share public keys to their index in list of rewardSharePublicKeys
 	 *
-	 * @param rewardSharePublicKey - the key to query
-	 * @param rewardSharePublicKeys - a sorted list of keys
-	 * @return - the index of the key, or null if not found
+	 * @param rewardSharePublicKeys - a sorted list of keys, or null if there are none
+	 * @return - map of key to index
 	 */
-	private static Integer getRewardShareIndex(byte[] rewardSharePublicKey, List<byte[]> rewardSharePublicKeys) {
+	private static Map<ByteArray, Integer> getRewardShareIndexes(List<byte[]> rewardSharePublicKeys) {
+		if (rewardSharePublicKeys == null)
+			return Collections.emptyMap();
+
+		Map<ByteArray, Integer> rewardShareIndexes = new HashMap<>(rewardSharePublicKeys.size() * 2);
 		int index = 0;
 		for (byte[] publicKey : rewardSharePublicKeys) {
-			if (Arrays.equals(rewardSharePublicKey, publicKey)) {
-				return index;
-			}
+			rewardShareIndexes.put(ByteArray.wrap(publicKey), index);
 			index++;
 		}
-		return null;
+		return rewardShareIndexes;
 	}
 
 	private void logDebugInfo() {
@@ -0,0 +1,72 @@
+package org.aquila.block;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.aquila.block.Block.ValidationResult;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.settings.Settings;
+
+/**
+ * Performs stateless block checks (signatures, online accounts' nonces, aggregate signature) on a fork-join pool.
+ * <p>
+ * Typically fed by Synchronizer with blocks that have been received but not yet applied,
+ * so that {@link Block#isValid()} is left with only the stateful checks.
+ */
+public class BlockPreValidator {
+
+	private static final Logger LOGGER = LogManager.getLogger(BlockPreValidator.class);
+
+	private static BlockPreValidator instance;
+
+	private final ForkJoinPool pool;
+
+	private BlockPreValidator() {
+		int threadCount = Settings.getInstance().getBlockPreValidationThreadCount();
+
+		// Fork-join workers are daemon threads so there's no need to shut down the pool
+		this.pool = new ForkJoinPool(threadCount, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("BlockPreValidator-" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+	}
+
+	public static synchronized BlockPreValidator getInstance() {
+		if (instance == null)
+			instance = new BlockPreValidator();
+
+		return instance;
+	}
+
+	/**
+	 * Queues block for pre-validation.
+	 * <p>
+	 * Block must have been constructed with its transactions, e.g. received over the network.
+	 *
+	 * @return future verdict: ValidationResult.OK if stateless checks passed
+	 */
+	public Future<ValidationResult> submit(Block block) {
+		return this.pool.submit(() -> preValidate(block));
+	}
+
+	private static ValidationResult preValidate(Block block) {
+		// Online accounts are resolved using our current chain, which might differ from block's parent.
+		// Block.areOnlineAccountsValid() re-resolves them before relying on our results.
+		List<byte[]> onlineAccountPublicKeys = null;
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			onlineAccountPublicKeys = block.fetchOnlineAccountPublicKeys(repository);
+		} catch (DataException e) {
+			LOGGER.debug(() -> String.format("Unable to fetch online accounts for block pre-validation: %s", e.getMessage()));
+		}
+
+		return block.preValidate(onlineAccountPublicKeys);
+	}
+
+}
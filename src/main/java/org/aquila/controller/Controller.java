@@ -1496,30 +1496,12 @@ public class Controller extends Thread {
 			try (final Repository repository = RepositoryManager.getRepository()) {
 				int numberRequested = Math.min(Network.MAX_BLOCK_SUMMARIES_PER_REPLY, getBlockSummariesMessage.getNumberRequested());
 
-				BlockData blockData = repository.getBlockRepository().fromReference(parentSignature);
-				if (blockData == null) {
-					// Try the archive
-					blockData = repository.getBlockArchiveRepository().fromReference(parentSignature);
-				}
+				List<BlockData> blocks = fetchBlocksAfter(repository, parentSignature, numberRequested);
 
-				if (blockData != null) {
-					if (PruneManager.getInstance().isBlockPruned(blockData.getHeight())) {
-						// If this request contains a pruned block, we likely only have partial data, so best not to sent anything
-						// We always prune from the oldest first, so it's fine to just check the first block requested
-						blockData = null;
-					}
-				}
-
-				while (blockData != null && blockSummaries.size() < numberRequested) {
-					BlockSummaryData blockSummary = new BlockSummaryData(blockData);
-					blockSummaries.add(blockSummary);
-
-					byte[] previousSignature = blockData.getSignature();
-					blockData = repository.getBlockRepository().fromReference(previousSignature);
-					if (blockData == null) {
-						// Try the archive
-						blockData = repository.getBlockArchiveRepository().fromReference(previousSignature);
-					}
+				// If this request contains a pruned block, we likely only have partial data, so best not to sent anything
+				// We always prune from the oldest first, so it's fine to just check the first block requested
+				if (!blocks.isEmpty() && !PruneManager.getInstance().isBlockPruned(blocks.get(0).getHeight())) {
+					blockSummaries = blocks.stream().map(BlockSummaryData::new).collect(Collectors.toList());
 				}
 			} catch (DataException e) {
 				LOGGER.error(String.format("Repository issue while sending block summaries after %s to peer %s", Base58.encode(parentSignature), peer), e);
@@ -1539,6 +1521,41 @@ public class Controller extends Thread {
 			peer.disconnect("failed to send block summaries");
 	}
 
+	/**
+	 * Returns up to <tt>count</tt> consecutive blocks following block with <tt>parentSignature</tt>,
+	 * from the main repository or, failing that, the block archive.
+	 * <p>
+	 * Runs of archived blocks are read in one pass over the archive files,
+	 * instead of looking up each block by reference.
+	 */
+	private static List<BlockData> fetchBlocksAfter(Repository repository, byte[] parentSignature, int count) throws DataException {
+		List<BlockData> blocks = new ArrayList<>();
+		byte[] reference = parentSignature;
+
+		while (blocks.size() < count) {
+			BlockData blockData = repository.getBlockRepository().fromReference(reference);
+
+			if (blockData != null) {
+				blocks.add(blockData);
+			} else {
+				// Try the archive
+				blockData = repository.getBlockArchiveRepository().fromReference(reference);
+				if (blockData == null)
+					break;
+
+				blocks.add(blockData);
+
+				// Archived blocks are consecutive, so read as many more as we can in one go
+				int nextHeight = blockData.getHeight() + 1;
+				blocks.addAll(repository.getBlockArchiveRepository().fromRange(nextHeight, nextHeight + count - blocks.size()));
+			}
+
+			reference = blocks.get(blocks.size() - 1).getSignature();
+		}
+
+		return blocks;
+	}
+
 	private void onNetworkGetSignaturesV2Message(Peer peer, Message message) {
 		GetSignaturesV2Message getSignaturesMessage = (GetSignaturesV2Message) message;
 		final byte[] parentSignature = getSignaturesMessage.getParentSignature();
@@ -1569,22 +1586,10 @@ public class Controller extends Thread {
 		if (signatures.isEmpty()) {
 			try (final Repository repository = RepositoryManager.getRepository()) {
 				int numberRequested = getSignaturesMessage.getNumberRequested();
-				BlockData blockData = repository.getBlockRepository().fromReference(parentSignature);
-				if (blockData == null) {
-					// Try the archive
-					blockData = repository.getBlockArchiveRepository().fromReference(parentSignature);
-				}
 
-				while (blockData != null && signatures.size() < numberRequested) {
-					signatures.add(blockData.getSignature());
-
-					byte[] previousSignature = blockData.getSignature();
-					blockData = repository.getBlockRepository().fromReference(previousSignature);
-					if (blockData == null) {
-						// Try the archive
-						blockData = repository.getBlockArchiveRepository().fromReference(previousSignature);
-					}
-				}
+				signatures = fetchBlocksAfter(repository, parentSignature, numberRequested).stream()
+						.map(BlockData::getSignature)
+						.collect(Collectors.toList());
 			} catch (DataException e) {
 				LOGGER.error(String.format("Repository issue while sending V2 signatures after %s to peer %s", Base58.encode(parentSignature), peer), e);
 			}
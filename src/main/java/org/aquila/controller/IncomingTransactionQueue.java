@@ -0,0 +1,104 @@
+package org.aquila.controller;
+
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.utils.ByteArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queue of incoming transactions awaiting import, keyed by signature.
+ * <p>
+ * Transactions arrive in the <em>pending</em> lane and move to the <em>validated</em> lane once their
+ * signatures have been checked. Lookups by signature are constant-time and no lane is ever locked as a whole,
+ * so network threads adding transactions or checking signatures don't contend with the importer.
+ * <p>
+ * A transaction is put into the validated lane before it is removed from the pending lane, so it is always visible
+ * to {@link #contains(byte[])}. A racing {@link #add(TransactionData)} can, at worst, cause a transaction to be
+ * validated twice.
+ */
+public class IncomingTransactionQueue {
+
+    private final int capacity;
+
+    /** Transactions with signatures yet to be validated. */
+    private final Map<ByteArray, TransactionData> pending = new ConcurrentHashMap<>();
+    /** Transactions with valid signatures, awaiting import. */
+    private final Map<ByteArray, TransactionData> validated = new ConcurrentHashMap<>();
+
+    public IncomingTransactionQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds transaction to pending lane, unless already queued or queue is full.
+     *
+     * @return true if transaction was added
+     */
+    public boolean add(TransactionData transactionData) {
+        if (this.size() >= this.capacity)
+            return false;
+
+        ByteArray signature = ByteArray.wrap(transactionData.getSignature());
+        if (this.validated.containsKey(signature))
+            return false;
+
+        return this.pending.putIfAbsent(signature, transactionData) == null;
+    }
+
+    /** Moves transaction from pending lane to validated lane, if still queued. */
+    public void markValidated(TransactionData transactionData) {
+        ByteArray signature = ByteArray.wrap(transactionData.getSignature());
+
+        // Atomic with respect to remove(), which would otherwise be undone if it ran between checking and moving
+        this.pending.computeIfPresent(signature, (key, pendingTransactionData) -> {
+            this.validated.put(key, transactionData);
+            // Returning null removes transaction from pending lane
+            return null;
+        });
+    }
+
+    public void remove(byte[] signature) {
+        ByteArray key = ByteArray.wrap(signature);
+
+        this.pending.remove(key);
+        this.validated.remove(key);
+    }
+
+    public boolean contains(byte[] signature) {
+        ByteArray key = ByteArray.wrap(signature);
+
+        // Check pending lane first, as transactions only ever leave it after joining validated lane
+        return this.pending.containsKey(key) || this.validated.containsKey(key);
+    }
+
+    /** Returns queued transaction with matching signature, but only if signature has been validated. */
+    public TransactionData getValidated(byte[] signature) {
+        return this.validated.get(ByteArray.wrap(signature));
+    }
+
+    /** Returns snapshot of transactions with signatures yet to be validated. */
+    public List<TransactionData> getPending() {
+        return new ArrayList<>(this.pending.values());
+    }
+
+    /** Returns snapshot of transactions with valid signatures. */
+    public List<TransactionData> getValidated() {
+        return new ArrayList<>(this.validated.values());
+    }
+
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    public int size() {
+        return this.pending.size() + this.validated.size();
+    }
+
+    public boolean isEmpty() {
+        return this.pending.isEmpty() && this.validated.isEmpty();
+    }
+
+}
@@ -1,6 +1,5 @@
 package org.aquila.controller;
 
-import com.google.common.hash.HashCode;
 import com.google.common.primitives.Longs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,6 +28,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class OnlineAccountsManager {
@@ -74,23 +74,27 @@ public class OnlineAccountsManager {
     public static final int POW_DIFFICULTY_TESTNET = 5; // leading zero bits
 
     // IMPORTANT: if we ever need to dynamically modify the buffer size using a feature trigger, the
-    // pre-allocated buffer below will NOT work, and we should instead use a dynamically allocated
-    // one for the transition period.
-    private static long[] POW_VERIFY_WORK_BUFFER = new long[getPoWBufferSize() / 8];
+    // pooled buffers below will NOT work, and we should instead use dynamically allocated
+    // ones for the transition period.
+    /**
+     * Pooled MemoryPoW verification work buffers, each used by one thread at a time.
+     * Pool only grows to the peak number of concurrent verifications.
+     */
+    private final Queue<long[]> powVerifyWorkBuffers = new ConcurrentLinkedQueue<>();
 
     private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4, new NamedThreadFactory("OnlineAccounts"));
+    /** Verifies gossiped online accounts' signatures and nonces. Idle threads time out so there's no need to shut down in tests. */
+    private final ThreadPoolExecutor verificationExecutor;
+    /** Verifies blocks' online accounts' nonces, so block validation doesn't queue behind a backlog of gossiped accounts. */
+    private final ThreadPoolExecutor blockVerificationExecutor;
     private volatile boolean isStopping = false;
 
     private final Set<OnlineAccountData> onlineAccountsImportQueue = ConcurrentHashMap.newKeySet();
 
     /**
-     * Cache of 'current' online accounts, keyed by timestamp
+     * Cache of 'current' online accounts, keyed by timestamp, with hash-summaries by leading byte of public key.
      */
-    private final Map<Long, Set<OnlineAccountData>> currentOnlineAccounts = new ConcurrentHashMap<>();
-    /**
-     * Cache of hash-summary of 'current' online accounts, keyed by timestamp, then leading byte of public key.
-     */
-    private final Map<Long, Map<Byte, byte[]>> currentOnlineAccountsHashes = new ConcurrentHashMap<>();
+    private final OnlineAccountsStore currentOnlineAccounts = new OnlineAccountsStore();
 
     /**
      * Cache of online accounts for latest blocks - not necessarily 'current' / now.
@@ -140,6 +144,18 @@ public class OnlineAccountsManager {
     }
 
     private OnlineAccountsManager() {
+        this.verificationExecutor = newVerificationExecutor("OnlineAccountsVerify");
+        this.blockVerificationExecutor = newVerificationExecutor("BlockOnlineAccountsVerify");
+    }
+
+    private static ThreadPoolExecutor newVerificationExecutor(String threadName) {
+        int threadCount = Settings.getInstance().getOnlineAccountsVerificationThreadCount();
+
+        ThreadPoolExecutor verificationExecutor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory(threadName));
+        verificationExecutor.allowCoreThreadTimeOut(true);
+
+        return verificationExecutor;
     }
 
     private static class SingletonContainer {
@@ -169,6 +185,8 @@ public class OnlineAccountsManager {
     public void shutdown() {
         isStopping = true;
         executor.shutdownNow();
+        verificationExecutor.shutdownNow();
+        blockVerificationExecutor.shutdownNow();
     }
 
     // Testing support
@@ -210,16 +228,17 @@ public class OnlineAccountsManager {
 
         LOGGER.debug("Processing online accounts import queue (size: {})", this.onlineAccountsImportQueue.size());
 
-        Set<OnlineAccountData> onlineAccountsToAdd = new HashSet<>();
+        List<OnlineAccountData> onlineAccountsToAdd = new ArrayList<>();
         Set<OnlineAccountData> onlineAccountsToRemove = new HashSet<>();
         try (final Repository repository = RepositoryManager.getRepository()) {
+            List<OnlineAccountData> onlineAccountsToVerify = new ArrayList<>();
+
             for (OnlineAccountData onlineAccountData : this.onlineAccountsImportQueue) {
                 if (isStopping)
                     return;
 
                 // Skip this account if it's already validated
-                Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.get(onlineAccountData.getTimestamp());
-                if (onlineAccounts != null && onlineAccounts.contains(onlineAccountData)) {
+                if (this.currentOnlineAccounts.contains(onlineAccountData)) {
                     // We have already validated this online account
                     onlineAccountsImportQueue.remove(onlineAccountData);
                     continue;
@@ -227,12 +246,15 @@ public class OnlineAccountsManager {
 
                 boolean isValid = this.isValidCurrentAccount(repository, onlineAccountData);
                 if (isValid)
-                    onlineAccountsToAdd.add(onlineAccountData);
+                    onlineAccountsToVerify.add(onlineAccountData);
 
                 // Don't remove from the queue yet - we'll do this at the end of the process
                 // This prevents duplicates being added to the queue whilst it's being processed
                 onlineAccountsToRemove.add(onlineAccountData);
             }
+
+            // Signatures and nonces are the expensive checks, so verify those in parallel
+            onlineAccountsToAdd.addAll(verifyInParallel(this.verificationExecutor, onlineAccountsToVerify, OnlineAccountsManager::isSignatureAndPoWValid, false));
         } catch (DataException e) {
             LOGGER.error("Repository issue while verifying online accounts", e);
 
@@ -260,22 +282,7 @@ public class OnlineAccountsManager {
         }
 
         // New online account data has a nonce value, so check if there is any existing data to compare against
-        Set<OnlineAccountData> existingOnlineAccountsForTimestamp = this.currentOnlineAccounts.get(onlineAccountData.getTimestamp());
-        if (existingOnlineAccountsForTimestamp == null) {
-            // No existing online accounts data with this timestamp yet
-            return false;
-        }
-
-        // Check if a duplicate entry exists
-        OnlineAccountData existingOnlineAccountData = null;
-        for (OnlineAccountData existingAccount : existingOnlineAccountsForTimestamp) {
-            if (existingAccount.equals(onlineAccountData)) {
-                // Found existing online account data
-                existingOnlineAccountData = existingAccount;
-                break;
-            }
-        }
-
+        OnlineAccountData existingOnlineAccountData = this.currentOnlineAccounts.get(onlineAccountData.getTimestamp(), onlineAccountData.getPublicKey());
         if (existingOnlineAccountData == null) {
             // No existing online accounts data, so nothing to compare
             return false;
@@ -324,14 +331,6 @@ public class OnlineAccountsManager {
             return false;
         }
 
-        // Verify signature
-        byte[] data = Longs.toByteArray(onlineAccountData.getTimestamp());
-        boolean isSignatureValid = Aquila25519Extras.verifyAggregated(rewardSharePublicKey, onlineAccountData.getSignature(), data);
-        if (!isSignatureValid) {
-            LOGGER.trace(() -> String.format("Rejecting invalid online account %s", Base58.encode(rewardSharePublicKey)));
-            return false;
-        }
-
         // Aquila: check online account is actually reward-share
         RewardShareData rewardShareData = repository.getAccountRepository().getRewardShare(rewardSharePublicKey);
         if (rewardShareData == null) {
@@ -347,60 +346,125 @@ public class OnlineAccountsManager {
             return false;
         }
 
+        // Signature and mempow are checked separately, see isSignatureAndPoWValid()
+        return true;
+    }
+
+    /** Returns whether online account's signature and mempow nonce are valid. Doesn't need repository so safe to call from any thread. */
+    private static boolean isSignatureAndPoWValid(OnlineAccountData onlineAccountData) {
+        byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
+
+        // Verify signature
+        byte[] data = Longs.toByteArray(onlineAccountData.getTimestamp());
+        boolean isSignatureValid = Aquila25519Extras.verifyAggregated(rewardSharePublicKey, onlineAccountData.getSignature(), data);
+        if (!isSignatureValid) {
+            LOGGER.trace(() -> String.format("Rejecting invalid online account %s", Base58.encode(rewardSharePublicKey)));
+            return false;
+        }
+
         // Validate mempow
-        if (!getInstance().verifyMemoryPoW(onlineAccountData, POW_VERIFY_WORK_BUFFER)) {
-            LOGGER.trace(() -> String.format("Rejecting online reward-share for account %s due to invalid PoW nonce", mintingAccount.getAddress()));
+        if (!getInstance().verifyMemoryPoW(onlineAccountData)) {
+            LOGGER.trace(() -> String.format("Rejecting online reward-share %s due to invalid PoW nonce", Base58.encode(rewardSharePublicKey)));
             return false;
         }
 
         return true;
     }
 
-    /** Adds accounts, maybe rebuilds hashes, returns whether any new accounts were added / hashes rebuilt. */
-    private boolean addAccounts(Collection<OnlineAccountData> onlineAccountsToAdd) {
-        // For keeping track of which hashes to rebuild
-        Map<Long, Set<Byte>> hashesToRebuild = new HashMap<>();
+    /**
+     * Returns those online accounts that pass <tt>verifier</tt>, using <tt>executor</tt>'s verification threads.
+     * <p>
+     * If <tt>stopOnInvalid</tt> then verification stops early at the first invalid account,
+     * in which case returned list is incomplete and only useful for comparing against size of <tt>onlineAccounts</tt>.
+     * <p>
+     * Accounts are only omitted because <tt>verifier</tt> returned false. If verification threads are unavailable
+     * (shutdown, interrupt, task failure) then unverified accounts are verified on the calling thread instead.
+     */
+    private static List<OnlineAccountData> verifyInParallel(ThreadPoolExecutor executor, Collection<OnlineAccountData> onlineAccounts,
+            Predicate<OnlineAccountData> verifier, boolean stopOnInvalid) {
+        List<OnlineAccountData> accounts = new ArrayList<>(onlineAccounts);
+        // null entries haven't been verified yet
+        Boolean[] results = new Boolean[accounts.size()];
+        boolean isInterrupted = false;
+
+        // Not worth handing a single account to another thread
+        if (accounts.size() >= 2 && !executor.isShutdown()) {
+            CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+            Map<Future<Boolean>, Integer> indexesByFuture = new HashMap<>();
 
-        for (OnlineAccountData onlineAccountData : onlineAccountsToAdd) {
-            boolean isNewEntry = this.addAccount(onlineAccountData);
+            try {
+                for (int i = 0; i < accounts.size(); ++i) {
+                    OnlineAccountData onlineAccountData = accounts.get(i);
+                    indexesByFuture.put(completionService.submit(() -> verifier.test(onlineAccountData)), i);
+                }
 
-            if (isNewEntry)
-                hashesToRebuild.computeIfAbsent(onlineAccountData.getTimestamp(), k -> new HashSet<>()).add(onlineAccountData.getPublicKey()[0]);
+                for (int received = 0; received < indexesByFuture.size(); ++received) {
+                    Future<Boolean> future = completionService.take();
+                    int index = indexesByFuture.get(future);
+
+                    try {
+                        results[index] = future.get();
+                    } catch (ExecutionException e) {
+                        LOGGER.warn("Unexpected exception verifying online account - will retry on this thread", e.getCause());
+                        continue;
+                    }
+
+                    if (!results[index] && stopOnInvalid)
+                        break;
+                }
+            } catch (RejectedExecutionException e) {
+                // Shutting down - remaining accounts are verified below
+            } catch (InterruptedException e) {
+                // Remaining accounts are verified below, then we restore interrupt status
+                isInterrupted = true;
+            } finally {
+                // Don't waste effort on remaining accounts if we've stopped early
+                indexesByFuture.keySet().forEach(future -> future.cancel(true));
+            }
         }
 
-        if (hashesToRebuild.isEmpty())
-            return false;
+        boolean hasInvalid = Arrays.asList(results).contains(Boolean.FALSE);
 
-        for (var entry : hashesToRebuild.entrySet()) {
-            Long timestamp = entry.getKey();
+        // Verify anything that threads didn't, unless we already know the answer
+        if (!hasInvalid || !stopOnInvalid) {
+            for (int i = 0; i < results.length; ++i) {
+                if (results[i] != null)
+                    continue;
 
-            LOGGER.trace(() -> String.format("Rehashing for timestamp %d and leading bytes %s",
-                            timestamp,
-                            entry.getValue().stream().sorted(Byte::compareUnsigned).map(leadingByte -> String.format("%02x", leadingByte)).collect(Collectors.joining(", "))
-                    )
-            );
-
-            for (Byte leadingByte : entry.getValue()) {
-                byte[] pubkeyHash = currentOnlineAccounts.get(timestamp).stream()
-                        .map(OnlineAccountData::getPublicKey)
-                        .filter(publicKey -> leadingByte == publicKey[0])
-                        .reduce(null, OnlineAccountsManager::xorByteArrayInPlace);
-
-                currentOnlineAccountsHashes.computeIfAbsent(timestamp, k -> new ConcurrentHashMap<>()).put(leadingByte, pubkeyHash);
-
-                LOGGER.trace(() -> String.format("Rebuilt hash %s for timestamp %d and leading byte %02x using %d public keys",
-                        HashCode.fromBytes(pubkeyHash),
-                        timestamp,
-                        leadingByte,
-                        currentOnlineAccounts.get(timestamp).stream()
-                                .map(OnlineAccountData::getPublicKey)
-                                .filter(publicKey -> leadingByte == publicKey[0])
-                                .count()
-                ));
+                results[i] = verifier.test(accounts.get(i));
+
+                if (!results[i] && stopOnInvalid)
+                    break;
             }
         }
 
-        LOGGER.trace(String.format("we have online accounts for timestamps: %s", String.join(", ", this.currentOnlineAccounts.keySet().stream().map(l -> Long.toString(l)).collect(Collectors.joining(", ")))));
+        if (isInterrupted)
+            Thread.currentThread().interrupt();
+
+        List<OnlineAccountData> validOnlineAccounts = new ArrayList<>(accounts.size());
+        for (int i = 0; i < results.length; ++i)
+            if (Boolean.TRUE.equals(results[i]))
+                validOnlineAccounts.add(accounts.get(i));
+
+        return validOnlineAccounts;
+    }
+
+    /** Returns whether all of a block's online accounts have valid mempow nonces, verifying in parallel. */
+    public boolean verifyMemoryPoWs(Collection<OnlineAccountData> onlineAccounts) {
+        return verifyInParallel(this.blockVerificationExecutor, onlineAccounts, this::verifyMemoryPoW, true).size() == onlineAccounts.size();
+    }
+
+    /** Adds accounts, updating hashes, returns whether any new accounts were added / existing accounts replaced. */
+    private boolean addAccounts(Collection<OnlineAccountData> onlineAccountsToAdd) {
+        boolean hasInfoChanged = false;
+
+        for (OnlineAccountData onlineAccountData : onlineAccountsToAdd)
+            hasInfoChanged |= this.addAccount(onlineAccountData);
+
+        if (!hasInfoChanged)
+            return false;
+
+        LOGGER.trace(() -> String.format("we have online accounts for timestamps: %s", this.currentOnlineAccounts.getTimestamps().stream().map(l -> Long.toString(l)).collect(Collectors.joining(", "))));
 
         return true;
     }
@@ -409,14 +473,16 @@ public class OnlineAccountsManager {
         byte[] rewardSharePublicKey = onlineAccountData.getPublicKey();
         long onlineAccountTimestamp = onlineAccountData.getTimestamp();
 
-        Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.computeIfAbsent(onlineAccountTimestamp, k -> ConcurrentHashMap.newKeySet());
-
         boolean isSuperiorEntry = isOnlineAccountsDataSuperior(onlineAccountData);
-        if (isSuperiorEntry)
-            // Remove existing inferior entry so it can be re-added below (it's likely the existing copy is missing a nonce value)
-            onlineAccounts.remove(onlineAccountData);
 
-        boolean isNewEntry = onlineAccounts.add(onlineAccountData);
+        boolean isNewEntry;
+        if (isSuperiorEntry) {
+            // Replace existing inferior entry (it's likely the existing copy is missing a nonce value)
+            this.currentOnlineAccounts.put(onlineAccountData);
+            isNewEntry = true;
+        } else {
+            isNewEntry = this.currentOnlineAccounts.add(onlineAccountData);
+        }
 
         if (isNewEntry)
             LOGGER.trace(() -> String.format("Added online account %s with timestamp %d", Base58.encode(rewardSharePublicKey), onlineAccountTimestamp));
@@ -435,8 +501,7 @@ public class OnlineAccountsManager {
             return;
 
         final long cutoffThreshold = now - MAX_CACHED_TIMESTAMP_SETS * getOnlineTimestampModulus();
-        this.currentOnlineAccounts.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
-        this.currentOnlineAccountsHashes.keySet().removeIf(timestamp -> timestamp < cutoffThreshold);
+        this.currentOnlineAccounts.removeTimestampsBefore(cutoffThreshold);
     }
 
     /**
@@ -468,7 +533,7 @@ public class OnlineAccountsManager {
         LOGGER.debug("Requesting online accounts via broadcast...");
 
         lastOnlineAccountsRequest = now;
-        Message messageV3 = new GetOnlineAccountsV3Message(currentOnlineAccountsHashes);
+        Message messageV3 = new GetOnlineAccountsV3Message(this.currentOnlineAccounts.getHashes());
         Network.getInstance().broadcast(peer -> messageV3);
     }
 
@@ -547,8 +612,7 @@ public class OnlineAccountsManager {
             byte[] publicKey = Crypto.toPublicKey(privateKey);
 
             // We don't want to compute the online account nonce and signature again if it already exists
-            Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.computeIfAbsent(onlineAccountsTimestamp, k -> ConcurrentHashMap.newKeySet());
-            boolean alreadyExists = onlineAccounts.stream().anyMatch(a -> Arrays.equals(a.getPublicKey(), publicKey));
+            boolean alreadyExists = this.currentOnlineAccounts.contains(onlineAccountsTimestamp, publicKey);
             if (alreadyExists) {
                 this.hasOurOnlineAccounts = true;
 
@@ -591,7 +655,7 @@ public class OnlineAccountsManager {
             OnlineAccountData ourOnlineAccountData = new OnlineAccountData(onlineAccountsTimestamp, signature, publicKey, nonce);
 
             // Make sure to verify before adding
-            if (verifyMemoryPoW(ourOnlineAccountData, null)) {
+            if (verifyMemoryPoW(ourOnlineAccountData)) {
                 ourOnlineAccounts.add(ourOnlineAccountData);
             }
         }
@@ -633,7 +697,8 @@ public class OnlineAccountsManager {
         long timeUntilNextTimestamp = nextOnlineAccountsTimestamp - startTime;
 
         int difficulty = getPoWDifficulty(onlineAccountsTimestamp);
-        Integer nonce = MemoryPoW.compute2(bytes, getPoWBufferSize(), difficulty, timeUntilNextTimestamp);
+        int threadCount = Settings.getInstance().getOnlineAccountsPoWThreadCount();
+        Integer nonce = MemoryPoW.compute2(bytes, getPoWBufferSize(), difficulty, timeUntilNextTimestamp, threadCount);
 
         double totalSeconds = (NTP.getTime() - startTime) / 1000.0f;
         int minutes = (int) ((totalSeconds % 3600) / 60);
@@ -647,6 +712,19 @@ public class OnlineAccountsManager {
         return nonce;
     }
 
+    /** Verifies online account's mempow nonce using a pooled work buffer. */
+    public boolean verifyMemoryPoW(OnlineAccountData onlineAccountData) {
+        long[] workBuffer = this.powVerifyWorkBuffers.poll();
+        if (workBuffer == null)
+            workBuffer = new long[getPoWBufferSize() / 8];
+
+        try {
+            return this.verifyMemoryPoW(onlineAccountData, workBuffer);
+        } finally {
+            this.powVerifyWorkBuffers.offer(workBuffer);
+        }
+    }
+
     public boolean verifyMemoryPoW(OnlineAccountData onlineAccountData, long[] workBuffer) {
         // Require a valid nonce value
         if (onlineAccountData.getNonce() == null || onlineAccountData.getNonce() < 0) {
@@ -677,7 +755,7 @@ public class OnlineAccountsManager {
         if (onlineAccountsTimestamp == null)
             return false;
 
-        return this.currentOnlineAccounts.containsKey(onlineAccountsTimestamp);
+        return this.currentOnlineAccounts.hasAccounts(onlineAccountsTimestamp);
     }
 
     /**
@@ -701,9 +779,9 @@ public class OnlineAccountsManager {
      */
     // Block::mint() - only wants online accounts with (online) timestamp that matches block's (online) timestamp so they can be added to new block
     public List<OnlineAccountData> getOnlineAccounts(long onlineTimestamp) {
-        LOGGER.debug(String.format("caller's timestamp: %d, our timestamps: %s", onlineTimestamp, String.join(", ", this.currentOnlineAccounts.keySet().stream().map(l -> Long.toString(l)).collect(Collectors.joining(", ")))));
+        LOGGER.debug(() -> String.format("caller's timestamp: %d, our timestamps: %s", onlineTimestamp, this.currentOnlineAccounts.getTimestamps().stream().map(l -> Long.toString(l)).collect(Collectors.joining(", "))));
 
-        return new ArrayList<>(Set.copyOf(this.currentOnlineAccounts.getOrDefault(onlineTimestamp, Collections.emptySet())));
+        return this.currentOnlineAccounts.getAccounts(onlineTimestamp);
     }
 
     /**
@@ -729,11 +807,13 @@ public class OnlineAccountsManager {
      * Typically called by {@link Block#areOnlineAccountsValid()}
      */
     public void removeKnown(Set<OnlineAccountData> blocksOnlineAccounts, Long timestamp) {
-        Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.get(timestamp);
+        if (this.currentOnlineAccounts.hasAccounts(timestamp)) {
+            blocksOnlineAccounts.removeIf(this.currentOnlineAccounts::contains);
+            return;
+        }
 
         // If not 'current' timestamp - try block cache instead
-        if (onlineAccounts == null)
-            onlineAccounts = this.latestBlocksOnlineAccounts.get(timestamp);
+        Set<OnlineAccountData> onlineAccounts = this.latestBlocksOnlineAccounts.get(timestamp);
 
         if (onlineAccounts != null)
             blocksOnlineAccounts.removeAll(onlineAccounts);
@@ -751,7 +831,7 @@ public class OnlineAccountsManager {
         // on the more complete entries we already have in self.currentOnlineAccounts.
         // Note: since sig-agg, we no longer have individual signatures included in blocks, so we
         // mustn't add anything to currentOnlineAccounts from here.
-        if (this.currentOnlineAccounts.containsKey(timestamp))
+        if (this.currentOnlineAccounts.hasAccounts(timestamp))
             return;
 
         // Add to block cache instead
@@ -778,10 +858,8 @@ public class OnlineAccountsManager {
         Map<Long, Map<Byte, byte[]>> peersHashes = getOnlineAccountsMessage.getHashesByTimestampThenByte();
         List<OnlineAccountData> outgoingOnlineAccounts = new ArrayList<>();
 
-        // Warning: no double-checking/fetching - we must be ConcurrentMap compatible!
-        // So no contains()-then-get() or multiple get()s on the same key/map.
-        // We also use getOrDefault() with emptySet() on currentOnlineAccounts in case corresponding timestamp entry isn't there.
-        for (var ourOuterMapEntry : currentOnlineAccountsHashes.entrySet()) {
+        // Only shards whose hash differs from peer's need to be sent
+        for (var ourOuterMapEntry : this.currentOnlineAccounts.getHashes().entrySet()) {
             Long timestamp = ourOuterMapEntry.getKey();
 
             var ourInnerMap = ourOuterMapEntry.getValue();
@@ -789,13 +867,13 @@ public class OnlineAccountsManager {
 
             if (peersInnerMap == null) {
                 // Peer doesn't have this timestamp, so if it's valid (i.e. not too old) then we'd have to send all of ours
-                Set<OnlineAccountData> timestampsOnlineAccounts = this.currentOnlineAccounts.getOrDefault(timestamp, Collections.emptySet());
+                List<OnlineAccountData> timestampsOnlineAccounts = this.currentOnlineAccounts.getAccounts(timestamp);
                 outgoingOnlineAccounts.addAll(timestampsOnlineAccounts);
 
                 LOGGER.trace(() -> String.format("Going to send all %d online accounts for timestamp %d", timestampsOnlineAccounts.size(), timestamp));
             } else {
-                // Quick cache of which leading bytes to send so we only have to filter once
-                Set<Byte> outgoingLeadingBytes = new HashSet<>();
+                List<Byte> outgoingLeadingBytes = new ArrayList<>();
+                int beforeAddSize = outgoingOnlineAccounts.size();
 
                 // We have entries for this timestamp so compare against peer's entries
                 for (var ourInnerMapEntry : ourInnerMap.entrySet()) {
@@ -806,15 +884,10 @@ public class OnlineAccountsManager {
                         // For this leading byte: hashes don't match or peer doesn't have entry
                         // Send all online accounts for this timestamp and leading byte
                         outgoingLeadingBytes.add(leadingByte);
+                        outgoingOnlineAccounts.addAll(this.currentOnlineAccounts.getAccounts(timestamp, leadingByte));
                     }
                 }
 
-                int beforeAddSize = outgoingOnlineAccounts.size();
-
-                this.currentOnlineAccounts.getOrDefault(timestamp, Collections.emptySet()).stream()
-                        .filter(account -> outgoingLeadingBytes.contains(account.getPublicKey()[0]))
-                        .forEach(outgoingOnlineAccounts::add);
-
                 if (outgoingOnlineAccounts.size() > beforeAddSize)
                     LOGGER.trace(String.format("Going to send %d online accounts for timestamp %d and leading bytes %s",
                             outgoingOnlineAccounts.size() - beforeAddSize,
@@ -841,8 +914,7 @@ public class OnlineAccountsManager {
         // Add any online accounts to the queue that aren't already present
         for (OnlineAccountData onlineAccountData : peersOnlineAccounts) {
 
-            Set<OnlineAccountData> onlineAccounts = this.currentOnlineAccounts.computeIfAbsent(onlineAccountData.getTimestamp(), k -> ConcurrentHashMap.newKeySet());
-            if (onlineAccounts.contains(onlineAccountData))
+            if (this.currentOnlineAccounts.contains(onlineAccountData))
                 // We have already validated this online account
                 continue;
 
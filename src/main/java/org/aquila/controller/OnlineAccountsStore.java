@@ -0,0 +1,198 @@
+package org.aquila.controller;
+
+import org.aquila.data.network.OnlineAccountData;
+import org.aquila.utils.ByteArray;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Online accounts by online timestamp, sharded by leading byte of public key.
+ * <p>
+ * Each shard keeps its accounts keyed by public key, for O(1) membership checks,
+ * and the XOR of its accounts' public keys, as used by {@link org.aquila.network.message.GetOnlineAccountsV3Message}.
+ * Shard hashes are updated incrementally as accounts are added or removed, instead of being rebuilt.
+ * <p>
+ * Reads don't lock. Changes lock only the affected shard. Shard hashes are replaced, never modified in place,
+ * so hashes returned by {@link #getHashes()} can be safely used by other threads.
+ */
+public class OnlineAccountsStore {
+
+    private static class Shard {
+        private final Map<ByteArray, OnlineAccountData> accountsByPublicKey = new ConcurrentHashMap<>();
+        /** XOR of public keys (apart from leading byte), or null if shard is empty */
+        private volatile byte[] hash;
+
+        /** Adds account, or replaces existing account with same public key if <tt>replaceExisting</tt>. Returns true if public key is new. */
+        private synchronized boolean put(OnlineAccountData onlineAccountData, boolean replaceExisting) {
+            ByteArray publicKey = ByteArray.wrap(onlineAccountData.getPublicKey());
+
+            OnlineAccountData existingAccountData = this.accountsByPublicKey.get(publicKey);
+            if (existingAccountData != null) {
+                // Hash is unchanged as public key is the same
+                if (replaceExisting)
+                    this.accountsByPublicKey.put(publicKey, onlineAccountData);
+
+                return false;
+            }
+
+            this.accountsByPublicKey.put(publicKey, onlineAccountData);
+            this.hash = xorCopy(this.hash, onlineAccountData.getPublicKey());
+            return true;
+        }
+
+        private synchronized boolean remove(byte[] publicKey) {
+            if (this.accountsByPublicKey.remove(ByteArray.wrap(publicKey)) == null)
+                return false;
+
+            // XOR is its own inverse
+            this.hash = this.accountsByPublicKey.isEmpty() ? null : xorCopy(this.hash, publicKey);
+            return true;
+        }
+    }
+
+    /** Shards for one online timestamp, by leading byte */
+    private static class TimestampShards {
+        private final Map<Byte, Shard> shardsByLeadingByte = new ConcurrentHashMap<>();
+
+        private Shard getShard(byte[] publicKey) {
+            return this.shardsByLeadingByte.get(publicKey[0]);
+        }
+
+        private boolean isEmpty() {
+            return this.shardsByLeadingByte.values().stream().allMatch(shard -> shard.hash == null);
+        }
+    }
+
+    private final Map<Long, TimestampShards> shardsByTimestamp = new ConcurrentSkipListMap<>();
+
+    /** Adds account if we don't already have an account with same timestamp and public key. Returns true if added. */
+    public boolean add(OnlineAccountData onlineAccountData) {
+        return this.getOrCreateShard(onlineAccountData).put(onlineAccountData, false);
+    }
+
+    /** Adds account, replacing any existing account with same timestamp and public key. Returns true if public key is new. */
+    public boolean put(OnlineAccountData onlineAccountData) {
+        return this.getOrCreateShard(onlineAccountData).put(onlineAccountData, true);
+    }
+
+    /** Removes account with same timestamp and public key. Returns true if removed. */
+    public boolean remove(OnlineAccountData onlineAccountData) {
+        TimestampShards timestampShards = this.shardsByTimestamp.get(onlineAccountData.getTimestamp());
+        if (timestampShards == null)
+            return false;
+
+        Shard shard = timestampShards.getShard(onlineAccountData.getPublicKey());
+        return shard != null && shard.remove(onlineAccountData.getPublicKey());
+    }
+
+    /** Returns account with passed timestamp and public key, or null if not found. */
+    public OnlineAccountData get(long timestamp, byte[] publicKey) {
+        TimestampShards timestampShards = this.shardsByTimestamp.get(timestamp);
+        if (timestampShards == null)
+            return null;
+
+        Shard shard = timestampShards.getShard(publicKey);
+        if (shard == null)
+            return null;
+
+        return shard.accountsByPublicKey.get(ByteArray.wrap(publicKey));
+    }
+
+    public boolean contains(long timestamp, byte[] publicKey) {
+        return this.get(timestamp, publicKey) != null;
+    }
+
+    /** Returns whether we have an account with same timestamp and public key. */
+    public boolean contains(OnlineAccountData onlineAccountData) {
+        return this.contains(onlineAccountData.getTimestamp(), onlineAccountData.getPublicKey());
+    }
+
+    /** Returns whether we have any accounts with passed timestamp. */
+    public boolean hasAccounts(long timestamp) {
+        TimestampShards timestampShards = this.shardsByTimestamp.get(timestamp);
+        return timestampShards != null && !timestampShards.isEmpty();
+    }
+
+    /** Returns timestamps for which we have accounts, in ascending order. */
+    public List<Long> getTimestamps() {
+        List<Long> timestamps = new ArrayList<>();
+
+        for (var entry : this.shardsByTimestamp.entrySet())
+            if (!entry.getValue().isEmpty())
+                timestamps.add(entry.getKey());
+
+        return timestamps;
+    }
+
+    public List<OnlineAccountData> getAccounts(long timestamp) {
+        TimestampShards timestampShards = this.shardsByTimestamp.get(timestamp);
+        if (timestampShards == null)
+            return new ArrayList<>();
+
+        List<OnlineAccountData> onlineAccounts = new ArrayList<>();
+        for (Shard shard : timestampShards.shardsByLeadingByte.values())
+            onlineAccounts.addAll(shard.accountsByPublicKey.values());
+
+        return onlineAccounts;
+    }
+
+    /** Returns accounts with passed timestamp whose public keys start with passed leading byte. */
+    public List<OnlineAccountData> getAccounts(long timestamp, byte leadingByte) {
+        TimestampShards timestampShards = this.shardsByTimestamp.get(timestamp);
+        if (timestampShards == null)
+            return new ArrayList<>();
+
+        Shard shard = timestampShards.shardsByLeadingByte.get(leadingByte);
+        if (shard == null)
+            return new ArrayList<>();
+
+        return new ArrayList<>(shard.accountsByPublicKey.values());
+    }
+
+    /**
+     * Returns hash-summary of accounts, keyed by timestamp, then leading byte of public key.
+     * <p>
+     * Returned maps are a snapshot, but hash arrays are shared so must not be modified.
+     */
+    public Map<Long, Map<Byte, byte[]>> getHashes() {
+        Map<Long, Map<Byte, byte[]>> hashesByTimestampThenByte = new HashMap<>();
+
+        for (var timestampEntry : this.shardsByTimestamp.entrySet()) {
+            Map<Byte, byte[]> hashesByByte = new HashMap<>();
+
+            for (var shardEntry : timestampEntry.getValue().shardsByLeadingByte.entrySet()) {
+                byte[] hash = shardEntry.getValue().hash;
+
+                if (hash != null)
+                    hashesByByte.put(shardEntry.getKey(), hash);
+            }
+
+            if (!hashesByByte.isEmpty())
+                hashesByTimestampThenByte.put(timestampEntry.getKey(), hashesByByte);
+        }
+
+        return hashesByTimestampThenByte;
+    }
+
+    /** Removes all accounts with timestamps before <tt>cutoffTimestamp</tt>. */
+    public void removeTimestampsBefore(long cutoffTimestamp) {
+        this.shardsByTimestamp.keySet().removeIf(timestamp -> timestamp < cutoffTimestamp);
+    }
+
+    public void clear() {
+        this.shardsByTimestamp.clear();
+    }
+
+    private Shard getOrCreateShard(OnlineAccountData onlineAccountData) {
+        return this.shardsByTimestamp.computeIfAbsent(onlineAccountData.getTimestamp(), k -> new TimestampShards())
+                .shardsByLeadingByte.computeIfAbsent(onlineAccountData.getPublicKey()[0], k -> new Shard());
+    }
+
+    private static byte[] xorCopy(byte[] hash, byte[] publicKey) {
+        byte[] newHash = hash != null ? Arrays.copyOf(hash, hash.length) : null;
+        return OnlineAccountsManager.xorByteArrayInPlace(newHash, publicKey);
+    }
+
+}
@@ -5,6 +5,12 @@ import java.security.SecureRandom;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -15,13 +21,14 @@ import org.aquila.account.Account;
 import org.aquila.account.PublicKeyAccount;
 import org.aquila.block.Block;
 import org.aquila.block.BlockChain;
+import org.aquila.block.BlockPreValidator;
 import org.aquila.block.Block.ValidationResult;
 import org.aquila.data.block.BlockData;
 import org.aquila.data.block.BlockSummaryData;
 import org.aquila.data.block.CommonBlockData;
 import org.aquila.data.transaction.RewardShareTransactionData;
 import org.aquila.data.transaction.TransactionData;
-import org.aquila.event.Event;
+import org.aquila.event.CoalescingEvent;
 import org.aquila.event.EventBus;
 import org.aquila.network.Network;
 import org.aquila.network.Peer;
@@ -34,6 +41,7 @@ import org.aquila.transaction.Transaction;
 import org.aquila.utils.Base58;
 import org.aquila.utils.ByteArray;
 import org.aquila.utils.NTP;
+import org.aquila.utils.NamedThreadFactory;
 
 public class Synchronizer extends Thread {
 
@@ -89,11 +97,33 @@ public class Synchronizer extends Thread {
 
 	private static Synchronizer instance;
 
+	/** Threads awaiting GET_BLOCK responses while earlier blocks are being applied */
+	private final ExecutorService blockFetchExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("Synchronizer-fetch"));
+
+	/** Outstanding GET_BLOCK request, in height order */
+	private static class PendingBlockFetch {
+		private final Peer peer;
+		private final int height;
+		private final byte[] signature;
+		private final Future<Message> future;
+		/** Block built from response, once available */
+		private Block block;
+		/** Stateless checks on block, once started */
+		private Future<ValidationResult> preValidation;
+
+		private PendingBlockFetch(Peer peer, int height, byte[] signature, Future<Message> future) {
+			this.peer = peer;
+			this.height = height;
+			this.signature = signature;
+			this.future = future;
+		}
+	}
+
 	public enum SynchronizationResult {
 		OK, NOTHING_TO_DO, GENESIS_ONLY, NO_COMMON_BLOCK, TOO_DIVERGENT, NO_REPLY, INFERIOR_CHAIN, INVALID_DATA, NO_BLOCKCHAIN_LOCK, REPOSITORY_ISSUE, SHUTTING_DOWN, CHAIN_TIP_TOO_OLD;
 	}
 
-	public static class NewChainTipEvent implements Event {
+	public static class NewChainTipEvent implements CoalescingEvent {
 		private final BlockData priorChainTip;
 		private final BlockData newChainTip;
 
@@ -109,6 +139,11 @@ public class Synchronizer extends Thread {
 		public BlockData getNewChainTip() {
 			return this.newChainTip;
 		}
+
+		@Override
+		public CoalescingEvent coalesce(CoalescingEvent laterEvent) {
+			return new NewChainTipEvent(this.priorChainTip, ((NewChainTipEvent) laterEvent).newChainTip);
+		}
 	}
 
 	// Constructors
@@ -158,6 +193,7 @@ public class Synchronizer extends Thread {
 
 	public void shutdown() {
 		this.running = false;
+		this.blockFetchExecutor.shutdownNow();
 		this.interrupt();
 	}
 
@@ -1507,90 +1543,235 @@ public class Synchronizer extends Thread {
 		// Convert any block summaries from above into signatures to request from peer
 		List<byte[]> peerBlockSignatures = peerBlockSummaries.stream().map(BlockSummaryData::getSignature).collect(Collectors.toList());
 
-		while (ourHeight < peerHeight && ourHeight < maxBatchHeight) {
-			if (Controller.isStopping())
-				return SynchronizationResult.SHUTTING_DOWN;
+		// Blocks are requested ahead of applying them, spread across peers that share our common block
+		final int maxBlockRequestsInFlight = Settings.getInstance().getMaxBlockRequestsInFlight();
+		List<Peer> fetchPeers = this.getPeersSharingCommonBlock(peer, commonBlockSig);
+		Deque<PendingBlockFetch> pendingFetches = new ArrayDeque<>();
+		int requestedHeight = ourHeight;
+		int fetchPeerIndex = 0;
 
-			// Do we need more signatures?
-			if (peerBlockSignatures.isEmpty()) {
-				int numberRequested = Math.min(maxBatchHeight - ourHeight, MAXIMUM_REQUEST_SIZE);
+		if (fetchPeers.size() > 1)
+			LOGGER.debug(String.format("Fetching new blocks using %d peers sharing common block with peer %s", fetchPeers.size(), peer));
 
-				LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
-						numberRequested, (numberRequested != 1 ? "s": ""), ourHeight, Base58.encode(latestPeerSignature)));
+		try {
+			while (ourHeight < peerHeight && ourHeight < maxBatchHeight) {
+				if (Controller.isStopping())
+					return SynchronizationResult.SHUTTING_DOWN;
 
-				peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+				// Top up our window of outstanding block requests
+				while (pendingFetches.size() < maxBlockRequestsInFlight && requestedHeight < peerHeight && requestedHeight < maxBatchHeight) {
+					// Do we need more signatures?
+					if (peerBlockSignatures.isEmpty()) {
+						int numberRequested = Math.min(maxBatchHeight - requestedHeight, MAXIMUM_REQUEST_SIZE);
 
-				if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
-					LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
-							ourHeight, Base58.encode(latestPeerSignature)));
-					return SynchronizationResult.NO_REPLY;
+						LOGGER.trace(String.format("Requesting %d signature%s after height %d, sig %.8s",
+								numberRequested, (numberRequested != 1 ? "s": ""), requestedHeight, Base58.encode(latestPeerSignature)));
+
+						peerBlockSignatures = this.getBlockSignatures(peer, latestPeerSignature, numberRequested);
+
+						if (peerBlockSignatures == null || peerBlockSignatures.isEmpty()) {
+							LOGGER.info(String.format("Peer %s failed to respond with more block signatures after height %d, sig %.8s", peer,
+									requestedHeight, Base58.encode(latestPeerSignature)));
+							return SynchronizationResult.NO_REPLY;
+						}
+
+						LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
+					}
+
+					latestPeerSignature = peerBlockSignatures.get(0);
+					peerBlockSignatures.remove(0);
+					++requestedHeight;
+
+					Peer fetchPeer = this.selectFetchPeer(fetchPeers, fetchPeerIndex++, requestedHeight);
+					pendingFetches.add(this.submitBlockFetch(fetchPeer, requestedHeight, latestPeerSignature));
 				}
 
-				LOGGER.trace(String.format("Received %s signature%s", peerBlockSignatures.size(), (peerBlockSignatures.size() != 1 ? "s" : "")));
-			}
+				// Start stateless checks on any blocks that have already arrived
+				this.startPreValidations(repository, pendingFetches);
 
-			latestPeerSignature = peerBlockSignatures.get(0);
-			peerBlockSignatures.remove(0);
-			++ourHeight;
+				PendingBlockFetch pendingFetch = pendingFetches.remove();
+				final byte[] blockSignature = pendingFetch.signature;
+				++ourHeight;
 
-			LOGGER.trace(String.format("Fetching block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
-			Block newBlock = this.fetchBlock(repository, peer, latestPeerSignature);
-			LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", ourHeight, Base58.encode(latestPeerSignature), peer));
+				Block newBlock = this.awaitBlockFetch(repository, pendingFetch);
+				LOGGER.trace(String.format("Fetched block %d, sig %.8s from %s", ourHeight, Base58.encode(blockSignature), pendingFetch.peer));
 
-			if (newBlock == null) {
-				LOGGER.info(String.format("Peer %s failed to respond with block for height %d, sig %.8s", peer,
-						ourHeight, Base58.encode(latestPeerSignature)));
-				return SynchronizationResult.NO_REPLY;
-			}
+				ValidationResult preValidationResult = this.awaitPreValidation(pendingFetch);
 
-			if (!newBlock.isSignatureValid()) {
-				LOGGER.info(String.format("Peer %s sent block with invalid signature for height %d, sig %.8s", peer,
-						ourHeight, Base58.encode(latestPeerSignature)));
-				return SynchronizationResult.INVALID_DATA;
-			}
+				if (pendingFetch.peer != peer && !isFetchedBlockAcceptable(newBlock, blockSignature, preValidationResult)) {
+					// Helper peer stalled or sent bad data, so stop using it and fall back to our sync peer
+					LOGGER.debug(String.format("Peer %s failed to supply block %d, sig %.8s - no longer fetching blocks from this peer",
+							pendingFetch.peer, ourHeight, Base58.encode(blockSignature)));
+					fetchPeers.remove(pendingFetch.peer);
 
-			// Transactions are transmitted without approval status so determine that now
-			for (Transaction transaction : newBlock.getTransactions())
-				transaction.setInitialApprovalStatus();
+					pendingFetch = new PendingBlockFetch(peer, ourHeight, blockSignature, CompletableFuture.completedFuture(null));
+					newBlock = this.fetchBlock(repository, peer, blockSignature);
+					pendingFetch.block = newBlock;
+					preValidationResult = this.awaitPreValidation(pendingFetch);
+				}
 
-			newBlock.preProcess();
+				if (newBlock == null) {
+					LOGGER.info(String.format("Peer %s failed to respond with block for height %d, sig %.8s", peer,
+							ourHeight, Base58.encode(blockSignature)));
+					return SynchronizationResult.NO_REPLY;
+				}
 
-			ValidationResult blockResult = newBlock.isValid();
-			if (blockResult != ValidationResult.OK) {
-				LOGGER.info(String.format("Peer %s sent invalid block for height %d, sig %.8s: %s", peer,
-						ourHeight, Base58.encode(latestPeerSignature), blockResult.name()));
-				this.addInvalidBlockSignature(newBlock.getSignature());
-				this.timeInvalidBlockLastReceived = NTP.getTime();
-				return SynchronizationResult.INVALID_DATA;
-			}
+				if (!newBlock.isSignatureValid()) {
+					LOGGER.info(String.format("Peer %s sent block with invalid signature for height %d, sig %.8s", peer,
+							ourHeight, Base58.encode(blockSignature)));
+					return SynchronizationResult.INVALID_DATA;
+				}
 
-			// Block is valid
-			this.timeValidBlockLastReceived = NTP.getTime();
+				// Transactions are transmitted without approval status so determine that now
+				for (Transaction transaction : newBlock.getTransactions())
+					transaction.setInitialApprovalStatus();
 
-			// Save transactions attached to this block
-			for (Transaction transaction : newBlock.getTransactions()) {
-				TransactionData transactionData = transaction.getTransactionData();
-				repository.getTransactionRepository().save(transactionData);
-			}
+				newBlock.preProcess();
 
-			newBlock.process();
+				// Only a signature failure is final. Pre-validation resolved online accounts using our chain tip,
+				// not block's parent, so any other failure (or no result) means isValid() must check everything itself.
+				if (preValidationResult != ValidationResult.OK && preValidationResult != ValidationResult.SIGNATURE_INCORRECT)
+					newBlock.clearPreValidation();
 
-			LOGGER.trace(String.format("Processed block height %d, sig %.8s", newBlock.getBlockData().getHeight(), Base58.encode(newBlock.getBlockData().getSignature())));
+				ValidationResult blockResult = preValidationResult == ValidationResult.SIGNATURE_INCORRECT ? preValidationResult : newBlock.isValid();
+				if (blockResult != ValidationResult.OK) {
+					LOGGER.info(String.format("Peer %s sent invalid block for height %d, sig %.8s: %s", peer,
+							ourHeight, Base58.encode(blockSignature), blockResult.name()));
+					this.addInvalidBlockSignature(newBlock.getSignature());
+					this.timeInvalidBlockLastReceived = NTP.getTime();
+					return SynchronizationResult.INVALID_DATA;
+				}
 
-			repository.saveChanges();
+				// Block is valid
+				this.timeValidBlockLastReceived = NTP.getTime();
 
-			synchronized (this.syncLock) {
-				if (peer.getChainTipData() != null) {
-					this.blocksRemaining = peer.getChainTipData().getHeight() - newBlock.getBlockData().getHeight();
+				// Save transactions attached to this block
+				for (Transaction transaction : newBlock.getTransactions()) {
+					TransactionData transactionData = transaction.getTransactionData();
+					repository.getTransactionRepository().save(transactionData);
 				}
+
+				newBlock.process();
+
+				LOGGER.trace(String.format("Processed block height %d, sig %.8s", newBlock.getBlockData().getHeight(), Base58.encode(newBlock.getBlockData().getSignature())));
+
+				repository.saveChanges();
+
+				synchronized (this.syncLock) {
+					if (peer.getChainTipData() != null) {
+						this.blocksRemaining = peer.getChainTipData().getHeight() - newBlock.getBlockData().getHeight();
+					}
+				}
+
+				Controller.getInstance().onNewBlock(newBlock.getBlockData());
 			}
+		} finally {
+			// Abandon any requests we no longer need
+			for (PendingBlockFetch pendingFetch : pendingFetches) {
+				pendingFetch.future.cancel(true);
 
-			Controller.getInstance().onNewBlock(newBlock.getBlockData());
+				if (pendingFetch.preValidation != null)
+					pendingFetch.preValidation.cancel(false);
+			}
 		}
 
 		return SynchronizationResult.OK;
 	}
 
+	/**
+	 * Returns list of peers that can be asked for blocks after common block, starting with our sync peer.
+	 * <p>
+	 * Other peers qualify if they have a recent common block with us that matches our sync peer's.
+	 */
+	private List<Peer> getPeersSharingCommonBlock(Peer peer, byte[] commonBlockSig) {
+		List<Peer> fetchPeers = new ArrayList<>();
+		fetchPeers.add(peer);
+
+		for (Peer otherPeer : Network.getInstance().getImmutableHandshakedPeers()) {
+			if (otherPeer == peer || otherPeer.getChainTipData() == null || Controller.hasMisbehaved.test(otherPeer))
+				continue;
+
+			CommonBlockData otherCommonBlockData = otherPeer.getCommonBlockData();
+			if (otherCommonBlockData == null || otherCommonBlockData.getCommonBlockSummary() == null)
+				continue;
+
+			if (Arrays.equals(otherCommonBlockData.getCommonBlockSummary().getSignature(), commonBlockSig))
+				fetchPeers.add(otherPeer);
+		}
+
+		return fetchPeers;
+	}
+
+	/** Returns next peer, round-robin, that claims to have a block at <tt>height</tt>, defaulting to our sync peer. */
+	private Peer selectFetchPeer(List<Peer> fetchPeers, int fetchPeerIndex, int height) {
+		for (int i = 0; i < fetchPeers.size(); ++i) {
+			Peer fetchPeer = fetchPeers.get((fetchPeerIndex + i) % fetchPeers.size());
+
+			BlockSummaryData chainTipData = fetchPeer.getChainTipData();
+			if (chainTipData != null && chainTipData.getHeight() >= height)
+				return fetchPeer;
+		}
+
+		return fetchPeers.get(0);
+	}
+
+	private PendingBlockFetch submitBlockFetch(Peer peer, int height, byte[] signature) {
+		LOGGER.trace(String.format("Fetching block %d, sig %.8s from %s", height, Base58.encode(signature), peer));
+
+		Future<Message> future = this.blockFetchExecutor.submit(() -> this.fetchBlockMessage(peer, signature));
+		return new PendingBlockFetch(peer, height, signature, future);
+	}
+
+	private Block awaitBlockFetch(Repository repository, PendingBlockFetch pendingFetch) throws InterruptedException {
+		if (pendingFetch.block != null)
+			return pendingFetch.block;
+
+		try {
+			pendingFetch.block = this.blockFromMessage(repository, pendingFetch.future.get());
+		} catch (ExecutionException | CancellationException e) {
+			LOGGER.debug(String.format("Failed to fetch block %d from %s: %s", pendingFetch.height, pendingFetch.peer, e.getMessage()));
+		}
+
+		return pendingFetch.block;
+	}
+
+	/** Submits blocks that have arrived, but not yet been applied, for stateless checks. */
+	private void startPreValidations(Repository repository, Deque<PendingBlockFetch> pendingFetches) throws InterruptedException {
+		for (PendingBlockFetch pendingFetch : pendingFetches) {
+			if (pendingFetch.preValidation != null || !pendingFetch.future.isDone())
+				continue;
+
+			Block block = this.awaitBlockFetch(repository, pendingFetch);
+			if (block != null)
+				pendingFetch.preValidation = BlockPreValidator.getInstance().submit(block);
+		}
+	}
+
+	/**
+	 * Returns result of stateless checks on fetched block, starting them if necessary.
+	 *
+	 * @return ValidationResult, or null if there is no block, or pre-validation failed to run
+	 */
+	private ValidationResult awaitPreValidation(PendingBlockFetch pendingFetch) throws InterruptedException {
+		if (pendingFetch.block == null)
+			return null;
+
+		if (pendingFetch.preValidation == null)
+			pendingFetch.preValidation = BlockPreValidator.getInstance().submit(pendingFetch.block);
+
+		try {
+			return pendingFetch.preValidation.get();
+		} catch (ExecutionException e) {
+			// Not the block's fault, so leave all checks to isValid()
+			LOGGER.info(String.format("Exception during pre-validation of block %d, sig %.8s", pendingFetch.height, Base58.encode(pendingFetch.signature)), e.getCause());
+			return null;
+		}
+	}
+
+	private static boolean isFetchedBlockAcceptable(Block block, byte[] signature, ValidationResult preValidationResult) {
+		return block != null && Arrays.equals(block.getSignature(), signature) && preValidationResult != ValidationResult.SIGNATURE_INCORRECT;
+	}
+
 	private List<BlockSummaryData> getBlockSummaries(Peer peer, byte[] parentSignature, int numberRequested) throws InterruptedException {
 		Message getBlockSummariesMessage = new GetBlockSummariesMessage(parentSignature, numberRequested);
 
@@ -1623,6 +1804,10 @@ public class Synchronizer extends Thread {
 	}
 
 	private Block fetchBlock(Repository repository, Peer peer, byte[] signature) throws InterruptedException {
+		return this.blockFromMessage(repository, this.fetchBlockMessage(peer, signature));
+	}
+
+	private Message fetchBlockMessage(Peer peer, byte[] signature) throws InterruptedException {
 		Message getBlockMessage = new GetBlockMessage(signature);
 
 		Message message = peer.getResponse(getBlockMessage);
@@ -1641,6 +1826,13 @@ public class Synchronizer extends Thread {
 		// at a later stage. For now we are only defending against serialization errors or no responses.
 		peer.getPeerData().setFailedSyncCount(0);
 
+		return message;
+	}
+
+	private Block blockFromMessage(Repository repository, Message message) {
+		if (message == null)
+			return null;
+
 		switch (message.getType()) {
 			case BLOCK: {
 				BlockMessage blockMessage = (BlockMessage) message;
@@ -41,8 +41,8 @@ public class TransactionImporter extends Thread {
     public static final long EXPIRED_TRANSACTION_RECHECK_INTERVAL = 10 * 60 * 1000L; // ms
 
 
-    /** Map of incoming transaction that are in the import queue. Key is transaction data, value is whether signature has been validated. */
-    private final Map<TransactionData, Boolean> incomingTransactions = Collections.synchronizedMap(new HashMap<>());
+    /** Incoming transactions that are in the import queue, keyed by signature, in pending or signature-validated lanes. */
+    private final IncomingTransactionQueue incomingTransactions = new IncomingTransactionQueue(MAX_INCOMING_TRANSACTIONS);
 
     /** Map of recent invalid unconfirmed transactions. Key is base58 transaction signature, value is do-not-request expiry timestamp. */
     private final Map<String, Long> invalidUnconfirmedTransactions = Collections.synchronizedMap(new HashMap<>());
@@ -84,29 +84,6 @@ public class TransactionImporter extends Thread {
 
     // Incoming transactions queue
 
-    private boolean incomingTransactionQueueContains(byte[] signature) {
-        synchronized (incomingTransactions) {
-            return incomingTransactions.keySet().stream().anyMatch(t -> Arrays.equals(t.getSignature(), signature));
-        }
-    }
-
-    private void removeIncomingTransaction(byte[] signature) {
-        incomingTransactions.keySet().removeIf(t -> Arrays.equals(t.getSignature(), signature));
-    }
-
-    /**
-     * Retrieve all pending unconfirmed transactions that have had their signatures validated.
-     * @return a list of TransactionData objects, with valid signatures.
-     */
-    private List<TransactionData> getCachedSigValidTransactions() {
-        synchronized (this.incomingTransactions) {
-            return this.incomingTransactions.entrySet().stream()
-                    .filter(t -> Boolean.TRUE.equals(t.getValue()))
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-        }
-    }
-
     /**
      * Validate the signatures of any transactions pending import, then update their
      * entries in the queue to mark them as valid/invalid.
@@ -120,10 +97,11 @@ public class TransactionImporter extends Thread {
         }
 
         try (final Repository repository = RepositoryManager.getRepository()) {
-            // Take a snapshot of incomingTransactions, so we don't need to lock it while processing
-            Map<TransactionData, Boolean> incomingTransactionsCopy = Map.copyOf(this.incomingTransactions);
+            // Take snapshots of both lanes, so we don't hold up network threads while processing
+            List<TransactionData> cachedSigValidTransactions = this.incomingTransactions.getValidated();
+            List<TransactionData> unvalidatedTransactionsData = this.incomingTransactions.getPending();
 
-            int unvalidatedCount = Collections.frequency(incomingTransactionsCopy.values(), Boolean.FALSE);
+            int unvalidatedCount = unvalidatedTransactionsData.size();
             int validatedCount = 0;
 
             if (unvalidatedCount > 0) {
@@ -141,72 +119,108 @@ public class TransactionImporter extends Thread {
             // We need the latest block in order to check for expired transactions
             BlockData latestBlock = Controller.getInstance().getChainTip();
 
-            // Signature validation round - does not require blockchain lock
-            for (Map.Entry<TransactionData, Boolean> transactionEntry : incomingTransactionsCopy.entrySet()) {
+            // Batch-verify creator signatures up front, leaving only per-transaction checks (e.g. nonces) for below
+            Map<TransactionData, Transaction> batchVerifiedTransactions = new HashMap<>();
+            if (!isLiteNode && unvalidatedCount > 0) {
+                List<Transaction> unvalidatedTransactions = unvalidatedTransactionsData.stream()
+                        .map(transactionData -> Transaction.fromData(repository, transactionData))
+                        .collect(Collectors.toList());
+
+                Transaction.verifyCreatorSignatures(unvalidatedTransactions);
+
+                unvalidatedTransactions.forEach(transaction -> batchVerifiedTransactions.put(transaction.getTransactionData(), transaction));
+            }
+
+            // Already validated transactions only need checking for expiry
+            for (TransactionData transactionData : cachedSigValidTransactions) {
                 // Quick exit?
                 if (isStopping) {
                     return;
                 }
 
-                TransactionData transactionData = transactionEntry.getKey();
                 Transaction transaction = Transaction.fromData(repository, transactionData);
-                String signature58 = Base58.encode(transactionData.getSignature());
 
                 Long now = NTP.getTime();
                 if (now == null) {
                     return;
                 }
 
-                // Drop expired transactions before they are considered "sig valid"
                 if (latestBlock != null && transaction.getDeadline() <= latestBlock.getTimestamp()) {
+                    String signature58 = Base58.encode(transactionData.getSignature());
                     LOGGER.debug("Removing expired {} transaction {} from import queue", transactionData.getType().name(), signature58);
-                    removeIncomingTransaction(transactionData.getSignature());
+                    this.incomingTransactions.remove(transactionData.getSignature());
                     invalidUnconfirmedTransactions.put(signature58, (now + EXPIRED_TRANSACTION_RECHECK_INTERVAL));
                     continue;
                 }
 
-                // Only validate signature if we haven't already done so
-                Boolean isSigValid = transactionEntry.getValue();
-                if (!Boolean.TRUE.equals(isSigValid)) {
-                    if (isLiteNode) {
-                        // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
-                        sigValidTransactions.add(transaction);
-                        newlyValidSignatures.add(transactionData.getSignature());
-                        // Add mark signature as valid if transaction still exists in import queue
-                        incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
-                        continue;
-                    }
+                LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
 
-                    if (!transaction.isSignatureValid()) {
-                        LOGGER.debug("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
-                        removeIncomingTransaction(transactionData.getSignature());
-
-                        // Also add to invalidIncomingTransactions map
-                        now = NTP.getTime();
-                        if (now != null) {
-                            Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
-                            LOGGER.trace("Adding invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
-                            // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
-                            invalidUnconfirmedTransactions.put(signature58, expiry);
-                        }
+                // Signature valid - add to shortlist
+                sigValidTransactions.add(transaction);
+            }
 
-                        // We're done with this transaction
-                        continue;
-                    }
+            // Signature validation round - does not require blockchain lock
+            for (TransactionData transactionData : unvalidatedTransactionsData) {
+                // Quick exit?
+                if (isStopping) {
+                    return;
+                }
 
-                    // Count the number that were validated in this round, for logging purposes
-                    validatedCount++;
+                Transaction transaction = batchVerifiedTransactions.get(transactionData);
+                if (transaction == null)
+                    transaction = Transaction.fromData(repository, transactionData);
+
+                String signature58 = Base58.encode(transactionData.getSignature());
 
-                    // Add mark signature as valid if transaction still exists in import queue
-                    incomingTransactions.computeIfPresent(transactionData, (k, v) -> Boolean.TRUE);
+                Long now = NTP.getTime();
+                if (now == null) {
+                    return;
+                }
+
+                // Drop expired transactions before they are considered "sig valid"
+                if (latestBlock != null && transaction.getDeadline() <= latestBlock.getTimestamp()) {
+                    LOGGER.debug("Removing expired {} transaction {} from import queue", transactionData.getType().name(), signature58);
+                    this.incomingTransactions.remove(transactionData.getSignature());
+                    invalidUnconfirmedTransactions.put(signature58, (now + EXPIRED_TRANSACTION_RECHECK_INTERVAL));
+                    continue;
+                }
 
-                    // Signature validated in this round
+                if (isLiteNode) {
+                    // Lite nodes can't easily validate transactions, so for now we will have to assume that everything is valid
+                    sigValidTransactions.add(transaction);
                     newlyValidSignatures.add(transactionData.getSignature());
+                    // Mark signature as valid if transaction still exists in import queue
+                    this.incomingTransactions.markValidated(transactionData);
+                    continue;
+                }
 
-                } else {
-                    LOGGER.trace(() -> String.format("Transaction %s known to have valid signature", Base58.encode(transactionData.getSignature())));
+                // Batch verification can very rarely be fooled, so confirm creator signature individually before transaction is relayed or saved
+                if (!transaction.isSignatureValid() || (transaction.isCreatorSignatureBatchVerified() && !transaction.isCreatorSignatureExactlyValid())) {
+                    LOGGER.debug("Ignoring {} transaction {} with invalid signature", transactionData.getType().name(), signature58);
+                    this.incomingTransactions.remove(transactionData.getSignature());
+
+                    // Also add to invalidIncomingTransactions map
+                    now = NTP.getTime();
+                    if (now != null) {
+                        Long expiry = now + INVALID_TRANSACTION_RECHECK_INTERVAL;
+                        LOGGER.trace("Adding invalid transaction {} to invalidUnconfirmedTransactions...", signature58);
+                        // Add to invalidUnconfirmedTransactions so that we don't keep requesting it
+                        invalidUnconfirmedTransactions.put(signature58, expiry);
+                    }
+
+                    // We're done with this transaction
+                    continue;
                 }
 
+                // Count the number that were validated in this round, for logging purposes
+                validatedCount++;
+
+                // Mark signature as valid if transaction still exists in import queue
+                this.incomingTransactions.markValidated(transactionData);
+
+                // Signature validated in this round
+                newlyValidSignatures.add(transactionData.getSignature());
+
                 // Signature valid - add to shortlist
                 sigValidTransactions.add(transaction);
             }
@@ -232,7 +246,7 @@ public class TransactionImporter extends Thread {
      * A database lock is required.
      */
     private void importTransactionsInQueue() {
-        List<TransactionData> sigValidTransactions = this.getCachedSigValidTransactions();
+        List<TransactionData> sigValidTransactions = this.incomingTransactions.getValidated();
         if (sigValidTransactions.isEmpty()) {
             // Don't bother locking if there are no new transactions to process
             return;
@@ -312,7 +326,7 @@ public class TransactionImporter extends Thread {
                     }
 
                     // Transaction has been processed, even if only to reject it
-                    removeIncomingTransaction(transactionData.getSignature());
+                    this.incomingTransactions.remove(transactionData.getSignature());
                 }
             } finally {
                 LOGGER.debug("Finished importing {} incoming transaction{}", processedCount, (processedCount == 1 ? "" : "s"));
@@ -338,13 +352,8 @@ public class TransactionImporter extends Thread {
         TransactionMessage transactionMessage = (TransactionMessage) message;
         TransactionData transactionData = transactionMessage.getTransactionData();
 
-        if (this.incomingTransactions.size() < MAX_INCOMING_TRANSACTIONS) {
-            synchronized (this.incomingTransactions) {
-                if (!incomingTransactionQueueContains(transactionData.getSignature())) {
-                    this.incomingTransactions.put(transactionData, Boolean.FALSE);
-                }
-            }
-        }
+        // Ignored if already queued, or queue is full
+        this.incomingTransactions.add(transactionData);
     }
 
     public void onNetworkGetTransactionMessage(Peer peer, Message message) {
@@ -353,9 +362,7 @@ public class TransactionImporter extends Thread {
 
         try (final Repository repository = RepositoryManager.getRepository()) {
             // Firstly check the sig-valid transactions that are currently queued for import
-            TransactionData transactionData = this.getCachedSigValidTransactions().stream()
-                    .filter(t -> Arrays.equals(signature, t.getSignature()))
-                    .findFirst().orElse(null);
+            TransactionData transactionData = this.incomingTransactions.getValidated(signature);
 
             if (transactionData == null) {
                 // Not found in import queue, so try the database
@@ -411,7 +418,7 @@ public class TransactionImporter extends Thread {
                 }
 
                 // Ignore if this transaction is in the queue
-                if (incomingTransactionQueueContains(signature)) {
+                if (this.incomingTransactions.contains(signature)) {
                     LOGGER.trace(() -> String.format("Ignoring existing queued transaction %s from peer %s", Base58.encode(signature), peer));
                     continue;
                 }
@@ -3,6 +3,8 @@ package org.aquila.controller.arbitrary;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.arbitrary.ArbitraryDataBuildQueueItem;
+import org.aquila.settings.Settings;
+import org.aquila.utils.DaemonThreadFactory;
 import org.aquila.utils.NTP;
 
 import java.util.Collections;
@@ -10,6 +12,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ArbitraryDataBuildManager extends Thread {
 
@@ -18,7 +24,16 @@ public class ArbitraryDataBuildManager extends Thread {
     private static ArbitraryDataBuildManager instance;
 
     private volatile boolean isStopping = false;
-    private boolean buildInProgress = false;
+    /** Number of readers currently building, as several resources (and layers) can build at once */
+    private final AtomicInteger buildsInProgress = new AtomicInteger(0);
+
+    private ExecutorService arbitraryDataBuildExecutor;
+
+    /**
+     * Executor for fetching, decrypting and uncompressing individual layers, shared by all builds.
+     * Layer tasks never wait on this executor themselves, so builds can't deadlock each other.
+     */
+    private final ThreadPoolExecutor arbitraryDataLayerExecutor;
 
     /**
      * Map to keep track of arbitrary transaction resources currently being built (or queued).
@@ -32,7 +47,10 @@ public class ArbitraryDataBuildManager extends Thread {
 
 
     public ArbitraryDataBuildManager() {
-
+        int layerThreadCount = Math.max(1, Settings.getInstance().getArbitraryDataLayerThreadCount());
+        this.arbitraryDataLayerExecutor = new ThreadPoolExecutor(layerThreadCount, layerThreadCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new DaemonThreadFactory("Arbitrary Data Layer Builder"));
+        this.arbitraryDataLayerExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -40,10 +58,10 @@ public class ArbitraryDataBuildManager extends Thread {
         Thread.currentThread().setName("Arbitrary Data Build Manager");
 
         try {
-            // Use a fixed thread pool to execute the arbitrary data build actions (currently just a single thread)
-            // This can be expanded to have multiple threads processing the build queue when needed
-            int threadCount = 5;
-            ExecutorService arbitraryDataBuildExecutor = Executors.newFixedThreadPool(threadCount);
+            // Use a fixed thread pool to execute the arbitrary data build actions
+            // Each thread builds one resource at a time, with its layers processed using arbitraryDataLayerExecutor
+            int threadCount = Math.max(1, Settings.getInstance().getArbitraryDataBuilderThreadCount());
+            arbitraryDataBuildExecutor = Executors.newFixedThreadPool(threadCount);
             for (int i = 0; i < threadCount; i++) {
                 arbitraryDataBuildExecutor.execute(new ArbitraryDataBuilderThread());
             }
@@ -67,9 +85,17 @@ public class ArbitraryDataBuildManager extends Thread {
 
     public void shutdown() {
         isStopping = true;
+        if (arbitraryDataBuildExecutor != null) {
+            arbitraryDataBuildExecutor.shutdownNow();
+        }
+        arbitraryDataLayerExecutor.shutdownNow();
         this.interrupt();
     }
 
+    public ExecutorService getLayerExecutor() {
+        return this.arbitraryDataLayerExecutor;
+    }
+
 
     public void cleanupQueues(Long now) {
         if (now == null) {
@@ -180,12 +206,18 @@ public class ArbitraryDataBuildManager extends Thread {
     }
 
 
+    /** Marks the start (true) or end (false) of a build. Calls must be paired, as several builds can be in progress. */
     public void setBuildInProgress(boolean buildInProgress) {
-        this.buildInProgress = buildInProgress;
+        if (buildInProgress) {
+            this.buildsInProgress.incrementAndGet();
+        }
+        else {
+            this.buildsInProgress.decrementAndGet();
+        }
     }
 
     public boolean getBuildInProgress() {
-        return this.buildInProgress;
+        return this.buildsInProgress.get() > 0;
     }
 
     private void log(ArbitraryDataBuildQueueItem queueItem, String message) {
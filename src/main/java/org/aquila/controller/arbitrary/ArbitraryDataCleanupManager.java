@@ -3,6 +3,7 @@ package org.aquila.controller.arbitrary;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.api.resource.TransactionsResource.ConfirmationStatus;
+import org.aquila.arbitrary.ArbitraryDataChunkStore;
 import org.aquila.data.transaction.ArbitraryTransactionData;
 import org.aquila.data.transaction.TransactionData;
 import org.aquila.repository.DataException;
@@ -419,9 +420,23 @@ public class ArbitraryDataCleanupManager extends Thread {
 					}
 				}
 
+				// If other transactions share this file's bytes, deleting it alone wouldn't free any space,
+				// so delete the rest of its transaction's files instead, along with this reference to the shared bytes
+				ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+				if (chunkStore.getReferenceCount(randomItem.getName()) > 1) {
+					Path relativePath = Paths.get(Settings.getInstance().getDataPath()).toAbsolutePath().relativize(randomItem.toPath().toAbsolutePath());
+					if (relativePath.getName(0).toString().equals("_misc")) {
+						// Not in a transaction's directory
+						return false;
+					}
+
+					return this.safeDeleteDirectory(randomItem.getParentFile(), "shared file at max storage capacity");
+				}
+
 				LOGGER.info("Deleting random file {} because we have reached max storage capacity...", randomItem.toString());
 				boolean success = randomItem.delete();
 				if (success) {
+					chunkStore.remove(randomItem.toPath());
 					try {
 						FilesystemUtils.safeDeleteEmptyParentDirectories(randomItem.toPath().getParent());
 					} catch (IOException e) {
@@ -551,6 +566,7 @@ public class ArbitraryDataCleanupManager extends Thread {
 		LOGGER.info("Deleting directory {} due to reason: {}", directory, reason);
 		try {
 			FilesystemUtils.safeDeleteDirectory(directory.toPath(), true);
+			ArbitraryDataChunkStore.getInstance().removeDirectory(directory.toPath());
 			return true;
 		} catch (IOException e) {
 			LOGGER.debug("Unable to delete directory: {}", directory);
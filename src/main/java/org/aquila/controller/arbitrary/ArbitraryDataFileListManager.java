@@ -479,7 +479,7 @@ public class ArbitraryDataFileListManager {
             if (!isRelayRequest || !Settings.getInstance().isRelayModeEnabled()) {
                 Long now = NTP.getTime();
 
-                if (ArbitraryDataFileManager.getInstance().arbitraryDataFileHashResponses.size() < MAX_FILE_HASH_RESPONSES) {
+                if (ArbitraryDataFileManager.getInstance().arbitraryDataFileRequestScheduler.size() < MAX_FILE_HASH_RESPONSES) {
                     // Keep track of the hashes this peer reports to have access to
                     for (byte[] hash : hashes) {
                         String hash58 = Base58.encode(hash);
@@ -490,7 +490,7 @@ public class ArbitraryDataFileListManager {
                         ArbitraryFileListResponseInfo responseInfo = new ArbitraryFileListResponseInfo(hash58, signature58,
                                 peer, now, arbitraryDataFileListMessage.getRequestTime(), requestHops);
 
-                        ArbitraryDataFileManager.getInstance().arbitraryDataFileHashResponses.add(responseInfo);
+                        ArbitraryDataFileManager.getInstance().arbitraryDataFileRequestScheduler.add(responseInfo);
                     }
                 }
 
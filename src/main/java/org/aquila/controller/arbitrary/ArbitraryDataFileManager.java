@@ -4,9 +4,9 @@ import com.google.common.net.InetAddresses;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.arbitrary.ArbitraryDataFile;
+import org.aquila.arbitrary.ArbitraryDataFileChunk;
 import org.aquila.controller.Controller;
 import org.aquila.data.arbitrary.ArbitraryDirectConnectionInfo;
-import org.aquila.data.arbitrary.ArbitraryFileListResponseInfo;
 import org.aquila.data.arbitrary.ArbitraryRelayInfo;
 import org.aquila.data.network.PeerData;
 import org.aquila.data.transaction.ArbitraryTransactionData;
@@ -19,12 +19,12 @@ import org.aquila.repository.RepositoryManager;
 import org.aquila.settings.Settings;
 import org.aquila.utils.ArbitraryTransactionUtils;
 import org.aquila.utils.Base58;
+import org.aquila.utils.DaemonThreadFactory;
 import org.aquila.utils.NTP;
 
 import java.security.SecureRandom;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class ArbitraryDataFileManager extends Thread {
@@ -46,9 +46,9 @@ public class ArbitraryDataFileManager extends Thread {
     public List<ArbitraryRelayInfo> arbitraryRelayMap = Collections.synchronizedList(new ArrayList<>());
 
     /**
-     * List to keep track of any arbitrary data file hash responses
+     * Queue of arbitrary data file hash responses, for request threads to fetch
      */
-    public final List<ArbitraryFileListResponseInfo> arbitraryDataFileHashResponses = Collections.synchronizedList(new ArrayList<>());
+    public final ArbitraryDataFileRequestScheduler arbitraryDataFileRequestScheduler = new ArbitraryDataFileRequestScheduler();
 
     /**
      * List to keep track of peers potentially available for direct connections, based on recent requests
@@ -63,10 +63,23 @@ public class ArbitraryDataFileManager extends Thread {
     private Map<String, Long> recentDataRequests = Collections.synchronizedMap(new HashMap<>());
 
 
+    /**
+     * Chunk request windows, keyed by peer, shared by all downloads
+     */
+    private final Map<Peer, ArbitraryDataFilePeerWindow> peerWindows = new ConcurrentHashMap<>();
+
+    /**
+     * Sends chunk requests, so total number of threads limits chunk requests in flight across all peers
+     */
+    private final ExecutorService arbitraryDataFileFetchExecutor;
+
+
     public static int MAX_FILE_HASH_RESPONSES = 1000;
 
 
     private ArbitraryDataFileManager() {
+        int fetchThreadCount = Settings.getInstance().getArbitraryDataFileFetchThreadCount();
+        this.arbitraryDataFileFetchExecutor = Executors.newFixedThreadPool(fetchThreadCount, new DaemonThreadFactory("Arbitrary Data File Fetcher"));
     }
 
     public static ArbitraryDataFileManager getInstance() {
@@ -99,6 +112,7 @@ public class ArbitraryDataFileManager extends Thread {
 
     public void shutdown() {
         isStopping = true;
+        this.arbitraryDataFileFetchExecutor.shutdownNow();
         this.interrupt();
     }
 
@@ -112,24 +126,48 @@ public class ArbitraryDataFileManager extends Thread {
 
         final long relayMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_RELAY_TIMEOUT;
         arbitraryRelayMap.removeIf(entry -> entry == null || entry.getTimestamp() == null || entry.getTimestamp() < relayMinimumTimestamp);
-        arbitraryDataFileHashResponses.removeIf(entry -> entry.getTimestamp() < relayMinimumTimestamp);
+        arbitraryDataFileRequestScheduler.expire(now);
 
         final long directConnectionInfoMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_DIRECT_CONNECTION_INFO_TIMEOUT;
         directConnectionInfo.removeIf(entry -> entry.getTimestamp() < directConnectionInfoMinimumTimestamp);
 
         final long recentDataRequestMinimumTimestamp = now - ArbitraryDataManager.getInstance().ARBITRARY_RECENT_DATA_REQUESTS_TIMEOUT;
         recentDataRequests.entrySet().removeIf(entry -> entry.getValue() < recentDataRequestMinimumTimestamp);
+
+        // Peer windows use local time
+        final long peerWindowNow = System.currentTimeMillis();
+        peerWindows.values().removeIf(peerWindow -> peerWindow.isIdle(peerWindowNow));
     }
 
 
 
     // Fetch data files by hash
 
-    public boolean fetchArbitraryDataFiles(Repository repository,
-                                           Peer peer,
-                                           byte[] signature,
+    /** Outcome of a single chunk request */
+    private static class ChunkResult {
+        private final String hash58;
+        private final Peer peer;
+        private final boolean success;
+
+        private ChunkResult(String hash58, Peer peer, boolean success) {
+            this.hash58 = hash58;
+            this.peer = peer;
+            this.success = success;
+        }
+    }
+
+    /**
+     * Fetches a transaction's missing chunks from all peers that reported having them.
+     * <p>
+     * Several requests are kept in flight per peer, as allowed by each peer's {@link ArbitraryDataFilePeerWindow}.
+     * Chunks that a peer fails to deliver are retried with other peers, and that peer isn't asked for more.
+     *
+     * @param peersByHash58 peers that reported having each chunk, in order of preference
+     * @return true if at least one chunk was received
+     */
+    public boolean fetchArbitraryDataFiles(byte[] signature,
                                            ArbitraryTransactionData arbitraryTransactionData,
-                                           List<byte[]> hashes) throws DataException {
+                                           Map<String, List<Peer>> peersByHash58) throws DataException {
 
         // Load data file(s)
         ArbitraryDataFile arbitraryDataFile = ArbitraryDataFile.fromHash(arbitraryTransactionData.getData(), signature);
@@ -137,44 +175,61 @@ public class ArbitraryDataFileManager extends Thread {
         arbitraryDataFile.setMetadataHash(metadataHash);
         boolean receivedAtLeastOneFile = false;
 
-        // Now fetch actual data from this peer
-        for (byte[] hash : hashes) {
-            if (isStopping) {
-                return false;
+        // Chunks we already hold for other transactions are linked rather than fetched again, if we're allowed to store them
+        boolean canLinkExisting = ArbitraryDataStorageManager.getInstance().canStoreData(arbitraryTransactionData);
+
+        Deque<String> pendingHashes = new ArrayDeque<>();
+        for (String hash58 : peersByHash58.keySet()) {
+            byte[] hash = Base58.decode(hash58);
+            if (arbitraryDataFile.chunkExists(hash))
+                continue;
+
+            if (canLinkExisting && ArbitraryDataFileChunk.fromHash(hash, signature).linkExisting()) {
+                receivedAtLeastOneFile = true;
+                continue;
             }
-            String hash58 = Base58.encode(hash);
-            if (!arbitraryDataFile.chunkExists(hash)) {
-                // Only request the file if we aren't already requesting it from someone else
-                if (!arbitraryDataFileRequests.containsKey(Base58.encode(hash))) {
-                    LOGGER.debug("Requesting data file {} from peer {}", hash58, peer);
-                    Long startTime = NTP.getTime();
-                    ArbitraryDataFileMessage receivedArbitraryDataFileMessage = fetchArbitraryDataFile(peer, null, signature, hash, null);
-                    Long endTime = NTP.getTime();
-                    if (receivedArbitraryDataFileMessage != null && receivedArbitraryDataFileMessage.getArbitraryDataFile() != null) {
-                        LOGGER.debug("Received data file {} from peer {}. Time taken: {} ms", receivedArbitraryDataFileMessage.getArbitraryDataFile().getHash58(), peer, (endTime-startTime));
-                        receivedAtLeastOneFile = true;
-
-                        // Remove this hash from arbitraryDataFileHashResponses now that we have received it
-                        arbitraryDataFileHashResponses.remove(hash58);
-                    }
-                    else {
-                        LOGGER.debug("Peer {} didn't respond with data file {} for signature {}. Time taken: {} ms", peer, Base58.encode(hash), Base58.encode(signature), (endTime-startTime));
 
-                        // Remove this hash from arbitraryDataFileHashResponses now that we have failed to receive it
-                        arbitraryDataFileHashResponses.remove(hash58);
+            pendingHashes.add(hash58);
+        }
+
+        Set<Peer> failedPeers = new HashSet<>();
+        CompletionService<ChunkResult> completionService = new ExecutorCompletionService<>(this.arbitraryDataFileFetchExecutor);
+        int inFlight = 0;
 
-                        // Stop asking for files from this peer
-                        break;
-                    }
+        try {
+            while (!isStopping) {
+                inFlight += this.dispatchChunkRequests(signature, pendingHashes, peersByHash58, failedPeers, completionService);
+
+                if (inFlight == 0 && pendingHashes.isEmpty())
+                    break;
+
+                // If all suitable peers are busy with other downloads then we have nothing in flight, so check back soon
+                Future<ChunkResult> future = completionService.poll(inFlight > 0 ? 1000L : 100L, TimeUnit.MILLISECONDS);
+                if (future == null)
+                    continue;
+
+                --inFlight;
+
+                ChunkResult chunkResult;
+                try {
+                    chunkResult = future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.debug("Unexpected exception fetching data file: {}", e.getCause().getMessage());
+                    continue;
                 }
-                else {
-                    LOGGER.trace("Already requesting data file {} for signature {} from peer {}", arbitraryDataFile, Base58.encode(signature), peer);
+
+                if (chunkResult.success) {
+                    receivedAtLeastOneFile = true;
+                    continue;
                 }
+
+                // Stop asking for files from this peer, but give someone else a chance to send this chunk
+                failedPeers.add(chunkResult.peer);
+                pendingHashes.addFirst(chunkResult.hash58);
             }
-            else {
-                // Remove this hash from arbitraryDataFileHashResponses because we have a local copy
-                arbitraryDataFileHashResponses.remove(hash58);
-            }
+        } catch (InterruptedException e) {
+            // Requests still in flight will release their peer windows when they complete
+            Thread.currentThread().interrupt();
         }
 
         if (receivedAtLeastOneFile) {
@@ -193,6 +248,96 @@ public class ArbitraryDataFileManager extends Thread {
         return receivedAtLeastOneFile;
     }
 
+    /** Sends requests for pending chunks, where candidate peers have space in their windows. Returns number of requests sent. */
+    private int dispatchChunkRequests(byte[] signature, Deque<String> pendingHashes, Map<String, List<Peer>> peersByHash58,
+                                       Set<Peer> failedPeers, CompletionService<ChunkResult> completionService) {
+        int dispatchCount = 0;
+        long now = System.currentTimeMillis();
+
+        Iterator<String> iterator = pendingHashes.iterator();
+        while (iterator.hasNext()) {
+            String hash58 = iterator.next();
+
+            if (arbitraryDataFileRequests.containsKey(hash58)) {
+                // Someone else is already fetching this chunk
+                iterator.remove();
+                continue;
+            }
+
+            List<Peer> candidatePeers = peersByHash58.get(hash58).stream()
+                    .filter(peer -> !failedPeers.contains(peer))
+                    .collect(Collectors.toList());
+
+            if (candidatePeers.isEmpty()) {
+                LOGGER.debug("No remaining peers to fetch data file {} for signature {}", hash58, Base58.encode(signature));
+                iterator.remove();
+                continue;
+            }
+
+            Peer peer = this.acquirePeer(candidatePeers, now);
+            if (peer == null)
+                // All candidate peers are busy
+                continue;
+
+            iterator.remove();
+
+            byte[] hash = Base58.decode(hash58);
+            completionService.submit(() -> this.fetchChunk(peer, signature, hash));
+            ++dispatchCount;
+        }
+
+        return dispatchCount;
+    }
+
+    /** Returns peer with most space in its window, preferring earlier peers, having reserved a request slot, or null if all are busy. */
+    private Peer acquirePeer(List<Peer> candidatePeers, long now) {
+        List<Peer> sortedPeers = new ArrayList<>(candidatePeers);
+        // Stable sort keeps caller's order of preference for equally busy peers
+        sortedPeers.sort(Comparator.comparingInt((Peer peer) -> this.getPeerWindow(peer, now).getAvailable()).reversed());
+
+        for (Peer peer : sortedPeers)
+            if (this.getPeerWindow(peer, now).tryAcquire(now))
+                return peer;
+
+        return null;
+    }
+
+    private ArbitraryDataFilePeerWindow getPeerWindow(Peer peer, long now) {
+        return this.peerWindows.computeIfAbsent(peer, k -> new ArbitraryDataFilePeerWindow(now));
+    }
+
+    /** Fetches single chunk from peer, releasing peer's window slot afterwards. Never throws, so the chunk's hash isn't lost. */
+    private ChunkResult fetchChunk(Peer peer, byte[] signature, byte[] hash) {
+        String hash58 = Base58.encode(hash);
+        long startTime = System.currentTimeMillis();
+        ArbitraryDataFilePeerWindow peerWindow = this.getPeerWindow(peer, startTime);
+
+        boolean success = false;
+        long bytes = 0;
+        try {
+            LOGGER.debug("Requesting data file {} from peer {}", hash58, peer);
+            ArbitraryDataFileMessage receivedArbitraryDataFileMessage = fetchArbitraryDataFile(peer, null, signature, hash, null);
+            success = receivedArbitraryDataFileMessage != null && receivedArbitraryDataFileMessage.getArbitraryDataFile() != null;
+            if (success)
+                bytes = receivedArbitraryDataFileMessage.getArbitraryDataFile().size();
+
+        } catch (DataException | RuntimeException e) {
+            // Report as a failed request, so the chunk is retried with another peer
+            LOGGER.debug("Unable to fetch data file {} from peer {}: {}", hash58, peer, e.getMessage());
+
+        } finally {
+            long endTime = System.currentTimeMillis();
+            peerWindow.release(success, bytes, endTime);
+
+            if (success)
+                LOGGER.debug("Received data file {} from peer {}. Time taken: {} ms. Peer {}", hash58, peer, (endTime-startTime), peerWindow);
+            else
+                LOGGER.debug("Peer {} didn't respond with data file {} for signature {}. Time taken: {} ms", peer, hash58, Base58.encode(signature), (endTime-startTime));
+        }
+
+        return new ChunkResult(hash58, peer, success);
+    }
+
     private ArbitraryDataFileMessage fetchArbitraryDataFile(Peer peer, Peer requestingPeer, byte[] signature, byte[] hash, Message originalMessage) throws DataException {
         ArbitraryDataFile existingFile = ArbitraryDataFile.fromHash(hash, signature);
         boolean fileAlreadyExists = existingFile.exists();
@@ -0,0 +1,105 @@
+package org.aquila.controller.arbitrary;
+
+/**
+ * Number of chunk requests we allow in flight to a single peer, adjusted from measured throughput.
+ * <p>
+ * Throughput is measured over periods of roughly one window's worth of completed requests.
+ * Window grows by one while growing it keeps improving throughput, shrinks by one when throughput drops,
+ * and halves when a request fails.
+ */
+public class ArbitraryDataFilePeerWindow {
+
+    public static final int INITIAL_WINDOW = 2;
+    public static final int MAX_WINDOW = 8;
+
+    /** Relative change in throughput needed before we adjust window */
+    private static final double THROUGHPUT_CHANGE_THRESHOLD = 0.10;
+
+    /** How long a window can be unused before it is discarded */
+    private static final long IDLE_TIMEOUT = 5 * 60 * 1000L; // ms
+
+    private int window = INITIAL_WINDOW;
+    private int inFlight = 0;
+
+    /** Bytes per ms over last measurement period, or 0 if not yet measured */
+    private double throughput = 0;
+
+    private long periodStart = 0;
+    private long periodBytes = 0;
+    private int periodRequests = 0;
+
+    private long lastUsed;
+
+    public ArbitraryDataFilePeerWindow(long now) {
+        this.lastUsed = now;
+    }
+
+    /** Returns number of additional requests we could send to this peer. */
+    public synchronized int getAvailable() {
+        return Math.max(0, this.window - this.inFlight);
+    }
+
+    /** Reserves a slot for a new request, returning false if window is full. */
+    public synchronized boolean tryAcquire(long now) {
+        if (this.inFlight >= this.window)
+            return false;
+
+        if (this.periodStart == 0)
+            this.periodStart = now;
+
+        ++this.inFlight;
+        this.lastUsed = now;
+        return true;
+    }
+
+    /** Releases slot after request completes, with <tt>bytes</tt> received if successful. */
+    public synchronized void release(boolean success, long bytes, long now) {
+        --this.inFlight;
+        this.lastUsed = now;
+
+        if (!success) {
+            // Peer is struggling, so back off quickly
+            this.window = Math.max(1, this.window / 2);
+            this.resetPeriod();
+            return;
+        }
+
+        this.periodBytes += bytes;
+        ++this.periodRequests;
+
+        if (this.periodRequests < this.window)
+            return;
+
+        double periodThroughput = (double) this.periodBytes / Math.max(1L, now - this.periodStart);
+
+        if (this.throughput == 0 || periodThroughput > this.throughput * (1 + THROUGHPUT_CHANGE_THRESHOLD))
+            // More requests in flight helped (or we're probing), so try more
+            this.window = Math.min(MAX_WINDOW, this.window + 1);
+        else if (periodThroughput < this.throughput * (1 - THROUGHPUT_CHANGE_THRESHOLD))
+            this.window = Math.max(1, this.window - 1);
+
+        this.throughput = periodThroughput;
+        this.resetPeriod();
+    }
+
+    public synchronized boolean isIdle(long now) {
+        return this.inFlight == 0 && now - this.lastUsed > IDLE_TIMEOUT;
+    }
+
+    public synchronized int getWindow() {
+        return this.window;
+    }
+
+    private void resetPeriod() {
+        // Next period starts with next request
+        this.periodStart = this.inFlight > 0 ? this.lastUsed : 0;
+        this.periodBytes = 0;
+        this.periodRequests = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("window: %d, in flight: %d, throughput: %.1f KiB/s", this.window, this.inFlight, this.throughput * 1000 / 1024);
+    }
+
+}
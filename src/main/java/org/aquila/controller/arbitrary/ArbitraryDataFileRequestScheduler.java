@@ -0,0 +1,369 @@
+package org.aquila.controller.arbitrary;
+
+import org.aquila.data.arbitrary.ArbitraryFileListResponseInfo;
+import org.aquila.network.Peer;
+import org.aquila.utils.NTP;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Queue of chunk hashes that peers have told us they can supply, in response to our file list requests.
+ * <p>
+ * Each chunk is queued once, however many peers report it, and is prioritised by the lowest
+ * number of hops to any of those peers. Each peer's report expires after
+ * {@link ArbitraryDataManager#ARBITRARY_RELAY_TIMEOUT}, using a timer wheel so that expiry
+ * doesn't need to scan the queue.
+ * <p>
+ * Request threads block in {@link #take(long, Predicate)} until there is something to fetch.
+ */
+public class ArbitraryDataFileRequestScheduler {
+
+    /** Chunks to fetch for one transaction */
+    public static class Batch {
+        private final String signature58;
+        private final Map<String, List<Peer>> peersByHash58;
+
+        private Batch(String signature58, Map<String, List<Peer>> peersByHash58) {
+            this.signature58 = signature58;
+            this.peersByHash58 = peersByHash58;
+        }
+
+        public String getSignature58() {
+            return this.signature58;
+        }
+
+        /** Returns peers for each chunk, lowest hops first, with chunks also in order of lowest hops. */
+        public Map<String, List<Peer>> getPeersByHash58() {
+            return this.peersByHash58;
+        }
+    }
+
+    /** Chunk of a specific transaction, with peers that reported having it */
+    private static class ChunkEntry {
+        private final String key;
+        private final String hash58;
+        private final String signature58;
+        /** Lowest hops first */
+        private final List<ArbitraryFileListResponseInfo> responses = new ArrayList<>();
+        /** Live queue item, or null if not queued */
+        private QueueItem queueItem;
+        /** Whether entry was being requested elsewhere when taken, so is waiting to be requeued */
+        private boolean isDeferred;
+
+        private ChunkEntry(String key, String hash58, String signature58) {
+            this.key = key;
+            this.hash58 = hash58;
+            this.signature58 = signature58;
+        }
+
+        private int getLowestHops() {
+            return this.responses.get(0).getRequestHops();
+        }
+    }
+
+    /** Queue items aren't removed when superseded, but skipped when they no longer match their entry's queueItem */
+    private static class QueueItem {
+        private final ChunkEntry entry;
+        private final int hops;
+        private final long sequence;
+
+        private QueueItem(ChunkEntry entry, int hops, long sequence) {
+            this.entry = entry;
+            this.hops = hops;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class TimerItem {
+        private final ChunkEntry entry;
+        /** Response to expire, or null to requeue deferred entry */
+        private final ArbitraryFileListResponseInfo response;
+        private final long dueTick;
+
+        private TimerItem(ChunkEntry entry, ArbitraryFileListResponseInfo response, long dueTick) {
+            this.entry = entry;
+            this.response = response;
+            this.dueTick = dueTick;
+        }
+    }
+
+    private static final long TICK = 1000L; // ms
+    /** Wheel covers relay timeout, so most timers fire on wheel's first pass */
+    private static final int WHEEL_SLOTS = (int) (ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT / TICK) + 4;
+
+    /** How long to wait before reconsidering a chunk that was already being requested */
+    private static final long DEFERRAL_DELAY = 1000L; // ms
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition isNotEmpty = this.lock.newCondition();
+
+    private final PriorityQueue<QueueItem> queue = new PriorityQueue<>(
+            Comparator.comparingInt((QueueItem item) -> item.hops).thenComparingLong(item -> item.sequence));
+    private long nextSequence = 0;
+
+    private final Map<String, ChunkEntry> entriesByKey = new HashMap<>();
+    private final Map<String, Set<ChunkEntry>> entriesBySignature58 = new HashMap<>();
+    private int responseCount = 0;
+
+    @SuppressWarnings("unchecked")
+    private final List<TimerItem>[] wheel = new List[WHEEL_SLOTS];
+    /** Last tick processed by wheel, or null if wheel not started */
+    private Long lastTick = null;
+
+    public ArbitraryDataFileRequestScheduler() {
+        for (int i = 0; i < WHEEL_SLOTS; ++i)
+            this.wheel[i] = new ArrayList<>();
+    }
+
+    /** Adds peer's report of having a chunk, ignoring duplicate reports from the same peer. */
+    public void add(ArbitraryFileListResponseInfo responseInfo) {
+        if (!responseInfo.isValid() || responseInfo.getRequestHops() == null)
+            return;
+
+        String key = responseInfo.getSignature58() + "/" + responseInfo.getHash58();
+
+        this.lock.lock();
+        try {
+            this.advance(responseInfo.getTimestamp());
+
+            ChunkEntry entry = this.entriesByKey.get(key);
+            if (entry == null) {
+                entry = new ChunkEntry(key, responseInfo.getHash58(), responseInfo.getSignature58());
+                this.entriesByKey.put(key, entry);
+                this.entriesBySignature58.computeIfAbsent(entry.signature58, k -> new HashSet<>()).add(entry);
+            } else if (entry.responses.stream().anyMatch(response -> response.getPeer() == responseInfo.getPeer())) {
+                // Already know this peer has this chunk
+                return;
+            }
+
+            // Insert in hops order, after existing responses with same hops
+            int index = 0;
+            while (index < entry.responses.size() && entry.responses.get(index).getRequestHops() <= responseInfo.getRequestHops())
+                ++index;
+
+            entry.responses.add(index, responseInfo);
+            ++this.responseCount;
+
+            long expiry = responseInfo.getTimestamp() + ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT;
+            this.schedule(new TimerItem(entry, responseInfo, expiry / TICK));
+
+            // Queue, or improve priority, unless deferred
+            if (!entry.isDeferred && (entry.queueItem == null || responseInfo.getRequestHops() < entry.queueItem.hops))
+                this.enqueue(entry);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns highest priority chunk, along with any other queued chunks for same transaction,
+     * waiting up to <tt>timeout</tt> ms if there's nothing to fetch.
+     * <p>
+     * Chunks for which <tt>isBeingRequested</tt> returns true are deferred briefly, in case that request fails.
+     *
+     * @return batch of chunks, or null if timeout elapsed
+     * @throws InterruptedException
+     */
+    public Batch take(long timeout, Predicate<String> isBeingRequested) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        this.lock.lockInterruptibly();
+        try {
+            while (true) {
+                Long now = NTP.getTime();
+                if (now != null)
+                    this.advance(now);
+
+                ChunkEntry entry = this.pollEntry();
+
+                if (entry != null && isBeingRequested.test(entry.hash58)) {
+                    this.defer(entry, now);
+                    continue;
+                }
+
+                if (entry != null)
+                    return this.removeBatch(entry, isBeingRequested, now);
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return null;
+
+                // Wake up at least every tick to advance timer wheel
+                this.isNotEmpty.await(Math.min(remaining, TICK), TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** Expires responses older than relay timeout, relative to <tt>now</tt>. */
+    public void expire(long now) {
+        this.lock.lock();
+        try {
+            this.advance(now);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /** Returns number of peer responses held. */
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.responseCount;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // Must be called with lock held
+
+    private void enqueue(ChunkEntry entry) {
+        entry.queueItem = new QueueItem(entry, entry.getLowestHops(), this.nextSequence++);
+        this.queue.add(entry.queueItem);
+        this.isNotEmpty.signal();
+    }
+
+    /** Returns entry for highest priority live queue item, or null if queue is empty. */
+    private ChunkEntry pollEntry() {
+        QueueItem item;
+        while ((item = this.queue.poll()) != null) {
+            if (item.entry.queueItem != item)
+                // Superseded
+                continue;
+
+            item.entry.queueItem = null;
+            return item.entry;
+        }
+
+        return null;
+    }
+
+    private void defer(ChunkEntry entry, Long now) {
+        entry.isDeferred = true;
+
+        long retryTime = (now != null ? now : System.currentTimeMillis()) + DEFERRAL_DELAY;
+        this.schedule(new TimerItem(entry, null, retryTime / TICK));
+    }
+
+    private Batch removeBatch(ChunkEntry firstEntry, Predicate<String> isBeingRequested, Long now) {
+        List<ChunkEntry> batchEntries = new ArrayList<>();
+        batchEntries.add(firstEntry);
+
+        List<ChunkEntry> otherEntries = new ArrayList<>(this.entriesBySignature58.get(firstEntry.signature58));
+        otherEntries.sort(Comparator.comparingInt(ChunkEntry::getLowestHops));
+
+        for (ChunkEntry entry : otherEntries) {
+            // Skip first entry, and those that are deferred
+            if (entry == firstEntry || entry.isDeferred)
+                continue;
+
+            entry.queueItem = null;
+
+            if (isBeingRequested.test(entry.hash58))
+                this.defer(entry, now);
+            else
+                batchEntries.add(entry);
+        }
+
+        Map<String, List<Peer>> peersByHash58 = new LinkedHashMap<>();
+        for (ChunkEntry entry : batchEntries) {
+            this.remove(entry);
+
+            List<Peer> peers = new ArrayList<>(entry.responses.size());
+            for (ArbitraryFileListResponseInfo response : entry.responses)
+                peers.add(response.getPeer());
+
+            peersByHash58.put(entry.hash58, peers);
+        }
+
+        return new Batch(firstEntry.signature58, peersByHash58);
+    }
+
+    /** Removes entry from indexes. Any pending timers for entry are ignored when they fire. */
+    private void remove(ChunkEntry entry) {
+        this.entriesByKey.remove(entry.key);
+
+        Set<ChunkEntry> signatureEntries = this.entriesBySignature58.get(entry.signature58);
+        signatureEntries.remove(entry);
+        if (signatureEntries.isEmpty())
+            this.entriesBySignature58.remove(entry.signature58);
+
+        this.responseCount -= entry.responses.size();
+        entry.queueItem = null;
+    }
+
+    private void schedule(TimerItem timerItem) {
+        if (this.lastTick == null)
+            this.lastTick = System.currentTimeMillis() / TICK;
+
+        // Overdue timers fire on next tick
+        long slotTick = Math.max(timerItem.dueTick, this.lastTick + 1);
+        this.wheel[(int) (slotTick % WHEEL_SLOTS)].add(timerItem);
+    }
+
+    /** Fires timers due up to and including <tt>now</tt>. */
+    private void advance(long now) {
+        long nowTick = now / TICK;
+
+        if (this.lastTick == null) {
+            this.lastTick = nowTick;
+            return;
+        }
+
+        // If we've fallen more than a whole wheel behind, each slot only needs processing once
+        long lastSlotTick = Math.min(nowTick, this.lastTick + WHEEL_SLOTS);
+
+        for (long tick = this.lastTick + 1; tick <= lastSlotTick; ++tick) {
+            Iterator<TimerItem> iterator = this.wheel[(int) (tick % WHEEL_SLOTS)].iterator();
+
+            while (iterator.hasNext()) {
+                TimerItem timerItem = iterator.next();
+
+                // Not due until a later pass of the wheel
+                if (timerItem.dueTick > nowTick)
+                    continue;
+
+                iterator.remove();
+                this.fire(timerItem);
+            }
+        }
+
+        this.lastTick = Math.max(this.lastTick, nowTick);
+    }
+
+    private void fire(TimerItem timerItem) {
+        ChunkEntry entry = timerItem.entry;
+
+        // Entry already taken, or expired
+        if (this.entriesByKey.get(entry.key) != entry)
+            return;
+
+        if (timerItem.response == null) {
+            // Deferral over
+            entry.isDeferred = false;
+            this.enqueue(entry);
+
+            return;
+        }
+
+        if (!entry.responses.remove(timerItem.response))
+            return;
+
+        --this.responseCount;
+
+        if (entry.responses.isEmpty()) {
+            this.remove(entry);
+            return;
+        }
+
+        // Lowest hops might have changed
+        if (entry.queueItem != null && entry.queueItem.hops != entry.getLowestHops())
+            this.enqueue(entry);
+    }
+
+}
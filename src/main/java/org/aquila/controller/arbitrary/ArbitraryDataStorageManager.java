@@ -3,6 +3,7 @@ package org.aquila.controller.arbitrary;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.aquila.arbitrary.ArbitraryDataChunkStore;
 import org.aquila.data.transaction.ArbitraryTransactionData;
 import org.aquila.data.transaction.TransactionData;
 import org.aquila.list.ResourceListManager;
@@ -90,8 +91,9 @@ public class ArbitraryDataStorageManager extends Thread {
                 }
 
                 // Check the total directory size if we haven't in a while
+                // This also rebuilds the chunk index, correcting any files added or removed externally
                 if (this.shouldCalculateDirectorySize(now)) {
-                    this.calculateDirectorySize(now);
+                    this.calculateDirectorySize(now, true);
                 }
 
                 Thread.sleep(59000);
@@ -104,6 +106,7 @@ public class ArbitraryDataStorageManager extends Thread {
     public void shutdown() {
         isStopping = true;
         this.interrupt();
+        ArbitraryDataChunkStore.getInstance().clear();
         instance = null;
     }
 
@@ -429,6 +432,16 @@ public class ArbitraryDataStorageManager extends Thread {
     }
 
     public void calculateDirectorySize(Long now) {
+        this.calculateDirectorySize(now, false);
+    }
+
+    /**
+     * Calculates bytes used by data and temp directories, counting data shared between transactions once.
+     *
+     * @param now
+     * @param rebuildIndex - whether to also rebuild the chunk index from the data directory
+     */
+    private void calculateDirectorySize(Long now, boolean rebuildIndex) {
         if (now == null) {
             return;
         }
@@ -447,8 +460,12 @@ public class ArbitraryDataStorageManager extends Thread {
         // Calculate total size of data directory
         LOGGER.trace("Calculating data directory size...");
         Path dataDirectoryPath = Paths.get(Settings.getInstance().getDataPath());
-        if (dataDirectoryPath.toFile().exists()) {
-            totalSize += FileUtils.sizeOfDirectory(dataDirectoryPath.toFile());
+        try {
+            ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+            totalSize += rebuildIndex ? chunkStore.rebuild() : chunkStore.calculateUniqueBytes();
+        } catch (IOException e) {
+            LOGGER.info("Unable to calculate data directory size: {}", e.getMessage());
+            return;
         }
 
         // Add total size of temp directory, if it's not already inside the data directory
@@ -456,7 +473,7 @@ public class ArbitraryDataStorageManager extends Thread {
         if (tempDirectoryPath.toFile().exists()) {
             if (!FilesystemUtils.isChild(tempDirectoryPath, dataDirectoryPath)) {
                 LOGGER.trace("Calculating temp directory size...");
-                totalSize += FileUtils.sizeOfDirectory(dataDirectoryPath.toFile());
+                totalSize += FileUtils.sizeOfDirectory(tempDirectoryPath.toFile());
             }
         }
 
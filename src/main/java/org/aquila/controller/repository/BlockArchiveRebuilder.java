@@ -58,6 +58,8 @@ public class BlockArchiveRebuilder {
                     if (startHeight >= maximumArchiveHeight) {
                         // We've finished.
                         // Delete existing archive and move the newly built one into its place
+                        // (closing any open archive files first)
+                        BlockArchiveReader.getInstance().invalidateFileListCache();
                         FileUtils.deleteDirectory(originalArchivePath.toFile());
                         FileUtils.moveDirectory(newArchivePath.toFile(), originalArchivePath.toFile());
                         BlockArchiveReader.getInstance().invalidateFileListCache();
@@ -5,6 +5,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aquila.controller.Controller;
 import org.aquila.data.block.BlockData;
+import org.aquila.repository.BlockArchiveReader;
 import org.aquila.repository.DataException;
 import org.aquila.repository.Repository;
 import org.aquila.settings.Settings;
@@ -117,6 +118,7 @@ public class PruneManager {
             Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive");
             if (archivePath.toFile().exists()) {
                 LOGGER.info("Deleting block archive because we are in top-only mode...");
+                BlockArchiveReader.getInstance().invalidateFileListCache();
                 FileUtils.deleteDirectory(archivePath.toFile());
             }
 
@@ -114,7 +114,7 @@ public class TradeBot implements Listener {
 	private long nextTradePresenceBroadcastTimestamp = 0L;
 
 	private TradeBot() {
-		EventBus.INSTANCE.addListener(event -> TradeBot.getInstance().listen(event));
+		EventBus.INSTANCE.addListener(event -> TradeBot.getInstance().listen(event), EventBus.DeliveryMode.ASYNC);
 	}
 
 	public static synchronized TradeBot getInstance() {
@@ -0,0 +1,475 @@
+package org.aquila.crosschain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.aquila.api.model.CrossChainOfferSummary;
+import org.aquila.controller.Synchronizer;
+import org.aquila.data.at.ATData;
+import org.aquila.data.at.ATStateData;
+import org.aquila.data.block.BlockData;
+import org.aquila.data.block.BlockSummaryData;
+import org.aquila.data.crosschain.CrossChainTradeData;
+import org.aquila.event.Event;
+import org.aquila.event.EventBus;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.utils.ByteArray;
+import org.aquila.utils.NTP;
+
+/**
+ * In-memory index of cross-chain trades, by ACCT code hash and trade mode.
+ * <p>
+ * Index holds all OFFERING trades, REDEEMED/REFUNDED/CANCELLED trades from the last 24 hours,
+ * and any other trades that have changed since the index was built.
+ * <p>
+ * Index is brought up to date with the chain tip incrementally, using only the AT states
+ * saved by blocks since the last update. Blocks orphaned since the last update are detected
+ * by comparing signatures of recently indexed blocks, and trades changed by orphaned blocks
+ * are re-evaluated. If the chain has moved too far since the last update, the index is rebuilt.
+ * <p>
+ * Readers use an immutable {@link Snapshot}. Trades whose mode changed are passed to
+ * {@link OfferListener}s after each update.
+ */
+public class TradeOfferIndex {
+
+	private static final Logger LOGGER = LogManager.getLogger(TradeOfferIndex.class);
+
+	/** Maximum number of blocks to process incrementally, and depth of orphaning we can detect. Beyond this we rebuild. */
+	private static final int MAX_INCREMENTAL_BLOCKS = 200;
+
+	private static final long HISTORIC_PERIOD = 24 * 60 * 60 * 1000L; // ms
+
+	public interface OfferListener {
+		/**
+		 * Called with trades whose mode changed during an index update, keyed by foreign blockchain name.
+		 * <p>
+		 * Called while index is locked, so listeners must not block.
+		 */
+		void onOfferChanges(Map<String, List<CrossChainOfferSummary>> changedOffersByBlockchain);
+	}
+
+	private static class IndexedTrade {
+		private final ByteArray codeHash;
+		private final String blockchain;
+		/** Height of AT state used to produce trade data */
+		private final int height;
+		private final CrossChainTradeData tradeData;
+		private final CrossChainOfferSummary offerSummary;
+
+		private IndexedTrade(ByteArray codeHash, String blockchain, int height, CrossChainTradeData tradeData, CrossChainOfferSummary offerSummary) {
+			this.codeHash = codeHash;
+			this.blockchain = blockchain;
+			this.height = height;
+			this.tradeData = tradeData;
+			this.offerSummary = offerSummary;
+		}
+
+		private AcctMode getMode() {
+			return this.tradeData.mode;
+		}
+	}
+
+	/** Immutable view of index at a particular chain tip. */
+	public static class Snapshot {
+		private final byte[] chainTipSignature;
+		private final Map<ByteArray, Map<AcctMode, List<CrossChainTradeData>>> tradesByCodeHashAndMode;
+		private final Map<String, List<CrossChainOfferSummary>> currentSummariesByBlockchain;
+		private final Map<String, List<CrossChainOfferSummary>> historicSummariesByBlockchain;
+
+		private Snapshot(byte[] chainTipSignature, Map<ByteArray, Map<AcctMode, Map<String, IndexedTrade>>> tradesByCodeHashAndMode) {
+			this.chainTipSignature = chainTipSignature;
+			this.tradesByCodeHashAndMode = new HashMap<>();
+			this.currentSummariesByBlockchain = new HashMap<>();
+			this.historicSummariesByBlockchain = new HashMap<>();
+
+			for (Map.Entry<ByteArray, Map<AcctMode, Map<String, IndexedTrade>>> codeHashEntry : tradesByCodeHashAndMode.entrySet()) {
+				Map<AcctMode, List<CrossChainTradeData>> tradesByMode = new EnumMap<>(AcctMode.class);
+
+				for (Map.Entry<AcctMode, Map<String, IndexedTrade>> modeEntry : codeHashEntry.getValue().entrySet()) {
+					AcctMode mode = modeEntry.getKey();
+					List<CrossChainTradeData> trades = new ArrayList<>(modeEntry.getValue().size());
+
+					for (IndexedTrade indexedTrade : modeEntry.getValue().values()) {
+						trades.add(indexedTrade.tradeData);
+
+						if (mode == AcctMode.OFFERING)
+							this.currentSummariesByBlockchain.computeIfAbsent(indexedTrade.blockchain, k -> new ArrayList<>()).add(indexedTrade.offerSummary);
+						else if (isHistoric(mode))
+							this.historicSummariesByBlockchain.computeIfAbsent(indexedTrade.blockchain, k -> new ArrayList<>()).add(indexedTrade.offerSummary);
+					}
+
+					tradesByMode.put(mode, trades);
+				}
+
+				this.tradesByCodeHashAndMode.put(codeHashEntry.getKey(), tradesByMode);
+			}
+		}
+
+		public byte[] getChainTipSignature() {
+			return this.chainTipSignature;
+		}
+
+		/** Returns copies of trades with passed ACCT code hash and mode, safe for caller to modify. */
+		public List<CrossChainTradeData> getTrades(byte[] codeHash, AcctMode mode) {
+			Map<AcctMode, List<CrossChainTradeData>> tradesByMode = this.tradesByCodeHashAndMode.get(ByteArray.wrap(codeHash));
+			if (tradesByMode == null)
+				return new ArrayList<>();
+
+			List<CrossChainTradeData> trades = tradesByMode.getOrDefault(mode, Collections.emptyList());
+
+			List<CrossChainTradeData> tradeCopies = new ArrayList<>(trades.size());
+			for (CrossChainTradeData tradeData : trades)
+				tradeCopies.add(new CrossChainTradeData(tradeData));
+
+			return tradeCopies;
+		}
+
+		/**
+		 * Returns OFFERING trade summaries, and optionally recent REDEEMED/REFUNDED/CANCELLED trade summaries.
+		 *
+		 * @param foreignBlockchain blockchain name, or null for all blockchains
+		 */
+		public List<CrossChainOfferSummary> getOfferSummaries(String foreignBlockchain, boolean includeHistoric) {
+			List<CrossChainOfferSummary> offerSummaries = new ArrayList<>();
+
+			addSummaries(offerSummaries, this.currentSummariesByBlockchain, foreignBlockchain);
+
+			if (includeHistoric)
+				addSummaries(offerSummaries, this.historicSummariesByBlockchain, foreignBlockchain);
+
+			return offerSummaries;
+		}
+
+		private static void addSummaries(List<CrossChainOfferSummary> offerSummaries, Map<String, List<CrossChainOfferSummary>> summariesByBlockchain, String foreignBlockchain) {
+			if (foreignBlockchain == null) {
+				summariesByBlockchain.values().forEach(offerSummaries::addAll);
+				return;
+			}
+
+			offerSummaries.addAll(summariesByBlockchain.getOrDefault(foreignBlockchain, Collections.emptyList()));
+		}
+	}
+
+	private static TradeOfferIndex instance;
+
+	/** Foreign blockchain name by ACCT code hash */
+	private final Map<ByteArray, String> blockchainsByCodeHash = new HashMap<>();
+
+	// Manual synchronization using 'this'
+	private final Map<String, IndexedTrade> tradesByAtAddress = new HashMap<>();
+	private final Map<ByteArray, Map<AcctMode, Map<String, IndexedTrade>>> tradesByCodeHashAndMode = new HashMap<>();
+	/** Code hashes of all ATs we've looked up, so we know which AT states are for trades */
+	private final Map<String, ByteArray> codeHashesByAtAddress = new HashMap<>();
+	/** Signatures of recently indexed blocks, by height, to detect orphaning */
+	private final NavigableMap<Integer, byte[]> indexedBlockSignatures = new TreeMap<>();
+
+	private volatile Snapshot snapshot = null;
+
+	private final List<OfferListener> offerListeners = new CopyOnWriteArrayList<>();
+
+	private TradeOfferIndex() {
+		for (SupportedBlockchain blockchain : SupportedBlockchain.values())
+			for (ByteArray codeHash : SupportedBlockchain.getFilteredAcctMap(blockchain).keySet())
+				this.blockchainsByCodeHash.put(codeHash, blockchain.name());
+
+		EventBus.INSTANCE.addListener(this::listen, EventBus.DeliveryMode.ASYNC);
+	}
+
+	public static synchronized TradeOfferIndex getInstance() {
+		if (instance == null)
+			instance = new TradeOfferIndex();
+
+		return instance;
+	}
+
+	public void addOfferListener(OfferListener offerListener) {
+		this.offerListeners.add(offerListener);
+	}
+
+	public void removeOfferListener(OfferListener offerListener) {
+		this.offerListeners.remove(offerListener);
+	}
+
+	private void listen(Event event) {
+		if (!(event instanceof Synchronizer.NewChainTipEvent))
+			return;
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			this.update(repository);
+		} catch (DataException e) {
+			LOGGER.warn(String.format("Repository issue while updating trade offers: %s", e.getMessage()));
+		}
+	}
+
+	/** Returns latest snapshot, or null if index hasn't been built yet. */
+	public Snapshot getLatestSnapshot() {
+		return this.snapshot;
+	}
+
+	/** Returns snapshot matching repository's chain tip, updating index first if need be. */
+	public Snapshot getSnapshot(Repository repository) throws DataException {
+		BlockData chainTip = repository.getBlockRepository().getLastBlock();
+
+		Snapshot currentSnapshot = this.snapshot;
+		if (currentSnapshot != null && Arrays.equals(currentSnapshot.chainTipSignature, chainTip.getSignature()))
+			return currentSnapshot;
+
+		return this.update(repository);
+	}
+
+	/** Brings index up to date with repository's chain tip, notifying listeners of any changed trades. */
+	public synchronized Snapshot update(Repository repository) throws DataException {
+		BlockData chainTip = repository.getBlockRepository().getLastBlock();
+
+		if (this.snapshot != null && Arrays.equals(this.snapshot.chainTipSignature, chainTip.getSignature()))
+			return this.snapshot;
+
+		Map<String, List<CrossChainOfferSummary>> changedOffers = new HashMap<>();
+
+		Integer commonHeight = this.findCommonHeight(repository);
+		if (commonHeight == null || chainTip.getHeight() - commonHeight > MAX_INCREMENTAL_BLOCKS)
+			this.rebuild(repository, chainTip, changedOffers);
+		else
+			this.updateIncrementally(repository, commonHeight, chainTip, changedOffers);
+
+		this.pruneHistoric();
+
+		this.snapshot = new Snapshot(chainTip.getSignature(), this.tradesByCodeHashAndMode);
+
+		if (!changedOffers.isEmpty())
+			for (OfferListener offerListener : this.offerListeners)
+				try {
+					offerListener.onOfferChanges(changedOffers);
+				} catch (Exception e) {
+					// We don't want one listener to break other listeners, or caller
+					LOGGER.warn(() -> String.format("Caught %s from a trade offer listener", e.getClass().getSimpleName()), e);
+				}
+
+		return this.snapshot;
+	}
+
+	/** Returns height of highest indexed block still in repository's chain, or null if none. */
+	private Integer findCommonHeight(Repository repository) throws DataException {
+		for (Map.Entry<Integer, byte[]> entry : this.indexedBlockSignatures.descendingMap().entrySet())
+			if (repository.getBlockRepository().getHeightFromSignature(entry.getValue()) == entry.getKey())
+				return entry.getKey();
+
+		return null;
+	}
+
+	private void updateIncrementally(Repository repository, int commonHeight, BlockData chainTip, Map<String, List<CrossChainOfferSummary>> changedOffers) throws DataException {
+		// Trades changed by orphaned blocks, if any
+		Set<String> changedAtAddresses = new LinkedHashSet<>();
+		for (IndexedTrade indexedTrade : this.tradesByAtAddress.values())
+			if (indexedTrade.height > commonHeight)
+				changedAtAddresses.add(indexedTrade.tradeData.aquilaAtAddress);
+
+		this.indexedBlockSignatures.tailMap(commonHeight, false).clear();
+
+		// Trades changed, or deployed, by new blocks
+		for (int height = commonHeight + 1; height <= chainTip.getHeight(); ++height)
+			for (ATStateData atStateData : repository.getATRepository().getBlockATStatesAtHeight(height))
+				if (this.isTrade(repository, atStateData.getATAddress()))
+					changedAtAddresses.add(atStateData.getATAddress());
+
+		LOGGER.trace(() -> String.format("Re-evaluating %d trade%s from height %d to %d", changedAtAddresses.size(),
+				(changedAtAddresses.size() != 1 ? "s" : ""), commonHeight + 1, chainTip.getHeight()));
+
+		for (String atAddress : changedAtAddresses)
+			this.reindex(repository, atAddress, changedOffers);
+
+		if (commonHeight < chainTip.getHeight())
+			this.addIndexedBlocks(repository, commonHeight + 1, chainTip.getHeight());
+	}
+
+	private void rebuild(Repository repository, BlockData chainTip, Map<String, List<CrossChainOfferSummary>> changedOffers) throws DataException {
+		LOGGER.debug(() -> String.format("Rebuilding trade offer index at height %d", chainTip.getHeight()));
+
+		Map<String, IndexedTrade> previousTrades = new HashMap<>(this.tradesByAtAddress);
+
+		this.tradesByAtAddress.clear();
+		this.tradesByCodeHashAndMode.clear();
+		this.indexedBlockSignatures.clear();
+
+		// All OFFERING trades
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			ACCT acct = acctInfo.getValue().get();
+
+			List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(acctInfo.getKey().value,
+					Boolean.FALSE, acct.getModeByteOffset(), (long) AcctMode.OFFERING.value, null,
+					null, null, null);
+
+			if (atStates == null)
+				throw new DataException("Couldn't fetch current trades from repository");
+
+			for (ATStateData atStateData : atStates)
+				this.index(repository, acctInfo.getKey(), acct, atStateData);
+		}
+
+		// REDEEMED/REFUNDED/CANCELLED trades over the last 24 hours
+		long historicTimestamp = System.currentTimeMillis() - HISTORIC_PERIOD;
+		// Plus one because height is just *before* timestamp
+		int minimumFinalHeight = repository.getBlockRepository().getHeightFromTimestamp(historicTimestamp) + 1;
+
+		for (Map.Entry<ByteArray, Supplier<ACCT>> acctInfo : SupportedBlockchain.getAcctMap().entrySet()) {
+			ACCT acct = acctInfo.getValue().get();
+
+			List<ATStateData> atStates = repository.getATRepository().getMatchingFinalATStates(acctInfo.getKey().value,
+					Boolean.TRUE, null, null, minimumFinalHeight,
+					null, null, null);
+
+			if (atStates == null)
+				throw new DataException("Couldn't fetch historic trades from repository");
+
+			for (ATStateData atStateData : atStates) {
+				IndexedTrade indexedTrade = this.index(repository, acctInfo.getKey(), acct, atStateData);
+
+				if (!isHistoric(indexedTrade.getMode()))
+					this.remove(indexedTrade.tradeData.aquilaAtAddress);
+			}
+		}
+
+		// Any previously indexed trades, e.g. TRADING, not covered above
+		for (String atAddress : previousTrades.keySet())
+			if (!this.tradesByAtAddress.containsKey(atAddress))
+				this.reindex(repository, atAddress, null);
+
+		// Report trades whose mode changed
+		for (IndexedTrade indexedTrade : this.tradesByAtAddress.values()) {
+			IndexedTrade previousTrade = previousTrades.get(indexedTrade.tradeData.aquilaAtAddress);
+
+			if (previousTrade == null || previousTrade.getMode() != indexedTrade.getMode())
+				addChangedOffer(changedOffers, indexedTrade);
+		}
+
+		this.addIndexedBlocks(repository, chainTip.getHeight(), chainTip.getHeight());
+	}
+
+	/** Returns whether AT with passed address is a supported trade AT. */
+	private boolean isTrade(Repository repository, String atAddress) throws DataException {
+		ByteArray codeHash = this.codeHashesByAtAddress.get(atAddress);
+
+		if (codeHash == null) {
+			ATData atData = repository.getATRepository().fromATAddress(atAddress);
+			if (atData == null)
+				return false;
+
+			codeHash = ByteArray.wrap(atData.getCodeHash());
+			this.codeHashesByAtAddress.put(atAddress, codeHash);
+		}
+
+		return this.blockchainsByCodeHash.containsKey(codeHash);
+	}
+
+	/**
+	 * Re-evaluates trade using AT's latest state.
+	 *
+	 * @param changedOffers if not null, trade is added if its mode changed
+	 */
+	private void reindex(Repository repository, String atAddress, Map<String, List<CrossChainOfferSummary>> changedOffers) throws DataException {
+		IndexedTrade previousTrade = this.tradesByAtAddress.get(atAddress);
+
+		ATStateData atStateData = repository.getATRepository().getLatestATState(atAddress);
+		if (atStateData == null || !this.isTrade(repository, atAddress)) {
+			// AT's deployment was orphaned
+			this.remove(atAddress);
+			this.codeHashesByAtAddress.remove(atAddress);
+			return;
+		}
+
+		ByteArray codeHash = this.codeHashesByAtAddress.get(atAddress);
+		ACCT acct = SupportedBlockchain.getAcctByCodeHash(codeHash.value);
+
+		IndexedTrade indexedTrade = this.index(repository, codeHash, acct, atStateData);
+
+		if (changedOffers != null && (previousTrade == null || previousTrade.getMode() != indexedTrade.getMode()))
+			addChangedOffer(changedOffers, indexedTrade);
+	}
+
+	private IndexedTrade index(Repository repository, ByteArray codeHash, ACCT acct, ATStateData atStateData) throws DataException {
+		CrossChainTradeData tradeData = acct.populateTradeData(repository, atStateData);
+
+		long timestamp;
+		if (tradeData.mode == AcctMode.OFFERING)
+			// We want when trade was created, not when it was last updated
+			timestamp = tradeData.creationTimestamp;
+		else
+			timestamp = repository.getBlockRepository().getTimestampFromHeight(atStateData.getHeight());
+
+		IndexedTrade indexedTrade = new IndexedTrade(codeHash, this.blockchainsByCodeHash.get(codeHash), atStateData.getHeight(),
+				tradeData, new CrossChainOfferSummary(tradeData, timestamp));
+
+		this.remove(tradeData.aquilaAtAddress);
+
+		this.tradesByAtAddress.put(tradeData.aquilaAtAddress, indexedTrade);
+		this.tradesByCodeHashAndMode.computeIfAbsent(codeHash, k -> new EnumMap<>(AcctMode.class))
+				.computeIfAbsent(tradeData.mode, k -> new HashMap<>())
+				.put(tradeData.aquilaAtAddress, indexedTrade);
+
+		return indexedTrade;
+	}
+
+	private void remove(String atAddress) {
+		IndexedTrade indexedTrade = this.tradesByAtAddress.remove(atAddress);
+		if (indexedTrade == null)
+			return;
+
+		Map<AcctMode, Map<String, IndexedTrade>> tradesByMode = this.tradesByCodeHashAndMode.get(indexedTrade.codeHash);
+		Map<String, IndexedTrade> trades = tradesByMode.get(indexedTrade.getMode());
+
+		trades.remove(atAddress);
+
+		if (trades.isEmpty())
+			tradesByMode.remove(indexedTrade.getMode());
+	}
+
+	/** Remove any historic trades that are over 24 hours old */
+	private void pruneHistoric() {
+		Long now = NTP.getTime();
+		if (now == null)
+			return;
+
+		final long tooOldTimestamp = now - HISTORIC_PERIOD;
+
+		List<String> tooOldAtAddresses = new ArrayList<>();
+		for (IndexedTrade indexedTrade : this.tradesByAtAddress.values())
+			if (isHistoric(indexedTrade.getMode()) && indexedTrade.offerSummary.getTimestamp() < tooOldTimestamp)
+				tooOldAtAddresses.add(indexedTrade.tradeData.aquilaAtAddress);
+
+		tooOldAtAddresses.forEach(this::remove);
+	}
+
+	private void addIndexedBlocks(Repository repository, int firstHeight, int lastHeight) throws DataException {
+		List<BlockSummaryData> blockSummaries = repository.getBlockRepository().getBlockSummaries(Math.max(firstHeight, lastHeight - MAX_INCREMENTAL_BLOCKS), lastHeight);
+
+		for (BlockSummaryData blockSummary : blockSummaries)
+			this.indexedBlockSignatures.put(blockSummary.getHeight(), blockSummary.getSignature());
+
+		while (this.indexedBlockSignatures.size() > MAX_INCREMENTAL_BLOCKS)
+			this.indexedBlockSignatures.pollFirstEntry();
+	}
+
+	private static void addChangedOffer(Map<String, List<CrossChainOfferSummary>> changedOffers, IndexedTrade indexedTrade) {
+		changedOffers.computeIfAbsent(indexedTrade.blockchain, k -> new ArrayList<>()).add(indexedTrade.offerSummary);
+	}
+
+	private static boolean isHistoric(AcctMode mode) {
+		return mode == AcctMode.REDEEMED || mode == AcctMode.REFUNDED || mode == AcctMode.CANCELLED;
+	}
+
+}
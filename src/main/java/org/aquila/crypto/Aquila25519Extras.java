@@ -10,6 +10,7 @@ import org.bouncycastle.math.raw.Nat256;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Additions to BouncyCastle providing:
@@ -18,12 +19,23 @@ import java.util.Collection;
  *     <li>Ed25519 to X25519 key conversion</li>
  *     <li>Aggregate public keys</li>
  *     <li>Aggregate signatures</li>
+ *     <li>Batch verification of standard signatures</li>
  * </ul>
  */
 public abstract class Aquila25519Extras extends BouncyCastleEd25519 {
 
 	private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
+	/** wNAF width used for per-signature points during batch verification */
+	private static final int BATCH_WNAF_WIDTH = 5;
+	/** Size, in bytes, of random weights applied to each signature during batch verification */
+	private static final int BATCH_WEIGHT_BYTES = 16;
+	/** Encoding of the neutral element, i.e. (0, 1) */
+	private static final byte[] NEUTRAL_POINT = new byte[POINT_BYTES];
+	static {
+		NEUTRAL_POINT[0] = 0x01;
+	}
+
 	public static byte[] toX25519PublicKey(byte[] ed25519PublicKey) {
 		int[] one = new int[X25519Field.SIZE];
 		X25519Field.one(one);
@@ -231,4 +243,142 @@ public abstract class Aquila25519Extras extends BouncyCastleEd25519 {
 
 		return Arrays.equals(check, R);
 	}
+
+	/**
+	 * Verifies multiple standard Ed25519 signatures in one go.
+	 * <p>
+	 * Each signature is given a random 128-bit weight z, then we check that
+	 * [&Sigma;z.s]B - &Sigma;[z]R - &Sigma;[z.k]A is the neutral element.
+	 * All terms share the same point doublings, making this much faster than verifying each signature in turn.
+	 * <p>
+	 * Returns true only if all signatures are valid. If false is returned, at least one signature is invalid,
+	 * but callers need to verify individually to find out which. See {@link Crypto#verifyBatch(List, List, List)}.
+	 * <p>
+	 * <b>NOTE:</b> like {@link #verify(byte[], int, byte[], int, byte[], int, int)}, this is cofactorless.
+	 * Maliciously crafted signatures whose R, or public key, have a small-order component
+	 * can pass with probability of up to 1/8, where individual verification would always fail.
+	 * So results are unsuitable where all nodes must reach the same verdict, e.g. block validation.
+	 */
+	public static boolean verifyBatch(List<byte[]> publicKeys, List<byte[]> signatures, List<byte[]> messages) {
+		final int count = publicKeys.size();
+		if (signatures.size() != count || messages.size() != count)
+			throw new IllegalArgumentException("Batch verification requires same number of public keys, signatures and messages");
+
+		precompute();
+
+		final int tableSize = 1 << (BATCH_WNAF_WIDTH - 2);
+
+		byte[][] wsR = new byte[count][];
+		byte[][] wsA = new byte[count][];
+		PointExt[][] tpR = new PointExt[count][];
+		PointExt[][] tpA = new PointExt[count][];
+
+		// Base point scalar: sum of z.s
+		int[] nB = new int[SCALAR_INTS];
+
+		Digest d = createDigest();
+		byte[] h = new byte[d.getDigestSize()];
+		byte[] zBytes = new byte[BATCH_WEIGHT_BYTES];
+
+		for (int i = 0; i < count; ++i) {
+			byte[] publicKey = publicKeys.get(i);
+			byte[] signature = signatures.get(i);
+			byte[] message = messages.get(i);
+
+			if (publicKey == null || publicKey.length != PUBLIC_KEY_SIZE || signature == null || signature.length != SIGNATURE_SIZE || message == null)
+				return false;
+
+			byte[] s = Arrays.copyOfRange(signature, POINT_BYTES, SIGNATURE_SIZE);
+			if (!checkScalarVar(s))
+				// s out of bounds
+				return false;
+
+			// Both R and A are negated so that valid signatures contribute nothing to the sum
+			PointAffine pR = new PointAffine();
+			if (!decodePointVar(signature, 0, true, pR))
+				// Failed to decode R (includes bounds check)
+				return false;
+
+			PointAffine pA = new PointAffine();
+			if (!decodePointVar(publicKey, 0, true, pA))
+				// Failed to decode
+				return false;
+
+			d.update(signature, 0, POINT_BYTES);
+			d.update(publicKey, 0, POINT_BYTES);
+			d.update(message, 0, message.length);
+			d.doFinal(h, 0);
+
+			int[] nK = new int[SCALAR_INTS];
+			decodeScalar(reduceScalar(h), 0, nK);
+
+			int[] nS = new int[SCALAR_INTS];
+			decodeScalar(s, 0, nS);
+
+			SECURE_RANDOM.nextBytes(zBytes);
+			int[] nZ = new int[SCALAR_INTS];
+			decode32(zBytes, 0, nZ, 0, BATCH_WEIGHT_BYTES / 4);
+
+			Nat256.addTo(multiplyScalars(nZ, nS), nB);
+			// "mod L" on nB
+			if (Nat256.gte(nB, L))
+				Nat256.subFrom(L, nB);
+
+			wsR[i] = getWnafVar(nZ, BATCH_WNAF_WIDTH);
+			wsA[i] = getWnafVar(multiplyScalars(nZ, nK), BATCH_WNAF_WIDTH);
+
+			tpR[i] = pointPrecomputeVar(pointCopy(pR), tableSize);
+			tpA[i] = pointPrecomputeVar(pointCopy(pA), tableSize);
+		}
+
+		byte[] wsB = getWnafVar(nB, WNAF_WIDTH_BASE);
+
+		PointAccum r = new PointAccum();
+		pointSetNeutral(r);
+
+		for (int bit = 252;;) {
+			addWnafDigit(wsB[bit], precompBaseTable, r);
+
+			for (int i = 0; i < count; ++i) {
+				addWnafDigit(wsR[i][bit], tpR[i], r);
+				addWnafDigit(wsA[i][bit], tpA[i], r);
+			}
+
+			if (--bit < 0)
+				break;
+
+			pointDouble(r);
+		}
+
+		byte[] check = new byte[POINT_BYTES];
+		if (0 == encodePoint(r, check, 0))
+			// Failed to encode
+			return false;
+
+		return Arrays.equals(check, NEUTRAL_POINT);
+	}
+
+	/** Returns x.y mod L */
+	private static int[] multiplyScalars(int[] x, int[] y) {
+		int[] product = new int[SCALAR_INTS * 2];
+		Nat256.mul(x, y, product);
+
+		byte[] productBytes = new byte[SCALAR_BYTES * 2];
+		for (int i = 0; i < product.length; ++i)
+			encode32(product[i], productBytes, i * 4);
+
+		int[] result = new int[SCALAR_INTS];
+		decodeScalar(reduceScalar(productBytes), 0, result);
+		return result;
+	}
+
+	private static void addWnafDigit(int digit, PointExt[] table, PointAccum r) {
+		if (digit == 0)
+			return;
+
+		int sign = digit >> 31;
+		int index = (digit ^ sign) >>> 1;
+
+		pointAddVar(sign != 0, table[index], r);
+	}
 }
@@ -7,6 +7,8 @@ import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 
 import org.aquila.account.Account;
 import org.aquila.utils.Base58;
@@ -26,6 +28,9 @@ public abstract class Crypto {
 	public static final byte AT_ADDRESS_VERSION = 28; // C set by sahkan
 	public static final byte NODE_ADDRESS_VERSION = 75; // X set by sahkan
 
+	/** Below this many signatures, batch verification isn't worth the overhead */
+	private static final int MIN_BATCH_VERIFY_SIZE = 4;
+
 	/**
 	 * Returns 32-byte SHA-256 digest of message passed in input.
 	 * 
@@ -265,6 +270,47 @@ public abstract class Crypto {
 		}
 	}
 
+	/**
+	 * Verifies several signatures, returning which, if any, are invalid.
+	 * <p>
+	 * Signatures are verified together as a batch, which is much faster than verifying each in turn.
+	 * If a batch fails then it is split in half and each half retried, down to individual verification,
+	 * so a few bad signatures don't cost us the whole speed-up.
+	 * <p>
+	 * See {@link Aquila25519Extras#verifyBatch(List, List, List)} regarding where batch results can be relied upon.
+	 *
+	 * @return indexes of invalid signatures, empty if all signatures are valid
+	 */
+	public static BitSet verifyBatch(List<byte[]> publicKeys, List<byte[]> signatures, List<byte[]> messages) {
+		if (signatures.size() != publicKeys.size() || messages.size() != publicKeys.size())
+			throw new IllegalArgumentException("Batch verification requires same number of public keys, signatures and messages");
+
+		BitSet invalidIndexes = new BitSet(publicKeys.size());
+		verifyBatch(publicKeys, signatures, messages, 0, publicKeys.size(), invalidIndexes);
+		return invalidIndexes;
+	}
+
+	private static void verifyBatch(List<byte[]> publicKeys, List<byte[]> signatures, List<byte[]> messages, int fromIndex, int toIndex, BitSet invalidIndexes) {
+		if (toIndex - fromIndex < MIN_BATCH_VERIFY_SIZE) {
+			for (int i = fromIndex; i < toIndex; ++i)
+				if (!verify(publicKeys.get(i), signatures.get(i), messages.get(i)))
+					invalidIndexes.set(i);
+
+			return;
+		}
+
+		try {
+			if (Aquila25519Extras.verifyBatch(publicKeys.subList(fromIndex, toIndex), signatures.subList(fromIndex, toIndex), messages.subList(fromIndex, toIndex)))
+				return;
+		} catch (Exception e) {
+			// Fall through to find culprit(s)
+		}
+
+		int midIndex = (fromIndex + toIndex) >>> 1;
+		verifyBatch(publicKeys, signatures, messages, fromIndex, midIndex, invalidIndexes);
+		verifyBatch(publicKeys, signatures, messages, midIndex, toIndex, invalidIndexes);
+	}
+
 	public static byte[] sign(Ed25519PrivateKeyParameters edPrivateKeyParams, byte[] message) {
 		byte[] signature = new byte[SIGNATURE_LENGTH];
 
@@ -1,12 +1,23 @@
 package org.aquila.crypto;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.aquila.utils.DaemonThreadFactory;
 import org.aquila.utils.NTP;
 
 public class MemoryPoW {
 
+	private static final long SEED = 8682522807148012L;
+	private static final long SEED_MULTIPLIER = 1181783497276652981L;
+
+	private static final ThreadFactory WORKER_THREAD_FACTORY = new DaemonThreadFactory("MemoryPoW");
+
 	/**
 	 * Compute a MemoryPoW nonce
 	 *
@@ -17,8 +28,21 @@ public class MemoryPoW {
 	 * @throws TimeoutException
 	 */
 	public static Integer compute2(byte[] data, int workBufferLength, long difficulty) {
+		return MemoryPoW.compute2(data, workBufferLength, difficulty, 1);
+	}
+
+	/**
+	 * Compute a MemoryPoW nonce using <tt>threadCount</tt> threads
+	 *
+	 * @param data
+	 * @param workBufferLength
+	 * @param difficulty
+	 * @param threadCount
+	 * @return
+	 */
+	public static Integer compute2(byte[] data, int workBufferLength, long difficulty, int threadCount) {
 		try {
-			return MemoryPoW.compute2(data, workBufferLength, difficulty, null);
+			return MemoryPoW.compute2(data, workBufferLength, difficulty, null, threadCount);
 
 		} catch (TimeoutException e) {
 			// This won't happen, because above timeout is null
@@ -37,65 +61,102 @@ public class MemoryPoW {
 	 * @throws TimeoutException
 	 */
 	public static Integer compute2(byte[] data, int workBufferLength, long difficulty, Long timeout) throws TimeoutException {
+		return MemoryPoW.compute2(data, workBufferLength, difficulty, timeout, 1);
+	}
+
+	/**
+	 * Compute a MemoryPoW nonce, with optional timeout, using <tt>threadCount</tt> threads.
+	 * <p>
+	 * Nonces are interleaved across threads, each with its own work buffer.
+	 * The lowest valid nonce is returned, so result is the same as a single-threaded search.
+	 *
+	 * @param data
+	 * @param workBufferLength
+	 * @param difficulty
+	 * @param timeout maximum number of milliseconds to compute for before giving up,<br>or null if no timeout
+	 * @param threadCount number of threads to use, with 1 (or less) searching using the current thread only
+	 * @return nonce, or -1 if interrupted
+	 * @throws TimeoutException
+	 */
+	public static Integer compute2(byte[] data, int workBufferLength, long difficulty, Long timeout, int threadCount) throws TimeoutException {
 		long startTime = NTP.getTime();
+		Long deadline = timeout != null ? startTime + timeout : null;
 
-		// Hash data with SHA256
-		byte[] hash = Crypto.digest(data);
+		long[] longHash = longHash(data);
+		int longBufferLength = workBufferLength / 8;
 
-		long[] longHash = new long[4];
-		ByteBuffer byteBuffer = ByteBuffer.wrap(hash);
-		longHash[0] = byteBuffer.getLong();
-		longHash[1] = byteBuffer.getLong();
-		longHash[2] = byteBuffer.getLong();
-		longHash[3] = byteBuffer.getLong();
-		byteBuffer = null;
+		AtomicInteger lowestNonce = new AtomicInteger(Integer.MAX_VALUE);
+		AtomicBoolean isTimedOut = new AtomicBoolean();
+
+		if (threadCount <= 1) {
+			search(longHash, longBufferLength, difficulty, 0, 1, deadline, lowestNonce, isTimedOut);
+		} else {
+			List<Thread> threads = new ArrayList<>(threadCount);
+			for (int t = 0; t < threadCount; ++t) {
+				final int firstNonce = t;
+				threads.add(WORKER_THREAD_FACTORY.newThread(() ->
+						search(longHash, longBufferLength, difficulty, firstNonce, threadCount, deadline, lowestNonce, isTimedOut)));
+			}
 
-		int longBufferLength = workBufferLength / 8;
+			threads.forEach(Thread::start);
+
+			try {
+				for (Thread thread : threads)
+					thread.join();
+			} catch (InterruptedException e) {
+				// Stop workers and exit fast with invalid value
+				threads.forEach(Thread::interrupt);
+				Thread.currentThread().interrupt();
+				return -1;
+			}
+		}
+
+		// A nonce found by one thread is still valid even if another thread reached the deadline
+		if (lowestNonce.get() != Integer.MAX_VALUE)
+			return lowestNonce.get();
+
+		if (isTimedOut.get())
+			throw new TimeoutException("Timeout reached");
+
+		// We've been interrupted, so exit fast with invalid value
+		return -1;
+	}
+
+	/**
+	 * Searches nonces <tt>firstNonce</tt>, <tt>firstNonce + nonceStep</tt>, etc. until a valid nonce is found,
+	 * or we pass <tt>lowestNonce</tt> (found by another thread), or we're interrupted, or deadline is reached.
+	 */
+	private static void search(long[] longHash, int longBufferLength, long difficulty, int firstNonce, int nonceStep,
+			Long deadline, AtomicInteger lowestNonce, AtomicBoolean isTimedOut) {
 		long[] workBuffer = new long[longBufferLength];
 		long[] state = new long[4];
 
-		long seed = 8682522807148012L;
-		long seedMultiplier = 1181783497276652981L;
+		long seed = SEED;
+		for (int i = 0; i <= firstNonce; ++i)
+			seed *= SEED_MULTIPLIER;
 
-		// For each nonce...
-		int nonce = -1;
-		long result = 0;
-		do {
-			++nonce;
+		long seedStep = 1L;
+		for (int i = 0; i < nonceStep; ++i)
+			seedStep *= SEED_MULTIPLIER;
 
-			// If we've been interrupted, exit fast with invalid value
+		// Nonce might overflow if search space is exhausted
+		for (int nonce = firstNonce; nonce >= 0 && nonce < lowestNonce.get(); nonce += nonceStep, seed *= seedStep) {
 			if (Thread.currentThread().isInterrupted())
-				return -1;
+				return;
 
-			if (timeout != null) {
-				long now = NTP.getTime();
-				if (now > startTime + timeout) {
-					throw new TimeoutException("Timeout reached");
+			if (deadline != null) {
+				Long now = NTP.getTime();
+				if (now != null && now > deadline) {
+					isTimedOut.set(true);
+					return;
 				}
 			}
 
-			seed *= seedMultiplier; // per nonce
-
-			state[0] = longHash[0] ^ seed;
-			state[1] = longHash[1] ^ seed;
-			state[2] = longHash[2] ^ seed;
-			state[3] = longHash[3] ^ seed;
-
-			// Fill work buffer with random
-			for (int i = 0; i < workBuffer.length; ++i)
-				workBuffer[i] = xoshiro256p(state);
-
-			// Random bounce through whole buffer
-			result = workBuffer[0];
-			for (int i = 0; i < 1024; ++i) {
-				int index = (int) (xoshiro256p(state) & Integer.MAX_VALUE) % workBuffer.length;
-				result ^= workBuffer[index];
+			if (isValid(longHash, seed, workBuffer, state, difficulty)) {
+				lowestNonce.accumulateAndGet(nonce, Math::min);
+				return;
 			}
-
-			// Return if final value > difficulty
-		} while (Long.numberOfLeadingZeros(result) < difficulty);
-
-		return nonce;
+		}
 	}
 
 	public static boolean verify2(byte[] data, int workBufferLength, long difficulty, int nonce) {
@@ -103,16 +164,7 @@ public class MemoryPoW {
 	}
 
 	public static boolean verify2(byte[] data, long[] workBuffer, int workBufferLength, long difficulty, int nonce) {
-		// Hash data with SHA256
-		byte[] hash = Crypto.digest(data);
-
-		long[] longHash = new long[4];
-		ByteBuffer byteBuffer = ByteBuffer.wrap(hash);
-		longHash[0] = byteBuffer.getLong();
-		longHash[1] = byteBuffer.getLong();
-		longHash[2] = byteBuffer.getLong();
-		longHash[3] = byteBuffer.getLong();
-		byteBuffer = null;
+		long[] longHash = longHash(data);
 
 		int longBufferLength = workBufferLength / 8;
 
@@ -121,12 +173,29 @@ public class MemoryPoW {
 
 		long[] state = new long[4];
 
-		long seed = 8682522807148012L;
-		long seedMultiplier = 1181783497276652981L;
-
+		long seed = SEED;
 		for (int i = 0; i <= nonce; ++i)
-			seed *= seedMultiplier;
+			seed *= SEED_MULTIPLIER;
+
+		return isValid(longHash, seed, workBuffer, state, difficulty);
+	}
+
+	/** Hash data with SHA256, as longs */
+	private static long[] longHash(byte[] data) {
+		byte[] hash = Crypto.digest(data);
+
+		long[] longHash = new long[4];
+		ByteBuffer byteBuffer = ByteBuffer.wrap(hash);
+		longHash[0] = byteBuffer.getLong();
+		longHash[1] = byteBuffer.getLong();
+		longHash[2] = byteBuffer.getLong();
+		longHash[3] = byteBuffer.getLong();
+
+		return longHash;
+	}
 
+	/** Returns whether nonce with passed (per-nonce) seed meets difficulty. */
+	private static boolean isValid(long[] longHash, long seed, long[] workBuffer, long[] state, long difficulty) {
 		state[0] = longHash[0] ^ seed;
 		state[1] = longHash[1] ^ seed;
 		state[2] = longHash[2] ^ seed;
@@ -143,6 +212,7 @@ public class MemoryPoW {
 			result ^= workBuffer[index];
 		}
 
+		// Valid if final value > difficulty
 		return Long.numberOfLeadingZeros(result) >= difficulty;
 	}
 
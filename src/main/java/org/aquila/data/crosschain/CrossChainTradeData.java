@@ -106,6 +106,36 @@ public class CrossChainTradeData {
 	public CrossChainTradeData() {
 	}
 
+	public CrossChainTradeData(CrossChainTradeData other) {
+		this.aquilaAtAddress = other.aquilaAtAddress;
+		this.aquilaCreator = other.aquilaCreator;
+		this.aquilaCreatorTradeAddress = other.aquilaCreatorTradeAddress;
+		this.creatorBitcoinPKH = other.creatorBitcoinPKH;
+		this.creatorForeignPKH = other.creatorForeignPKH;
+		this.creationTimestamp = other.creationTimestamp;
+		this.tradeTimeout = other.tradeTimeout;
+		this.unciaBalance = other.unciaBalance;
+		this.hashOfSecretA = other.hashOfSecretA;
+		this.hashOfSecretB = other.hashOfSecretB;
+		this.unciaAmount = other.unciaAmount;
+		this.aquilaPartnerAddress = other.aquilaPartnerAddress;
+		this.tradeModeTimestamp = other.tradeModeTimestamp;
+		this.refundTimeout = other.refundTimeout;
+		this.tradeRefundHeight = other.tradeRefundHeight;
+		this.expectedBitcoin = other.expectedBitcoin;
+		this.expectedForeignAmount = other.expectedForeignAmount;
+		this.mode = other.mode;
+		this.lockTimeA = other.lockTimeA;
+		this.lockTimeB = other.lockTimeB;
+		this.partnerBitcoinPKH = other.partnerBitcoinPKH;
+		this.partnerForeignPKH = other.partnerForeignPKH;
+		this.aquilaPartnerReceivingAddress = other.aquilaPartnerReceivingAddress;
+		this.foreignBlockchain = other.foreignBlockchain;
+		this.acctName = other.acctName;
+		this.creatorPresenceExpiry = other.creatorPresenceExpiry;
+		this.partnerPresenceExpiry = other.partnerPresenceExpiry;
+	}
+
 	public void duplicateDeprecated() {
 		this.creatorBitcoinPKH = this.creatorForeignPKH;
 		this.expectedBitcoin = this.expectedForeignAmount;
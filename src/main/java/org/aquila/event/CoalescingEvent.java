@@ -0,0 +1,14 @@
+package org.aquila.event;
+
+/**
+ * Event that can be combined with a later event of the same class,
+ * for listeners that haven't yet been sent the earlier event.
+ * <p>
+ * e.g. multiple chain tip changes can be combined into a single change.
+ */
+public interface CoalescingEvent extends Event {
+
+	/** Returns a single event equivalent to this event followed by <tt>laterEvent</tt>. */
+	CoalescingEvent coalesce(CoalescingEvent laterEvent);
+
+}
@@ -1,7 +1,15 @@
 package org.aquila.event;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,28 +19,309 @@ public enum EventBus {
 
 	private static final Logger LOGGER = LogManager.getLogger(EventBus.class);
 
-	private static final List<Listener> LISTENERS = new ArrayList<>();
+	public enum DeliveryMode {
+		/** Listener is called by notifying thread. See <b>WARNING</b> for {@link EventBus#notify(Event)}. */
+		SYNC,
+		/** Listener is called, in event order, by its own thread, using a bounded queue of pending events. */
+		ASYNC;
+	}
+
+	/**
+	 * Maximum number of pending events per ASYNC listener. Oldest events are dropped beyond this,
+	 * except for {@link CoalescingEvent}s, which are never dropped as there is at most one pending per class.
+	 */
+	private static final int MAX_PENDING_EVENTS = 1000;
+
+	/** How long {@link #removeListener(Listener)} waits for an ASYNC listener's current delivery to finish */
+	private static final long STOP_TIMEOUT = 5000L; // ms
+
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class ListenerStats {
+		public String name;
+		public DeliveryMode deliveryMode;
+		public long delivered;
+		/** Events dropped because listener's queue was full */
+		public long dropped;
+		/** Events combined with a pending event, see {@link CoalescingEvent} */
+		public long coalesced;
+		public int pending;
+		/** Time from notification until listener returned */
+		public long averageLatencyMillis;
+		public long maxLatencyMillis;
+
+		protected ListenerStats() {
+		}
+	}
+
+	private static class PendingEvent {
+		private final Event event;
+		/** When event was first notified, for latency stats */
+		private final long notifiedNanos;
+
+		private PendingEvent(Event event, long notifiedNanos) {
+			this.event = event;
+			this.notifiedNanos = notifiedNanos;
+		}
+	}
+
+	private static class Registration {
+		private final Listener listener;
+		private final DeliveryMode deliveryMode;
+		private final String name;
+
+		// ASYNC only
+		private final Deque<PendingEvent> pendingEvents = new ArrayDeque<>();
+		private Thread thread;
+
+		/** Set when listener is removed, so no further events are delivered, even if listener swallows interrupts */
+		private volatile boolean isStopped = false;
+
+		private final LongAdder delivered = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+		private final LongAdder coalesced = new LongAdder();
+		private final LongAdder totalLatencyNanos = new LongAdder();
+		private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+		private Registration(Listener listener, DeliveryMode deliveryMode) {
+			this.listener = listener;
+			this.deliveryMode = deliveryMode;
+			this.name = nameOf(listener);
+
+			if (deliveryMode == DeliveryMode.ASYNC) {
+				this.thread = new Thread(this::run, "EventBus-" + this.name);
+				this.thread.setDaemon(true);
+				this.thread.start();
+			}
+		}
+
+		private void enqueue(Event event, long notifiedNanos) {
+			synchronized (this.pendingEvents) {
+				// Notifying thread might have fetched registrations just before listener was removed
+				if (this.isStopped)
+					return;
+
+				PendingEvent pendingEvent = new PendingEvent(event, notifiedNanos);
+
+				if (event instanceof CoalescingEvent)
+					pendingEvent = this.coalesce(pendingEvent);
+
+				if (this.pendingEvents.size() >= MAX_PENDING_EVENTS) {
+					PendingEvent droppedEvent = this.removeOldestNonCoalescingEvent();
+
+					// Queue only holds coalescing events, so drop new event instead, unless it's coalescing too
+					if (droppedEvent == null && !(event instanceof CoalescingEvent))
+						droppedEvent = pendingEvent;
+
+					if (droppedEvent != null) {
+						this.dropped.increment();
+
+						final Event droppedEventForLog = droppedEvent.event;
+						LOGGER.debug(() -> String.format("Dropped %s for slow listener %s", droppedEventForLog.getClass().getSimpleName(), this.name));
 
+						if (droppedEvent == pendingEvent)
+							return;
+					}
+				}
+
+				this.pendingEvents.addLast(pendingEvent);
+				this.pendingEvents.notifyAll();
+			}
+		}
+
+		/** Removes and returns oldest pending event that isn't a {@link CoalescingEvent}, or null if there isn't one. */
+		private PendingEvent removeOldestNonCoalescingEvent() {
+			Iterator<PendingEvent> iterator = this.pendingEvents.iterator();
+
+			while (iterator.hasNext()) {
+				PendingEvent pendingEvent = iterator.next();
+
+				if (pendingEvent.event instanceof CoalescingEvent)
+					continue;
+
+				iterator.remove();
+				return pendingEvent;
+			}
+
+			return null;
+		}
+
+		/**
+		 * Replaces any pending event of same class with a combined event, which is then queued in place of the latest event.
+		 * Hence combined event is delivered after any other events that were notified in between.
+		 */
+		private PendingEvent coalesce(PendingEvent laterEvent) {
+			Iterator<PendingEvent> iterator = this.pendingEvents.iterator();
+
+			while (iterator.hasNext()) {
+				PendingEvent earlierEvent = iterator.next();
+
+				if (earlierEvent.event.getClass() != laterEvent.event.getClass())
+					continue;
+
+				iterator.remove();
+				this.coalesced.increment();
+
+				CoalescingEvent combinedEvent = ((CoalescingEvent) earlierEvent.event).coalesce((CoalescingEvent) laterEvent.event);
+				return new PendingEvent(combinedEvent, earlierEvent.notifiedNanos);
+			}
+
+			return laterEvent;
+		}
+
+		private void run() {
+			while (true) {
+				PendingEvent pendingEvent;
+
+				synchronized (this.pendingEvents) {
+					while (this.pendingEvents.isEmpty() && !this.isStopped)
+						try {
+							this.pendingEvents.wait();
+						} catch (InterruptedException e) {
+							// Listener removed
+							return;
+						}
+
+					if (this.isStopped)
+						return;
+
+					pendingEvent = this.pendingEvents.pollFirst();
+				}
+
+				this.deliver(pendingEvent.event, pendingEvent.notifiedNanos);
+			}
+		}
+
+		private void deliver(Event event, long notifiedNanos) {
+			// Listener removed, e.g. while notifying thread was iterating over registrations
+			if (this.isStopped)
+				return;
+
+			try {
+				this.listener.listen(event);
+			} catch (Exception e) {
+				// We don't want one listener to break other listeners, or caller
+				LOGGER.warn(() -> String.format("Caught %s from listener %s processing %s", e.getClass().getSimpleName(), this.name, event.getClass().getSimpleName()), e);
+			}
+
+			long latencyNanos = System.nanoTime() - notifiedNanos;
+
+			this.delivered.increment();
+			this.totalLatencyNanos.add(latencyNanos);
+			this.maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+		}
+
+		/**
+		 * Stops delivering events to listener, discarding any pending events.
+		 * <p>
+		 * For ASYNC listeners, also waits for listener's thread to finish any current delivery,
+		 * unless called by listener itself.
+		 */
+		private void stop() {
+			this.isStopped = true;
+
+			if (this.thread == null)
+				return;
+
+			synchronized (this.pendingEvents) {
+				this.pendingEvents.clear();
+				this.pendingEvents.notifyAll();
+			}
+
+			this.thread.interrupt();
+
+			if (this.thread == Thread.currentThread())
+				return;
+
+			try {
+				this.thread.join(STOP_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (this.thread.isAlive())
+				LOGGER.warn(() -> String.format("Listener %s still delivering event %dms after removal", this.name, STOP_TIMEOUT));
+		}
+
+		private ListenerStats getStats() {
+			ListenerStats stats = new ListenerStats();
+
+			stats.name = this.name;
+			stats.deliveryMode = this.deliveryMode;
+			stats.delivered = this.delivered.sum();
+			stats.dropped = this.dropped.sum();
+			stats.coalesced = this.coalesced.sum();
+
+			synchronized (this.pendingEvents) {
+				stats.pending = this.pendingEvents.size();
+			}
+
+			stats.averageLatencyMillis = stats.delivered > 0 ? this.totalLatencyNanos.sum() / stats.delivered / 1_000_000L : 0;
+			stats.maxLatencyMillis = this.maxLatencyNanos.get() / 1_000_000L;
+
+			return stats;
+		}
+	}
+
+	private static final List<Registration> REGISTRATIONS = new ArrayList<>();
+
+	/** Adds listener that is called by notifying thread. */
 	public void addListener(Listener newListener) {
-		synchronized (LISTENERS) {
-			LISTENERS.add(newListener);
+		this.addListener(newListener, DeliveryMode.SYNC);
+	}
+
+	/**
+	 * Adds listener with passed delivery mode.
+	 * <p>
+	 * Listeners that can be slow, e.g. those that query the repository, or the network,
+	 * should use {@link DeliveryMode#ASYNC} so they don't delay notifying threads, e.g. block processing.
+	 */
+	public void addListener(Listener newListener, DeliveryMode deliveryMode) {
+		synchronized (REGISTRATIONS) {
+			REGISTRATIONS.add(new Registration(newListener, deliveryMode));
 		}
 	}
 
+	/**
+	 * Removes listener, discarding any events pending delivery to it.
+	 * <p>
+	 * Once this method returns, no further events are delivered to listener. Deliveries already in progress
+	 * might still be finishing: SYNC deliveries by notifying threads, and ASYNC deliveries that take longer
+	 * than {@link #STOP_TIMEOUT}.
+	 */
 	public void removeListener(Listener listener) {
-		synchronized (LISTENERS) {
-			LISTENERS.remove(listener);
+		List<Registration> removedRegistrations = new ArrayList<>();
+
+		synchronized (REGISTRATIONS) {
+			Iterator<Registration> iterator = REGISTRATIONS.iterator();
+
+			while (iterator.hasNext()) {
+				Registration registration = iterator.next();
+
+				if (registration.listener == listener) {
+					iterator.remove();
+					removedRegistrations.add(registration);
+				}
+			}
 		}
+
+		// Not holding lock, as listeners might be adding/removing listeners, or notifying, while we wait for them to finish
+		for (Registration registration : removedRegistrations)
+			registration.stop();
 	}
 
 	/**
+	 * Notifies listeners of event.
+	 * <p>
+	 * SYNC listeners are called by current thread. ASYNC listeners have event added to their queue of pending events.
+	 * <p>
 	 * <b>WARNING:</b> before calling this method,
 	 * make sure current thread's repository session
 	 * holds no locks, e.g. by calling
 	 * <tt>repository.saveChanges()</tt> or
 	 * <tt>repository.discardChanges()</tt>.
 	 * <p>
-	 * This is because event listeners might open a new
+	 * This is because SYNC event listeners might open a new
 	 * repository session which will deadlock HSQLDB
 	 * if it tries to CHECKPOINT.
 	 * <p>
@@ -46,20 +335,43 @@ public enum EventBus {
 	 * <li>New repository sessions are blocked pending completion of CHECKPOINT</li>
 	 * <li>Caller is blocked so never has a chance to close (SQL) transaction - hence deadlock</li>
 	 * </ul>
+	 * ASYNC listeners can't cause this deadlock as they never block the notifying thread.
 	 */
 	public void notify(Event event) {
-		List<Listener> clonedListeners;
+		List<Registration> clonedRegistrations;
 
-		synchronized (LISTENERS) {
-			clonedListeners = new ArrayList<>(LISTENERS);
+		synchronized (REGISTRATIONS) {
+			clonedRegistrations = new ArrayList<>(REGISTRATIONS);
 		}
 
-		for (Listener listener : clonedListeners)
-			try {
-				listener.listen(event);
-			} catch (Exception e) {
-				// We don't want one listener to break other listeners, or caller
-				LOGGER.warn(() -> String.format("Caught %s from a listener processing %s", e.getClass().getSimpleName(), event.getClass().getSimpleName()), e);
-			}
+		long notifiedNanos = System.nanoTime();
+
+		for (Registration registration : clonedRegistrations)
+			if (registration.deliveryMode == DeliveryMode.ASYNC)
+				registration.enqueue(event, notifiedNanos);
+			else
+				registration.deliver(event, notifiedNanos);
+	}
+
+	public List<ListenerStats> getListenerStats() {
+		List<Registration> clonedRegistrations;
+
+		synchronized (REGISTRATIONS) {
+			clonedRegistrations = new ArrayList<>(REGISTRATIONS);
+		}
+
+		List<ListenerStats> listenerStats = new ArrayList<>(clonedRegistrations.size());
+		for (Registration registration : clonedRegistrations)
+			listenerStats.add(registration.getStats());
+
+		return listenerStats;
+	}
+
+	/** Returns listener's class name, or enclosing class name for lambdas/method references. */
+	private static String nameOf(Listener listener) {
+		String name = listener.getClass().getSimpleName();
+
+		int lambdaIndex = name.indexOf("$$");
+		return lambdaIndex > 0 ? name.substring(0, lambdaIndex) : name;
 	}
 }
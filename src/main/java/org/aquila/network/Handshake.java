@@ -73,6 +73,7 @@ public enum Handshake {
 
 			peer.setPeersConnectionTimestamp(peersConnectionTimestamp);
 			peer.setPeersVersion(versionString, version);
+			peer.setPeersCapabilities(helloMessage.getCapabilities());
 
 			// Ensure the peer is running at least the version specified in MIN_PEER_VERSION
 			if (peer.isAtLeastVersion(MIN_PEER_VERSION) == false) {
@@ -98,7 +99,9 @@ public enum Handshake {
 			long timestamp = NTP.getTime();
 			String senderPeerAddress = peer.getPeerData().getAddress().toString();
 
-			Message helloMessage = new HelloMessage(timestamp, versionString, senderPeerAddress);
+			int capabilities = Settings.getInstance().isNetworkCompressionEnabled() ? HelloMessage.CAPABILITY_COMPRESSION : 0;
+
+			Message helloMessage = new HelloMessage(timestamp, versionString, senderPeerAddress, capabilities);
 			if (!peer.sendMessage(helloMessage))
 				peer.disconnect("failed to send HELLO");
 		}
@@ -216,7 +219,7 @@ public enum Handshake {
 
 				int powBufferSize = peer.getPeersVersion() < PEER_VERSION_131 ? POW_BUFFER_SIZE_PRE_131 : POW_BUFFER_SIZE_POST_131;
 				int powDifficulty = peer.getPeersVersion() < PEER_VERSION_131 ? POW_DIFFICULTY_PRE_131 : POW_DIFFICULTY_POST_131;
-				Integer nonce = MemoryPoW.compute2(data, powBufferSize, powDifficulty);
+				Integer nonce = MemoryPoW.compute2(data, powBufferSize, powDifficulty, Settings.getInstance().getNetworkPoWComputeThreadCount());
 
 				Message responseMessage = new ResponseMessage(nonce, data);
 				if (!peer.sendMessage(responseMessage))
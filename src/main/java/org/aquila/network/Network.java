@@ -35,6 +35,7 @@ import java.nio.channels.*;
 import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -125,10 +126,14 @@ public class Network {
     private final List<PeerAddress> selfPeers = new ArrayList<>();
 
     private final ExecuteProduceConsume networkEPC;
-    private Selector channelSelector;
+    /** Released when peers have decoded messages pending, to wake a blocked producer. */
+    private final Semaphore peerMessagesPending = new Semaphore(0);
+    private NetworkReactor[] reactors;
+    private final AtomicInteger nextReactorIndex = new AtomicInteger();
     private ServerSocketChannel serverChannel;
     private SelectionKey serverSelectionKey;
-    private final Set<SelectableChannel> channelsPendingWrite = ConcurrentHashMap.newKeySet();
+
+    private final ReadBufferPool readBufferPool = new ReadBufferPool();
 
     private final Lock mergePeersLock = new ReentrantLock();
 
@@ -164,14 +169,19 @@ public class Network {
             InetAddress bindAddr = InetAddress.getByName(Settings.getInstance().getBindAddress());
             InetSocketAddress endpoint = new InetSocketAddress(bindAddr, listenPort);
 
-            channelSelector = Selector.open();
+            // Connections are shared across reactors, each with its own selector and thread
+            int reactorCount = Settings.getInstance().getNetworkReactorThreadCount();
+            reactors = new NetworkReactor[reactorCount];
+            for (int i = 0; i < reactorCount; ++i) {
+                reactors[i] = new NetworkReactor("NetworkReactor-" + (i + 1));
+            }
 
             // Set up listen socket
             serverChannel = ServerSocketChannel.open();
             serverChannel.configureBlocking(false);
             serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
             serverChannel.bind(endpoint, LISTEN_BACKLOG);
-            serverSelectionKey = serverChannel.register(channelSelector, SelectionKey.OP_ACCEPT);
+            serverSelectionKey = reactors[0].registerServer(serverChannel);
         } catch (UnknownHostException e) {
             LOGGER.error("Can't bind listen socket to address {}", Settings.getInstance().getBindAddress());
             throw new IOException("Can't bind listen socket to address", e);
@@ -210,7 +220,11 @@ public class Network {
             UPnP.closePortTCP(Settings.getInstance().getListenPort());
         }
 
-        // Start up first networking thread
+        // Start up reactors and first networking thread
+        for (NetworkReactor reactor : reactors) {
+            reactor.start();
+        }
+
         networkEPC.start();
     }
 
@@ -247,6 +261,10 @@ public class Network {
         return this.maxMessageSize;
     }
 
+    protected ReadBufferPool getReadBufferPool() {
+        return this.readBufferPool;
+    }
+
     public StatsSnapshot getStatsSnapshot() {
         return this.networkEPC.getStatsSnapshot();
     }
@@ -477,8 +495,6 @@ public class Network {
         private final AtomicLong nextConnectTaskTimestamp = new AtomicLong(0L); // ms - try first connect once NTP syncs
         private final AtomicLong nextBroadcastTimestamp = new AtomicLong(0L); // ms - try first broadcast once NTP syncs
 
-        private Iterator<SelectionKey> channelIterator = null;
-
         NetworkProcessor(ExecutorService executor) {
             super(executor);
         }
@@ -516,7 +532,7 @@ public class Network {
             }
 
             // Only this method can block to reduce CPU spin
-            return maybeProduceChannelTask(canBlock);
+            return maybeWaitForPeerMessages(canBlock);
         }
 
         private Task maybeProducePeerMessageTask() {
@@ -564,87 +580,14 @@ public class Network {
             return new BroadcastTask();
         }
 
-        private Task maybeProduceChannelTask(boolean canBlock) throws InterruptedException {
-            // Synchronization here to enforce thread-safety on channelIterator
-            synchronized (channelSelector) {
-                // anything to do?
-                if (channelIterator == null) {
-                    try {
-                        if (canBlock) {
-                            channelSelector.select(1000L);
-                        } else {
-                            channelSelector.selectNow();
-                        }
-                    } catch (IOException e) {
-                        LOGGER.warn("Channel selection threw IOException: {}", e.getMessage());
-                        return null;
-                    }
-
-                    if (Thread.currentThread().isInterrupted()) {
-                        throw new InterruptedException();
-                    }
-
-                    channelIterator = channelSelector.selectedKeys().iterator();
-                    LOGGER.trace("Thread {}, after {} select, channelIterator now {}",
-                            Thread.currentThread().getId(),
-                            canBlock ? "blocking": "non-blocking",
-                            channelIterator);
-                }
-
-                if (!channelIterator.hasNext()) {
-                    channelIterator = null; // Nothing to do so reset iterator to cause new select
-
-                    LOGGER.trace("Thread {}, channelIterator now null", Thread.currentThread().getId());
-                    return null;
-                }
-
-                final SelectionKey nextSelectionKey = channelIterator.next();
-                channelIterator.remove();
-
-                // Just in case underlying socket channel already closed elsewhere, etc.
-                if (!nextSelectionKey.isValid())
-                    return null;
-
-                LOGGER.trace("Thread {}, nextSelectionKey {}", Thread.currentThread().getId(), nextSelectionKey);
-
-                SelectableChannel socketChannel = nextSelectionKey.channel();
-
-                try {
-                    if (nextSelectionKey.isReadable()) {
-                        clearInterestOps(nextSelectionKey, SelectionKey.OP_READ);
-                        Peer peer = getPeerFromChannel((SocketChannel) socketChannel);
-                        if (peer == null)
-                            return null;
-
-                        return new ChannelReadTask((SocketChannel) socketChannel, peer);
-                    }
-
-                    if (nextSelectionKey.isWritable()) {
-                        clearInterestOps(nextSelectionKey, SelectionKey.OP_WRITE);
-                        Peer peer = getPeerFromChannel((SocketChannel) socketChannel);
-                        if (peer == null)
-                            return null;
-
-                        // Any thread that queues a message to send can set OP_WRITE,
-                        // but we only allow one pending/active ChannelWriteTask per Peer
-                        if (!channelsPendingWrite.add(socketChannel))
-                            return null;
-
-                        return new ChannelWriteTask((SocketChannel) socketChannel, peer);
-                    }
+        private Task maybeWaitForPeerMessages(boolean canBlock) throws InterruptedException {
+            // Reactors release a permit whenever a peer has a newly decoded message
+            if (canBlock && peerMessagesPending.tryAcquire(1000L, TimeUnit.MILLISECONDS)) {
+                peerMessagesPending.drainPermits();
+            }
 
-                    if (nextSelectionKey.isAcceptable()) {
-                        clearInterestOps(nextSelectionKey, SelectionKey.OP_ACCEPT);
-                        return new ChannelAcceptTask((ServerSocketChannel) socketChannel);
-                    }
-                } catch (CancelledKeyException e) {
-                    /*
-                     * Sometimes nextSelectionKey is cancelled / becomes invalid between the isValid() test at line 586
-                     * and later calls to isReadable() / isWritable() / isAcceptable() which themselves call isValid()!
-                     * Those isXXXable() calls could throw CancelledKeyException, so we catch it here and return null.
-                     */
-                    return null;
-                }
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
             }
 
             return null;
@@ -740,16 +683,6 @@ public class Network {
         return true;
     }
 
-    public Peer getPeerFromChannel(SocketChannel socketChannel) {
-        for (Peer peer : this.getImmutableConnectedPeers()) {
-            if (peer.getSocketChannel() == socketChannel) {
-                return peer;
-            }
-        }
-
-        return null;
-    }
-
     private void checkLongestConnection(Long now) {
         if (now == null || now < nextDisconnectionCheck) {
             return;
@@ -773,77 +706,27 @@ public class Network {
         nextDisconnectionCheck = now + DISCONNECTION_CHECK_INTERVAL;
     }
 
-    // SocketChannel interest-ops manipulations
+    // Reactor callbacks
 
-    private static final String[] OP_NAMES = new String[SelectionKey.OP_ACCEPT * 2];
-    static {
-        for (int i = 0; i < OP_NAMES.length; i++) {
-            StringJoiner joiner = new StringJoiner(",");
-
-            if ((i & SelectionKey.OP_READ) != 0) joiner.add("OP_READ");
-            if ((i & SelectionKey.OP_WRITE) != 0) joiner.add("OP_WRITE");
-            if ((i & SelectionKey.OP_CONNECT) != 0) joiner.add("OP_CONNECT");
-            if ((i & SelectionKey.OP_ACCEPT) != 0) joiner.add("OP_ACCEPT");
-
-            OP_NAMES[i] = joiner.toString();
-        }
-    }
-
-    public void clearInterestOps(SelectableChannel socketChannel, int interestOps) {
-        SelectionKey selectionKey = socketChannel.keyFor(channelSelector);
-        if (selectionKey == null)
-            return;
-
-        clearInterestOps(selectionKey, interestOps);
-    }
-
-    private void clearInterestOps(SelectionKey selectionKey, int interestOps) {
-        if (!selectionKey.channel().isOpen())
-            return;
-
-        LOGGER.trace("Thread {} clearing {} interest-ops on channel: {}",
-                Thread.currentThread().getId(),
-                OP_NAMES[interestOps],
-                selectionKey.channel());
-
-        selectionKey.interestOpsAnd(~interestOps);
-    }
-
-    public void setInterestOps(SelectableChannel socketChannel, int interestOps) {
-        SelectionKey selectionKey = socketChannel.keyFor(channelSelector);
-        if (selectionKey == null) {
-            try {
-                selectionKey = socketChannel.register(this.channelSelector, interestOps);
-            } catch (ClosedChannelException e) {
-                // Channel already closed so ignore
-                return;
-            }
-            // Fall-through to allow logging
-        }
-
-        setInterestOps(selectionKey, interestOps);
-    }
-
-    private void setInterestOps(SelectionKey selectionKey, int interestOps) {
-        if (!selectionKey.channel().isOpen())
-            return;
-
-        LOGGER.trace("Thread {} setting {} interest-ops on channel: {}",
-                Thread.currentThread().getId(),
-                OP_NAMES[interestOps],
-                selectionKey.channel());
-
-        selectionKey.interestOpsOr(interestOps);
-    }
-
-    // Peer / Task callbacks
+    /**
+     * Assigns peer's connected channel to a reactor for reading/writing.
+     *
+     * @return assigned reactor, or null if network hasn't been started
+     */
+    protected NetworkReactor registerPeer(Peer peer) {
+        NetworkReactor[] reactors = this.reactors;
+        if (reactors == null)
+            return null;
 
-    public void notifyChannelNotWriting(SelectableChannel socketChannel) {
-        this.channelsPendingWrite.remove(socketChannel);
+        NetworkReactor reactor = reactors[Math.floorMod(this.nextReactorIndex.getAndIncrement(), reactors.length)];
+        reactor.register(peer);
+        return reactor;
     }
 
-    protected void wakeupChannelSelector() {
-        this.channelSelector.wakeup();
+    /** Wakes network worker waiting for peers' decoded messages. */
+    protected void notifyPeerMessagesPending() {
+        if (this.peerMessagesPending.availablePermits() == 0)
+            this.peerMessagesPending.release();
     }
 
     protected boolean verify(byte[] signature, byte[] message) {
@@ -873,7 +756,6 @@ public class Network {
         }
 
         this.removeConnectedPeer(peer);
-        this.channelsPendingWrite.remove(peer.getSocketChannel());
 
         if (this.isShuttingDown)
             // No need to do any further processing, like re-enabling listen socket or notifying Controller
@@ -882,12 +764,8 @@ public class Network {
         if (getImmutableConnectedPeers().size() < maxPeers - 1
                 && serverSelectionKey.isValid()
                 && (serverSelectionKey.interestOps() & SelectionKey.OP_ACCEPT) == 0) {
-            try {
-                LOGGER.debug("Re-enabling accepting incoming connections because the server is not longer full");
-                setInterestOps(serverSelectionKey, SelectionKey.OP_ACCEPT);
-            } catch (CancelledKeyException e) {
-                LOGGER.error("Failed to re-enable accepting of incoming connections: {}", e.getMessage());
-            }
+            LOGGER.debug("Re-enabling accepting incoming connections because the server is not longer full");
+            reactors[0].setInterestOps(serverSelectionKey, SelectionKey.OP_ACCEPT);
         }
 
         // Notify Controller
@@ -1566,6 +1444,15 @@ public class Network {
 
         // Stop processing threads
         try {
+            if (this.reactors != null) {
+                for (NetworkReactor reactor : this.reactors) {
+                    reactor.shutdown(5000);
+                    if (reactor.isAlive()) {
+                        LOGGER.warn("Network reactor failed to terminate");
+                    }
+                }
+            }
+
             if (!this.networkEPC.shutdown(5000)) {
                 LOGGER.warn("Network threads failed to terminate");
             }
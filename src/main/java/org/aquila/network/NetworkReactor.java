@@ -0,0 +1,293 @@
+package org.aquila.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.aquila.controller.arbitrary.ArbitraryDataFileManager;
+import org.aquila.settings.Settings;
+import org.aquila.utils.NTP;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Selector loop, on its own thread, servicing a share of the network's channels.
+ * <p>
+ * Accepting connections, reading and decoding messages, and writing queued messages all happen on the
+ * reactor's thread, so only fully decoded messages are handed to Network's worker threads.
+ * <p>
+ * Other threads change a channel's interest-ops via {@link #requestWrite(SocketChannel)} or
+ * {@link #setInterestOps(SelectionKey, int)}, which wake the selector only when needed.
+ */
+class NetworkReactor implements Runnable {
+    private static final Logger LOGGER = LogManager.getLogger(NetworkReactor.class);
+
+    private static final long SELECT_TIMEOUT = 1000L; // ms
+
+    private final Selector selector;
+    private final Thread thread;
+    /** Actions that must run on reactor's thread, e.g. channel registrations. */
+    private final Queue<Runnable> pendingActions = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean isShuttingDown = false;
+
+    NetworkReactor(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    void shutdown(long timeout) throws InterruptedException {
+        this.isShuttingDown = true;
+        this.selector.wakeup();
+        this.thread.join(timeout);
+    }
+
+    boolean isAlive() {
+        return this.thread.isAlive();
+    }
+
+    /** Registers server channel for accepting connections. Only to be called before {@link #start()}. */
+    SelectionKey registerServer(ServerSocketChannel serverChannel) throws ClosedChannelException {
+        return serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /** Registers peer's (non-blocking) channel for reading, with peer attached to its selection key. */
+    void register(Peer peer) {
+        this.runOnReactor(() -> {
+            try {
+                peer.getSocketChannel().register(this.selector, SelectionKey.OP_READ, peer);
+            } catch (ClosedChannelException e) {
+                // Channel already closed so ignore
+            }
+        });
+    }
+
+    /** Asks reactor to write peer's queued messages. Can be called from any thread. */
+    void requestWrite(SocketChannel socketChannel) {
+        SelectionKey selectionKey = socketChannel.keyFor(this.selector);
+        if (selectionKey == null) {
+            // Registration still pending so queue behind it
+            this.runOnReactor(() -> {
+                SelectionKey registeredKey = socketChannel.keyFor(this.selector);
+                if (registeredKey != null)
+                    setInterestOps(registeredKey, SelectionKey.OP_WRITE);
+            });
+            return;
+        }
+
+        setInterestOps(selectionKey, SelectionKey.OP_WRITE);
+    }
+
+    void setInterestOps(SelectionKey selectionKey, int interestOps) {
+        try {
+            if ((selectionKey.interestOps() & interestOps) == interestOps)
+                return;
+
+            selectionKey.interestOpsOr(interestOps);
+        } catch (CancelledKeyException e) {
+            // Channel closed elsewhere
+            return;
+        }
+
+        if (Thread.currentThread() != this.thread)
+            this.selector.wakeup();
+    }
+
+    private void runOnReactor(Runnable action) {
+        this.pendingActions.offer(action);
+        this.selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!this.isShuttingDown) {
+                try {
+                    this.selector.select(SELECT_TIMEOUT);
+                } catch (IOException e) {
+                    LOGGER.warn("Channel selection threw IOException: {}", e.getMessage());
+                    continue;
+                }
+
+                Runnable action;
+                while ((action = this.pendingActions.poll()) != null)
+                    action.run();
+
+                Iterator<SelectionKey> selectionKeyIterator = this.selector.selectedKeys().iterator();
+                while (selectionKeyIterator.hasNext()) {
+                    final SelectionKey selectionKey = selectionKeyIterator.next();
+                    selectionKeyIterator.remove();
+
+                    try {
+                        processSelectionKey(selectionKey);
+                    } catch (CancelledKeyException e) {
+                        // Channel closed elsewhere, possibly by processing above
+                    }
+                }
+            }
+        } finally {
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                // Not important
+            }
+        }
+    }
+
+    private void processSelectionKey(SelectionKey selectionKey) {
+        // Just in case underlying socket channel already closed elsewhere, etc.
+        if (!selectionKey.isValid())
+            return;
+
+        if (selectionKey.isAcceptable()) {
+            acceptConnection(selectionKey);
+            return;
+        }
+
+        Peer peer = (Peer) selectionKey.attachment();
+
+        try {
+            if (selectionKey.isReadable())
+                peer.readChannel();
+
+            if (selectionKey.isValid() && selectionKey.isWritable()) {
+                boolean isSocketClogged = peer.writeChannel();
+
+                if (!isSocketClogged) {
+                    selectionKey.interestOpsAnd(~SelectionKey.OP_WRITE);
+
+                    // Sender might have queued a message after our last poll
+                    if (peer.hasQueuedMessages())
+                        selectionKey.interestOpsOr(SelectionKey.OP_WRITE);
+                }
+            }
+        } catch (IOException e) {
+            if (e.getMessage() != null && e.getMessage().toLowerCase().contains("connection reset")) {
+                peer.disconnect("Connection reset");
+                return;
+            }
+
+            LOGGER.trace("[{}] Network reactor {} encountered I/O error: {}", peer.getPeerConnectionId(),
+                    this.thread.getName(), e.getMessage(), e);
+            peer.disconnect("I/O error");
+        }
+    }
+
+    private void acceptConnection(SelectionKey serverSelectionKey) {
+        Network network = Network.getInstance();
+        SocketChannel socketChannel;
+
+        try {
+            if (network.getImmutableConnectedPeers().size() >= network.getMaxPeers()) {
+                // We have enough peers, so stop accepting until a peer disconnects
+                LOGGER.debug("Ignoring pending incoming connections because the server is full");
+                serverSelectionKey.interestOpsAnd(~SelectionKey.OP_ACCEPT);
+                return;
+            }
+
+            socketChannel = ((ServerSocketChannel) serverSelectionKey.channel()).accept();
+        } catch (IOException e) {
+            return;
+        }
+
+        // No connection actually accepted?
+        if (socketChannel == null) {
+            return;
+        }
+
+        PeerAddress address = PeerAddress.fromSocket(socketChannel.socket());
+        List<String> fixedNetwork = Settings.getInstance().getFixedNetwork();
+        if (fixedNetwork != null && !fixedNetwork.isEmpty() && network.ipNotInFixedList(address, fixedNetwork)) {
+            try {
+                LOGGER.debug("Connection discarded from peer {} as not in the fixed network list", address);
+                socketChannel.close();
+            } catch (IOException e) {
+                // IGNORE
+            }
+            return;
+        }
+
+        // We allow up to a maximum of maxPeers connected peers, of which...
+        // - maxDataPeers must be prearranged data connections (these are intentionally short-lived)
+        // - the remainder can be any regular peers
+
+        // Firstly, determine the maximum limits
+        int maxPeers = Settings.getInstance().getMaxPeers();
+        int maxDataPeers = Settings.getInstance().getMaxDataPeers();
+        int maxRegularPeers = maxPeers - maxDataPeers;
+
+        // Next, obtain the current state
+        int connectedDataPeerCount = network.getImmutableConnectedDataPeers().size();
+        int connectedRegularPeerCount = network.getImmutableConnectedNonDataPeers().size();
+
+        // Check if the incoming connection should be considered a data or regular peer
+        boolean isDataPeer = ArbitraryDataFileManager.getInstance().isPeerRequestingData(address.getHost());
+
+        // Finally, decide if we have any capacity for this incoming peer
+        boolean connectionLimitReached;
+        if (isDataPeer) {
+            connectionLimitReached = (connectedDataPeerCount >= maxDataPeers);
+        }
+        else {
+            connectionLimitReached = (connectedRegularPeerCount >= maxRegularPeers);
+        }
+
+        // Extra maxPeers check just to be safe
+        if (network.getImmutableConnectedPeers().size() >= maxPeers) {
+            connectionLimitReached = true;
+        }
+
+        if (connectionLimitReached) {
+            try {
+                // We have enough peers
+                LOGGER.debug("Connection discarded from peer {} because the server is full", address);
+                socketChannel.close();
+            } catch (IOException e) {
+                // IGNORE
+            }
+            return;
+        }
+
+        final Long now = NTP.getTime();
+        Peer newPeer;
+
+        try {
+            if (now == null) {
+                LOGGER.debug("Connection discarded from peer {} due to lack of NTP sync", address);
+                socketChannel.close();
+                return;
+            }
+
+            LOGGER.debug("Connection accepted from peer {}", address);
+
+            newPeer = new Peer(socketChannel);
+            if (isDataPeer) {
+                newPeer.setMaxConnectionAge(Settings.getInstance().getMaxDataPeerConnectionTime() * 1000L);
+            }
+            newPeer.setIsDataPeer(isDataPeer);
+            network.addConnectedPeer(newPeer);
+
+        } catch (IOException e) {
+            if (socketChannel.isOpen()) {
+                try {
+                    LOGGER.debug("Connection failed from peer {} while connecting/closing", address);
+                    socketChannel.close();
+                } catch (IOException ce) {
+                    // Couldn't close?
+                }
+            }
+            return;
+        }
+
+        // Inbound peers wait for HELLO so this doesn't send anything, or block
+        network.onPeerReady(newPeer);
+    }
+
+}
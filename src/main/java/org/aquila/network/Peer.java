@@ -10,6 +10,7 @@ import org.aquila.data.block.BlockSummaryData;
 import org.aquila.data.block.CommonBlockData;
 import org.aquila.data.network.PeerData;
 import org.aquila.network.message.ChallengeMessage;
+import org.aquila.network.message.HelloMessage;
 import org.aquila.network.message.Message;
 import org.aquila.network.message.MessageException;
 import org.aquila.network.message.MessageType;
@@ -22,7 +23,6 @@ import org.aquila.utils.ExecuteProduceConsume.Task;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.security.SecureRandom;
 import java.util.*;
@@ -47,9 +47,22 @@ public class Peer {
     private static final int RESPONSE_TIMEOUT = 3000; // ms
 
     /**
-     * Maximum time to wait for a message to be added to sendQueue (ms)
+     * Interval at which a sender, still waiting for its queued message to be picked up, re-requests a write from the reactor. (ms)
      */
-    private static final int QUEUE_TIMEOUT = 1000; // ms
+    private static final int SEND_WAKEUP_INTERVAL = 50; // ms
+
+    /**
+     * Maximum number of small queued messages to coalesce into one socket write.
+     */
+    private static final int MAX_COALESCED_MESSAGES = 32;
+    /**
+     * Coalescing stops once this many bytes are ready to write.
+     */
+    private static final int MAX_COALESCED_BYTES = 16 * 1024; // bytes
+    /**
+     * Maximum bytes written per writeChannel() call, so one peer's bulk transfer can't monopolize its reactor. (bytes)
+     */
+    private static final int WRITE_BYTE_BUDGET = 256 * 1024; // bytes
 
     /**
      * Interval between PING messages to a peer. (ms)
@@ -61,6 +74,7 @@ public class Peer {
     private volatile boolean isStopping = false;
 
     private SocketChannel socketChannel = null;
+    private NetworkReactor reactor = null;
     private InetSocketAddress resolvedAddress = null;
     /**
      * True if remote address is loopback/link-local/site-local, false otherwise.
@@ -78,10 +92,11 @@ public class Peer {
     private Map<Integer, BlockingQueue<Message>> replyQueues;
     private LinkedBlockingQueue<Message> pendingMessages;
 
-    private TransferQueue<Message> sendQueue;
-    private ByteBuffer outputBuffer;
-    private String outputMessageType;
-    private int outputMessageId;
+    private final Map<SendPriority, SendQueue> sendQueues = newSendQueues();
+    private final List<ByteBuffer> coalescedBuffers = new ArrayList<>();
+    private ByteBuffer[] outputBuffers;
+    private int outputMessageLength;
+    private int outputMessageCount;
 
     /**
      * True if we created connection to peer, false if we accepted incoming connection from peer.
@@ -144,6 +159,10 @@ public class Peer {
      * Numeric version of peer.
      */
     private Long peersVersion = null;
+    /**
+     * Capability flags as reported by peer in HELLO message.
+     */
+    private volatile int peersCapabilities = 0;
 
     /**
      * Latest block info as reported by peer.
@@ -170,6 +189,35 @@ public class Peer {
     private final Map<MessageType, MessageStats> receivedMessageStats = new ConcurrentHashMap<>();
     private final Map<MessageType, MessageStats> sentMessageStats = new ConcurrentHashMap<>();
 
+    // Send queues
+
+    private static class QueuedMessage {
+        public final Message message;
+        /** Serialized by sending thread, so reactor only has to write them */
+        public final ByteBuffer[] buffers;
+        public final long queuedWhen = System.currentTimeMillis();
+
+        public QueuedMessage(Message message, ByteBuffer[] buffers) {
+            this.message = message;
+            this.buffers = buffers;
+        }
+    }
+
+    private static class SendQueue {
+        public final TransferQueue<QueuedMessage> queue = new LinkedTransferQueue<>();
+        public final LongAdder count = new LongAdder();
+        public final LongAdder totalWaitTime = new LongAdder(); // ms
+        public final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0L); // ms
+    }
+
+    private static Map<SendPriority, SendQueue> newSendQueues() {
+        Map<SendPriority, SendQueue> sendQueues = new EnumMap<>(SendPriority.class);
+        for (SendPriority priority : SendPriority.values()) {
+            sendQueues.put(priority, new SendQueue());
+        }
+        return sendQueues;
+    }
+
     // Constructors
 
     /**
@@ -287,6 +335,16 @@ public class Peer {
         }
     }
 
+    protected void setPeersCapabilities(int capabilities) {
+        this.peersCapabilities = capabilities;
+    }
+
+    /** Returns whether we compress messages sent to this peer, i.e. we and peer both have compression enabled. */
+    public boolean isCompressionEnabled() {
+        return Settings.getInstance().isNetworkCompressionEnabled()
+                && (this.peersCapabilities & HelloMessage.CAPABILITY_COMPRESSION) != 0;
+    }
+
     protected void setPeersVersion(String versionString, long version) {
         synchronized (this.peerInfoLock) {
             this.peersVersionString = versionString;
@@ -444,11 +502,10 @@ public class Peer {
         this.connectionTimestamp = NTP.getTime();
         this.socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
         this.socketChannel.configureBlocking(false);
-        Network.getInstance().setInterestOps(this.socketChannel, SelectionKey.OP_READ);
-        this.byteBuffer = null; // Defer allocation to when we need it, to save memory. Sorry GC!
-        this.sendQueue = new LinkedTransferQueue<>();
+        this.byteBuffer = null; // Borrowed from network's read buffer pool when we need it
         this.replyQueues = new ConcurrentHashMap<>();
         this.pendingMessages = new LinkedBlockingQueue<>();
+        this.reactor = Network.getInstance().registerPeer(this);
 
         Random random = new SecureRandom();
         this.ourChallenge = new byte[ChallengeMessage.CHALLENGE_LENGTH];
@@ -504,14 +561,16 @@ public class Peer {
                     return;
                 }
 
-                // Do we need to allocate byteBuffer?
+                // Do we need to borrow byteBuffer?
                 if (this.byteBuffer == null) {
-                    this.byteBuffer = ByteBuffer.allocate(Network.getInstance().getMaxMessageSize());
+                    this.byteBuffer = Network.getInstance().getReadBufferPool().acquire();
                 }
 
                 final int priorPosition = this.byteBuffer.position();
                 final int bytesRead = this.socketChannel.read(this.byteBuffer);
                 if (bytesRead == -1) {
+                    this.releaseByteBuffer();
+
                     if (priorPosition > 0) {
                         this.disconnect("EOF - read " + priorPosition + " bytes");
                     } else {
@@ -552,18 +611,21 @@ public class Peer {
                         // No complete message in buffer, no more bytes to read from socket
                         // even though there was room to read bytes
 
-                        /* DISABLED
-                        // If byteBuffer is empty then we can deallocate it, to save memory, albeit costing GC
-                        if (this.byteBuffer.remaining() == this.byteBuffer.capacity()) {
-                            this.byteBuffer = null;
+                        // If byteBuffer is empty then return it to pool, or drop it if grown for a large frame
+                        if (this.byteBuffer.position() == 0) {
+                            this.releaseByteBuffer();
                         }
-                        */
 
                         return;
                     }
 
                     if (message == null) {
                         // No complete message in buffer, but maybe more bytes to read from socket
+                        if (!this.byteBuffer.hasRemaining()) {
+                            // Partial message fills buffer so grow it, if allowed, to make room for the rest
+                            this.growByteBuffer();
+                        }
+
                         break;
                     }
 
@@ -606,80 +668,169 @@ public class Peer {
                         return;
                     }
 
-                    // Prematurely end any blocking channel select so that new messages can be processed.
-                    // This might cause this.socketChannel.read() above to return zero into bytesRead.
-                    Network.getInstance().wakeupChannelSelector();
+                    // Wake any network thread blocked waiting for messages so this one can be processed
+                    Network.getInstance().notifyPeerMessagesPending();
                 }
             }
         }
     }
 
+    /**
+     * Replaces full byteBuffer with one big enough for the frame in flight, up to max message size.
+     * <p>
+     * Only called while a frame larger than a pooled buffer is in flight.
+     * Capacity is doubled if the frame's length isn't known from its header.
+     */
+    private void growByteBuffer() {
+        final int maxMessageSize = Network.getInstance().getMaxMessageSize();
+        if (this.byteBuffer.capacity() >= maxMessageSize) {
+            return;
+        }
+
+        // Growing straight to frame length avoids allocating, and copying into, several intermediate buffers
+        final int frameLength = Message.getFrameLength(this.byteBuffer.asReadOnlyBuffer().flip());
+        final int newCapacity = frameLength > this.byteBuffer.capacity() ? frameLength : this.byteBuffer.capacity() * 2;
+
+        ByteBuffer newByteBuffer = ByteBuffer.allocate(Math.min(newCapacity, maxMessageSize));
+        newByteBuffer.put(this.byteBuffer.flip());
+
+        this.releaseByteBuffer();
+        this.byteBuffer = newByteBuffer;
+    }
+
+    private void releaseByteBuffer() {
+        if (this.byteBuffer != null) {
+            Network.getInstance().getReadBufferPool().release(this.byteBuffer);
+            this.byteBuffer = null;
+        }
+    }
+
+    protected boolean hasQueuedMessages() {
+        for (SendQueue sendQueue : this.sendQueues.values()) {
+            if (!sendQueue.queue.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /** Maybe send some pending outgoing messages.
      *
      * @return true if more data is pending to be sent
      */
     public boolean writeChannel() throws IOException {
-        // It is the responsibility of ChannelWriteTask's producer to produce only one call to writeChannel() at a time
+        // Only called by this peer's reactor thread, so only one call to writeChannel() at a time
+        long bytesWrittenThisCall = 0;
 
         while (true) {
-            // If output byte buffer is null, fetch next message from queue (if any)
-            while (this.outputBuffer == null) {
-                Message message;
-
-                try {
-                    // Allow other thread time to add message to queue having raised OP_WRITE.
-                    // Timeout is overkill but not excessive enough to clog up networking / EPC.
-                    // This is to avoid race condition in sendMessageWithTimeout() below.
-                    message = this.sendQueue.poll(QUEUE_TIMEOUT, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    // Shutdown situation
-                    return false;
-                }
-
+            // If output byte buffers are null, fetch next message(s) from queues (if any)
+            if (this.outputBuffers == null && !this.prepareOutputBuffers()) {
                 // No message? No further work to be done
-                if (message == null)
-                    return false;
-
-                try {
-                    this.outputBuffer = ByteBuffer.wrap(message.toBytes());
-                    this.outputMessageType = message.getType().name();
-                    this.outputMessageId = message.getId();
-
-                    LOGGER.trace("[{}] Sending {} message with ID {} to peer {}",
-                            this.peerConnectionId, this.outputMessageType, this.outputMessageId, this);
-
-                    // Record message stats
-                    MessageStats messageStats = this.sentMessageStats.computeIfAbsent(message.getType(), k -> new MessageStats());
-                    // Ideally these two operations would be atomic, we could pack 'count' in top X bits of the 64-bit long, but meh
-                    messageStats.count.increment();
-                    messageStats.totalBytes.add(this.outputBuffer.limit());
-                } catch (MessageException e) {
-                    // Something went wrong converting message to bytes, so discard but allow another round
-                    LOGGER.warn("[{}] Failed to send {} message with ID {} to peer {}: {}", this.peerConnectionId,
-                            message.getType().name(), message.getId(), this, e.getMessage());
-                }
+                return false;
             }
 
-            // If output byte buffer is not null, send from that
-            int bytesWritten = this.socketChannel.write(outputBuffer);
+            long bytesWritten = this.socketChannel.write(this.outputBuffers);
 
-            LOGGER.trace("[{}] Sent {} bytes of {} message with ID {} to peer {} ({} total)", this.peerConnectionId,
-                    bytesWritten, this.outputMessageType, this.outputMessageId, this, outputBuffer.limit());
+            LOGGER.trace("[{}] Sent {} bytes of {} message(s) to peer {} ({} total)", this.peerConnectionId,
+                    bytesWritten, this.outputMessageCount, this, this.outputMessageLength);
 
             // If we've sent 0 bytes then socket buffer is full so we need to wait until it's empty again
             if (bytesWritten == 0) {
                 return true;
             }
 
-            // If we then exhaust the byte buffer, set it to null (otherwise loop and try to send more)
-            if (!this.outputBuffer.hasRemaining()) {
-                this.outputMessageType = null;
-                this.outputMessageId = 0;
-                this.outputBuffer = null;
+            // If we then exhaust the byte buffers, set them to null (otherwise loop and try to send more)
+            if (!this.outputBuffers[this.outputBuffers.length - 1].hasRemaining()) {
+                this.outputBuffers = null;
+            }
+
+            // Give reactor's other channels a turn, returning here later if we still have more to send
+            bytesWrittenThisCall += bytesWritten;
+            if (bytesWrittenThisCall >= WRITE_BYTE_BUDGET) {
+                return this.outputBuffers != null || this.hasQueuedMessages();
             }
         }
     }
 
+    /**
+     * Polls queued messages, highest priority first, into outputBuffers.
+     * <p>
+     * Several small messages are coalesced into one gathering write, but bulk messages are always written alone.
+     *
+     * @return false if there were no messages to send
+     */
+    private boolean prepareOutputBuffers() {
+        this.coalescedBuffers.clear();
+        int messageLength = 0;
+        int messageCount = 0;
+
+        while (messageCount < MAX_COALESCED_MESSAGES && messageLength < MAX_COALESCED_BYTES) {
+            // Don't block reactor. Senders re-request a write if they raced with us, see sendMessageWithTimeout()
+            // Once we have something to send, we only coalesce non-bulk messages with it
+            QueuedMessage queuedMessage = this.pollSendQueues(messageCount == 0);
+            if (queuedMessage == null) {
+                break;
+            }
+
+            Message message = queuedMessage.message;
+
+            // Header and payload are written by gathering rather than concatenating into one array
+            int length = 0;
+            for (ByteBuffer buffer : queuedMessage.buffers) {
+                length += buffer.remaining();
+                this.coalescedBuffers.add(buffer);
+            }
+            messageLength += length;
+            ++messageCount;
+
+            LOGGER.trace("[{}] Sending {} message with ID {} to peer {}",
+                    this.peerConnectionId, message.getType().name(), message.getId(), this);
+
+            // Record message stats
+            MessageStats messageStats = this.sentMessageStats.computeIfAbsent(message.getType(), k -> new MessageStats());
+            // Ideally these two operations would be atomic, we could pack 'count' in top X bits of the 64-bit long, but meh
+            messageStats.count.increment();
+            messageStats.totalBytes.add(length);
+
+            if (SendPriority.forType(message.getType()) == SendPriority.BULK) {
+                break;
+            }
+        }
+
+        if (messageCount == 0) {
+            return false;
+        }
+
+        this.outputBuffers = this.coalescedBuffers.toArray(new ByteBuffer[0]);
+        this.outputMessageLength = messageLength;
+        this.outputMessageCount = messageCount;
+        return true;
+    }
+
+    private QueuedMessage pollSendQueues(boolean includeBulk) {
+        for (SendPriority priority : SendPriority.values()) {
+            if (priority == SendPriority.BULK && !includeBulk) {
+                return null;
+            }
+
+            SendQueue sendQueue = this.sendQueues.get(priority);
+            QueuedMessage queuedMessage = sendQueue.queue.poll();
+            if (queuedMessage == null) {
+                continue;
+            }
+
+            long waitTime = System.currentTimeMillis() - queuedMessage.queuedWhen;
+            sendQueue.count.increment();
+            sendQueue.totalWaitTime.add(waitTime);
+            sendQueue.maxWaitTime.accumulate(waitTime);
+
+            return queuedMessage;
+        }
+
+        return null;
+    }
+
     protected Task getMessageTask() {
         /*
          * If we are still handshaking and there is a message yet to be processed then
@@ -729,18 +880,34 @@ public class Peer {
         }
 
         try {
-            // Queue message, to be picked up by ChannelWriteTask and then peer.writeChannel()
+            // Queue message, to be picked up by our reactor and then peer.writeChannel()
             LOGGER.trace("[{}] Queuing {} message with ID {} to peer {}", this.peerConnectionId,
                     message.getType().name(), message.getId(), this);
 
-            // Check message properly constructed
-            message.checkValidOutgoing();
+            // Check message properly constructed, and serialize, compressing if peer supports it
+            ByteBuffer[] buffers = message.toByteBuffers(this.isCompressionEnabled());
 
             // Possible race condition:
-            // We set OP_WRITE, EPC creates ChannelWriteTask which calls Peer.writeChannel, writeChannel's poll() finds no message to send
-            // Avoided by poll-with-timeout in writeChannel() above.
-            Network.getInstance().setInterestOps(this.socketChannel, SelectionKey.OP_WRITE);
-            return this.sendQueue.tryTransfer(message, timeout, TimeUnit.MILLISECONDS);
+            // We request a write, reactor calls Peer.writeChannel, writeChannel's poll() finds no message to send
+            // Avoided by re-requesting a write every SEND_WAKEUP_INTERVAL until message is picked up.
+            TransferQueue<QueuedMessage> sendQueue = this.sendQueues.get(SendPriority.forType(message.getType())).queue;
+            QueuedMessage queuedMessage = new QueuedMessage(message, buffers);
+
+            final long deadline = System.currentTimeMillis() + timeout;
+            long remaining = timeout;
+            do {
+                if (this.reactor != null) {
+                    this.reactor.requestWrite(this.socketChannel);
+                }
+
+                if (sendQueue.tryTransfer(queuedMessage, Math.min(remaining, SEND_WAKEUP_INTERVAL), TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+
+                remaining = deadline - System.currentTimeMillis();
+            } while (remaining > 0 && this.socketChannel.isOpen());
+
+            return false;
         } catch (InterruptedException e) {
             // Send failure
             return false;
@@ -866,11 +1033,38 @@ public class Peer {
             appendMessageStats(statsBuilder, this.receivedMessageStats);
             statsBuilder.append("\n=sent=");
             appendMessageStats(statsBuilder, this.sentMessageStats);
+            statsBuilder.append("\n=send queues=");
+            for (SendPriority priority : SendPriority.values()) {
+                statsBuilder.append("\n  ").append(priority.name())
+                        .append(": count=").append(this.getSendQueueMessageCount(priority))
+                        .append(", mean wait=").append(this.getSendQueueMeanWaitTime(priority)).append("ms")
+                        .append(", max wait=").append(this.getSendQueueMaxWaitTime(priority)).append("ms");
+            }
 
             LOGGER.debug(statsBuilder.toString());
         }
     }
 
+    public int getSendQueueDepth(SendPriority priority) {
+        return this.sendQueues.get(priority).queue.size();
+    }
+
+    public long getSendQueueMessageCount(SendPriority priority) {
+        return this.sendQueues.get(priority).count.sum();
+    }
+
+    /** Mean time (ms) messages of given priority waited in send queue before being picked up for writing. */
+    public long getSendQueueMeanWaitTime(SendPriority priority) {
+        SendQueue sendQueue = this.sendQueues.get(priority);
+        long count = sendQueue.count.sum();
+        return count == 0 ? 0 : sendQueue.totalWaitTime.sum() / count;
+    }
+
+    /** Maximum time (ms) a message of given priority waited in send queue before being picked up for writing. */
+    public long getSendQueueMaxWaitTime(SendPriority priority) {
+        return this.sendQueues.get(priority).maxWaitTime.get();
+    }
+
     private static void appendMessageStats(StringBuilder statsBuilder, Map<MessageType, MessageStats> messageStats) {
         if (messageStats.isEmpty()) {
             statsBuilder.append("\n  none");
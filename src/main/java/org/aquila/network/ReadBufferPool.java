@@ -0,0 +1,62 @@
+package org.aquila.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed-size, direct byte buffers shared by all peers for reading from their sockets.
+ * <p>
+ * Most messages fit comfortably within {@link #BUFFER_SIZE}, so a peer only holds a pooled buffer
+ * while bytes are in flight. Peers receiving a larger frame grow their own buffer, which is then
+ * left for GC once emptied rather than returned to the pool.
+ */
+public class ReadBufferPool {
+
+    /** Size of each pooled buffer (bytes). */
+    public static final int BUFFER_SIZE = 64 * 1024; // bytes
+
+    /** Maximum number of idle buffers retained by pool. */
+    private static final int MAX_IDLE_BUFFERS = 128;
+
+    private final Queue<ByteBuffer> idleBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleBufferCount = new AtomicInteger();
+
+    /** Returns an empty, cleared buffer of {@link #BUFFER_SIZE} bytes. */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.idleBuffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        this.idleBufferCount.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns buffer to pool for reuse.
+     * <p>
+     * Buffers not allocated by this pool, or surplus to pool's capacity, are ignored.
+     */
+    public void release(ByteBuffer buffer) {
+        if (!isPooled(buffer))
+            return;
+
+        if (this.idleBufferCount.incrementAndGet() > MAX_IDLE_BUFFERS) {
+            this.idleBufferCount.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        this.idleBuffers.offer(buffer);
+    }
+
+    public static boolean isPooled(ByteBuffer buffer) {
+        return buffer.isDirect() && buffer.capacity() == BUFFER_SIZE;
+    }
+
+    public int getIdleBufferCount() {
+        return this.idleBufferCount.get();
+    }
+
+}
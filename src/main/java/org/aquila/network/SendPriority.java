@@ -0,0 +1,44 @@
+package org.aquila.network;
+
+import org.aquila.network.message.MessageType;
+
+/**
+ * Priority class of an outgoing message, each with its own send queue per peer.
+ * <p>
+ * Peer's writer always drains higher priority queues first, so latency-sensitive
+ * control messages only ever wait behind the frame already being written.
+ */
+public enum SendPriority {
+    /** Handshaking, pings and chain-tip/summary replies. Small and latency-sensitive. */
+    CONTROL,
+    /** Everything not otherwise classified. */
+    NORMAL,
+    /** Blocks and QDN data. Large and throughput-bound, so never coalesced. */
+    BULK;
+
+    public static SendPriority forType(MessageType messageType) {
+        switch (messageType) {
+            case HELLO:
+            case GOODBYE:
+            case CHALLENGE:
+            case RESPONSE:
+            case HEIGHT_V2:
+            case PING:
+            case PONG:
+            case BLOCK_SUMMARIES:
+            case GET_BLOCK_SUMMARIES:
+            case BLOCK_SUMMARIES_V2:
+                return CONTROL;
+
+            case BLOCK:
+            case BLOCK_V2:
+            case ARBITRARY_DATA:
+            case ARBITRARY_DATA_FILE:
+            case ARBITRARY_METADATA:
+                return BULK;
+
+            default:
+                return NORMAL;
+        }
+    }
+}
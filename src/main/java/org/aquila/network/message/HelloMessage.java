@@ -7,15 +7,20 @@ import java.nio.ByteBuffer;
 import org.aquila.transform.TransformationException;
 import org.aquila.utils.Serialization;
 
+import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 
 public class HelloMessage extends Message {
 
+	/** Capability flag: sender can decode compressed message frames. */
+	public static final int CAPABILITY_COMPRESSION = 0x01;
+
 	private long timestamp;
 	private String versionString;
 	private String senderPeerAddress;
+	private int capabilities;
 
-	public HelloMessage(long timestamp, String versionString, String senderPeerAddress) {
+	public HelloMessage(long timestamp, String versionString, String senderPeerAddress, int capabilities) {
 		super(MessageType.HELLO);
 
 		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
@@ -26,6 +31,8 @@ public class HelloMessage extends Message {
 			Serialization.serializeSizedString(bytes, versionString);
 
 			Serialization.serializeSizedString(bytes, senderPeerAddress);
+
+			bytes.write(Ints.toByteArray(capabilities));
 		} catch (IOException e) {
 			throw new AssertionError("IOException shouldn't occur with ByteArrayOutputStream");
 		}
@@ -34,12 +41,13 @@ public class HelloMessage extends Message {
 		this.checksumBytes = Message.generateChecksum(this.dataBytes);
 	}
 
-	private HelloMessage(int id, long timestamp, String versionString, String senderPeerAddress) {
+	private HelloMessage(int id, long timestamp, String versionString, String senderPeerAddress, int capabilities) {
 		super(id, MessageType.HELLO);
 
 		this.timestamp = timestamp;
 		this.versionString = versionString;
 		this.senderPeerAddress = senderPeerAddress;
+		this.capabilities = capabilities;
 	}
 
 	public long getTimestamp() {
@@ -54,11 +62,16 @@ public class HelloMessage extends Message {
 		return this.senderPeerAddress;
 	}
 
+	public int getCapabilities() {
+		return this.capabilities;
+	}
+
 	public static Message fromByteBuffer(int id, ByteBuffer byteBuffer) throws MessageException {
 		long timestamp = byteBuffer.getLong();
 
 		String versionString;
 		String senderPeerAddress = null;
+		int capabilities = 0;
 		try {
 			versionString = Serialization.deserializeSizedString(byteBuffer, 255);
 
@@ -66,11 +79,16 @@ public class HelloMessage extends Message {
 			if (byteBuffer.hasRemaining()) {
 				senderPeerAddress = Serialization.deserializeSizedString(byteBuffer, 255);
 			}
+
+			// Capabilities are also optional. Older versions ignore them, and won't send them.
+			if (byteBuffer.remaining() >= Integer.BYTES) {
+				capabilities = byteBuffer.getInt();
+			}
 		} catch (TransformationException e) {
 			throw new MessageException(e.getMessage(), e);
 		}
 
-		return new HelloMessage(id, timestamp, versionString, senderPeerAddress);
+		return new HelloMessage(id, timestamp, versionString, senderPeerAddress, capabilities);
 	}
 
 }
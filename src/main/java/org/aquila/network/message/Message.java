@@ -1,12 +1,13 @@
 package org.aquila.network.message;
 
-import com.google.common.primitives.Ints;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.aquila.crypto.Crypto;
 import org.aquila.network.Network;
@@ -35,7 +36,9 @@ import org.aquila.network.Network;
  */
 public abstract class Message {
 
-	// MAGIC(4) + TYPE(4) + HAS-ID(1) + ID?(4) + DATA-SIZE(4) + CHECKSUM?(4) + DATA?(*)
+	// MAGIC(4) + TYPE(4) + FLAGS(1) + ID?(4) + DATA-SIZE(4) + CHECKSUM?(4) + DATA?(*)
+	// FLAGS was originally HAS-ID, which older peers only ever set to 0 or 1
+	// If compressed, DATA is UNCOMPRESSED-SIZE(4) + DEFLATE(*)
 	private static final int MAGIC_LENGTH = 4;
 	private static final int TYPE_LENGTH = 4;
 	private static final int HAS_ID_LENGTH = 1;
@@ -43,8 +46,18 @@ public abstract class Message {
 	private static final int DATA_SIZE_LENGTH = 4;
 	private static final int CHECKSUM_LENGTH = 4;
 
+	private static final byte FLAG_HAS_ID = 0x01;
+	/** Only sent to peers that advertise {@link HelloMessage#CAPABILITY_COMPRESSION} */
+	private static final byte FLAG_COMPRESSED = 0x02;
+
 	private static final int MAX_DATA_SIZE = 10 * 1024 * 1024; // 10MB
 
+	/** Payloads smaller than this aren't worth compressing. */
+	private static final int COMPRESSION_THRESHOLD = 1024; // bytes
+	/** Message types with large, typically repetitive, payloads. */
+	private static final Set<MessageType> COMPRESSIBLE_TYPES = EnumSet.of(MessageType.BLOCK_SUMMARIES_V2,
+			MessageType.SIGNATURES, MessageType.TRANSACTIONS, MessageType.ONLINE_ACCOUNTS_V3, MessageType.PEERS_V2);
+
 	protected static final byte[] EMPTY_DATA_BYTES = new byte[0];
 	private static final ByteBuffer EMPTY_READ_ONLY_BYTE_BUFFER = ByteBuffer.wrap(EMPTY_DATA_BYTES).asReadOnlyBuffer();
 
@@ -56,6 +69,10 @@ public abstract class Message {
 	/** Serialized outgoing message checksum. Expected to be written to by subclass. */
 	protected byte[] checksumBytes;
 
+	/** Compressed outgoing message data, empty if not worth compressing, or null if not yet tried. */
+	private volatile byte[] compressedDataBytes;
+	private byte[] compressedChecksumBytes;
+
 	/** Typically called by subclass when constructing message from received network data. */
 	protected Message(int id, MessageType type) {
 		this.id = id;
@@ -92,13 +109,12 @@ public abstract class Message {
 	 */
 	public static Message fromByteBuffer(ByteBuffer readOnlyBuffer) throws MessageException {
 		try {
-			// Read only enough bytes to cover Message "magic" preamble
-			byte[] messageMagic = new byte[MAGIC_LENGTH];
-			readOnlyBuffer.get(messageMagic);
-
-			if (!Arrays.equals(messageMagic, Network.getInstance().getMessageMagic()))
-				// Didn't receive correct Message "magic"
-				throw new MessageException("Received incorrect message 'magic'");
+			// Compare Message "magic" preamble in place, rather than copying it out
+			byte[] expectedMagic = Network.getInstance().getMessageMagic();
+			for (int i = 0; i < MAGIC_LENGTH; ++i)
+				if (readOnlyBuffer.get() != expectedMagic[i])
+					// Didn't receive correct Message "magic"
+					throw new MessageException("Received incorrect message 'magic'");
 
 			// Find supporting object
 			int typeValue = readOnlyBuffer.getInt();
@@ -107,9 +123,9 @@ public abstract class Message {
 				messageType = MessageType.UNSUPPORTED;
 
 			// Optional message ID
-			byte hasId = readOnlyBuffer.get();
+			byte flags = readOnlyBuffer.get();
 			int id = -1;
-			if (hasId != 0) {
+			if ((flags & FLAG_HAS_ID) != 0) {
 				id = readOnlyBuffer.getInt();
 
 				if (id <= 0)
@@ -129,17 +145,18 @@ public abstract class Message {
 
 			ByteBuffer dataSlice = EMPTY_READ_ONLY_BYTE_BUFFER;
 			if (dataSize > 0) {
-				byte[] expectedChecksum = new byte[CHECKSUM_LENGTH];
-				readOnlyBuffer.get(expectedChecksum);
+				int checksumPosition = readOnlyBuffer.position();
+				readOnlyBuffer.position(checksumPosition + CHECKSUM_LENGTH);
 
 				// Slice data in readBuffer so we can pass to Message subclass
 				dataSlice = readOnlyBuffer.slice();
 				dataSlice.limit(dataSize);
 
-				// Test checksum
+				// Test checksum against bytes still in readBuffer
 				byte[] actualChecksum = generateChecksum(dataSlice);
-				if (!Arrays.equals(expectedChecksum, actualChecksum))
-					throw new MessageException("Message checksum incorrect");
+				for (int i = 0; i < CHECKSUM_LENGTH; ++i)
+					if (readOnlyBuffer.get(checksumPosition + i) != actualChecksum[i])
+						throw new MessageException("Message checksum incorrect");
 
 				// Reset position after being consumed by generateChecksum
 				dataSlice.position(0);
@@ -147,13 +164,137 @@ public abstract class Message {
 				readOnlyBuffer.position(readOnlyBuffer.position() + dataSize);
 			}
 
-			return messageType.fromByteBuffer(id, dataSlice);
+			if ((flags & FLAG_COMPRESSED) == 0)
+				return messageType.fromByteBuffer(id, dataSlice);
+
+			// Decompressed data is complete, so running out is an error, not a reason to wait for more bytes
+			ByteBuffer decompressedData = decompress(dataSlice);
+			try {
+				return messageType.fromByteBuffer(id, decompressedData);
+			} catch (BufferUnderflowException e) {
+				throw new MessageException("Decompressed message data truncated");
+			}
 		} catch (BufferUnderflowException e) {
 			// Not enough bytes to fully decode message...
 			return null;
 		}
 	}
 
+	/**
+	 * Returns length of whole message frame at start of buffer, as declared by its header.
+	 * <p>
+	 * Header is not validated, which is left to {@link #fromByteBuffer(ByteBuffer)}.
+	 *
+	 * @param readOnlyBuffer ByteBuffer containing bytes read from network
+	 * @return frame length, or -1 if not enough of header has been read yet
+	 */
+	public static int getFrameLength(ByteBuffer readOnlyBuffer) {
+		int headerLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
+		if (readOnlyBuffer.limit() < headerLength)
+			return -1;
+
+		byte flags = readOnlyBuffer.get(headerLength - HAS_ID_LENGTH);
+		headerLength += (flags & FLAG_HAS_ID) != 0 ? ID_LENGTH : 0;
+		headerLength += DATA_SIZE_LENGTH;
+		if (readOnlyBuffer.limit() < headerLength)
+			return -1;
+
+		int dataSize = readOnlyBuffer.getInt(headerLength - DATA_SIZE_LENGTH);
+		if (dataSize <= 0)
+			return headerLength;
+
+		return headerLength + CHECKSUM_LENGTH + dataSize;
+	}
+
+	private static ByteBuffer decompress(ByteBuffer compressedData) throws MessageException {
+		if (compressedData.remaining() < DATA_SIZE_LENGTH)
+			throw new MessageException("Compressed message data missing size");
+
+		int dataSize = compressedData.getInt();
+		if (dataSize <= 0 || dataSize > MAX_DATA_SIZE)
+			throw new MessageException(String.format("Declared decompressed data length %d invalid or larger than max allowed %d", dataSize, MAX_DATA_SIZE));
+
+		// Declared size isn't trusted enough to allocate up front, so grow output as data is actually inflated
+		byte[] data = new byte[Math.min(dataSize, Math.max(compressedData.remaining() * 4, COMPRESSION_THRESHOLD))];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressedData);
+
+			int inflatedLength = 0;
+			while (!inflater.finished()) {
+				if (inflatedLength == data.length) {
+					if (data.length == dataSize) {
+						// Only the end of the stream may remain, anything more is longer than declared
+						if (inflater.inflate(new byte[1]) > 0 || !inflater.finished())
+							throw new MessageException("Decompressed message data longer than declared");
+
+						break;
+					}
+
+					data = Arrays.copyOf(data, (int) Math.min(dataSize, 2L * data.length));
+				}
+
+				int inflatedCount = inflater.inflate(data, inflatedLength, data.length - inflatedLength);
+				if (inflatedCount == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new MessageException("Compressed message data truncated");
+
+				inflatedLength += inflatedCount;
+			}
+
+			if (inflatedLength != dataSize)
+				throw new MessageException("Decompressed message data length incorrect");
+		} catch (DataFormatException e) {
+			throw new MessageException("Compressed message data corrupt", e);
+		} finally {
+			inflater.end();
+		}
+
+		return ByteBuffer.wrap(data).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns compressed payload, or null if payload is too small, not compressible or compression didn't help.
+	 * <p>
+	 * Result is cached as the same message is often sent to several peers.
+	 */
+	private byte[] getCompressedDataBytes() {
+		if (!COMPRESSIBLE_TYPES.contains(this.type) || this.dataBytes.length < COMPRESSION_THRESHOLD)
+			return null;
+
+		// Benign race: concurrent senders might both compress, but with the same result
+		byte[] compressedDataBytes = this.compressedDataBytes;
+		if (compressedDataBytes == null) {
+			compressedDataBytes = compress(this.dataBytes);
+			this.compressedChecksumBytes = compressedDataBytes.length > 0 ? generateChecksum(compressedDataBytes) : null;
+			this.compressedDataBytes = compressedDataBytes;
+		}
+
+		return compressedDataBytes.length > 0 ? compressedDataBytes : null;
+	}
+
+	/** Returns UNCOMPRESSED-SIZE(4) + DEFLATE(*), or empty array if no smaller than data. */
+	private static byte[] compress(byte[] data) {
+		byte[] output = new byte[data.length];
+		ByteBuffer.wrap(output).putInt(data.length);
+
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			int outputLength = DATA_SIZE_LENGTH;
+			while (!deflater.finished() && outputLength < output.length)
+				outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+
+			if (!deflater.finished())
+				return EMPTY_DATA_BYTES;
+
+			return Arrays.copyOf(output, outputLength);
+		} finally {
+			deflater.end();
+		}
+	}
+
 	protected static byte[] generateChecksum(byte[] data) {
 		return Arrays.copyOfRange(Crypto.digest(data), 0, CHECKSUM_LENGTH);
 	}
@@ -170,44 +311,79 @@ public abstract class Message {
 			throw new MessageException("Missing data checksum");
 	}
 
-	public byte[] toBytes() throws MessageException {
+	/**
+	 * Returns serialized message as header and payload buffers, suitable for a gathering write.
+	 * <p>
+	 * Payload buffer wraps, rather than copies, {@code dataBytes} and is omitted if there is no payload.
+	 */
+	public ByteBuffer[] toByteBuffers() throws MessageException {
+		return this.toByteBuffers(false);
+	}
+
+	/**
+	 * Returns serialized message as header and payload buffers, suitable for a gathering write.
+	 * <p>
+	 * Payload buffer wraps, rather than copies, {@code dataBytes} and is omitted if there is no payload.
+	 *
+	 * @param allowCompression whether recipient can decode compressed payloads
+	 */
+	public ByteBuffer[] toByteBuffers(boolean allowCompression) throws MessageException {
 		checkValidOutgoing();
 
+		byte flags = this.hasId() ? FLAG_HAS_ID : 0;
+		byte[] payload = this.dataBytes;
+		byte[] payloadChecksum = this.checksumBytes;
+
+		byte[] compressedDataBytes = allowCompression ? this.getCompressedDataBytes() : null;
+		if (compressedDataBytes != null) {
+			flags |= FLAG_COMPRESSED;
+			payload = compressedDataBytes;
+			payloadChecksum = this.compressedChecksumBytes;
+		}
+
 		// We can calculate exact length
-		int messageLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
-		messageLength += this.hasId() ? ID_LENGTH : 0;
-		messageLength += DATA_SIZE_LENGTH + this.dataBytes.length > 0 ? CHECKSUM_LENGTH + this.dataBytes.length : 0;
+		int headerLength = MAGIC_LENGTH + TYPE_LENGTH + HAS_ID_LENGTH;
+		headerLength += this.hasId() ? ID_LENGTH : 0;
+		headerLength += DATA_SIZE_LENGTH;
+		headerLength += payload.length > 0 ? CHECKSUM_LENGTH : 0;
 
+		int messageLength = headerLength + payload.length;
 		if (messageLength > MAX_DATA_SIZE)
 			throw new MessageException(String.format("About to send message with length %d larger than allowed %d", messageLength, MAX_DATA_SIZE));
 
-		try {
-			ByteArrayOutputStream bytes = new ByteArrayOutputStream(messageLength);
+		ByteBuffer header = ByteBuffer.allocate(headerLength);
 
-			// Magic
-			bytes.write(Network.getInstance().getMessageMagic());
+		// Magic
+		header.put(Network.getInstance().getMessageMagic());
 
-			bytes.write(Ints.toByteArray(this.type.value));
+		header.putInt(this.type.value);
 
-			if (this.hasId()) {
-				bytes.write(1);
+		header.put(flags);
+		if (this.hasId())
+			header.putInt(this.id);
 
-				bytes.write(Ints.toByteArray(this.id));
-			} else {
-				bytes.write(0);
-			}
+		header.putInt(payload.length);
 
-			bytes.write(Ints.toByteArray(this.dataBytes.length));
+		if (payload.length == 0)
+			return new ByteBuffer[] { header.flip() };
 
-			if (this.dataBytes.length > 0) {
-				bytes.write(this.checksumBytes);
-				bytes.write(this.dataBytes);
-			}
+		header.put(payloadChecksum);
 
-			return bytes.toByteArray();
-		} catch (IOException e) {
-			throw new MessageException("Failed to serialize message", e);
-		}
+		return new ByteBuffer[] { header.flip(), ByteBuffer.wrap(payload) };
+	}
+
+	public byte[] toBytes() throws MessageException {
+		ByteBuffer[] buffers = this.toByteBuffers();
+
+		int messageLength = 0;
+		for (ByteBuffer buffer : buffers)
+			messageLength += buffer.remaining();
+
+		ByteBuffer bytes = ByteBuffer.allocate(messageLength);
+		for (ByteBuffer buffer : buffers)
+			bytes.put(buffer);
+
+		return bytes.array();
 	}
 
 	public static <M extends Message> M cloneWithNewId(M message, int newId) {
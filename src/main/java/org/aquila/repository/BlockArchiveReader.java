@@ -14,17 +14,88 @@ import static org.aquila.transform.Transformer.INT_LENGTH;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class BlockArchiveReader {
 
     private static BlockArchiveReader instance;
-    private Map<String, Triple<Integer, Integer, Integer>> fileListCache;
+    /** Archive files, keyed by start height, so that a file can be found for a given height using floorEntry() */
+    private volatile NavigableMap<Integer, ArchiveFileInfo> fileListCache;
+    /** Highest end height of any archive file, or 0 if none */
+    private volatile int maxEndHeight;
+
+    /** Maximum number of archive files kept open at once */
+    private static final int MAX_OPEN_FILES = 32;
+    /** Maximum number of attempts to read a block, in case its file is closed under us and needs reopening */
+    private static final int MAX_READ_ATTEMPTS = 3;
+    /** Open archive files, in least-recently-used order */
+    private final Map<String, OpenArchiveFile> openFiles = new LinkedHashMap<>(MAX_OPEN_FILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OpenArchiveFile> eldest) {
+            if (this.size() <= MAX_OPEN_FILES) {
+                return false;
+            }
+
+            eldest.getValue().close();
+            return true;
+        }
+    };
 
     private static final Logger LOGGER = LogManager.getLogger(BlockArchiveReader.class);
 
+    /** Archive file's name and height range, as parsed from its filename */
+    private static class ArchiveFileInfo {
+        private final String filename;
+        private final int startHeight;
+        private final int endHeight;
+
+        private ArchiveFileInfo(String filename, int startHeight, int endHeight) {
+            this.filename = filename;
+            this.startHeight = startHeight;
+            this.endHeight = endHeight;
+        }
+    }
+
+    /**
+     * Archive file opened for positional reads, along with its parsed header.
+     * <p>
+     * Files are read using {@link FileChannel#read(ByteBuffer, long)} rather than memory-mapped,
+     * as a mapping can't be released on demand, which would stop archive files being deleted on some platforms.
+     */
+    private static class OpenArchiveFile {
+        private final String filename;
+        private final FileChannel channel;
+        private final int version;
+        private final int startHeight;
+        private final int endHeight;
+        /** Position, within file, of each block's metadata (height, length), indexed by height - startHeight */
+        private final long[] blockPositions;
+
+        private OpenArchiveFile(String filename, FileChannel channel, int version, int startHeight, int endHeight, long[] blockPositions) {
+            this.filename = filename;
+            this.channel = channel;
+            this.version = version;
+            this.startHeight = startHeight;
+            this.endHeight = endHeight;
+            this.blockPositions = blockPositions;
+        }
+
+        private void close() {
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close archive file {}: {}", this.filename, e.getMessage());
+            }
+        }
+    }
+
     public BlockArchiveReader() {
 
     }
@@ -37,11 +108,12 @@ public class BlockArchiveReader {
         return instance;
     }
 
-    private void fetchFileList() {
+    private NavigableMap<Integer, ArchiveFileInfo> fetchFileList() {
         Path archivePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive").toAbsolutePath();
         File archiveDirFile = archivePath.toFile();
         String[] files = archiveDirFile.list();
-        Map<String, Triple<Integer, Integer, Integer>> map = new HashMap<>();
+        NavigableMap<Integer, ArchiveFileInfo> map = new TreeMap<>();
+        int maxEndHeight = 0;
 
         if (files != null) {
             for (String file : files) {
@@ -55,13 +127,23 @@ public class BlockArchiveReader {
                 }
                 // Remove the extension and split into two parts
                 String[] parts = filename.substring(0, filename.lastIndexOf('.')).split("-");
-                Integer startHeight = Integer.parseInt(parts[0]);
-                Integer endHeight = Integer.parseInt(parts[1]);
-                Integer range = endHeight - startHeight;
-                map.put(filename, new Triple(startHeight, endHeight, range));
+                int startHeight;
+                int endHeight;
+                try {
+                    startHeight = Integer.parseInt(parts[0]);
+                    endHeight = Integer.parseInt(parts[1]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    // Not a usable file
+                    continue;
+                }
+                map.put(startHeight, new ArchiveFileInfo(filename, startHeight, endHeight));
+                maxEndHeight = Math.max(maxEndHeight, endHeight);
             }
         }
-        this.fileListCache = Map.copyOf(map);
+        this.maxEndHeight = maxEndHeight;
+        NavigableMap<Integer, ArchiveFileInfo> fileList = Collections.unmodifiableNavigableMap(map);
+        this.fileListCache = fileList;
+        return fileList;
     }
 
     public Integer fetchSerializationVersionForHeight(int height) {
@@ -92,6 +174,15 @@ public class BlockArchiveReader {
             return null;
         }
 
+        return fromSerializedBlock(serializedBytes, serializationVersion, height);
+    }
+
+    /**
+     * Deserializes archived block bytes, as returned by {@link #fetchSerializedBlockBytesForHeight(int)}.
+     *
+     * @return block info, or null if bytes couldn't be deserialized
+     */
+    public static BlockTransformation fromSerializedBlock(byte[] serializedBytes, int serializationVersion, int height) {
         ByteBuffer byteBuffer = ByteBuffer.wrap(serializedBytes);
         BlockTransformation blockInfo = null;
         try {
@@ -137,8 +228,10 @@ public class BlockArchiveReader {
 
         List<BlockTransformation> blockInfoList = new ArrayList<>();
 
-        for (int height = startHeight; height <= endHeight; height++) {
-            BlockTransformation blockInfo = this.fetchBlockAtHeight(height);
+        Iterator<Triple<byte[], Integer, Integer>> serializedBlocks = this.fetchSerializedBlockBytesFromRange(startHeight, endHeight);
+        while (serializedBlocks.hasNext()) {
+            Triple<byte[], Integer, Integer> serializedBlock = serializedBlocks.next();
+            BlockTransformation blockInfo = fromSerializedBlock(serializedBlock.getA(), serializedBlock.getB(), serializedBlock.getC());
             if (blockInfo == null) {
                 return blockInfoList;
             }
@@ -172,28 +265,117 @@ public class BlockArchiveReader {
     }
 
     private String getFilenameForHeight(int height) {
-        if (this.fileListCache == null) {
-            this.fetchFileList();
+        NavigableMap<Integer, ArchiveFileInfo> fileList = this.fileListCache;
+        if (fileList == null) {
+            fileList = this.fetchFileList();
         }
 
-        Iterator it = this.fileListCache.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry) it.next();
-            if (pair == null && pair.getKey() == null && pair.getValue() == null) {
-                continue;
+        Map.Entry<Integer, ArchiveFileInfo> entry = fileList.floorEntry(height);
+        if (entry == null || height > entry.getValue().endHeight) {
+            return null;
+        }
+
+        // Found the correct file
+        return entry.getValue().filename;
+    }
+
+    /**
+     * Returns open archive file, opening it if not already open.
+     *
+     * @return open file, or null if file couldn't be opened or has an unrecognized header
+     */
+    private OpenArchiveFile getOpenFile(String filename) {
+        synchronized (this.openFiles) {
+            OpenArchiveFile openFile = this.openFiles.get(filename);
+            if (openFile != null) {
+                return openFile;
             }
-            Triple<Integer, Integer, Integer> heightInfo = (Triple<Integer, Integer, Integer>) pair.getValue();
-            Integer startHeight = heightInfo.getA();
-            Integer endHeight = heightInfo.getB();
-
-            if (height >= startHeight && height <= endHeight) {
-                // Found the correct file
-                String filename = (String) pair.getKey();
-                return filename;
+
+            openFile = this.openFile(filename);
+            if (openFile != null) {
+                this.openFiles.put(filename, openFile);
             }
+
+            return openFile;
         }
+    }
 
-        return null;
+    /** Forgets <tt>openFile</tt>, e.g. because its channel was closed by an interrupted reader, so that it is reopened next time. */
+    private void forgetOpenFile(OpenArchiveFile openFile) {
+        synchronized (this.openFiles) {
+            this.openFiles.remove(openFile.filename, openFile);
+        }
+
+        openFile.close();
+    }
+
+    private OpenArchiveFile openFile(String filename) {
+        Path filePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive", filename).toAbsolutePath();
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            LOGGER.info("File {} not found: {}", filename, e.getMessage());
+            return null;
+        } catch (IOException e) {
+            LOGGER.info("Unable to open archive file {}: {}", filename, e.getMessage());
+            return null;
+        }
+
+        OpenArchiveFile openFile = null;
+        try {
+            // Get info about this file (the "fixed length header")
+            final int fixedHeaderLength = 5 * INT_LENGTH;
+            ByteBuffer fixedHeader = ByteBuffer.allocate(fixedHeaderLength);
+            readFully(channel, fixedHeader, 0);
+
+            final int version = fixedHeader.getInt(0);
+            final int startHeight = fixedHeader.getInt(INT_LENGTH);
+            final int endHeight = fixedHeader.getInt(2 * INT_LENGTH);
+            // Block count (unused) at 3 * INT_LENGTH
+            final int variableHeaderLength = fixedHeader.getInt(4 * INT_LENGTH);
+            // End of fixed length header
+
+            // Make sure the version is one we recognize
+            if (version != 1 && version != 2) {
+                LOGGER.info("Error: unknown version in file {}: {}", filename, version);
+                return null;
+            }
+
+            // Build index of block positions from the variable length header
+            final int blockCount = endHeight - startHeight + 1;
+            if (blockCount <= 0 || blockCount > variableHeaderLength / INT_LENGTH) {
+                LOGGER.info("Error: range {}-{} of file {} doesn't match its header", startHeight, endHeight, filename);
+                return null;
+            }
+
+            ByteBuffer variableHeader = ByteBuffer.allocate(blockCount * INT_LENGTH);
+            readFully(channel, variableHeader, fixedHeaderLength);
+
+            final long dataSegmentStartIndex = fixedHeaderLength + variableHeaderLength + INT_LENGTH; // Confirmed correct
+            long[] blockPositions = new long[blockCount];
+            for (int i = 0; i < blockCount; ++i) {
+                blockPositions[i] = dataSegmentStartIndex + variableHeader.getInt(i * INT_LENGTH);
+            }
+
+            openFile = new OpenArchiveFile(filename, channel, version, startHeight, endHeight, blockPositions);
+            return openFile;
+        } catch (EOFException e) {
+            LOGGER.info("Error: archive file {} is truncated", filename);
+            return null;
+        } catch (IOException e) {
+            LOGGER.info("Unable to read archive file {}: {}", filename, e.getMessage());
+            return null;
+        } finally {
+            if (openFile == null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing more we can do
+                }
+            }
+        }
     }
 
     public Triple<byte[], Integer, Integer> fetchSerializedBlockBytesForSignature(byte[] signature, boolean includeHeightPrefix, Repository repository) {
@@ -232,54 +414,141 @@ public class BlockArchiveReader {
     }
 
     public Triple<byte[], Integer, Integer> fetchSerializedBlockBytesForHeight(int height) {
-        String filename = this.getFilenameForHeight(height);
-        if (filename == null) {
-            // We don't have this block in the archive
-            // Invalidate the file list cache in case it is out of date
-            this.invalidateFileListCache();
-            return null;
+        // Retry if file was closed under us by invalidation, eviction or another reader's interrupt
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; ++attempt) {
+            OpenArchiveFile openFile = this.getOpenFileForHeight(height);
+            if (openFile == null) {
+                return null;
+            }
+
+            try {
+                return readSerializedBlock(openFile, height);
+            } catch (ClosedByInterruptException e) {
+                this.forgetOpenFile(openFile);
+                return null;
+            } catch (ClosedChannelException e) {
+                this.forgetOpenFile(openFile);
+            }
         }
 
-        Path filePath = Paths.get(Settings.getInstance().getRepositoryPath(), "archive", filename).toAbsolutePath();
-        RandomAccessFile file = null;
-        try {
-            file = new RandomAccessFile(filePath.toString(), "r");
-            // Get info about this file (the "fixed length header")
-            final int version = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int startHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int endHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            file.readInt(); // Block count (unused) // Do not remove or comment out, as it is moving the file pointer
-            final int variableHeaderLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            final int fixedHeaderLength = (int)file.getFilePointer();
-            // End of fixed length header
+        return null;
+    }
 
-            // Make sure the version is one we recognize
-            if (version != 1 && version != 2) {
-                LOGGER.info("Error: unknown version in file {}: {}", filename, version);
+    /**
+     * Returns serialized bytes of archived blocks from <tt>startHeight</tt> to <tt>endHeight</tt> inclusive.
+     * <p>
+     * Blocks are read in order, straight from each archive file's data segment,
+     * so archive files are looked up once per file rather than once per block.
+     * Iteration stops early at the first block that isn't in the archive.
+     * <p>
+     * Each element is (block bytes, serialization version, height), as per {@link #fetchSerializedBlockBytesForHeight(int)}.
+     */
+    public Iterator<Triple<byte[], Integer, Integer>> fetchSerializedBlockBytesFromRange(int startHeight, int endHeight) {
+        return new SerializedBlockIterator(startHeight, endHeight);
+    }
+
+    private class SerializedBlockIterator implements Iterator<Triple<byte[], Integer, Integer>> {
+        private final int endHeight;
+        private int nextHeight;
+        private OpenArchiveFile openFile;
+        private Triple<byte[], Integer, Integer> nextBlock;
+
+        private SerializedBlockIterator(int startHeight, int endHeight) {
+            this.nextHeight = startHeight;
+            this.endHeight = endHeight;
+            this.nextBlock = this.readNext();
+        }
+
+        private Triple<byte[], Integer, Integer> readNext() {
+            if (this.nextHeight > this.endHeight) {
                 return null;
             }
 
-            // Verify that the block is within the reported range
-            if (height < startHeight || height > endHeight) {
-                LOGGER.info("Error: requested height {} but the range of file {} is {}-{}",
-                        height, filename, startHeight, endHeight);
-                return null;
+            for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; ++attempt) {
+                // Move on to next file if needed
+                if (this.openFile == null || this.nextHeight > this.openFile.endHeight) {
+                    this.openFile = getOpenFileForHeight(this.nextHeight);
+                    if (this.openFile == null) {
+                        return null;
+                    }
+                }
+
+                try {
+                    Triple<byte[], Integer, Integer> serializedBlock = readSerializedBlock(this.openFile, this.nextHeight);
+                    if (serializedBlock != null) {
+                        this.nextHeight++;
+                    }
+
+                    return serializedBlock;
+                } catch (ClosedByInterruptException e) {
+                    forgetOpenFile(this.openFile);
+                    return null;
+                } catch (ClosedChannelException e) {
+                    // Closed under us, so reopen
+                    forgetOpenFile(this.openFile);
+                    this.openFile = null;
+                }
             }
 
-            // Seek to the location of the block index in the variable length header
-            final int locationOfBlockIndexInVariableHeaderSegment = (height - startHeight) * INT_LENGTH;
-            file.seek(fixedHeaderLength + locationOfBlockIndexInVariableHeaderSegment);
+            return null;
+        }
 
-            // Read the value to obtain the index of this block in the data segment
-            int locationOfBlockInDataSegment = file.readInt();
+        @Override
+        public boolean hasNext() {
+            return this.nextBlock != null;
+        }
 
-            // Now seek to the block data itself
-            int dataSegmentStartIndex = fixedHeaderLength + variableHeaderLength + INT_LENGTH; // Confirmed correct
-            file.seek(dataSegmentStartIndex + locationOfBlockInDataSegment);
+        @Override
+        public Triple<byte[], Integer, Integer> next() {
+            if (this.nextBlock == null) {
+                throw new NoSuchElementException();
+            }
+
+            Triple<byte[], Integer, Integer> serializedBlock = this.nextBlock;
+            this.nextBlock = this.readNext();
+            return serializedBlock;
+        }
+    }
+
+    private OpenArchiveFile getOpenFileForHeight(int height) {
+        String filename = this.getFilenameForHeight(height);
+        if (filename == null) {
+            // We don't have this block in the archive
+            // Invalidate the file list cache in case it is out of date
+            // (existing open files are still valid, so keep those)
+            this.fileListCache = null;
+            return null;
+        }
+
+        OpenArchiveFile openFile = this.getOpenFile(filename);
+        if (openFile == null) {
+            return null;
+        }
+
+        // Verify that the block is within the reported range
+        if (height < openFile.startHeight || height > openFile.endHeight) {
+            LOGGER.info("Error: requested height {} but the range of file {} is {}-{}",
+                    height, filename, openFile.startHeight, openFile.endHeight);
+            return null;
+        }
+
+        return openFile;
+    }
+
+    /**
+     * Reads block at <tt>height</tt> from <tt>openFile</tt>.
+     *
+     * @throws ClosedChannelException if file was closed, in which case caller can reopen it and try again
+     */
+    private static Triple<byte[], Integer, Integer> readSerializedBlock(OpenArchiveFile openFile, int height) throws ClosedChannelException {
+        try {
+            long position = openFile.blockPositions[height - openFile.startHeight];
 
             // Read the block metadata
-            int blockHeight = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
-            int blockLength = file.readInt(); // Do not remove or comment out, as it is moving the file pointer
+            ByteBuffer metadata = ByteBuffer.allocate(2 * INT_LENGTH);
+            readFully(openFile.channel, metadata, position);
+            int blockHeight = metadata.getInt(0);
+            int blockLength = metadata.getInt(INT_LENGTH);
 
             // Ensure the block height matches the one requested
             if (blockHeight != height) {
@@ -287,27 +556,31 @@ public class BlockArchiveReader {
                 return null;
             }
 
+            // Don't trust length enough to allocate for it before checking it against the file
+            if (blockLength < 0 || position + metadata.capacity() + blockLength > openFile.channel.size()) {
+                LOGGER.info("Error: block {} has invalid length {}", height, blockLength);
+                return null;
+            }
+
             // Now retrieve the block's serialized bytes
-            byte[] blockBytes = new byte[blockLength];
-            file.read(blockBytes);
+            ByteBuffer blockBytes = ByteBuffer.allocate(blockLength);
+            readFully(openFile.channel, blockBytes, position + metadata.capacity());
 
-            return new Triple<>(blockBytes, version, height);
+            return new Triple<>(blockBytes.array(), openFile.version, height);
 
-        } catch (FileNotFoundException e) {
-            LOGGER.info("File {} not found: {}", filename, e.getMessage());
-            return null;
+        } catch (ClosedChannelException e) {
+            throw e;
         } catch (IOException e) {
             LOGGER.info("Unable to read block {} from archive: {}", height, e.getMessage());
             return null;
         }
-        finally {
-            // Close the file
-            if (file != null) {
-                try {
-                    file.close();
-                } catch (IOException e) {
-                    // Failed to close, but no need to handle this
-                }
+    }
+
+    /** Fills <tt>buffer</tt> from <tt>channel</tt>, starting at file <tt>position</tt>, without changing channel's own position. */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
             }
         }
     }
@@ -317,27 +590,20 @@ public class BlockArchiveReader {
             this.fetchFileList();
         }
 
-        int maxEndHeight = 0;
-
-        Iterator it = this.fileListCache.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry) it.next();
-            if (pair == null && pair.getKey() == null && pair.getValue() == null) {
-                continue;
-            }
-            Triple<Integer, Integer, Integer> heightInfo = (Triple<Integer, Integer, Integer>) pair.getValue();
-            Integer endHeight = heightInfo.getB();
-
-            if (endHeight != null && endHeight > maxEndHeight) {
-                maxEndHeight = endHeight;
-            }
-        }
-
-        return maxEndHeight;
+        return this.maxEndHeight;
     }
 
+    /**
+     * Forgets archive file list and closes any open files, so that new or rewritten archive files are picked up,
+     * and existing archive files can be deleted.
+     */
     public void invalidateFileListCache() {
         this.fileListCache = null;
+
+        synchronized (this.openFiles) {
+            this.openFiles.values().forEach(OpenArchiveFile::close);
+            this.openFiles.clear();
+        }
     }
 
 }
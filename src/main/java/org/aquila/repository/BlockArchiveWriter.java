@@ -14,6 +14,7 @@ import org.aquila.settings.Settings;
 import org.aquila.transform.TransformationException;
 import org.aquila.transform.block.BlockTransformation;
 import org.aquila.transform.block.BlockTransformer;
+import org.aquila.utils.Triple;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
@@ -21,6 +22,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.List;
 
 public class BlockArchiveWriter {
@@ -150,6 +152,13 @@ public class BlockArchiveWriter {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 
         LOGGER.info(String.format("Fetching blocks from height %d...", startHeight));
+
+        // When rebuilding from an existing archive, read source blocks in one pass
+        Iterator<Triple<byte[], Integer, Integer>> archivedBlocks = null;
+        if (this.dataSource == BlockArchiveDataSource.BLOCK_ARCHIVE) {
+            archivedBlocks = BlockArchiveReader.getInstance().fetchSerializedBlockBytesFromRange(startHeight, endHeight);
+        }
+
         int i = 0;
         while (headerBytes.size() + bytes.size() < this.fileSizeTarget) {
 
@@ -172,15 +181,30 @@ public class BlockArchiveWriter {
             List<TransactionData> transactions = null;
             List<ATStateData> atStates = null;
             byte[] atStatesHash = null;
+            // Source block's serialized bytes, if already in the required serialization version
+            byte[] archivedBlockBytes = null;
 
             switch (this.dataSource) {
                 case BLOCK_ARCHIVE:
-                    BlockTransformation archivedBlock = BlockArchiveReader.getInstance().fetchBlockAtHeight(currentHeight);
+                    if (!archivedBlocks.hasNext()) {
+                        break;
+                    }
+
+                    Triple<byte[], Integer, Integer> serializedBlock = archivedBlocks.next();
+                    if (serializedBlock.getC() != currentHeight) {
+                        break;
+                    }
+
+                    BlockTransformation archivedBlock = BlockArchiveReader.fromSerializedBlock(serializedBlock.getA(), serializedBlock.getB(), currentHeight);
                     if (archivedBlock != null) {
                         blockData = archivedBlock.getBlockData();
                         transactions = archivedBlock.getTransactions();
                         atStates = archivedBlock.getAtStates();
                         atStatesHash = archivedBlock.getAtStatesHash();
+
+                        if (serializedBlock.getB().intValue() == serializationVersion) {
+                            archivedBlockBytes = serializedBlock.getA();
+                        }
                     }
                     break;
 
@@ -199,38 +223,43 @@ public class BlockArchiveWriter {
             repository.getBlockArchiveRepository().save(blockArchiveData);
             repository.saveChanges();
 
-            // Build the block
-            Block block;
-            if (atStatesHash != null) {
-                block = new Block(repository, blockData, transactions, atStatesHash);
-            }
-            else if (atStates != null) {
-                block = new Block(repository, blockData, transactions, atStates);
-            }
-            else {
-                block = new Block(repository, blockData);
-            }
-
             // Write the block data to some byte buffers
             int blockIndex = bytes.size();
             // Write block index to header
             headerBytes.write(Ints.toByteArray(blockIndex));
             // Write block height
-            bytes.write(Ints.toByteArray(block.getBlockData().getHeight()));
+            bytes.write(Ints.toByteArray(blockData.getHeight()));
 
             // Get serialized block bytes
             byte[] blockBytes;
-            switch (serializationVersion) {
-                case 1:
-                    blockBytes = BlockTransformer.toBytes(block);
-                    break;
-
-                case 2:
-                    blockBytes = BlockTransformer.toBytesV2(block);
-                    break;
-
-                default:
-                    throw new DataException("Invalid serialization version");
+            if (archivedBlockBytes != null) {
+                // Source archive already uses required serialization version, so no need to rebuild block
+                blockBytes = archivedBlockBytes;
+            } else {
+                // Build the block
+                Block block;
+                if (atStatesHash != null) {
+                    block = new Block(repository, blockData, transactions, atStatesHash);
+                }
+                else if (atStates != null) {
+                    block = new Block(repository, blockData, transactions, atStates);
+                }
+                else {
+                    block = new Block(repository, blockData);
+                }
+
+                switch (serializationVersion) {
+                    case 1:
+                        blockBytes = BlockTransformer.toBytes(block);
+                        break;
+
+                    case 2:
+                        blockBytes = BlockTransformer.toBytesV2(block);
+                        break;
+
+                    default:
+                        throw new DataException("Invalid serialization version");
+                }
             }
 
             // Write block length
@@ -458,6 +458,8 @@ public class Bootstrap {
             Path output = path.toAbsolutePath().getParent().toAbsolutePath();
             Path inputPath = Paths.get(output.toString(), "bootstrap");
             Path outputPath = Paths.get(Settings.getInstance().getRepositoryPath());
+            // Close any open archive files before deleting them
+            BlockArchiveReader.getInstance().invalidateFileListCache();
             FileUtils.deleteDirectory(outputPath.toFile());
 
             this.updateStatus("Extracting bootstrap...");
@@ -41,6 +41,8 @@ public interface Repository extends AutoCloseable {
 
 	public void rollbackToSavepoint() throws DataException;
 
+	public boolean hasUncommittedChanges() throws DataException;
+
 	@Override
 	public void close() throws DataException;
 
@@ -727,6 +727,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShare(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.get(rewardSharePublicKey);
+
 		String sql = "SELECT minter_public_key, minter, recipient, share_percent FROM RewardShares WHERE reward_share_public_key = ?";
 
 		try (ResultSet resultSet = this.repository.checkedExecute(sql, rewardSharePublicKey)) {
@@ -746,6 +750,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<byte[]> getRewardSharePublicKeys() throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.size() > 0 ? rewardShareSnapshot.getPublicKeys() : null;
+
 		String sql = "SELECT reward_share_public_key FROM RewardShares ORDER BY reward_share_public_key";
 
 		List<byte[]> rewardSharePublicKeys = new ArrayList<>();
@@ -767,6 +775,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public boolean isRewardSharePublicKey(byte[] publicKey) throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.getIndex(publicKey) != null;
+
 		try {
 			return this.repository.exists("RewardShares", "reward_share_public_key = ?", publicKey);
 		} catch (SQLException e) {
@@ -798,7 +810,17 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public List<RewardShareData> getRewardShares() throws DataException {
-		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares";
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.getRewardShares();
+
+		return this.fetchRewardShares();
+	}
+
+	/** Returns all reward-shares, sorted by public key, directly from repository. */
+	private List<RewardShareData> fetchRewardShares() throws DataException {
+		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares "
+				+ "ORDER BY reward_share_public_key";
 
 		List<RewardShareData> rewardShares = new ArrayList<>();
 
@@ -912,6 +934,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public Integer getRewardShareIndex(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.getIndex(rewardSharePublicKey);
+
 		if (!this.rewardShareExists(rewardSharePublicKey))
 			return null;
 
@@ -926,6 +952,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public RewardShareData getRewardShareByIndex(int index) throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.getByIndex(index);
+
 		String sql = "SELECT minter_public_key, minter, recipient, share_percent, reward_share_public_key FROM RewardShares "
 				+ "ORDER BY reward_share_public_key ASC "
 				+ "OFFSET ? LIMIT 1";
@@ -958,6 +988,20 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		if (indexes.length == 0)
 			return rewardShares;
 
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null) {
+			for (int index : indexes) {
+				RewardShareData rewardShareData = rewardShareSnapshot.getByIndex(index);
+				if (rewardShareData == null)
+					// Index is out of bounds
+					return null;
+
+				rewardShares.add(rewardShareData);
+			}
+
+			return rewardShares;
+		}
+
 		try (ResultSet resultSet = this.repository.checkedExecute(sql)) {
 			if (resultSet == null)
 				return null;
@@ -993,6 +1037,10 @@ public class HSQLDBAccountRepository implements AccountRepository {
 
 	@Override
 	public boolean rewardShareExists(byte[] rewardSharePublicKey) throws DataException {
+		HSQLDBRewardShareIndex.Snapshot rewardShareSnapshot = this.getRewardShareSnapshot();
+		if (rewardShareSnapshot != null)
+			return rewardShareSnapshot.getIndex(rewardSharePublicKey) != null;
+
 		try {
 			return this.repository.exists("RewardShares", "reward_share_public_key = ?", rewardSharePublicKey);
 		} catch (SQLException e) {
@@ -1013,6 +1061,8 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to save reward-share info into repository", e);
 		}
+
+		this.repository.addRewardShareChange(HSQLDBRewardShareIndex.saved(rewardShareData));
 	}
 
 	@Override
@@ -1022,6 +1072,12 @@ public class HSQLDBAccountRepository implements AccountRepository {
 		} catch (SQLException e) {
 			throw new DataException("Unable to delete reward-share info from repository", e);
 		}
+
+		this.repository.addRewardShareChange(HSQLDBRewardShareIndex.deleted(minterPublickey, recipient));
+	}
+
+	private HSQLDBRewardShareIndex.Snapshot getRewardShareSnapshot() throws DataException {
+		return this.repository.getRewardShareSnapshot(this::fetchRewardShares);
 	}
 
 	// Minting accounts used by BlockMinter
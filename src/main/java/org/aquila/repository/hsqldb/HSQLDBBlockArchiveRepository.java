@@ -55,12 +55,13 @@ public class HSQLDBBlockArchiveRepository implements BlockArchiveRepository {
     public List<BlockData> fromRange(int startHeight, int endHeight) throws DataException {
         List<BlockData> blocks = new ArrayList<>();
 
-        for (int height = startHeight; height < endHeight; height++) {
-            BlockData blockData = this.fromHeight(height);
-            if (blockData == null) {
+        // Read whole range in one pass over the archive files
+        List<BlockTransformation> blockInfoList = BlockArchiveReader.getInstance().fetchBlocksFromRange(startHeight, endHeight - 1);
+        for (BlockTransformation blockInfo : blockInfoList) {
+            if (blockInfo.getBlockData() == null) {
                 return blocks;
             }
-            blocks.add(blockData);
+            blocks.add(blockInfo.getBlockData());
         }
         return blocks;
     }
@@ -17,6 +17,7 @@ import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -34,18 +35,33 @@ public class HSQLDBRepository implements Repository {
 
 	private static final Logger LOGGER = LogManager.getLogger(HSQLDBRepository.class);
 
-	public static final Object CHECKPOINT_LOCK = new Object();
+	/**
+	 * Coordinates CHECKPOINTs with other database activity.
+	 * <p>
+	 * Statements, and new connections, share the read lock, so they don't block each other.
+	 * CHECKPOINT, backup and maintenance take the write lock, blocking everything else until done.
+	 */
+	public static final ReentrantReadWriteLock CHECKPOINT_LOCK = new ReentrantReadWriteLock();
 
 	// "serialization failure"
 	private static final Integer DEADLOCK_ERROR_CODE = Integer.valueOf(-4861);
 
 	protected Connection connection;
 	protected final Deque<Savepoint> savepoints = new ArrayDeque<>(3);
+	/** Number of reward-share changes made before each savepoint, so rolled-back changes can be discarded. */
+	protected final Deque<Integer> savepointRewardShareChanges = new ArrayDeque<>(3);
 	protected boolean debugState = false;
 	protected Long slowQueryThreshold = null;
 	protected List<String> sqlStatements;
 	protected long sessionId;
 	protected final Map<String, PreparedStatement> preparedStatementCache = new HashMap<>();
+
+	/** Shared index of committed reward-shares, or null if not in use. */
+	protected final HSQLDBRewardShareIndex rewardShareIndex;
+	/** Index version when this session's current transaction began. */
+	protected long rewardShareIndexVersion;
+	/** Uncommitted reward-share changes made by this session, in order. */
+	protected final List<HSQLDBRewardShareIndex.Change> rewardShareChanges = new ArrayList<>();
 	// We want the same object corresponding to the actual DB
 	protected final Object trimHeightsLock = RepositoryManager.getRepositoryFactory();
 	protected final Object latestATStatesLock = RepositoryManager.getRepositoryFactory();
@@ -69,8 +85,17 @@ public class HSQLDBRepository implements Repository {
 
 	// NB: no visibility modifier so only callable from within same package
 	/* package */ HSQLDBRepository(Connection connection) throws DataException {
+		this(connection, null);
+	}
+
+	/* package */ HSQLDBRepository(Connection connection, HSQLDBRewardShareIndex rewardShareIndex) throws DataException {
 		this.connection = connection;
 
+		// Before our transaction starts, so any later commit by another session is detected
+		this.rewardShareIndex = rewardShareIndex;
+		if (this.rewardShareIndex != null)
+			this.rewardShareIndexVersion = this.rewardShareIndex.getVersion();
+
 		this.slowQueryThreshold = Settings.getInstance().getSlowQueryThreshold();
 		if (this.slowQueryThreshold != null)
 			this.sqlStatements = new ArrayList<>();
@@ -90,9 +115,12 @@ public class HSQLDBRepository implements Repository {
 			throw new DataException("Unable to fetch session ID from repository", e);
 		}
 
-		// synchronize to block new connections if checkpointing in progress 
-		synchronized (CHECKPOINT_LOCK) {
+		// lock to block new connections if checkpointing in progress
+		CHECKPOINT_LOCK.readLock().lock();
+		try {
 			assertEmptyTransaction("connection creation");
+		} finally {
+			CHECKPOINT_LOCK.readLock().unlock();
 		}
 	}
 
@@ -184,8 +212,15 @@ public class HSQLDBRepository implements Repository {
 	public void saveChanges() throws DataException {
 		long beforeQuery = this.slowQueryThreshold == null ? 0 : System.currentTimeMillis();
 
+		final boolean isCommittingRewardShares = this.rewardShareIndex != null && !this.rewardShareChanges.isEmpty();
+		boolean isCommitted = false;
+
+		if (isCommittingRewardShares)
+			this.rewardShareIndex.beginCommit();
+
 		try {
 			this.connection.commit();
+			isCommitted = true;
 
 			if (this.slowQueryThreshold != null) {
 				long queryTime = System.currentTimeMillis() - beforeQuery;
@@ -199,6 +234,12 @@ public class HSQLDBRepository implements Repository {
 		} catch (SQLException e) {
 			throw new DataException("commit error", e);
 		} finally {
+			if (isCommittingRewardShares)
+				// If commit failed then we don't know what state repository is in, so index is rebuilt from scratch
+				this.rewardShareIndex.endCommit(isCommitted ? this.rewardShareChanges : null);
+
+			this.resetRewardShareChanges();
+
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -216,6 +257,8 @@ public class HSQLDBRepository implements Repository {
 		} catch (SQLException e) {
 			throw new DataException("rollback error", e);
 		} finally {
+			this.resetRewardShareChanges();
+
 			this.savepoints.clear();
 
 			// Before clearing statements so we can log what led to assertion error
@@ -235,6 +278,7 @@ public class HSQLDBRepository implements Repository {
 
 			Savepoint savepoint = this.connection.setSavepoint();
 			this.savepoints.push(savepoint);
+			this.savepointRewardShareChanges.push(this.rewardShareChanges.size());
 
 			// Update query log with savepoint ID
 			if (this.sqlStatements != null)
@@ -251,6 +295,10 @@ public class HSQLDBRepository implements Repository {
 
 		Savepoint savepoint = this.savepoints.pop();
 
+		// Discard reward-share changes made since savepoint
+		int rewardShareChangeCount = this.savepointRewardShareChanges.pop();
+		this.rewardShareChanges.subList(rewardShareChangeCount, this.rewardShareChanges.size()).clear();
+
 		try {
 			if (this.sqlStatements != null)
 				this.sqlStatements.add("ROLLBACK TO SAVEPOINT [" + savepoint.getSavepointId() + "]");
@@ -261,6 +309,64 @@ public class HSQLDBRepository implements Repository {
 		}
 	}
 
+	@Override
+	public boolean hasUncommittedChanges() throws DataException {
+		String sql = "SELECT transaction, transaction_size FROM information_schema.system_sessions WHERE session_id = ?";
+
+		CHECKPOINT_LOCK.readLock().lock();
+		try {
+			PreparedStatement stmt = this.cachePreparedStatement(sql);
+			stmt.setLong(1, this.sessionId);
+
+			if (!stmt.execute())
+				throw new DataException("Unable to check repository for uncommitted changes");
+
+			try (ResultSet resultSet = stmt.getResultSet()) {
+				if (resultSet == null || !resultSet.next())
+					throw new DataException("Unable to check repository for uncommitted changes");
+
+				boolean inTransaction = resultSet.getBoolean(1);
+				int transactionCount = resultSet.getInt(2);
+
+				return inTransaction && transactionCount != 0;
+			}
+		} catch (SQLException e) {
+			throw new DataException("Error checking repository for uncommitted changes", e);
+		} finally {
+			CHECKPOINT_LOCK.readLock().unlock();
+		}
+	}
+
+	// Reward-share index
+
+	/**
+	 * Returns snapshot of committed reward-shares, or null if snapshot doesn't match what this session would see.
+	 * <p>
+	 * This is the case if this session has uncommitted reward-share changes, or if other sessions
+	 * have committed reward-share changes since this session's transaction began.
+	 * Callers should fall back to querying repository.
+	 */
+	/* package */ HSQLDBRewardShareIndex.Snapshot getRewardShareSnapshot(HSQLDBRewardShareIndex.Loader loader) throws DataException {
+		if (this.rewardShareIndex == null || !this.rewardShareChanges.isEmpty())
+			return null;
+
+		return this.rewardShareIndex.getSnapshot(this.rewardShareIndexVersion, loader);
+	}
+
+	/** Records uncommitted reward-share change, to be applied to index once committed. */
+	/* package */ void addRewardShareChange(HSQLDBRewardShareIndex.Change change) {
+		if (this.rewardShareIndex != null)
+			this.rewardShareChanges.add(change);
+	}
+
+	private void resetRewardShareChanges() {
+		this.rewardShareChanges.clear();
+		this.savepointRewardShareChanges.clear();
+
+		if (this.rewardShareIndex != null)
+			this.rewardShareIndexVersion = this.rewardShareIndex.getVersion();
+	}
+
 	// Close / backup / rebuild / restore
 
 	@Override
@@ -291,8 +397,13 @@ public class HSQLDBRepository implements Repository {
 	}
 
 	private void maybeCheckpoint() throws DataException {
+		// Quick check before blocking everyone else
+		if (RepositoryManager.getRequestedCheckpoint() == null)
+			return;
+
 		// To serialize checkpointing and to block new sessions when checkpointing in progress
-		synchronized (CHECKPOINT_LOCK) {
+		CHECKPOINT_LOCK.writeLock().lock();
+		try {
 			Boolean quickCheckpointRequest = RepositoryManager.getRequestedCheckpoint();
 			if (quickCheckpointRequest == null)
 				return;
@@ -339,6 +450,8 @@ public class HSQLDBRepository implements Repository {
 			} catch (SQLException e) {
 				throw new DataException("Unable to check repository session status", e);
 			}
+		} finally {
+			CHECKPOINT_LOCK.writeLock().unlock();
 		}
 	}
 
@@ -380,7 +493,8 @@ public class HSQLDBRepository implements Repository {
 
 	@Override
 	public void backup(boolean quick, String name, Long timeout) throws DataException, TimeoutException {
-		synchronized (CHECKPOINT_LOCK) {
+		CHECKPOINT_LOCK.writeLock().lock();
+		try {
 
 			// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
 			// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
@@ -442,12 +556,15 @@ public class HSQLDBRepository implements Repository {
 				throw new DataException("Unable to backup repository");
 			}
 
+		} finally {
+			CHECKPOINT_LOCK.writeLock().unlock();
 		}
 	}
 
 	@Override
 	public void performPeriodicMaintenance(Long timeout) throws DataException, TimeoutException {
-		synchronized (CHECKPOINT_LOCK) {
+		CHECKPOINT_LOCK.writeLock().lock();
+		try {
 
 			// We can only perform a CHECKPOINT if no other HSQLDB session is mid-transaction,
 			// otherwise the CHECKPOINT blocks for COMMITs and other threads can't open HSQLDB sessions
@@ -465,6 +582,8 @@ public class HSQLDBRepository implements Repository {
 			} catch (SQLException e) {
 				throw new DataException("Unable to defrag repository");
 			}
+		} finally {
+			CHECKPOINT_LOCK.writeLock().unlock();
 		}
 	}
 
@@ -660,10 +779,13 @@ public class HSQLDBRepository implements Repository {
 	private ResultSet checkedExecuteResultSet(PreparedStatement preparedStatement, Object... objects) throws SQLException {
 		bindStatementParams(preparedStatement, objects);
 
-		// synchronize to block new executions if checkpointing in progress
-		synchronized (CHECKPOINT_LOCK) {
+		// lock to block new executions if checkpointing in progress
+		CHECKPOINT_LOCK.readLock().lock();
+		try {
 			if (!preparedStatement.execute())
 				throw new SQLException("Fetching from database produced no results");
+		} finally {
+			CHECKPOINT_LOCK.readLock().unlock();
 		}
 
 		ResultSet resultSet = preparedStatement.getResultSet();
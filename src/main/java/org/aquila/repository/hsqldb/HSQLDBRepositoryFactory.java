@@ -26,6 +26,8 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 	private String connectionUrl;
 	private HSQLDBPool connectionPool;
 	private final boolean wasPristine;
+	/** Index of committed reward-shares, shared by all repository sessions from this factory. */
+	private final HSQLDBRewardShareIndex rewardShareIndex = new HSQLDBRewardShareIndex();
 
 	/**
 	 * Constructs new RepositoryFactory using passed <tt>connectionUrl</tt>.
@@ -85,7 +87,7 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 	@Override
 	public Repository getRepository() throws DataException {
 		try {
-			return new HSQLDBRepository(this.getConnection());
+			return new HSQLDBRepository(this.getConnection(), this.rewardShareIndex);
 		} catch (SQLException e) {
 			throw new DataException("Repository instantiation error", e);
 		}
@@ -98,7 +100,7 @@ public class HSQLDBRepositoryFactory implements RepositoryFactory {
 			if (connection == null)
 				return null;
 
-			return new HSQLDBRepository(connection);
+			return new HSQLDBRepository(connection, this.rewardShareIndex);
 		} catch (SQLException e) {
 			throw new DataException("Repository instantiation error", e);
 		}
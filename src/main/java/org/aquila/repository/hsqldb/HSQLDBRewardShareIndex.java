@@ -0,0 +1,198 @@
+package org.aquila.repository.hsqldb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.aquila.data.account.RewardShareData;
+import org.aquila.repository.DataException;
+import org.aquila.utils.ByteArray;
+
+/**
+ * In-memory index of committed reward-shares, shared by all sessions of one repository.
+ * <p>
+ * Reward-shares are looked up, by public key or by index into the list of reward-shares sorted by public key,
+ * thousands of times per online-accounts round and per block, but rarely change.
+ * So we keep an immutable snapshot of the whole <tt>RewardShares</tt> table in memory.
+ * <p>
+ * Snapshots only ever reflect <b>committed</b> reward-shares:
+ * <ul>
+ * <li>sessions with uncommitted reward-share changes don't use the index</li>
+ * <li>those changes are applied to the index, incrementally, once committed</li>
+ * <li>every commit bumps the index's version, so sessions whose view of the repository predates a commit,
+ * or snapshots loaded concurrently with a commit, are never used/installed</li>
+ * </ul>
+ *
+ * @see HSQLDBRepository#getRewardShareSnapshot()
+ */
+public class HSQLDBRewardShareIndex {
+
+	/** A change to reward-shares made by a session, applied to index once committed. */
+	/* package */ interface Change {
+		void apply(Map<ByteArray, RewardShareData> rewardShares);
+	}
+
+	/* package */ interface Loader {
+		List<RewardShareData> load() throws DataException;
+	}
+
+	/** Immutable view of all reward-shares. */
+	public static class Snapshot {
+		private final RewardShareData[] rewardShares;
+		private final Map<ByteArray, Integer> indexesByPublicKey;
+
+		private Snapshot(Map<ByteArray, RewardShareData> rewardSharesByPublicKey) {
+			// Sorted by public key, using unsigned comparison, same as repository
+			TreeMap<ByteArray, RewardShareData> sortedRewardShares = new TreeMap<>(rewardSharesByPublicKey);
+
+			this.rewardShares = sortedRewardShares.values().toArray(new RewardShareData[0]);
+			this.indexesByPublicKey = new HashMap<>(this.rewardShares.length * 2);
+
+			for (int i = 0; i < this.rewardShares.length; ++i)
+				this.indexesByPublicKey.put(ByteArray.wrap(this.rewardShares[i].getRewardSharePublicKey()), i);
+		}
+
+		private Map<ByteArray, RewardShareData> toMap() {
+			Map<ByteArray, RewardShareData> rewardSharesByPublicKey = new HashMap<>(this.rewardShares.length * 2);
+
+			for (RewardShareData rewardShareData : this.rewardShares)
+				rewardSharesByPublicKey.put(ByteArray.wrap(rewardShareData.getRewardSharePublicKey()), rewardShareData);
+
+			return rewardSharesByPublicKey;
+		}
+
+		public int size() {
+			return this.rewardShares.length;
+		}
+
+		/** Returns reward-share with passed public key, or null if not found. */
+		public RewardShareData get(byte[] rewardSharePublicKey) {
+			Integer index = this.getIndex(rewardSharePublicKey);
+			return index != null ? this.rewardShares[index] : null;
+		}
+
+		/** Returns index of reward-share in list sorted by public key, or null if not found. */
+		public Integer getIndex(byte[] rewardSharePublicKey) {
+			return this.indexesByPublicKey.get(ByteArray.wrap(rewardSharePublicKey));
+		}
+
+		/** Returns reward-share at index in list sorted by public key, or null if out of bounds. */
+		public RewardShareData getByIndex(int index) {
+			if (index < 0 || index >= this.rewardShares.length)
+				return null;
+
+			return this.rewardShares[index];
+		}
+
+		public List<RewardShareData> getRewardShares() {
+			return new ArrayList<>(Arrays.asList(this.rewardShares));
+		}
+
+		public List<byte[]> getPublicKeys() {
+			List<byte[]> publicKeys = new ArrayList<>(this.rewardShares.length);
+
+			for (RewardShareData rewardShareData : this.rewardShares)
+				publicKeys.add(rewardShareData.getRewardSharePublicKey());
+
+			return publicKeys;
+		}
+	}
+
+	private Snapshot snapshot = null;
+	private long version = 0;
+	/** Number of sessions currently committing reward-share changes. Index can't be used until they're done. */
+	private int committingCount = 0;
+
+	/* package */ synchronized long getVersion() {
+		return this.version;
+	}
+
+	/**
+	 * Returns snapshot of committed reward-shares, loading it if need be, or null if index can't be used.
+	 * <p>
+	 * Index can only be used by sessions whose view of the repository began at <tt>sessionVersion</tt>
+	 * and while no reward-share changes are being committed.
+	 */
+	/* package */ Snapshot getSnapshot(long sessionVersion, Loader loader) throws DataException {
+		synchronized (this) {
+			if (this.committingCount > 0 || this.version != sessionVersion)
+				return null;
+
+			if (this.snapshot != null)
+				return this.snapshot;
+		}
+
+		// Load outside of lock, as this hits repository
+		Snapshot newSnapshot = new Snapshot(toMap(loader.load()));
+
+		synchronized (this) {
+			// Only install if no commits happened while loading
+			if (this.committingCount > 0 || this.version != sessionVersion)
+				return null;
+
+			this.snapshot = newSnapshot;
+			return this.snapshot;
+		}
+	}
+
+	/** Called before a session commits reward-share changes. */
+	/* package */ synchronized void beginCommit() {
+		this.committingCount++;
+		this.version++;
+	}
+
+	/**
+	 * Called after a session has committed, or failed to commit, reward-share changes.
+	 *
+	 * @param changes session's changes, in order, or null if changes unknown (e.g. partially rolled back, or commit failed)
+	 */
+	/* package */ synchronized void endCommit(List<Change> changes) {
+		this.committingCount--;
+		this.version++;
+
+		if (this.snapshot == null)
+			return;
+
+		if (changes == null) {
+			// Reload from repository when next needed
+			this.snapshot = null;
+			return;
+		}
+
+		Map<ByteArray, RewardShareData> rewardShares = this.snapshot.toMap();
+		for (Change change : changes)
+			change.apply(rewardShares);
+
+		this.snapshot = new Snapshot(rewardShares);
+	}
+
+	/* package */ static Change saved(RewardShareData rewardShareData) {
+		return rewardShares -> {
+			// Saving replaces any existing reward-share between same minter and recipient
+			removeMatching(rewardShares, rewardShareData.getMinterPublicKey(), rewardShareData.getRecipient());
+			rewardShares.put(ByteArray.wrap(rewardShareData.getRewardSharePublicKey()), rewardShareData);
+		};
+	}
+
+	/* package */ static Change deleted(byte[] minterPublicKey, String recipient) {
+		return rewardShares -> removeMatching(rewardShares, minterPublicKey, recipient);
+	}
+
+	private static void removeMatching(Map<ByteArray, RewardShareData> rewardShares, byte[] minterPublicKey, String recipient) {
+		rewardShares.values().removeIf(rewardShareData -> Arrays.equals(rewardShareData.getMinterPublicKey(), minterPublicKey)
+				&& rewardShareData.getRecipient().equals(recipient));
+	}
+
+	private static Map<ByteArray, RewardShareData> toMap(List<RewardShareData> rewardShares) {
+		Map<ByteArray, RewardShareData> rewardSharesByPublicKey = new HashMap<>(rewardShares.size() * 2);
+
+		for (RewardShareData rewardShareData : rewardShares)
+			rewardSharesByPublicKey.put(ByteArray.wrap(rewardShareData.getRewardSharePublicKey()), rewardShareData);
+
+		return rewardSharesByPublicKey;
+	}
+
+}
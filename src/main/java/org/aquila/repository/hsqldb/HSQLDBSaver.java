@@ -6,7 +6,10 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -17,7 +20,8 @@ import java.util.TimeZone;
  * {@code SaveHelper helper = new SaveHelper("TableName"); }<br>
  * {@code helper.bind("column_name", someColumnValue).bind("column2", columnValue2); }<br>
  * {@code helper.execute(repository); }<br>
- *
+ * <p>
+ * Many rows can be saved together using {@link #executeBatch(HSQLDBRepository, Collection)}.
  */
 public class HSQLDBSaver {
 
@@ -61,15 +65,60 @@ public class HSQLDBSaver {
 	public boolean execute(HSQLDBRepository repository) throws SQLException {
 		String sql = this.formatInsertWithPlaceholders();
 
-		synchronized (HSQLDBRepository.CHECKPOINT_LOCK) {
-			try {
-				PreparedStatement preparedStatement = repository.prepareStatement(sql);
-				this.bindValues(preparedStatement);
+		try {
+			PreparedStatement preparedStatement = repository.prepareStatement(sql);
+			this.bindValues(preparedStatement);
 
+			// Block if checkpointing in progress, but don't block other savers
+			HSQLDBRepository.CHECKPOINT_LOCK.readLock().lock();
+			try {
 				return preparedStatement.execute();
-			} catch (SQLException e) {
-				throw repository.examineException(e);
+			} finally {
+				HSQLDBRepository.CHECKPOINT_LOCK.readLock().unlock();
+			}
+		} catch (SQLException e) {
+			throw repository.examineException(e);
+		}
+	}
+
+	/**
+	 * Save many rows, executing one batched PreparedStatement per distinct table and set of bound columns.
+	 * <p>
+	 * Savers are grouped by table and columns, so rows for the same table are saved together,
+	 * but otherwise in the order passed.
+	 * 
+	 * @param repository
+	 * @param savers
+	 * @throws SQLException
+	 */
+	public static void executeBatch(HSQLDBRepository repository, Collection<HSQLDBSaver> savers) throws SQLException {
+		// Nothing to do?
+		if (savers == null || savers.isEmpty())
+			return;
+
+		Map<String, List<HSQLDBSaver>> saversBySql = new LinkedHashMap<>();
+		for (HSQLDBSaver saver : savers)
+			saversBySql.computeIfAbsent(saver.formatInsertWithPlaceholders(), sql -> new ArrayList<>()).add(saver);
+
+		try {
+			for (Map.Entry<String, List<HSQLDBSaver>> entry : saversBySql.entrySet()) {
+				PreparedStatement preparedStatement = repository.prepareStatement(entry.getKey());
+
+				for (HSQLDBSaver saver : entry.getValue()) {
+					saver.bindValues(preparedStatement);
+					preparedStatement.addBatch();
+				}
+
+				// Block if checkpointing in progress, but don't block other savers
+				HSQLDBRepository.CHECKPOINT_LOCK.readLock().lock();
+				try {
+					preparedStatement.executeBatch();
+				} finally {
+					HSQLDBRepository.CHECKPOINT_LOCK.readLock().unlock();
+				}
 			}
+		} catch (SQLException e) {
+			throw repository.examineException(e);
 		}
 	}
 
@@ -333,16 +333,19 @@ public class HSQLDBTransactionRepository implements TransactionRepository {
 	public void saveParticipants(TransactionData transactionData, List<String> participants) throws DataException {
 		byte[] signature = transactionData.getSignature();
 
-		try {
-			for (String participant : participants) {
-				HSQLDBSaver saver = new HSQLDBSaver("TransactionParticipants");
+		List<HSQLDBSaver> savers = new ArrayList<>(participants.size());
+		for (String participant : participants) {
+			HSQLDBSaver saver = new HSQLDBSaver("TransactionParticipants");
 
-				saver.bind("signature", signature).bind("participant", participant);
+			saver.bind("signature", signature).bind("participant", participant);
 
-				saver.execute(this.repository);
-			}
+			savers.add(saver);
+		}
+
+		try {
+			HSQLDBSaver.executeBatch(this.repository, savers);
 		} catch (SQLException e) {
-			throw new DataException("Unable to save transaction participant into repository", e);
+			throw new DataException("Unable to save transaction participants into repository", e);
 		}
 	}
 
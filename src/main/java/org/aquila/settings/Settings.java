@@ -207,8 +207,14 @@ public class Settings {
 	private int maxDataPeers = 4;
 	/** Maximum number of threads for network engine. */
 	private int maxNetworkThreadPoolSize = 32;
+	/** Number of network reactor threads, each with its own selector, that peer connections are shared across. */
+	private int networkReactorThreadCount = Runtime.getRuntime().availableProcessors();
+	/** Whether to offer peers compressed message frames, for larger messages that compress well. */
+	private boolean networkCompressionEnabled = true;
 	/** Maximum number of threads for network proof-of-work compute, used during handshaking. */
 	private int networkPoWComputePoolSize = 2;
+	/** Number of threads used to compute each handshake's proof-of-work nonce. */
+	private int networkPoWComputeThreadCount = 1;
 	/** Maximum number of retry attempts if a peer fails to respond with the requested data */
 	private int maxRetries = 2;
 
@@ -237,6 +243,16 @@ public class Settings {
 	private int maxBlocksPerRequest = 100;
 	/** Maximum number of blocks this node will serve in a single response */
 	private int maxBlocksPerResponse = 200;
+	/** Maximum number of GET_BLOCK requests kept in flight, across peers, when applying new blocks */
+	private int maxBlockRequestsInFlight = 8;
+	/** Number of threads used to check block signatures, nonces, etc. ahead of applying blocks */
+	private int blockPreValidationThreadCount = Runtime.getRuntime().availableProcessors();
+	/** Number of threads used to run a block's ATs concurrently. 1 runs ATs serially */
+	private int atExecutionThreadCount = Runtime.getRuntime().availableProcessors();
+	/** Number of threads used to verify online accounts' signatures and MemoryPoW nonces, for each of gossiped accounts and blocks' accounts */
+	private int onlineAccountsVerificationThreadCount = Runtime.getRuntime().availableProcessors();
+	/** Number of threads used to compute each of our online accounts' MemoryPoW nonce */
+	private int onlineAccountsPoWThreadCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
 	// Which blockchains this node is running
 	private String blockchainConfig = null; // use default from resources
@@ -336,6 +352,13 @@ public class Settings {
 	/** Whether to make connections directly with peers that have the required data */
 	private boolean directDataRetrievalEnabled = true;
 
+	/** Maximum number of QDN chunk requests in flight, across all peers */
+	private int arbitraryDataFileFetchThreadCount = 16;
+	/** Number of QDN resources that can be built concurrently */
+	private int arbitraryDataBuilderThreadCount = 5;
+	/** Number of threads used to fetch, decrypt and uncompress a resource's layers concurrently, shared by all builds */
+	private int arbitraryDataLayerThreadCount = Runtime.getRuntime().availableProcessors();
+
 	/** Expiry time (ms) for (unencrypted) built/cached data */
 	private Long builtDataExpiryInterval = 30 * 24 * 60 * 60 * 1000L; // 30 days
 
@@ -501,6 +524,21 @@ public class Settings {
 		if (this.minBlockchainPeers < 1 && !singleNodeTestnet)
 			throwValidationError("minBlockchainPeers must be at least 1");
 
+		if (this.maxBlockRequestsInFlight < 1)
+			throwValidationError("maxBlockRequestsInFlight must be at least 1");
+
+		if (this.blockPreValidationThreadCount < 1)
+			throwValidationError("blockPreValidationThreadCount must be at least 1");
+
+		if (this.atExecutionThreadCount < 1)
+			throwValidationError("atExecutionThreadCount must be at least 1");
+
+		if (this.onlineAccountsVerificationThreadCount < 1)
+			throwValidationError("onlineAccountsVerificationThreadCount must be at least 1");
+
+		if (this.networkReactorThreadCount < 1)
+			throwValidationError("networkReactorThreadCount must be at least 1");
+
 		if (this.apiKey != null && this.apiKey.trim().length() < 8)
 			throwValidationError("apiKey must be at least 8 characters");
 
@@ -709,10 +747,22 @@ public class Settings {
 		return this.maxNetworkThreadPoolSize;
 	}
 
+	public int getNetworkReactorThreadCount() {
+		return this.networkReactorThreadCount;
+	}
+
+	public boolean isNetworkCompressionEnabled() {
+		return this.networkCompressionEnabled;
+	}
+
 	public int getNetworkPoWComputePoolSize() {
 		return this.networkPoWComputePoolSize;
 	}
 
+	public int getNetworkPoWComputeThreadCount() {
+		return this.networkPoWComputeThreadCount;
+	}
+
 	public int getMaxRetries() { return this.maxRetries; }
 
 	public long getRecoveryModeTimeout() {
@@ -803,6 +853,16 @@ public class Settings {
 
 	public int getMaxBlocksPerResponse() { return this.maxBlocksPerResponse; }
 
+	public int getMaxBlockRequestsInFlight() { return this.maxBlockRequestsInFlight; }
+
+	public int getBlockPreValidationThreadCount() { return this.blockPreValidationThreadCount; }
+
+	public int getAtExecutionThreadCount() { return this.atExecutionThreadCount; }
+
+	public int getOnlineAccountsVerificationThreadCount() { return this.onlineAccountsVerificationThreadCount; }
+
+	public int getOnlineAccountsPoWThreadCount() { return this.onlineAccountsPoWThreadCount; }
+
 	public boolean isAutoUpdateEnabled() {
 		return this.autoUpdateEnabled;
 	}
@@ -974,6 +1034,18 @@ public class Settings {
 		return this.directDataRetrievalEnabled;
 	}
 
+	public int getArbitraryDataFileFetchThreadCount() {
+		return this.arbitraryDataFileFetchThreadCount;
+	}
+
+	public int getArbitraryDataBuilderThreadCount() {
+		return this.arbitraryDataBuilderThreadCount;
+	}
+
+	public int getArbitraryDataLayerThreadCount() {
+		return this.arbitraryDataLayerThreadCount;
+	}
+
 	public boolean isOriginalCopyIndicatorFileEnabled() {
 		return this.originalCopyIndicatorFileEnabled;
 	}
@@ -90,7 +90,7 @@ public class AccountFlagsTransaction extends Transaction {
 
 		// If previousFlags are null then account didn't exist before this transaction
 		if (previousFlags == null)
-			this.repository.getAccountRepository().delete(target.getAddress());
+			target.delete();
 		else
 			target.setFlags(previousFlags);
 
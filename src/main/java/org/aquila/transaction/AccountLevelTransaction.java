@@ -82,7 +82,7 @@ public class AccountLevelTransaction extends Transaction {
 		Account target = getTarget();
 
 		// This is only ever a genesis block transaction so simply delete account
-		this.repository.getAccountRepository().delete(target.getAddress());
+		target.delete();
 	}
 
 }
@@ -11,7 +11,6 @@ import org.aquila.block.BlockChain;
 import org.aquila.controller.arbitrary.ArbitraryDataManager;
 import org.aquila.controller.arbitrary.ArbitraryDataStorageManager;
 import org.aquila.controller.repository.NamesDatabaseIntegrityCheck;
-import org.aquila.crypto.Crypto;
 import org.aquila.crypto.MemoryPoW;
 import org.aquila.data.PaymentData;
 import org.aquila.data.naming.NameData;
@@ -202,7 +201,7 @@ public class ArbitraryTransaction extends Transaction {
 			throw new RuntimeException("Unable to transform transaction to byte array for verification", e);
 		}
 
-		if (!Crypto.verify(this.transactionData.getCreatorPublicKey(), signature, transactionBytes)) {
+		if (!this.isCreatorSignatureValid(signature, transactionBytes)) {
 			return false;
 		}
 
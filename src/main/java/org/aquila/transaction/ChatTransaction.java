@@ -212,7 +212,7 @@ public class ChatTransaction extends Transaction {
 			throw new RuntimeException("Unable to transform transaction to byte array for verification", e);
 		}
 
-		if (!Crypto.verify(this.transactionData.getCreatorPublicKey(), signature, transactionBytes))
+		if (!this.isCreatorSignatureValid(signature, transactionBytes))
 			return false;
 
 		int nonce = this.chatTransactionData.getNonce();
@@ -231,6 +231,12 @@ public class ChatTransaction extends Transaction {
 		return MemoryPoW.verify2(transactionBytes, POW_BUFFER_SIZE, difficulty, nonce);
 	}
 
+	@Override
+	public boolean isSignatureCheckStateless() {
+		// Nonce difficulty depends on sender's balance
+		return false;
+	}
+
 	private int countRecentChatTransactionsByCreator(PublicKeyAccount creator) throws DataException {
 		List<TransactionData> unconfirmedTransactions = repository.getTransactionRepository().getUnconfirmedTransactions();
 		final Long now = NTP.getTime();
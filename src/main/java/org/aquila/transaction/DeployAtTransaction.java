@@ -243,7 +243,7 @@ public class DeployAtTransaction extends Transaction {
 		creator.modifyAssetBalance(assetId, this.deployAtTransactionData.getAmount());
 
 		// Delete AT's account (and hence its balance)
-		this.repository.getAccountRepository().delete(this.deployAtTransactionData.getAtAddress());
+		this.getATAccount().delete();
 	}
 
 }
@@ -126,7 +126,7 @@ public class GenesisTransaction extends Transaction {
 	@Override
 	public void orphan() throws DataException {
 		// Delete recipient's account (and balance)
-		this.repository.getAccountRepository().delete(this.genesisTransactionData.getRecipient());
+		new Account(this.repository, this.genesisTransactionData.getRecipient()).delete();
 	}
 
 	@Override
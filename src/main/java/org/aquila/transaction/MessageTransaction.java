@@ -9,7 +9,6 @@ import org.aquila.account.PrivateKeyAccount;
 import org.aquila.account.PublicKeyAccount;
 import org.aquila.asset.Asset;
 import org.aquila.block.BlockChain;
-import org.aquila.crypto.Crypto;
 import org.aquila.crypto.MemoryPoW;
 import org.aquila.data.PaymentData;
 import org.aquila.data.transaction.BaseTransactionData;
@@ -222,7 +221,7 @@ public class MessageTransaction extends Transaction {
 			throw new RuntimeException("Unable to transform transaction to byte array for verification", e);
 		}
 
-		if (!Crypto.verify(this.transactionData.getCreatorPublicKey(), signature, transactionBytes))
+		if (!this.isCreatorSignatureValid(signature, transactionBytes))
 			return false;
 
 		// If feee is non-zero then we don't check nonce
@@ -270,6 +270,10 @@ public abstract class Transaction {
 	protected TransactionData transactionData;
 	/** Cached creator account. Use <tt>getCreator()</tt> to access. */
 	private PublicKeyAccount creator = null;
+	/** Whether signature has already been verified, e.g. during block pre-validation. */
+	private volatile boolean isSignaturePreVerified = false;
+	/** Whether creator's Ed25519 signature has already been verified, e.g. as part of a batch. */
+	private volatile boolean isCreatorSignatureVerified = false;
 
 	// Constructors
 
@@ -508,6 +512,35 @@ public abstract class Transaction {
 		if (signature == null)
 			return false;
 
+		try {
+			return this.isCreatorSignatureValid(signature, TransactionTransformer.toBytesForSigning(transactionData));
+		} catch (TransformationException e) {
+			throw new RuntimeException("Unable to transform transaction to byte array for verification", e);
+		}
+	}
+
+	/**
+	 * Returns whether <tt>signature</tt> is creator's Ed25519 signature of <tt>transactionBytes</tt>.
+	 * <p>
+	 * Skips actual verification if already done by {@link #verifyCreatorSignatures(List)}.
+	 */
+	protected boolean isCreatorSignatureValid(byte[] signature, byte[] transactionBytes) {
+		if (this.isCreatorSignatureVerified)
+			return true;
+
+		return Crypto.verify(this.transactionData.getCreatorPublicKey(), signature, transactionBytes);
+	}
+
+	/**
+	 * Returns whether creator's Ed25519 signature is valid, always verifying it individually.
+	 * <p>
+	 * Unlike {@link #isSignatureValid()}, any other checks (e.g. nonce) are not performed.
+	 */
+	public boolean isCreatorSignatureExactlyValid() {
+		byte[] signature = this.transactionData.getSignature();
+		if (signature == null || this.transactionData.getCreatorPublicKey() == null)
+			return false;
+
 		try {
 			return Crypto.verify(this.transactionData.getCreatorPublicKey(), signature, TransactionTransformer.toBytesForSigning(transactionData));
 		} catch (TransformationException e) {
@@ -515,6 +548,89 @@ public abstract class Transaction {
 		}
 	}
 
+	/** Returns whether creator's signature was only verified as part of a batch by {@link #verifyCreatorSignatures(List)}. */
+	public boolean isCreatorSignatureBatchVerified() {
+		return this.isCreatorSignatureVerified;
+	}
+
+	/**
+	 * Batch-verifies creators' Ed25519 signatures of passed transactions.
+	 * <p>
+	 * Transactions with valid creator signatures are marked so that a subsequent {@link #isSignatureValid()}
+	 * only performs any remaining checks, e.g. nonce. Transactions with invalid creator signatures are left
+	 * for {@link #isSignatureValid()} to reject as usual.
+	 * <p>
+	 * Batch verification is probabilistic in rare, adversarial cases (see {@link Crypto#verifyBatch(List, List, List)})
+	 * so this should only be used for unconfirmed transactions, not during block validation.
+	 * Such transactions should also pass {@link #isCreatorSignatureExactlyValid()} before they are saved or relayed.
+	 */
+	public static void verifyCreatorSignatures(List<Transaction> transactions) {
+		List<Transaction> batchTransactions = new ArrayList<>(transactions.size());
+		List<byte[]> publicKeys = new ArrayList<>(transactions.size());
+		List<byte[]> signatures = new ArrayList<>(transactions.size());
+		List<byte[]> messages = new ArrayList<>(transactions.size());
+
+		for (Transaction transaction : transactions) {
+			TransactionData transactionData = transaction.getTransactionData();
+
+			// Genesis and AT transactions aren't signed by their creator
+			if (transactionData.getType() == TransactionType.GENESIS || transactionData.getType() == TransactionType.AT)
+				continue;
+
+			if (transactionData.getSignature() == null || transactionData.getCreatorPublicKey() == null)
+				continue;
+
+			try {
+				messages.add(TransactionTransformer.toBytesForSigning(transactionData));
+			} catch (TransformationException e) {
+				// Leave for isSignatureValid() to deal with
+				continue;
+			}
+
+			batchTransactions.add(transaction);
+			publicKeys.add(transactionData.getCreatorPublicKey());
+			signatures.add(transactionData.getSignature());
+		}
+
+		if (batchTransactions.isEmpty())
+			return;
+
+		BitSet invalidIndexes = Crypto.verifyBatch(publicKeys, signatures, messages);
+
+		for (int i = 0; i < batchTransactions.size(); ++i)
+			if (!invalidIndexes.get(i))
+				batchTransactions.get(i).isCreatorSignatureVerified = true;
+	}
+
+	/**
+	 * Returns whether {@link #isSignatureValid()} can be called without using the repository.
+	 * <p>
+	 * If so, signature can be verified on another thread, e.g. by {@link org.aquila.block.BlockPreValidator}.
+	 */
+	public boolean isSignatureCheckStateless() {
+		return true;
+	}
+
+	/**
+	 * Verifies signature, remembering success so that later block signature checks can skip this transaction.
+	 * <p>
+	 * Only call this if {@link #isSignatureCheckStateless()} returns true.
+	 *
+	 * @return true if signature is valid, false otherwise
+	 */
+	public boolean preVerifySignature() {
+		if (!this.isSignatureValid())
+			return false;
+
+		this.isSignaturePreVerified = true;
+		return true;
+	}
+
+	/** Returns whether signature has already been successfully verified via {@link #preVerifySignature()}. */
+	public boolean isSignaturePreVerified() {
+		return this.isSignaturePreVerified;
+	}
+
 	/**
 	 * Returns whether transaction can be added to unconfirmed transactions.
 	 * 
@@ -431,6 +431,16 @@ public class BlockTransformer extends Transformer {
 	}
 
 	public static byte[] getBytesForTransactionsSignature(Block block) throws TransformationException {
+		return getBytesForTransactionsSignature(block, true);
+	}
+
+	/**
+	 * Returns bytes covered by block's transactions signature.
+	 * <p>
+	 * If <tt>verifyTransactionSignatures</tt> is false then individual transaction signatures are not checked,
+	 * typically because caller verifies them separately, e.g. in parallel.
+	 */
+	public static byte[] getBytesForTransactionsSignature(Block block, boolean verifyTransactionSignatures) throws TransformationException {
 		try {
 			List<Transaction> transactions = block.getTransactions();
 
@@ -443,7 +453,7 @@ public class BlockTransformer extends Transformer {
 				if (transaction.getTransactionData().getType() == TransactionType.AT)
 					continue;
 
-				if (!transaction.isSignatureValid())
+				if (verifyTransactionSignatures && !transaction.isSignaturePreVerified() && !transaction.isSignatureValid())
 					throw new TransformationException("Transaction signature invalid when building block's transactions signature");
 
 				bytes.write(transaction.getTransactionData().getSignature());
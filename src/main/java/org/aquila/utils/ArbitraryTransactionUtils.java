@@ -3,6 +3,7 @@ package org.aquila.utils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.aquila.arbitrary.ArbitraryDataChunkStore;
 import org.aquila.arbitrary.ArbitraryDataFile;
 import org.aquila.arbitrary.ArbitraryDataFileChunk;
 import org.aquila.arbitrary.ArbitraryDataReader;
@@ -330,6 +331,7 @@ public class ArbitraryTransactionUtils {
                         LOGGER.info("Relocating chunk from {} to {}...", oldPath, newPath);
                         Files.createDirectories(newPath.getParent());
                         Files.move(oldPath, newPath, REPLACE_EXISTING);
+                        ArbitraryDataChunkStore.getInstance().move(oldPath, newPath);
                         filesRelocatedCount++;
 
                         // Delete empty parent directories
@@ -348,6 +350,7 @@ public class ArbitraryTransactionUtils {
                 LOGGER.info("Relocating complete file from {} to {}...", oldPath, newPath);
                 Files.createDirectories(newPath.getParent());
                 Files.move(oldPath, newPath, REPLACE_EXISTING);
+                ArbitraryDataChunkStore.getInstance().move(oldPath, newPath);
                 filesRelocatedCount++;
 
                 // Delete empty parent directories
@@ -365,6 +368,7 @@ public class ArbitraryTransactionUtils {
                 LOGGER.info("Relocating metadata file from {} to {}...", oldPath, newPath);
                 Files.createDirectories(newPath.getParent());
                 Files.move(oldPath, newPath, REPLACE_EXISTING);
+                ArbitraryDataChunkStore.getInstance().move(oldPath, newPath);
                 filesRelocatedCount++;
 
                 // Delete empty parent directories
@@ -0,0 +1,215 @@
+package org.aquila.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.aquila.account.Account;
+import org.aquila.account.AccountBalanceCache;
+import org.aquila.account.PrivateKeyAccount;
+import org.aquila.account.PublicKeyAccount;
+import org.aquila.asset.Asset;
+import org.aquila.data.account.AccountBalanceData;
+import org.aquila.data.transaction.BaseTransactionData;
+import org.aquila.data.transaction.DeployAtTransactionData;
+import org.aquila.data.transaction.PaymentTransactionData;
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.group.Group;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.transaction.DeployAtTransaction;
+import org.junit.Before;
+import org.junit.Test;
+import org.aquila.test.common.AtUtils;
+import org.aquila.test.common.BlockUtils;
+import org.aquila.test.common.Common;
+import org.aquila.test.common.TestAccount;
+import org.aquila.test.common.TransactionUtils;
+import org.aquila.test.common.transaction.TestTransaction;
+
+public class AccountBalanceCacheTests extends Common {
+
+	private static final Random RANDOM = new Random();
+
+	@Before
+	public void before() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	// Test cache in play (existing account, no commit)
+	@Test
+	public void testWithCacheNoCommit() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+			Account newbie = createRandomAccount(repository);
+
+			long initialBalance = alice.getConfirmedBalance(Asset.UNCIA);
+			final long amount = 123L;
+
+			try (final AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
+				alice.modifyAssetBalance(Asset.UNCIA, -amount);
+				newbie.modifyAssetBalance(Asset.UNCIA, amount);
+
+				// Cached balances should reflect changes
+				assertEquals(initialBalance - amount, alice.getConfirmedBalance(Asset.UNCIA));
+				assertEquals(amount, newbie.getConfirmedBalance(Asset.UNCIA));
+
+				// Repository should not
+				assertEquals(initialBalance, getRepositoryBalance(repository, alice, Asset.UNCIA));
+				assertEquals(0L, getRepositoryBalance(repository, newbie, Asset.UNCIA));
+
+				// Receiving account should exist though
+				assertNotNull(repository.getAccountRepository().getAccount(newbie.getAddress()));
+			}
+			// cache discarded
+
+			assertEquals(initialBalance, alice.getConfirmedBalance(Asset.UNCIA));
+			assertEquals(0L, newbie.getConfirmedBalance(Asset.UNCIA));
+		}
+	}
+
+	// Test cache in play (existing account, with commit)
+	@Test
+	public void testWithCacheWithCommit() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+			TestAccount bob = Common.getTestAccount(repository, "bob");
+			Account newbie = createRandomAccount(repository);
+
+			long initialAliceBalance = alice.getConfirmedBalance(Asset.UNCIA);
+			final long amount = 123L;
+
+			try (final AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
+				for (int i = 0; i < 10; ++i) {
+					alice.modifyAssetBalance(Asset.UNCIA, -amount);
+					newbie.modifyAssetBalance(Asset.UNCIA, amount);
+				}
+
+				// Set outright, then modify
+				bob.setConfirmedBalance(Asset.UNCIA, amount);
+				bob.modifyAssetBalance(Asset.UNCIA, amount);
+				assertEquals(2 * amount, bob.getConfirmedBalance(Asset.UNCIA));
+
+				accountBalanceCache.commit();
+			}
+
+			assertEquals(initialAliceBalance - 10 * amount, getRepositoryBalance(repository, alice, Asset.UNCIA));
+			assertEquals(10 * amount, getRepositoryBalance(repository, newbie, Asset.UNCIA));
+			assertEquals(2 * amount, getRepositoryBalance(repository, bob, Asset.UNCIA));
+		}
+	}
+
+	// Test deleting balance while cache in play
+	@Test
+	public void testWithCacheDeleteBalance() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+
+			try (final AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
+				alice.deleteBalance(Asset.UNCIA);
+				assertEquals(0L, alice.getConfirmedBalance(Asset.UNCIA));
+
+				accountBalanceCache.commit();
+			}
+
+			assertNull(repository.getAccountRepository().getBalance(alice.getAddress(), Asset.UNCIA));
+		}
+	}
+
+	// Test deleting account while cache in play
+	@Test
+	public void testWithCacheDeleteAccount() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			Account newbie = createRandomAccount(repository);
+			final long amount = 123L;
+
+			try (final AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
+				newbie.modifyAssetBalance(Asset.UNCIA, amount);
+				newbie.delete();
+
+				// Cached balance change should have been discarded
+				assertEquals(0L, newbie.getConfirmedBalance(Asset.UNCIA));
+
+				accountBalanceCache.commit();
+			}
+
+			// Commit shouldn't have recreated account
+			assertNull(repository.getAccountRepository().getAccount(newbie.getAddress()));
+			assertNull(repository.getAccountRepository().getBalance(newbie.getAddress(), Asset.UNCIA));
+		}
+	}
+
+	// Test orphaning block that deploys and pays an AT, as orphaning deletes AT's account after changing its balance
+	@Test
+	public void testOrphanDeployAndPayAT() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			long initialAliceBalance = alice.getConfirmedBalance(Asset.UNCIA);
+			long initialBobBalance = bob.getConfirmedBalance(Asset.UNCIA);
+
+			final long fundingAmount = 2_00000000L;
+			final long paymentAmount = 1_00000000L;
+
+			BaseTransactionData baseTransactionData = new BaseTransactionData(System.currentTimeMillis(), Group.NO_GROUP, alice.getLastReference(), alice.getPublicKey(), null, null);
+			DeployAtTransactionData deployAtTransactionData = new DeployAtTransactionData(baseTransactionData, "Test AT", "Test AT", "Test", "TEST",
+					AtUtils.buildSimpleAT(), fundingAmount, Asset.UNCIA);
+			deployAtTransactionData.setFee(new DeployAtTransaction(repository, deployAtTransactionData).calcRecommendedFee());
+			TransactionUtils.signAndImportValid(repository, deployAtTransactionData, alice);
+
+			DeployAtTransaction.ensureATAddress(deployAtTransactionData);
+			String atAddress = deployAtTransactionData.getAtAddress();
+
+			TransactionData paymentTransactionData = new PaymentTransactionData(TestTransaction.generateBase(bob), atAddress, paymentAmount);
+			TransactionUtils.signAndImportValid(repository, paymentTransactionData, bob);
+
+			BlockUtils.mintBlock(repository);
+
+			assertEquals(fundingAmount + paymentAmount, repository.getAccountRepository().getBalance(atAddress, Asset.UNCIA).getBalance());
+
+			BlockUtils.orphanLastBlock(repository);
+
+			assertNull(repository.getAccountRepository().getAccount(atAddress));
+			assertNull(repository.getAccountRepository().getBalance(atAddress, Asset.UNCIA));
+
+			assertEquals(initialAliceBalance, getRepositoryBalance(repository, alice, Asset.UNCIA));
+			assertEquals(initialBobBalance, getRepositoryBalance(repository, bob, Asset.UNCIA));
+		}
+	}
+
+	// Test cache refuses negative balances, as repository does
+	@Test
+	public void testWithCacheNegativeBalance() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			TestAccount alice = Common.getTestAccount(repository, "alice");
+			long initialBalance = alice.getConfirmedBalance(Asset.UNCIA);
+
+			try (final AccountBalanceCache accountBalanceCache = new AccountBalanceCache(repository)) {
+				alice.modifyAssetBalance(Asset.UNCIA, -initialBalance);
+
+				try {
+					alice.modifyAssetBalance(Asset.UNCIA, -1L);
+					fail("Negative balance should be refused");
+				} catch (DataException e) {
+					// Expected
+				}
+
+				assertEquals(0L, alice.getConfirmedBalance(Asset.UNCIA));
+			}
+		}
+	}
+
+	private static long getRepositoryBalance(Repository repository, Account account, long assetId) throws DataException {
+		AccountBalanceData accountBalanceData = repository.getAccountRepository().getBalance(account.getAddress(), assetId);
+		return accountBalanceData != null ? accountBalanceData.getBalance() : 0L;
+	}
+
+	private static Account createRandomAccount(Repository repository) {
+		byte[] randomPublicKey = new byte[32];
+		RANDOM.nextBytes(randomPublicKey);
+		return new PublicKeyAccount(repository, randomPublicKey);
+	}
+
+}
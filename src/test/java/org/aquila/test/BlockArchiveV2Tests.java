@@ -16,6 +16,7 @@ import org.aquila.transform.TransformationException;
 import org.aquila.transform.block.BlockTransformation;
 import org.aquila.utils.BlockArchiveUtils;
 import org.aquila.utils.NTP;
+import org.aquila.utils.Triple;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,6 +29,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -154,6 +156,56 @@ public class BlockArchiveV2Tests extends Common {
 		}
 	}
 
+	@Test
+	public void testRangeReader() throws DataException, InterruptedException, TransformationException, IOException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+
+			// Mint some blocks so that we are able to archive them later
+			for (int i = 0; i < 1000; i++) {
+				BlockMinter.mintTestingBlock(repository, Common.getTestAccount(repository, "alice-reward-share"));
+			}
+
+			// 900 blocks are trimmed (this specifies the first untrimmed height)
+			repository.getBlockRepository().setOnlineAccountsSignaturesTrimHeight(901);
+			repository.getATRepository().setAtTrimHeight(901);
+
+			// Write blocks 2-900 to the archive
+			final int maximumArchiveHeight = BlockArchiveWriter.getMaxArchiveHeight(repository);
+			BlockArchiveWriter writer = new BlockArchiveWriter(0, maximumArchiveHeight, repository);
+			writer.setShouldEnforceFileSizeTarget(false); // To avoid the need to pre-calculate file sizes
+			BlockArchiveWriter.BlockArchiveWriteResult result = writer.write();
+			assertEquals(BlockArchiveWriter.BlockArchiveWriteResult.OK, result);
+			assertEquals(900 - 1, writer.getWrittenCount());
+
+			// Read a range that extends beyond the end of the archive
+			BlockArchiveReader reader = BlockArchiveReader.getInstance();
+			Iterator<Triple<byte[], Integer, Integer>> serializedBlocks = reader.fetchSerializedBlockBytesFromRange(100, 1000);
+
+			int expectedHeight = 100;
+			while (serializedBlocks.hasNext()) {
+				Triple<byte[], Integer, Integer> serializedBlock = serializedBlocks.next();
+				assertEquals(expectedHeight, serializedBlock.getC().intValue());
+				assertEquals(2, serializedBlock.getB().intValue());
+
+				// Ensure range reader matches single block reader
+				assertArrayEquals(reader.fetchSerializedBlockBytesForHeight(expectedHeight).getA(), serializedBlock.getA());
+
+				expectedHeight++;
+			}
+
+			// Iteration should stop at the end of the archive
+			assertEquals(900 + 1, expectedHeight);
+
+			// Ensure deserialized blocks match the repository
+			List<BlockTransformation> blockInfoList = reader.fetchBlocksFromRange(2, 900);
+			assertEquals(900 - 1, blockInfoList.size());
+			for (BlockTransformation blockInfo : blockInfoList) {
+				BlockData blockRepositoryData = repository.getBlockRepository().fromHeight(blockInfo.getBlockData().getHeight());
+				assertArrayEquals(blockRepositoryData.getSignature(), blockInfo.getBlockData().getSignature());
+			}
+		}
+	}
+
 	@Test
 	public void testArchivedAtStates() throws DataException, InterruptedException, TransformationException, IOException {
 		try (final Repository repository = RepositoryManager.getRepository()) {
@@ -11,6 +11,7 @@ import org.aquila.block.Block;
 import org.aquila.block.GenesisBlock;
 import org.aquila.data.at.ATStateData;
 import org.aquila.data.block.BlockData;
+import org.aquila.data.transaction.PaymentTransactionData;
 import org.aquila.data.transaction.TransactionData;
 import org.aquila.repository.DataException;
 import org.aquila.repository.Repository;
@@ -29,6 +30,7 @@ import org.junit.Test;
 import org.aquila.test.common.BlockUtils;
 import org.aquila.test.common.Common;
 import org.aquila.test.common.TransactionUtils;
+import org.aquila.test.common.transaction.TestTransaction;
 
 import static org.junit.Assert.*;
 
@@ -140,6 +142,36 @@ public class BlockTests extends Common {
 		}
 	}
 
+	@Test
+	public void testBlockPreValidation() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount bob = Common.getTestAccount(repository, "bob");
+
+			TransactionData paymentTransactionData = new PaymentTransactionData(TestTransaction.generateBase(alice), bob.getAddress(), 100000L);
+			TransactionUtils.signAndMint(repository, paymentTransactionData, alice);
+
+			BlockData blockData = repository.getBlockRepository().getLastBlock();
+			List<TransactionData> transactions = repository.getBlockRepository().getTransactionsFromSignature(blockData.getSignature());
+			assertFalse(transactions.isEmpty());
+
+			// Rebuild block as if received from a peer
+			Block block = new Block(repository, blockData, transactions, new byte[0]);
+			assertEquals(Block.ValidationResult.OK, block.preValidate(null));
+			assertTrue(block.isSignatureValid());
+
+			// Tampered minter signature should be detected
+			byte[] minterSignature = blockData.getMinterSignature().clone();
+			minterSignature[0] ^= 0x01;
+			BlockData tamperedBlockData = new BlockData(blockData);
+			tamperedBlockData.setMinterSignature(minterSignature);
+
+			Block tamperedBlock = new Block(repository, tamperedBlockData, transactions, new byte[0]);
+			assertEquals(Block.ValidationResult.SIGNATURE_INCORRECT, tamperedBlock.preValidate(null));
+			assertFalse(tamperedBlock.isSignatureValid());
+		}
+	}
+
 	@Test
 	public void testLatestBlockCacheWithLatestBlock() throws DataException {
 		try (final Repository repository = RepositoryManager.getRepository()) {
@@ -1,5 +1,6 @@
 package org.aquila.test;
 
+import org.junit.Ignore;
 import org.junit.Test;
 import org.aquila.test.common.Common;
 
@@ -16,7 +17,10 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Random;
 
 import org.aquila.account.PrivateKeyAccount;
@@ -113,6 +117,96 @@ public class CryptoTests extends Common {
 		assertTrue(account.verify(signature, message));
 	}
 
+	@Test
+	public void testBatchVerify() {
+		final int count = 50;
+
+		List<byte[]> publicKeys = new ArrayList<>();
+		List<byte[]> signatures = new ArrayList<>();
+		List<byte[]> messages = new ArrayList<>();
+		buildSignatures(count, publicKeys, signatures, messages);
+
+		assertTrue(Aquila25519Extras.verifyBatch(publicKeys, signatures, messages));
+		assertTrue(Crypto.verifyBatch(publicKeys, signatures, messages).isEmpty());
+
+		// Tamper with a message, a signature's R and a signature's s
+		messages.get(3)[0] ^= 0x01;
+		signatures.get(17)[0] ^= 0x01;
+		signatures.get(42)[40] ^= 0x01;
+
+		assertFalse(Aquila25519Extras.verifyBatch(publicKeys, signatures, messages));
+
+		BitSet expectedInvalidIndexes = new BitSet();
+		expectedInvalidIndexes.set(3);
+		expectedInvalidIndexes.set(17);
+		expectedInvalidIndexes.set(42);
+
+		assertEquals(expectedInvalidIndexes, Crypto.verifyBatch(publicKeys, signatures, messages));
+
+		// Mismatched public key
+		publicKeys.clear();
+		signatures.clear();
+		messages.clear();
+		buildSignatures(count, publicKeys, signatures, messages);
+		publicKeys.set(10, publicKeys.get(11));
+
+		expectedInvalidIndexes.clear();
+		expectedInvalidIndexes.set(10);
+
+		assertEquals(expectedInvalidIndexes, Crypto.verifyBatch(publicKeys, signatures, messages));
+	}
+
+	@Ignore(value = "Benchmark, not a test")
+	@Test
+	public void testBatchVerifyPerformance() {
+		final int count = 1000;
+		final int rounds = 20;
+
+		List<byte[]> publicKeys = new ArrayList<>();
+		List<byte[]> signatures = new ArrayList<>();
+		List<byte[]> messages = new ArrayList<>();
+		buildSignatures(count, publicKeys, signatures, messages);
+
+		// Warm up
+		for (int round = 0; round < rounds; ++round) {
+			for (int i = 0; i < count; ++i)
+				Crypto.verify(publicKeys.get(i), signatures.get(i), messages.get(i));
+
+			Crypto.verifyBatch(publicKeys, signatures, messages);
+		}
+
+		long startTime = System.nanoTime();
+		for (int round = 0; round < rounds; ++round)
+			for (int i = 0; i < count; ++i)
+				assertTrue(Crypto.verify(publicKeys.get(i), signatures.get(i), messages.get(i)));
+		long individualTime = System.nanoTime() - startTime;
+
+		startTime = System.nanoTime();
+		for (int round = 0; round < rounds; ++round)
+			assertTrue(Crypto.verifyBatch(publicKeys, signatures, messages).isEmpty());
+		long batchTime = System.nanoTime() - startTime;
+
+		System.out.println(String.format("Individual: %d signatures in %dms, %dus each", count * rounds, individualTime / 1000000L, individualTime / 1000L / (count * rounds)));
+		System.out.println(String.format("Batch: %d signatures in %dms, %dus each", count * rounds, batchTime / 1000000L, batchTime / 1000L / (count * rounds)));
+	}
+
+	private static void buildSignatures(int count, List<byte[]> publicKeys, List<byte[]> signatures, List<byte[]> messages) {
+		SecureRandom random = new SecureRandom();
+
+		for (int i = 0; i < count; ++i) {
+			byte[] privateKey = new byte[32];
+			random.nextBytes(privateKey);
+			PrivateKeyAccount account = new PrivateKeyAccount(null, privateKey);
+
+			byte[] message = new byte[100 + i];
+			random.nextBytes(message);
+
+			publicKeys.add(account.getPublicKey());
+			signatures.add(account.sign(message));
+			messages.add(message);
+		}
+	}
+
 	@Test
 	public void testMassEd25519ToX25519() {
 		// Lots of random tests just in case of leading sign bit issues
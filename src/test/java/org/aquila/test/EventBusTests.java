@@ -0,0 +1,270 @@
+package org.aquila.test;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.aquila.event.CoalescingEvent;
+import org.aquila.event.Event;
+import org.aquila.event.EventBus;
+import org.aquila.event.Listener;
+import org.junit.Test;
+
+public class EventBusTests {
+
+	private static class TestEvent implements Event {
+		private final int number;
+
+		private TestEvent(int number) {
+			this.number = number;
+		}
+	}
+
+	private static class TestCoalescingEvent implements CoalescingEvent {
+		private final int from;
+		private final int to;
+
+		private TestCoalescingEvent(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public CoalescingEvent coalesce(CoalescingEvent laterEvent) {
+			return new TestCoalescingEvent(this.from, ((TestCoalescingEvent) laterEvent).to);
+		}
+	}
+
+	@Test
+	public void testSyncDelivery() {
+		List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+		Listener listener = receivedEvents::add;
+
+		EventBus.INSTANCE.addListener(listener);
+		try {
+			TestEvent event = new TestEvent(1);
+			EventBus.INSTANCE.notify(event);
+
+			// Delivered before notify() returns
+			assertEquals(List.of(event), receivedEvents);
+		} finally {
+			EventBus.INSTANCE.removeListener(listener);
+		}
+	}
+
+	@Test
+	public void testAsyncDeliveryAndCoalescing() throws InterruptedException {
+		CountDownLatch blockListener = new CountDownLatch(1);
+		CountDownLatch listenerBlocked = new CountDownLatch(1);
+		List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+
+		Listener listener = event -> {
+			listenerBlocked.countDown();
+
+			try {
+				blockListener.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			receivedEvents.add(event);
+		};
+
+		EventBus.INSTANCE.addListener(listener, EventBus.DeliveryMode.ASYNC);
+		try {
+			// Listener thread takes first event then blocks, so the rest remain pending
+			EventBus.INSTANCE.notify(new TestCoalescingEvent(0, 1));
+			assertTrue(listenerBlocked.await(10, TimeUnit.SECONDS));
+
+			// Notifying doesn't wait for blocked listener
+			EventBus.INSTANCE.notify(new TestCoalescingEvent(1, 2));
+			EventBus.INSTANCE.notify(new TestEvent(1));
+			EventBus.INSTANCE.notify(new TestCoalescingEvent(2, 3));
+			EventBus.INSTANCE.notify(new TestCoalescingEvent(3, 4));
+
+			blockListener.countDown();
+
+			long deadline = System.currentTimeMillis() + 10_000L;
+			while (receivedEvents.size() < 3 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10L);
+
+			assertEquals(3, receivedEvents.size());
+
+			// Listener's stats are updated after it returns, so wait for those too
+			EventBus.ListenerStats stats = findStats("EventBusTests");
+			while (stats.delivered < 3 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+				stats = findStats("EventBusTests");
+			}
+
+			TestCoalescingEvent firstEvent = (TestCoalescingEvent) receivedEvents.get(0);
+			assertEquals(0, firstEvent.from);
+			assertEquals(1, firstEvent.to);
+
+			// Combined event takes place of latest event, so is now after TestEvent(1) which was notified in between
+			assertEquals(List.of(TestCoalescingEvent.class, TestEvent.class, TestCoalescingEvent.class),
+					receivedEvents.stream().map(Object::getClass).collect(Collectors.toList()));
+			assertEquals(1, ((TestEvent) receivedEvents.get(1)).number);
+
+			TestCoalescingEvent combinedEvent = (TestCoalescingEvent) receivedEvents.get(2);
+			assertEquals(1, combinedEvent.from);
+			assertEquals(4, combinedEvent.to);
+
+			assertEquals(EventBus.DeliveryMode.ASYNC, stats.deliveryMode);
+			assertEquals(3, stats.delivered);
+			assertEquals(2, stats.coalesced);
+			assertEquals(0, stats.dropped);
+		} finally {
+			EventBus.INSTANCE.removeListener(listener);
+		}
+	}
+
+	@Test
+	public void testDropsWhenQueueFull() throws InterruptedException {
+		CountDownLatch blockListener = new CountDownLatch(1);
+		CountDownLatch listenerBlocked = new CountDownLatch(1);
+
+		Listener listener = event -> {
+			listenerBlocked.countDown();
+
+			try {
+				blockListener.await();
+			} catch (InterruptedException e) {
+				// Listener removed
+			}
+		};
+
+		EventBus.INSTANCE.addListener(listener, EventBus.DeliveryMode.ASYNC);
+		try {
+			EventBus.INSTANCE.notify(new TestEvent(0));
+			assertTrue(listenerBlocked.await(10, TimeUnit.SECONDS));
+
+			final int extraEvents = 5;
+			for (int i = 1; i <= 1000 + extraEvents; ++i)
+				EventBus.INSTANCE.notify(new TestEvent(i));
+
+			EventBus.ListenerStats stats = findStats("EventBusTests");
+			assertEquals(extraEvents, stats.dropped);
+			assertEquals(1000, stats.pending);
+		} finally {
+			blockListener.countDown();
+			EventBus.INSTANCE.removeListener(listener);
+		}
+	}
+
+	@Test
+	public void testCoalescingEventNotDroppedWhenQueueFull() throws InterruptedException {
+		CountDownLatch blockListener = new CountDownLatch(1);
+		CountDownLatch listenerBlocked = new CountDownLatch(1);
+		List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+
+		Listener listener = event -> {
+			listenerBlocked.countDown();
+
+			try {
+				blockListener.await();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			receivedEvents.add(event);
+		};
+
+		EventBus.INSTANCE.addListener(listener, EventBus.DeliveryMode.ASYNC);
+		try {
+			EventBus.INSTANCE.notify(new TestEvent(0));
+			assertTrue(listenerBlocked.await(10, TimeUnit.SECONDS));
+
+			// Oldest pending event is coalescing, then a flood of other events
+			EventBus.INSTANCE.notify(new TestCoalescingEvent(0, 1));
+
+			final int extraEvents = 5;
+			for (int i = 1; i <= 1000 + extraEvents; ++i)
+				EventBus.INSTANCE.notify(new TestEvent(i));
+
+			EventBus.ListenerStats stats = findStats("EventBusTests");
+			assertEquals(extraEvents + 1, stats.dropped);
+			assertEquals(1000, stats.pending);
+
+			blockListener.countDown();
+
+			long deadline = System.currentTimeMillis() + 10_000L;
+			while (receivedEvents.size() < 1001 && System.currentTimeMillis() < deadline)
+				Thread.sleep(10L);
+
+			// Coalescing event survived, and is still delivered first, followed by TestEvents after those dropped
+			assertEquals(1001, receivedEvents.size());
+			assertTrue(receivedEvents.get(1) instanceof TestCoalescingEvent);
+			assertEquals(stats.dropped + 1, ((TestEvent) receivedEvents.get(2)).number);
+		} finally {
+			blockListener.countDown();
+			EventBus.INSTANCE.removeListener(listener);
+		}
+	}
+
+	@Test
+	public void testNoDeliveryAfterRemoval() throws InterruptedException {
+		CountDownLatch blockListener = new CountDownLatch(1);
+		CountDownLatch listenerBlocked = new CountDownLatch(1);
+		List<Event> receivedEvents = new CopyOnWriteArrayList<>();
+		List<Thread> listenerThreads = new CopyOnWriteArrayList<>();
+
+		Listener listener = event -> {
+			listenerThreads.add(Thread.currentThread());
+			listenerBlocked.countDown();
+
+			// Swallow interrupts, as some listeners do
+			while (true)
+				try {
+					blockListener.await();
+					break;
+				} catch (InterruptedException e) {
+					continue;
+				}
+
+			receivedEvents.add(event);
+		};
+
+		EventBus.INSTANCE.addListener(listener, EventBus.DeliveryMode.ASYNC);
+
+		EventBus.INSTANCE.notify(new TestEvent(0));
+		assertTrue(listenerBlocked.await(10, TimeUnit.SECONDS));
+
+		for (int i = 1; i <= 10; ++i)
+			EventBus.INSTANCE.notify(new TestEvent(i));
+
+		// Remove listener while it's still delivering first event
+		Thread removingThread = new Thread(() -> EventBus.INSTANCE.removeListener(listener));
+		removingThread.start();
+
+		// Removal should wait for listener
+		removingThread.join(200L);
+		assertTrue(removingThread.isAlive());
+
+		blockListener.countDown();
+		removingThread.join(10_000L);
+		assertFalse(removingThread.isAlive());
+
+		// Listener's thread has finished, having delivered only the event in progress
+		assertFalse(listenerThreads.get(0).isAlive());
+		assertEquals(1, receivedEvents.size());
+		assertEquals(0, ((TestEvent) receivedEvents.get(0)).number);
+
+		// Events notified after removal aren't delivered
+		EventBus.INSTANCE.notify(new TestEvent(11));
+		assertEquals(1, receivedEvents.size());
+		assertTrue(EventBus.INSTANCE.getListenerStats().stream().noneMatch(stats -> stats.name.equals("EventBusTests")));
+	}
+
+	private static EventBus.ListenerStats findStats(String name) {
+		return EventBus.INSTANCE.getListenerStats().stream()
+				.filter(stats -> stats.name.equals(name))
+				.findFirst()
+				.orElseThrow(() -> new AssertionError("No stats for " + name));
+	}
+
+}
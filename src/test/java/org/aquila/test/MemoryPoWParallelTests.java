@@ -0,0 +1,60 @@
+package org.aquila.test;
+
+import org.aquila.crypto.MemoryPoW;
+import org.aquila.utils.NTP;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+
+/** Correctness of multi-threaded nonce search. Slower tests and benchmarks are in {@link MemoryPoWTests}. */
+public class MemoryPoWParallelTests {
+
+	private static final int workBufferLength = 64 * 1024;
+
+	@BeforeClass
+	public static void beforeClass() {
+		// We need this so that NTP.getTime() in MemoryPoW.compute2() doesn't return null, causing NPE
+		NTP.setFixedOffset(0L);
+	}
+
+	@Test
+	public void testKnownParallelCompute2() {
+		byte[] data = new byte[] { (byte) 0xaa, (byte) 0xbb, (byte) 0xcc };
+
+		// Lowest nonce is returned, so results match single-threaded search
+		for (int threadCount = 2; threadCount <= 5; ++threadCount)
+			assertEquals(326, MemoryPoW.compute2(data, 8 * 1024 * 1024, 8, threadCount).intValue());
+	}
+
+	@Test
+	public void testParallelCompute2() {
+		Random random = new Random();
+		byte[] data = new byte[256];
+
+		for (int i = 0; i < 10; ++i) {
+			random.nextBytes(data);
+
+			int serialNonce = MemoryPoW.compute2(data, workBufferLength, 8);
+
+			for (int threadCount = 2; threadCount <= 5; ++threadCount) {
+				int parallelNonce = MemoryPoW.compute2(data, workBufferLength, 8, threadCount);
+				assertEquals(serialNonce, parallelNonce);
+				assertTrue(MemoryPoW.verify2(data, workBufferLength, 8, parallelNonce));
+			}
+		}
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void testParallelTimeout() throws TimeoutException {
+		byte[] data = new byte[256];
+		new Random().nextBytes(data);
+
+		// Difficulty is far too high to find a nonce before deadline
+		MemoryPoW.compute2(data, workBufferLength, 60, 200L, 3);
+	}
+
+}
@@ -1,12 +1,18 @@
 package org.aquila.test;
 
+import org.aquila.controller.OnlineAccountsManager;
 import org.aquila.crypto.MemoryPoW;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Ignore
 public class MemoryPoWTests {
@@ -111,4 +117,84 @@ public class MemoryPoWTests {
 		assertTrue(MemoryPoW.verify2(data, workBufferLength, difficulty, expectedNonce));
 	}
 
+	@Test
+	public void testOnlineAccountsVerifyBenchmark() throws Exception {
+		final int bufferSize = OnlineAccountsManager.POW_BUFFER_SIZE;
+		final int difficulty = OnlineAccountsManager.POW_DIFFICULTY_V2;
+		final int accountCount = 500;
+
+		Random random = new Random();
+
+		// We only care about verification cost, not whether nonces are valid
+		List<byte[]> datas = new ArrayList<>();
+		int[] nonces = new int[accountCount];
+		for (int i = 0; i < accountCount; ++i) {
+			byte[] data = new byte[40];
+			random.nextBytes(data);
+			datas.add(data);
+			nonces[i] = random.nextInt(1 << difficulty);
+		}
+
+		// Warm up
+		for (int i = 0; i < 50; ++i)
+			MemoryPoW.verify2(datas.get(i), bufferSize, difficulty, nonces[i]);
+
+		long startTime = System.currentTimeMillis();
+		for (int i = 0; i < accountCount; ++i)
+			MemoryPoW.verify2(datas.get(i), bufferSize, difficulty, nonces[i]);
+		long freshBufferTime = System.currentTimeMillis() - startTime;
+
+		long[] workBuffer = new long[bufferSize / 8];
+		startTime = System.currentTimeMillis();
+		for (int i = 0; i < accountCount; ++i)
+			MemoryPoW.verify2(datas.get(i), workBuffer, bufferSize, difficulty, nonces[i]);
+		long reusedBufferTime = System.currentTimeMillis() - startTime;
+
+		final int threadCount = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		ThreadLocal<long[]> workBuffers = ThreadLocal.withInitial(() -> new long[bufferSize / 8]);
+		try {
+			startTime = System.currentTimeMillis();
+
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (int i = 0; i < accountCount; ++i) {
+				final int index = i;
+				futures.add(executor.submit(() -> MemoryPoW.verify2(datas.get(index), workBuffers.get(), bufferSize, difficulty, nonces[index])));
+			}
+
+			for (Future<Boolean> future : futures)
+				future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		long parallelTime = System.currentTimeMillis() - startTime;
+
+		System.out.println(String.format("Verifying %d nonces (buffer size: %dKB, difficulty: %d): fresh buffers: %dms, reused buffer: %dms, %d threads: %dms",
+				accountCount, bufferSize / 1024, difficulty,
+				freshBufferTime, reusedBufferTime, threadCount, parallelTime));
+	}
+
+	@Test
+	public void testOnlineAccountsComputeBenchmark() {
+		final int bufferSize = OnlineAccountsManager.POW_BUFFER_SIZE;
+		final int difficulty = OnlineAccountsManager.POW_DIFFICULTY_V2;
+		final int sampleSize = 3;
+
+		Random random = new Random();
+		byte[] data = new byte[40];
+
+		for (int i = 0; i < sampleSize; ++i) {
+			random.nextBytes(data);
+
+			long startTime = System.currentTimeMillis();
+			int nonce = MemoryPoW.compute2(data, bufferSize, difficulty);
+			long timeTaken = System.currentTimeMillis() - startTime;
+
+			System.out.println(String.format("Computed nonce %d (buffer size: %dKB, difficulty: %d) in %dms, %.1f nonces/s",
+					nonce, bufferSize / 1024, difficulty, timeTaken, (nonce + 1) * 1000.0 / Math.max(1L, timeTaken)));
+
+			assertTrue(MemoryPoW.verify2(data, bufferSize, difficulty, nonce));
+		}
+	}
+
 }
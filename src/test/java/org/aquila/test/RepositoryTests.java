@@ -1,6 +1,7 @@
 package org.aquila.test;
 
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.aquila.test.common.BlockUtils;
 import org.aquila.test.common.Common;
@@ -30,6 +31,7 @@ import org.aquila.repository.DataException;
 import org.aquila.repository.Repository;
 import org.aquila.repository.RepositoryManager;
 import org.aquila.repository.hsqldb.HSQLDBRepository;
+import org.aquila.repository.hsqldb.HSQLDBSaver;
 
 public class RepositoryTests extends Common {
 
@@ -551,6 +553,116 @@ public class RepositoryTests extends Common {
 		repository.saveChanges();
 	}
 
+	@Test
+	public void testBatchSaver() throws SQLException, DataException {
+		try (final HSQLDBRepository hsqldb = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			hsqldb.prepareStatement("DROP TABLE IF EXISTS batchtestA").execute();
+			hsqldb.prepareStatement("DROP TABLE IF EXISTS batchtestB").execute();
+			hsqldb.prepareStatement("CREATE TABLE batchtestA (id INT NOT NULL, counter INT NOT NULL, PRIMARY KEY(id))").execute();
+			hsqldb.prepareStatement("CREATE TABLE batchtestB (id INT NOT NULL, PRIMARY KEY(id))").execute();
+
+			// Interleave tables, and include a duplicate key
+			List<HSQLDBSaver> savers = new ArrayList<>();
+			for (int i = 0; i < 10; ++i) {
+				savers.add(new HSQLDBSaver("batchtestA").bind("id", i % 5).bind("counter", i));
+				savers.add(new HSQLDBSaver("batchtestB").bind("id", i));
+			}
+
+			HSQLDBSaver.executeBatch(hsqldb, savers);
+
+			ResultSet resultSet = hsqldb.checkedExecute("SELECT COUNT(*), SUM(counter) FROM batchtestA");
+			assertNotNull(resultSet);
+			assertEquals(5, resultSet.getInt(1));
+			// Later rows overwrite earlier ones, so counters are 5..9
+			assertEquals(5 + 6 + 7 + 8 + 9, resultSet.getInt(2));
+
+			resultSet = hsqldb.checkedExecute("SELECT COUNT(*) FROM batchtestB");
+			assertNotNull(resultSet);
+			assertEquals(10, resultSet.getInt(1));
+		}
+	}
+
+	@Ignore(value = "Benchmark, not a test")
+	@Test
+	public void testConcurrentSaverThroughput() throws Exception {
+		final int threadCount = 8;
+		final int rowsPerThread = 20000;
+		final int rowsPerCommit = 100;
+		// Emulates previous saver behaviour of serialising all savers via one monitor.
+		// Like the previous saver, this can deadlock on a disk repository: a saver holding the monitor
+		// can be made to wait by HSQLDB for another session, which can't then save or commit.
+		final Object globalMonitor = new Object();
+
+		try (final HSQLDBRepository hsqldb = (HSQLDBRepository) RepositoryManager.getRepository()) {
+			hsqldb.prepareStatement("DROP TABLE IF EXISTS savertest").execute();
+			hsqldb.prepareStatement("CREATE TABLE savertest (id INT NOT NULL, thread INT NOT NULL, data VARBINARY(64) NOT NULL, PRIMARY KEY(id))").execute();
+			hsqldb.saveChanges();
+		}
+
+		for (String mode : List.of("serialised", "shared", "batched")) {
+			try (final HSQLDBRepository hsqldb = (HSQLDBRepository) RepositoryManager.getRepository()) {
+				hsqldb.prepareStatement("DELETE FROM savertest").execute();
+				hsqldb.saveChanges();
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+			List<Future<?>> futures = new ArrayList<>();
+
+			final long startTime = System.nanoTime();
+
+			for (int t = 0; t < threadCount; ++t) {
+				final int thread = t;
+
+				futures.add(executor.submit(() -> {
+					byte[] data = new byte[64];
+					new Random().nextBytes(data);
+
+					try (final HSQLDBRepository hsqldb = (HSQLDBRepository) RepositoryManager.getRepository()) {
+						List<HSQLDBSaver> savers = new ArrayList<>();
+
+						for (int i = 0; i < rowsPerThread; ++i) {
+							HSQLDBSaver saver = new HSQLDBSaver("savertest").bind("id", thread * rowsPerThread + i).bind("thread", thread).bind("data", data);
+
+							switch (mode) {
+								case "serialised":
+									synchronized (globalMonitor) {
+										saver.execute(hsqldb);
+									}
+									break;
+
+								case "shared":
+									saver.execute(hsqldb);
+									break;
+
+								default:
+									savers.add(saver);
+									break;
+							}
+
+							if ((i + 1) % rowsPerCommit == 0) {
+								HSQLDBSaver.executeBatch(hsqldb, savers);
+								savers.clear();
+								hsqldb.saveChanges();
+							}
+						}
+					}
+
+					return null;
+				}));
+			}
+
+			for (Future<?> future : futures)
+				future.get();
+
+			final long duration = System.nanoTime() - startTime;
+			executor.shutdown();
+
+			final int totalRows = threadCount * rowsPerThread;
+			System.out.println(String.format("%s: %d threads saved %d rows in %dms (%d rows/s)",
+					mode, threadCount, totalRows, duration / 1_000_000L, totalRows * 1_000_000_000L / duration));
+		}
+	}
+
 	public static void hsqldbSleep(int millis) throws SQLException {
 		System.out.println(String.format("HSQLDB sleep() thread ID: %s", Thread.currentThread().getId()));
 
@@ -0,0 +1,164 @@
+package org.aquila.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.aquila.account.PrivateKeyAccount;
+import org.aquila.controller.IncomingTransactionQueue;
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.test.common.Common;
+import org.aquila.test.common.TransactionUtils;
+import org.aquila.transaction.Transaction;
+import org.aquila.transaction.Transaction.TransactionType;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TransactionImporterTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testIncomingTransactionQueue() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<TransactionData> transactions = generateTransactions(repository, 3);
+			TransactionData transactionData = transactions.get(0);
+			byte[] signature = transactionData.getSignature();
+
+			IncomingTransactionQueue queue = new IncomingTransactionQueue(2);
+
+			assertTrue(queue.add(transactionData));
+			assertFalse(queue.add(transactionData));
+			// Looked up by signature value, not array identity
+			assertTrue(queue.contains(Arrays.copyOf(signature, signature.length)));
+
+			// Not validated yet
+			assertNull(queue.getValidated(signature));
+			assertEquals(1, queue.getPending().size());
+
+			queue.markValidated(transactionData);
+			assertTrue(queue.contains(signature));
+			assertEquals(transactionData, queue.getValidated(signature));
+			assertTrue(queue.getPending().isEmpty());
+			assertFalse(queue.add(transactionData));
+
+			// Capacity
+			assertTrue(queue.add(transactions.get(1)));
+			assertFalse(queue.add(transactions.get(2)));
+
+			queue.remove(signature);
+			assertFalse(queue.contains(signature));
+			assertTrue(queue.add(transactions.get(2)));
+			assertEquals(2, queue.size());
+		}
+	}
+
+	@Ignore(value = "Benchmark, not a test")
+	@Test
+	public void testIncomingTransactionFlood() throws Exception {
+		final int transactionCount = 5000;
+		final int networkThreadCount = 8;
+		// Each network thread also receives this many TRANSACTION_SIGNATURES announcements for every transaction
+		final int announcementsPerTransaction = 5;
+
+		List<TransactionData> transactions;
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			transactions = generateTransactions(repository, transactionCount);
+		}
+
+		for (int round = 0; round < 3; ++round) {
+			long duration = flood(new IncomingTransactionQueue(transactionCount), transactions, networkThreadCount, announcementsPerTransaction);
+
+			System.out.println(String.format("%d transactions, %d network threads: %dms",
+					transactionCount, networkThreadCount, duration / 1_000_000L));
+		}
+	}
+
+	private static List<TransactionData> generateTransactions(Repository repository, int count) throws DataException {
+		List<PrivateKeyAccount> accounts = List.of(
+				Common.getTestAccount(repository, "alice"),
+				Common.getTestAccount(repository, "bob"),
+				Common.getTestAccount(repository, "chloe"),
+				Common.getTestAccount(repository, "dilbert"));
+
+		List<TransactionData> transactions = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			PrivateKeyAccount account = accounts.get(i % accounts.size());
+			TransactionType txType = (i % 2 == 0) ? TransactionType.PAYMENT : TransactionType.CHAT;
+
+			TransactionData transactionData = TransactionUtils.randomTransaction(repository, account, txType, true);
+			Transaction.fromData(repository, transactionData).sign(account);
+
+			transactions.add(transactionData);
+		}
+
+		return transactions;
+	}
+
+	/**
+	 * Network threads add transactions and check announced signatures, while an importer thread repeatedly
+	 * validates pending transactions, serves GET_TRANSACTION lookups and finally removes imported transactions.
+	 *
+	 * @return duration in nanoseconds
+	 */
+	private static long flood(IncomingTransactionQueue queue, List<TransactionData> transactions, int networkThreadCount, int announcementsPerTransaction) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(networkThreadCount + 1);
+		AtomicBoolean isFlooding = new AtomicBoolean(true);
+
+		try {
+			long startTime = System.nanoTime();
+
+			Future<?> importerFuture = executor.submit(() -> {
+				while (isFlooding.get() || !queue.isEmpty()) {
+					for (TransactionData transactionData : queue.getPending())
+						queue.markValidated(transactionData);
+
+					for (TransactionData transactionData : queue.getValidated()) {
+						queue.getValidated(transactionData.getSignature());
+						queue.remove(transactionData.getSignature());
+					}
+				}
+			});
+
+			List<Future<?>> networkFutures = new ArrayList<>();
+			for (int t = 0; t < networkThreadCount; ++t) {
+				final int offset = t;
+
+				networkFutures.add(executor.submit(() -> {
+					for (int i = offset; i < transactions.size(); i += networkThreadCount) {
+						TransactionData transactionData = transactions.get(i);
+
+						for (int a = 0; a < announcementsPerTransaction; ++a)
+							queue.contains(transactions.get((i + a * 997) % transactions.size()).getSignature());
+
+						queue.add(transactionData);
+					}
+				}));
+			}
+
+			for (Future<?> networkFuture : networkFutures)
+				networkFuture.get();
+
+			isFlooding.set(false);
+			importerFuture.get();
+
+			return System.nanoTime() - startTime;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+package org.aquila.test.arbitrary;
+
+import org.apache.commons.io.FileUtils;
+import org.aquila.arbitrary.ArbitraryDataChunkStore;
+import org.aquila.arbitrary.ArbitraryDataFile;
+import org.aquila.repository.DataException;
+import org.aquila.settings.Settings;
+import org.aquila.test.common.Common;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataChunkStoreTests extends Common {
+
+	@Before
+	public void beforeTest() throws DataException, IOException {
+		Common.useDefaultSettings();
+		this.deleteDataDirectory();
+		ArbitraryDataChunkStore.getInstance().clear();
+	}
+
+	@After
+	public void afterTest() throws IOException {
+		ArbitraryDataChunkStore.getInstance().clear();
+		this.deleteDataDirectory();
+	}
+
+	@Test
+	public void testSharedAcrossTransactions() throws DataException, IOException {
+		ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+		chunkStore.rebuild();
+		assertTrue(chunkStore.isEnabled());
+
+		byte[] data = randomBytes(100 * 1024);
+		ArbitraryDataFile file1 = new ArbitraryDataFile(data, randomBytes(64));
+		ArbitraryDataFile file2 = new ArbitraryDataFile(data, randomBytes(64));
+
+		// Both transactions have the file, but its bytes are only stored once
+		assertTrue(file1.exists());
+		assertTrue(file2.exists());
+		assertNotEquals(file1.getFilePath(), file2.getFilePath());
+		assertTrue(Files.isSameFile(file1.getFilePath(), file2.getFilePath()));
+		assertEquals(2, chunkStore.getReferenceCount(file1.getHash58()));
+		assertEquals(data.length, chunkStore.rebuild());
+
+		// Deleting one transaction's file leaves the other intact
+		assertTrue(file1.delete());
+		assertFalse(file1.exists());
+		assertTrue(file2.exists());
+		assertTrue(Arrays.equals(data, file2.getBytes()));
+		assertEquals(1, chunkStore.getReferenceCount(file2.getHash58()));
+	}
+
+	@Test
+	public void testLinkExisting() throws DataException, IOException {
+		ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+
+		byte[] data = randomBytes(10 * 1024);
+		ArbitraryDataFile file1 = new ArbitraryDataFile(data, randomBytes(64));
+		Path path2 = ArbitraryDataFile.getOutputFilePath(file1.getHash58(), randomBytes(64), false);
+
+		// Nothing to link to until index is built
+		assertFalse(chunkStore.linkExisting(path2));
+		assertFalse(Files.exists(path2));
+
+		chunkStore.rebuild();
+		assertEquals(1, chunkStore.getReferenceCount(file1.getHash58()));
+
+		assertTrue(chunkStore.linkExisting(path2));
+		assertTrue(Files.exists(path2));
+		assertTrue(chunkStore.exists(path2));
+		assertEquals(2, chunkStore.getReferenceCount(file1.getHash58()));
+
+		// Already exists, so no need to link
+		assertFalse(chunkStore.linkExisting(path2));
+	}
+
+	@Test
+	public void testStaleEntry() throws DataException, IOException {
+		ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+		chunkStore.rebuild();
+
+		byte[] data = randomBytes(10 * 1024);
+		ArbitraryDataFile file1 = new ArbitraryDataFile(data, randomBytes(64));
+		ArbitraryDataFile file2 = new ArbitraryDataFile(data, randomBytes(64));
+		assertEquals(2, chunkStore.getReferenceCount(file1.getHash58()));
+
+		// Deleted from outside the node, so only the remaining copy counts
+		Files.delete(file1.getFilePath());
+		assertEquals(1, chunkStore.getReferenceCount(file1.getHash58()));
+		assertFalse(file1.exists());
+		assertTrue(file2.exists());
+
+		// Rebuilding also drops stale entries
+		Files.delete(file2.getFilePath());
+		chunkStore.rebuild();
+		assertFalse(file2.exists());
+		assertEquals(0, chunkStore.getReferenceCount(file2.getHash58()));
+	}
+
+	@Test
+	public void testRemoveDirectory() throws DataException, IOException {
+		ArbitraryDataChunkStore chunkStore = ArbitraryDataChunkStore.getInstance();
+		chunkStore.rebuild();
+
+		byte[] data = randomBytes(10 * 1024);
+		ArbitraryDataFile file1 = new ArbitraryDataFile(data, randomBytes(64));
+		ArbitraryDataFile file2 = new ArbitraryDataFile(data, randomBytes(64));
+		assertEquals(2, chunkStore.getReferenceCount(file1.getHash58()));
+
+		Path directory = file1.getFilePath().getParent();
+		FileUtils.deleteDirectory(directory.toFile());
+		chunkStore.removeDirectory(directory);
+
+		assertFalse(file1.exists());
+		assertTrue(file2.exists());
+		assertEquals(1, chunkStore.getReferenceCount(file2.getHash58()));
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		new Random().nextBytes(bytes); // No need for SecureRandom here
+		return bytes;
+	}
+
+	private void deleteDataDirectory() throws IOException {
+		Path dataPath = Paths.get(Settings.getInstance().getDataPath());
+		FileUtils.deleteDirectory(dataPath.toFile());
+	}
+
+}
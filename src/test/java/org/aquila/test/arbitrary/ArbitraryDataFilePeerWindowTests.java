@@ -0,0 +1,97 @@
+package org.aquila.test.arbitrary;
+
+import org.aquila.controller.arbitrary.ArbitraryDataFilePeerWindow;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataFilePeerWindowTests {
+
+	private static final long CHUNK_SIZE = 512 * 1024L;
+
+	@Test
+	public void testWindowLimitsRequests() {
+		long now = 1_000_000L;
+		ArbitraryDataFilePeerWindow peerWindow = new ArbitraryDataFilePeerWindow(now);
+
+		for (int i = 0; i < ArbitraryDataFilePeerWindow.INITIAL_WINDOW; ++i)
+			assertTrue(peerWindow.tryAcquire(now));
+
+		assertFalse("Window should be full", peerWindow.tryAcquire(now));
+		assertEquals(0, peerWindow.getAvailable());
+
+		peerWindow.release(true, CHUNK_SIZE, now + 100);
+		assertTrue(peerWindow.tryAcquire(now + 100));
+	}
+
+	@Test
+	public void testWindowGrowsWhileThroughputImproves() {
+		long now = 1_000_000L;
+		ArbitraryDataFilePeerWindow peerWindow = new ArbitraryDataFilePeerWindow(now);
+
+		// Each period of requests completes in same time, regardless of window, so throughput scales with window
+		while (peerWindow.getWindow() < ArbitraryDataFilePeerWindow.MAX_WINDOW) {
+			int window = peerWindow.getWindow();
+			now = runPeriod(peerWindow, now, 1000L);
+
+			assertTrue("Window should have grown", peerWindow.getWindow() > window);
+		}
+
+		// Can't grow beyond maximum
+		now = runPeriod(peerWindow, now, 500L);
+		assertEquals(ArbitraryDataFilePeerWindow.MAX_WINDOW, peerWindow.getWindow());
+
+		// Throughput drops, so window shrinks
+		now = runPeriod(peerWindow, now, 5000L);
+		assertEquals(ArbitraryDataFilePeerWindow.MAX_WINDOW - 1, peerWindow.getWindow());
+	}
+
+	@Test
+	public void testWindowHalvesOnFailure() {
+		long now = 1_000_000L;
+		ArbitraryDataFilePeerWindow peerWindow = new ArbitraryDataFilePeerWindow(now);
+
+		while (peerWindow.getWindow() < ArbitraryDataFilePeerWindow.MAX_WINDOW)
+			now = runPeriod(peerWindow, now, 1000L);
+
+		assertTrue(peerWindow.tryAcquire(now));
+		peerWindow.release(false, 0, now + 30_000L);
+		assertEquals(ArbitraryDataFilePeerWindow.MAX_WINDOW / 2, peerWindow.getWindow());
+
+		// Never drops below one request
+		for (int i = 0; i < 10; ++i) {
+			assertTrue(peerWindow.tryAcquire(now));
+			peerWindow.release(false, 0, now);
+		}
+		assertEquals(1, peerWindow.getWindow());
+	}
+
+	@Test
+	public void testIdle() {
+		long now = 1_000_000L;
+		ArbitraryDataFilePeerWindow peerWindow = new ArbitraryDataFilePeerWindow(now);
+
+		assertTrue(peerWindow.tryAcquire(now));
+		assertFalse("Window with requests in flight isn't idle", peerWindow.isIdle(now + 60 * 60 * 1000L));
+
+		peerWindow.release(true, CHUNK_SIZE, now);
+		assertFalse(peerWindow.isIdle(now + 1000L));
+		assertTrue(peerWindow.isIdle(now + 60 * 60 * 1000L));
+	}
+
+	/** Fills window, then completes all requests after <tt>duration</tt> ms. Returns new 'now'. */
+	private static long runPeriod(ArbitraryDataFilePeerWindow peerWindow, long now, long duration) {
+		int window = peerWindow.getWindow();
+
+		for (int i = 0; i < window; ++i)
+			assertTrue(peerWindow.tryAcquire(now));
+
+		now += duration;
+
+		for (int i = 0; i < window; ++i)
+			peerWindow.release(true, CHUNK_SIZE, now);
+
+		return now;
+	}
+
+}
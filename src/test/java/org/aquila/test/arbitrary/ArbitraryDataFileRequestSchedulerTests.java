@@ -0,0 +1,119 @@
+package org.aquila.test.arbitrary;
+
+import org.aquila.controller.arbitrary.ArbitraryDataFileRequestScheduler;
+import org.aquila.controller.arbitrary.ArbitraryDataManager;
+import org.aquila.data.arbitrary.ArbitraryFileListResponseInfo;
+import org.aquila.data.network.PeerData;
+import org.aquila.network.Peer;
+import org.aquila.network.PeerAddress;
+import org.aquila.repository.DataException;
+import org.aquila.test.common.Common;
+import org.aquila.utils.NTP;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArbitraryDataFileRequestSchedulerTests extends Common {
+
+	private Peer peer1;
+	private Peer peer2;
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+		NTP.setFixedOffset(0L);
+
+		this.peer1 = new Peer(new PeerData(PeerAddress.fromString("127.0.0.1:12391")));
+		this.peer2 = new Peer(new PeerData(PeerAddress.fromString("127.0.0.2:12391")));
+	}
+
+	@Test
+	public void testLowestHopsFirstWithWholeTransaction() throws InterruptedException {
+		ArbitraryDataFileRequestScheduler scheduler = new ArbitraryDataFileRequestScheduler();
+		long now = NTP.getTime();
+
+		scheduler.add(response("hashA1", "sigA", this.peer1, now, 3));
+		scheduler.add(response("hashA2", "sigA", this.peer1, now, 5));
+		scheduler.add(response("hashB1", "sigB", this.peer2, now, 1));
+		assertEquals(3, scheduler.size());
+
+		ArbitraryDataFileRequestScheduler.Batch batch = scheduler.take(100L, hash58 -> false);
+		assertNotNull(batch);
+		assertEquals("sigB", batch.getSignature58());
+		assertEquals(List.of("hashB1"), List.copyOf(batch.getPeersByHash58().keySet()));
+
+		batch = scheduler.take(100L, hash58 -> false);
+		assertNotNull(batch);
+		assertEquals("sigA", batch.getSignature58());
+		assertEquals(List.of("hashA1", "hashA2"), List.copyOf(batch.getPeersByHash58().keySet()));
+
+		assertEquals(0, scheduler.size());
+		assertNull(scheduler.take(10L, hash58 -> false));
+	}
+
+	@Test
+	public void testDuplicatesAndMultiplePeers() throws InterruptedException {
+		ArbitraryDataFileRequestScheduler scheduler = new ArbitraryDataFileRequestScheduler();
+		long now = NTP.getTime();
+
+		scheduler.add(response("hash1", "sig", this.peer1, now, 4));
+		scheduler.add(response("hash1", "sig", this.peer1, now, 4));
+		assertEquals("Duplicate response should be ignored", 1, scheduler.size());
+
+		// Another peer, with fewer hops
+		scheduler.add(response("hash1", "sig", this.peer2, now, 2));
+		assertEquals(2, scheduler.size());
+
+		ArbitraryDataFileRequestScheduler.Batch batch = scheduler.take(100L, hash58 -> false);
+		assertNotNull(batch);
+
+		Map<String, List<Peer>> peersByHash58 = batch.getPeersByHash58();
+		assertEquals(1, peersByHash58.size());
+		assertEquals(List.of(this.peer2, this.peer1), peersByHash58.get("hash1"));
+	}
+
+	@Test
+	public void testDeferredWhileBeingRequested() throws InterruptedException {
+		ArbitraryDataFileRequestScheduler scheduler = new ArbitraryDataFileRequestScheduler();
+		long now = NTP.getTime();
+
+		scheduler.add(response("hash1", "sig", this.peer1, now, 1));
+
+		// Someone else is already requesting this chunk
+		assertNull(scheduler.take(100L, hash58 -> true));
+		assertEquals("Deferred response should be kept", 1, scheduler.size());
+
+		// Chunk is requeued once deferral is over
+		ArbitraryDataFileRequestScheduler.Batch batch = scheduler.take(5000L, hash58 -> false);
+		assertNotNull(batch);
+		assertEquals("sig", batch.getSignature58());
+	}
+
+	@Test
+	public void testExpiry() throws InterruptedException {
+		ArbitraryDataFileRequestScheduler scheduler = new ArbitraryDataFileRequestScheduler();
+		long now = NTP.getTime();
+
+		scheduler.add(response("hash1", "sig", this.peer1, now - ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT + 3000L, 1));
+		scheduler.add(response("hash1", "sig", this.peer2, now, 2));
+		assertEquals(2, scheduler.size());
+
+		// First peer's response expires
+		scheduler.expire(now + 5000L);
+		assertEquals(1, scheduler.size());
+
+		// Second peer's response expires
+		scheduler.expire(now + ArbitraryDataManager.ARBITRARY_RELAY_TIMEOUT + 2000L);
+		assertEquals(0, scheduler.size());
+		assertNull(scheduler.take(10L, hash58 -> false));
+	}
+
+	private static ArbitraryFileListResponseInfo response(String hash58, String signature58, Peer peer, long timestamp, int hops) {
+		return new ArbitraryFileListResponseInfo(hash58, signature58, peer, timestamp, timestamp, hops);
+	}
+
+}
@@ -1,11 +1,14 @@
 package org.aquila.test.arbitrary;
 
 import org.aquila.arbitrary.ArbitraryDataFile;
+import org.aquila.crypto.Crypto;
 import org.aquila.repository.DataException;
+import org.aquila.utils.Base58;
 import org.junit.Before;
 import org.junit.Test;
 import org.aquila.test.common.Common;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import static org.junit.Assert.*;
@@ -74,4 +77,22 @@ public class ArbitraryDataFileTests extends Common {
 		assertEquals(originalFileDigest, arbitraryDataFile.digest58());
 	}
 
+	@Test
+	public void testByteBufferContent() throws DataException {
+		byte[] randomData = new byte[100 * 1024];
+		new Random().nextBytes(randomData); // No need for SecureRandom here
+
+		// Only buffer's remaining bytes should be used, leaving its position untouched
+		ByteBuffer buffer = ByteBuffer.allocate(randomData.length + 10);
+		buffer.position(10);
+		buffer.put(randomData);
+		buffer.position(10);
+
+		ArbitraryDataFile arbitraryDataFile = new ArbitraryDataFile(buffer, null);
+		assertTrue(arbitraryDataFile.exists());
+		assertEquals(randomData.length, arbitraryDataFile.size());
+		assertEquals(Base58.encode(Crypto.digest(randomData)), arbitraryDataFile.digest58());
+		assertEquals(10, buffer.position());
+	}
+
 }
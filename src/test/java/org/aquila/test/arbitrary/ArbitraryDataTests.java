@@ -9,6 +9,7 @@ import org.aquila.arbitrary.ArbitraryDataFile.*;
 import org.aquila.arbitrary.exception.MissingDataException;
 import org.aquila.arbitrary.metadata.ArbitraryDataMetadataPatch;
 import org.aquila.arbitrary.misc.Service;
+import org.aquila.controller.arbitrary.ArbitraryDataBuildManager;
 import org.aquila.controller.arbitrary.ArbitraryDataManager;
 import org.aquila.crypto.Crypto;
 import org.aquila.data.transaction.RegisterNameTransactionData;
@@ -33,6 +34,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.junit.Assert.*;
 
@@ -95,6 +97,62 @@ public class ArbitraryDataTests extends Common {
         }
     }
 
+    @Test
+    public void testCombineConcurrentlyBuiltLayers() throws DataException, IOException, MissingDataException {
+        try (final Repository repository = RepositoryManager.getRepository()) {
+            PrivateKeyAccount alice = Common.getTestAccount(repository, "alice");
+            String publicKey58 = Base58.encode(alice.getPublicKey());
+            String name = "TEST"; // Can be anything for this test
+            String identifier = null; // Not used for this test
+            Service service = Service.ARBITRARY_DATA;
+
+            // Register the name to Alice
+            RegisterNameTransactionData transactionData = new RegisterNameTransactionData(TestTransaction.generateBase(alice), name, "");
+            transactionData.setFee(new RegisterNameTransaction(null, null).getUnitFee(transactionData.getTimestamp()));
+            TransactionUtils.signAndMint(repository, transactionData, alice);
+
+            // Create PUT transaction, then PATCH transactions that end up back at an earlier state,
+            // so that merging layers out of order would give a different result
+            Path path1 = Paths.get("src/test/resources/arbitrary/demo1");
+            Path path2 = Paths.get("src/test/resources/arbitrary/demo2");
+            Path path3 = Paths.get("src/test/resources/arbitrary/demo3");
+            ArbitraryUtils.createAndMintTxn(repository, publicKey58, path1, name, identifier, Method.PUT, service, alice);
+            ArbitraryUtils.createAndMintTxn(repository, publicKey58, path2, name, identifier, Method.PATCH, service, alice);
+            ArbitraryUtils.createAndMintTxn(repository, publicKey58, path3, name, identifier, Method.PATCH, service, alice);
+            ArbitraryUtils.createAndMintTxn(repository, publicKey58, path2, name, identifier, Method.PATCH, service, alice);
+
+            // Now build the latest data state for this name, with its four layers built concurrently
+            ThreadPoolExecutor layerExecutor = (ThreadPoolExecutor) ArbitraryDataBuildManager.getInstance().getLayerExecutor();
+            final long layerTaskCount = layerExecutor.getTaskCount();
+            assertFalse(ArbitraryDataBuildManager.getInstance().getBuildInProgress());
+
+            ArbitraryDataReader arbitraryDataReader = new ArbitraryDataReader(name, ResourceIdType.NAME, service, identifier);
+            arbitraryDataReader.loadSynchronously(true);
+            Path finalPath = arbitraryDataReader.getFilePath();
+
+            // Ensure it exists
+            assertTrue(Files.exists(finalPath));
+
+            // Its directory hash should match the hash of the last layer, demo2
+            ArbitraryDataDigest path2Digest = new ArbitraryDataDigest(path2);
+            path2Digest.compute();
+            ArbitraryDataDigest finalPathDigest = new ArbitraryDataDigest(finalPath);
+            finalPathDigest.compute();
+            assertEquals(path2Digest.getHash58(), finalPathDigest.getHash58());
+
+            // .. and its directory hash should also match the one included in the metadata
+            ArbitraryDataMetadataPatch patchMetadata = new ArbitraryDataMetadataPatch(finalPath);
+            patchMetadata.read();
+            assertArrayEquals(patchMetadata.getCurrentHash(), path2Digest.getHash());
+
+            // Each layer should have been built by layer executor
+            assertEquals(layerTaskCount + 4, layerExecutor.getTaskCount());
+
+            // All layer builds, and the overall build, should have finished
+            assertFalse(ArbitraryDataBuildManager.getInstance().getBuildInProgress());
+        }
+    }
+
     @Test
     public void testPatchBeforePut() throws DataException, IOException {
         try (final Repository repository = RepositoryManager.getRepository()) {
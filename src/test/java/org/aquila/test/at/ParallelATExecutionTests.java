@@ -0,0 +1,193 @@
+package org.aquila.test.at;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aquila.account.PrivateKeyAccount;
+import org.aquila.at.ATExecutor;
+import org.aquila.at.ATStats;
+import org.aquila.crosschain.LitecoinACCTv3;
+import org.aquila.data.at.ATStateData;
+import org.aquila.data.block.BlockData;
+import org.aquila.data.transaction.BaseTransactionData;
+import org.aquila.data.transaction.MessageTransactionData;
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.group.Group;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.test.common.AtUtils;
+import org.aquila.test.common.BlockUtils;
+import org.aquila.test.common.Common;
+import org.aquila.test.common.TransactionUtils;
+import org.aquila.transaction.AtTransaction;
+import org.aquila.transaction.MessageTransaction;
+import org.aquila.transform.TransformationException;
+import org.aquila.transform.transaction.TransactionTransformer;
+import org.aquila.utils.Base58;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelATExecutionTests extends Common {
+
+	private static final byte[] litecoinPublicKeyHash = new byte[20];
+	private static final long redeemAmount = 1_00000000L;
+	private static final long fundingAmount = 2_00000000L;
+	private static final int tradeTimeout = 20; // blocks
+
+	private static final int SIMPLE_AT_COUNT = 8;
+	private static final int ACCT_AT_COUNT = 8;
+
+	// ATExecutor needs at least 4 ATs per worker, and at least 2 workers, to run ATs concurrently
+	private static final int MIN_CONCURRENT_AT_COUNT = 2 * 4;
+
+	@Before
+	public void before() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testParallelMatchesSerial() throws DataException, TransformationException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			List<PrivateKeyAccount> deployers = List.of(
+					Common.getTestAccount(repository, "alice"),
+					Common.getTestAccount(repository, "bob"),
+					Common.getTestAccount(repository, "chloe"),
+					Common.getTestAccount(repository, "dilbert"));
+
+			for (int i = 0; i < SIMPLE_AT_COUNT; ++i)
+				AtUtils.doDeployAT(repository, deployers.get(i % deployers.size()), AtUtils.buildSimpleAT(), fundingAmount);
+
+			List<String> acctAddresses = new ArrayList<>();
+			for (int i = 0; i < ACCT_AT_COUNT; ++i) {
+				PrivateKeyAccount deployer = deployers.get(i % deployers.size());
+				byte[] creationBytes = LitecoinACCTv3.buildAquilaAT(deployer.getAddress(), litecoinPublicKeyHash, redeemAmount, 1000L, tradeTimeout);
+				acctAddresses.add(AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount).getATAccount().getAddress());
+			}
+
+			// Cancel some trades, all in the same block, so those ATs generate refund transactions when run for next block
+			for (int i = 0; i < deployers.size(); ++i) {
+				PrivateKeyAccount deployer = deployers.get(i);
+				importMessage(repository, deployer, LitecoinACCTv3.getInstance().buildCancelMessage(deployer.getAddress()), acctAddresses.get(i));
+			}
+			BlockUtils.mintBlock(repository);
+
+			boolean hadAtTransactions = false;
+
+			for (int b = 0; b < 3; ++b) {
+				BlockData lastBlockData = repository.getBlockRepository().getLastBlock();
+				int blockHeight = lastBlockData.getHeight() + 1;
+				long blockTimestamp = lastBlockData.getTimestamp() + 60_000L;
+
+				// Enough ATs need to remain executable, once cancelled trade ATs finish, to run ATs concurrently
+				assertTrue(repository.getATRepository().getAllExecutableATs().size() >= MIN_CONCURRENT_AT_COUNT);
+
+				ATStats.Snapshot beforeStats = ATStats.getInstance().getSnapshot();
+
+				// ATData is modified by running AT, so each run needs a fresh copy
+				List<ATExecutor.Result> serialResults = ATExecutor.getInstance().execute(repository,
+						repository.getATRepository().getAllExecutableATs(), blockHeight, blockTimestamp, 1);
+
+				ATStats.Snapshot serialStats = ATStats.getInstance().getSnapshot();
+				assertEquals(beforeStats.serialExecutions + 1, serialStats.serialExecutions);
+				assertEquals(beforeStats.concurrentExecutions, serialStats.concurrentExecutions);
+
+				List<ATExecutor.Result> parallelResults = ATExecutor.getInstance().execute(repository,
+						repository.getATRepository().getAllExecutableATs(), blockHeight, blockTimestamp, 4);
+
+				ATStats.Snapshot parallelStats = ATStats.getInstance().getSnapshot();
+				assertEquals("ATs should have been run concurrently", serialStats.concurrentExecutions + 1, parallelStats.concurrentExecutions);
+				assertEquals(serialStats.serialExecutions, parallelStats.serialExecutions);
+
+				assertFalse("Running ATs shouldn't change repository", repository.hasUncommittedChanges());
+				assertEquals(serialResults.size(), parallelResults.size());
+
+				for (int i = 0; i < serialResults.size(); ++i) {
+					ATExecutor.Result serialResult = serialResults.get(i);
+					ATExecutor.Result parallelResult = parallelResults.get(i);
+
+					assertATStatesEqual(serialResult.getATStateData(), parallelResult.getATStateData());
+
+					assertEquals(serialResult.getATTransactions().size(), parallelResult.getATTransactions().size());
+					for (int t = 0; t < serialResult.getATTransactions().size(); ++t) {
+						AtTransaction serialTransaction = serialResult.getATTransactions().get(t);
+						AtTransaction parallelTransaction = parallelResult.getATTransactions().get(t);
+
+						assertEquals(Base58.encode(TransactionTransformer.toBytes(serialTransaction.getTransactionData())),
+								Base58.encode(TransactionTransformer.toBytes(parallelTransaction.getTransactionData())));
+
+						hadAtTransactions = true;
+					}
+				}
+
+				BlockUtils.mintBlock(repository);
+			}
+
+			assertTrue("Cancelled trade ATs should have generated refunds", hadAtTransactions);
+		}
+	}
+
+	@Test
+	public void testBlockCacheAndStats() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "alice");
+
+			// Every AT looks up chain height when it starts executing
+			for (int i = 0; i < 2; ++i)
+				AtUtils.doDeployAT(repository, deployer, AtUtils.buildSimpleAT(), fundingAmount);
+
+			ATStats.Snapshot beforeStats = ATStats.getInstance().getSnapshot();
+
+			BlockData lastBlockData = repository.getBlockRepository().getLastBlock();
+			ATExecutor.getInstance().execute(repository, repository.getATRepository().getAllExecutableATs(),
+					lastBlockData.getHeight() + 1, lastBlockData.getTimestamp() + 60_000L, 1);
+
+			ATStats.Snapshot afterStats = ATStats.getInstance().getSnapshot();
+
+			assertTrue("Second AT should have used cached lookups", afterStats.blockCacheHits > beforeStats.blockCacheHits);
+			assertTrue("Op-codes should have been counted", countOpCodes(afterStats) > countOpCodes(beforeStats));
+		}
+	}
+
+	private static long countOpCodes(ATStats.Snapshot snapshot) {
+		return snapshot.opCodes.stream().mapToLong(opCodeStats -> opCodeStats.count).sum();
+	}
+
+	private static void assertATStatesEqual(ATStateData expected, ATStateData actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+
+		assertNotNull(actual);
+		assertEquals(expected.getATAddress(), actual.getATAddress());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertEquals(Base58.encode(expected.getStateHash()), Base58.encode(actual.getStateHash()));
+		assertEquals(expected.getFees(), actual.getFees());
+		assertEquals(expected.getSleepUntilMessageTimestamp(), actual.getSleepUntilMessageTimestamp());
+	}
+
+	private static void importMessage(Repository repository, PrivateKeyAccount sender, byte[] data, String recipient) throws DataException {
+		long txTimestamp = System.currentTimeMillis();
+		byte[] lastReference = sender.getLastReference();
+
+		Long fee = null;
+		int version = 4;
+		int nonce = 0;
+		long amount = 0;
+		Long assetId = null; // because amount is zero
+
+		BaseTransactionData baseTransactionData = new BaseTransactionData(txTimestamp, Group.NO_GROUP, lastReference, sender.getPublicKey(), fee, null);
+		TransactionData messageTransactionData = new MessageTransactionData(baseTransactionData, version, nonce, recipient, amount, assetId, data, false, false);
+
+		MessageTransaction messageTransaction = new MessageTransaction(repository, messageTransactionData);
+
+		fee = messageTransaction.calcRecommendedFee();
+		messageTransactionData.setFee(fee);
+
+		TransactionUtils.signAndImportValid(repository, messageTransactionData, sender);
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.aquila.test.crosschain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.aquila.account.PrivateKeyAccount;
+import org.aquila.api.model.CrossChainOfferSummary;
+import org.aquila.crosschain.AcctMode;
+import org.aquila.crosschain.LitecoinACCTv3;
+import org.aquila.crosschain.SupportedBlockchain;
+import org.aquila.crosschain.TradeOfferIndex;
+import org.aquila.data.transaction.BaseTransactionData;
+import org.aquila.data.transaction.MessageTransactionData;
+import org.aquila.data.transaction.TransactionData;
+import org.aquila.group.Group;
+import org.aquila.repository.DataException;
+import org.aquila.repository.Repository;
+import org.aquila.repository.RepositoryManager;
+import org.aquila.test.common.AtUtils;
+import org.aquila.test.common.BlockUtils;
+import org.aquila.test.common.Common;
+import org.aquila.test.common.TransactionUtils;
+import org.aquila.transaction.MessageTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TradeOfferIndexTests extends Common {
+
+	private static final byte[] litecoinPublicKeyHash = new byte[20];
+	private static final long redeemAmount = 1_00000000L;
+	private static final long fundingAmount = 2_00000000L;
+	private static final int tradeTimeout = 20; // blocks
+
+	private static final String LITECOIN = SupportedBlockchain.LITECOIN.name();
+
+	@Before
+	public void beforeTest() throws DataException {
+		Common.useDefaultSettings();
+	}
+
+	@Test
+	public void testIncrementalUpdatesAndOrphaning() throws DataException {
+		TradeOfferIndex tradeOfferIndex = TradeOfferIndex.getInstance();
+
+		List<CrossChainOfferSummary> changedOffers = new ArrayList<>();
+		TradeOfferIndex.OfferListener offerListener = changedOffersByBlockchain -> changedOffers.addAll(changedOffersByBlockchain.getOrDefault(LITECOIN, List.of()));
+
+		tradeOfferIndex.addOfferListener(offerListener);
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			// Build index before trade exists
+			tradeOfferIndex.getSnapshot(repository);
+
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+
+			byte[] creationBytes = LitecoinACCTv3.buildAquilaAT(deployer.getAddress(), litecoinPublicKeyHash, redeemAmount, 1000L, tradeTimeout);
+			String atAddress = AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount).getATAccount().getAddress();
+
+			// New offer
+			TradeOfferIndex.Snapshot snapshot = tradeOfferIndex.getSnapshot(repository);
+			assertTradeMode(snapshot, atAddress, AcctMode.OFFERING);
+			assertLastChange(changedOffers, atAddress, AcctMode.OFFERING);
+			assertEquals(1, snapshot.getOfferSummaries(LITECOIN, false).size());
+
+			// Cancel offer - AT processes message in next block
+			sendMessage(repository, deployer, LitecoinACCTv3.getInstance().buildCancelMessage(deployer.getAddress()), atAddress);
+			BlockUtils.mintBlock(repository);
+
+			snapshot = tradeOfferIndex.getSnapshot(repository);
+			assertTradeMode(snapshot, atAddress, AcctMode.CANCELLED);
+			assertLastChange(changedOffers, atAddress, AcctMode.CANCELLED);
+			assertTrue(snapshot.getOfferSummaries(LITECOIN, false).isEmpty());
+			assertEquals(1, snapshot.getOfferSummaries(LITECOIN, true).size());
+
+			// Orphan cancellation
+			BlockUtils.orphanLastBlock(repository);
+
+			snapshot = tradeOfferIndex.getSnapshot(repository);
+			assertTradeMode(snapshot, atAddress, AcctMode.OFFERING);
+			assertLastChange(changedOffers, atAddress, AcctMode.OFFERING);
+
+			// Orphan cancel message and deployment
+			BlockUtils.orphanBlocks(repository, 2);
+
+			snapshot = tradeOfferIndex.getSnapshot(repository);
+			assertTrue(snapshot.getTrades(LitecoinACCTv3.CODE_BYTES_HASH, AcctMode.OFFERING).isEmpty());
+			assertTrue(snapshot.getOfferSummaries(null, true).isEmpty());
+		} finally {
+			tradeOfferIndex.removeOfferListener(offerListener);
+		}
+	}
+
+	@Test
+	public void testSnapshotTradesAreCopies() throws DataException {
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount deployer = Common.getTestAccount(repository, "chloe");
+
+			byte[] creationBytes = LitecoinACCTv3.buildAquilaAT(deployer.getAddress(), litecoinPublicKeyHash, redeemAmount, 1000L, tradeTimeout);
+			AtUtils.doDeployAT(repository, deployer, creationBytes, fundingAmount);
+
+			TradeOfferIndex.Snapshot snapshot = TradeOfferIndex.getInstance().getSnapshot(repository);
+
+			// Callers, e.g. API, decorate trades with trade-bot presence info
+			snapshot.getTrades(LitecoinACCTv3.CODE_BYTES_HASH, AcctMode.OFFERING).get(0).creatorPresenceExpiry = 1234L;
+
+			assertNull(snapshot.getTrades(LitecoinACCTv3.CODE_BYTES_HASH, AcctMode.OFFERING).get(0).creatorPresenceExpiry);
+		}
+	}
+
+	private static void assertTradeMode(TradeOfferIndex.Snapshot snapshot, String atAddress, AcctMode expectedMode) {
+		for (AcctMode mode : AcctMode.values()) {
+			boolean isPresent = snapshot.getTrades(LitecoinACCTv3.CODE_BYTES_HASH, mode).stream()
+					.map(tradeData -> tradeData.aquilaAtAddress)
+					.anyMatch(atAddress::equals);
+
+			assertEquals(String.format("Trade presence in %s mode", mode.name()), mode == expectedMode, isPresent);
+		}
+	}
+
+	private static void assertLastChange(List<CrossChainOfferSummary> changedOffers, String atAddress, AcctMode expectedMode) {
+		assertFalse("Listener should have been notified", changedOffers.isEmpty());
+
+		CrossChainOfferSummary lastChange = changedOffers.get(changedOffers.size() - 1);
+		assertEquals(atAddress, lastChange.getAquilaAtAddress());
+		assertEquals(expectedMode, lastChange.getMode());
+	}
+
+	private static void sendMessage(Repository repository, PrivateKeyAccount sender, byte[] data, String recipient) throws DataException {
+		long txTimestamp = System.currentTimeMillis();
+		byte[] lastReference = sender.getLastReference();
+
+		Long fee = null;
+		int version = 4;
+		int nonce = 0;
+		long amount = 0;
+		Long assetId = null; // because amount is zero
+
+		BaseTransactionData baseTransactionData = new BaseTransactionData(txTimestamp, Group.NO_GROUP, lastReference, sender.getPublicKey(), fee, null);
+		TransactionData messageTransactionData = new MessageTransactionData(baseTransactionData, version, nonce, recipient, amount, assetId, data, false, false);
+
+		MessageTransaction messageTransaction = new MessageTransaction(repository, messageTransactionData);
+
+		fee = messageTransaction.calcRecommendedFee();
+		messageTransactionData.setFee(fee);
+
+		TransactionUtils.signAndMint(repository, messageTransactionData, sender);
+	}
+
+}
@@ -2,6 +2,9 @@ package org.aquila.test.minting;
 
 import static org.junit.Assert.*;
 
+import java.util.Comparator;
+import java.util.List;
+
 import org.aquila.account.PrivateKeyAccount;
 import org.aquila.data.account.RewardShareData;
 import org.aquila.data.transaction.TransactionData;
@@ -11,6 +14,7 @@ import org.aquila.repository.RepositoryManager;
 import org.aquila.transaction.Transaction;
 import org.aquila.transaction.Transaction.ValidationResult;
 import org.aquila.utils.Base58;
+import org.aquila.utils.ByteArray;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -316,4 +320,71 @@ public class RewardShareTests extends Common {
 		}
 	}
 
+	@Test
+	public void testRewardShareIndex() throws DataException {
+		final int sharePercent = 12_80; // 12.80%
+
+		try (final Repository repository = RepositoryManager.getRepository()) {
+			PrivateKeyAccount aliceAccount = Common.getTestAccount(repository, "alice");
+			PrivateKeyAccount chloeAccount = Common.getTestAccount(repository, "chloe");
+
+			// Populate index
+			assertIndexMatchesRepository(repository);
+
+			// Create reward-share, which is committed once block is minted
+			byte[] rewardSharePrivateKey = AccountUtils.rewardShare(repository, "alice", "bob", sharePercent);
+			byte[] rewardSharePublicKey = new PrivateKeyAccount(repository, rewardSharePrivateKey).getPublicKey();
+
+			try (final Repository otherRepository = RepositoryManager.getRepository()) {
+				assertNotNull("Reward-share should exist", otherRepository.getAccountRepository().getRewardShare(rewardSharePublicKey));
+				assertIndexMatchesRepository(otherRepository);
+			}
+
+			// Uncommitted reward-share should only be visible to session that saved it
+			byte[] uncommittedPublicKey = aliceAccount.getRewardSharePrivateKey(chloeAccount.getPublicKey());
+			uncommittedPublicKey = new PrivateKeyAccount(repository, uncommittedPublicKey).getPublicKey();
+			repository.getAccountRepository().save(new RewardShareData(aliceAccount.getPublicKey(), aliceAccount.getAddress(),
+					chloeAccount.getAddress(), uncommittedPublicKey, sharePercent));
+
+			assertNotNull("Uncommitted reward-share should exist", repository.getAccountRepository().getRewardShare(uncommittedPublicKey));
+			assertIndexMatchesRepository(repository);
+
+			try (final Repository otherRepository = RepositoryManager.getRepository()) {
+				assertNull("Uncommitted reward-share shouldn't exist", otherRepository.getAccountRepository().getRewardShare(uncommittedPublicKey));
+			}
+
+			repository.discardChanges();
+			assertNull("Discarded reward-share shouldn't exist", repository.getAccountRepository().getRewardShare(uncommittedPublicKey));
+
+			// Orphaning block should remove reward-share
+			BlockUtils.orphanLastBlock(repository);
+
+			try (final Repository otherRepository = RepositoryManager.getRepository()) {
+				assertNull("Reward-share shouldn't exist", otherRepository.getAccountRepository().getRewardShare(rewardSharePublicKey));
+				assertIndexMatchesRepository(otherRepository);
+			}
+		}
+	}
+
+	/** Checks index-backed reward-share lookups agree with reward-shares found via SQL. */
+	private static void assertIndexMatchesRepository(Repository repository) throws DataException {
+		// findRewardShares() always queries repository
+		List<RewardShareData> expectedRewardShares = repository.getAccountRepository().findRewardShares(null, null, null, null, null, null);
+		expectedRewardShares.sort(Comparator.comparing(rewardShareData -> ByteArray.wrap(rewardShareData.getRewardSharePublicKey())));
+
+		List<byte[]> rewardSharePublicKeys = repository.getAccountRepository().getRewardSharePublicKeys();
+		assertEquals(expectedRewardShares.size(), rewardSharePublicKeys.size());
+
+		for (int i = 0; i < expectedRewardShares.size(); ++i) {
+			byte[] expectedPublicKey = expectedRewardShares.get(i).getRewardSharePublicKey();
+
+			assertEquals(Base58.encode(expectedPublicKey), Base58.encode(rewardSharePublicKeys.get(i)));
+			assertEquals(Integer.valueOf(i), repository.getAccountRepository().getRewardShareIndex(expectedPublicKey));
+			assertEquals(Base58.encode(expectedPublicKey), Base58.encode(repository.getAccountRepository().getRewardShareByIndex(i).getRewardSharePublicKey()));
+		}
+
+		assertNull(repository.getAccountRepository().getRewardShareByIndex(expectedRewardShares.size()));
+		assertNull(repository.getAccountRepository().getRewardSharesByIndexes(new int[] { 0, expectedRewardShares.size() }));
+	}
+
 }
@@ -0,0 +1,167 @@
+package org.aquila.test.network;
+
+import org.aquila.crypto.Crypto;
+import org.aquila.network.Network;
+import org.aquila.network.message.*;
+import org.aquila.repository.DataException;
+import org.aquila.test.common.Common;
+import org.aquila.transform.Transformer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class MessageTests extends Common {
+
+    @Before
+    public void beforeTest() throws DataException {
+        Common.useDefaultSettings();
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws MessageException {
+        // Repetitive payload, so it compresses well
+        byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
+        new Random().nextBytes(signature);
+        List<byte[]> signaturesOut = Collections.nCopies(200, signature);
+
+        Message messageOut = new SignaturesMessage(signaturesOut);
+        messageOut.setId(1234);
+
+        byte[] uncompressedBytes = messageOut.toBytes();
+        byte[] compressedBytes = concat(messageOut.toByteBuffers(true));
+        assertTrue(compressedBytes.length < uncompressedBytes.length);
+
+        for (byte[] messageBytes : List.of(uncompressedBytes, compressedBytes)) {
+            Message messageIn = Message.fromByteBuffer(ByteBuffer.wrap(messageBytes).asReadOnlyBuffer());
+
+            assertEquals(MessageType.SIGNATURES, messageIn.getType());
+            assertEquals(1234, messageIn.getId());
+
+            List<byte[]> signaturesIn = ((SignaturesMessage) messageIn).getSignatures();
+            assertEquals(signaturesOut.size(), signaturesIn.size());
+            for (byte[] signatureIn : signaturesIn)
+                assertArrayEquals(signature, signatureIn);
+        }
+    }
+
+    @Test
+    public void testIncompressibleMessages() throws MessageException {
+        // Small payload isn't worth compressing
+        Message smallMessage = new SignaturesMessage(List.of(new byte[Transformer.SIGNATURE_LENGTH]));
+        assertArrayEquals(smallMessage.toBytes(), concat(smallMessage.toByteBuffers(true)));
+
+        // Random payload won't compress
+        List<byte[]> signatures = new ArrayList<>();
+        Random random = new Random();
+        for (int i = 0; i < 200; ++i) {
+            byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
+            random.nextBytes(signature);
+            signatures.add(signature);
+        }
+
+        Message randomMessage = new SignaturesMessage(signatures);
+        assertArrayEquals(randomMessage.toBytes(), concat(randomMessage.toByteBuffers(true)));
+    }
+
+    @Test
+    public void testCompressedDataSizeMismatch() throws MessageException {
+        byte[] data = new SignaturesMessage(Collections.nCopies(200, new byte[Transformer.SIGNATURE_LENGTH])).toBytes();
+        byte[] deflated = deflate(data);
+
+        // Declared size much larger than actual, e.g. to force a large allocation
+        assertDecompressionFails(10 * 1024 * 1024, deflated);
+        // Declared size smaller than actual
+        assertDecompressionFails(data.length / 2, deflated);
+        // Truncated deflate stream
+        assertDecompressionFails(data.length, Arrays.copyOf(deflated, deflated.length / 2));
+    }
+
+    @Test
+    public void testHelloCapabilities() throws MessageException {
+        Message messageOut = new HelloMessage(1234L, "aquila-1.2.3", "127.0.0.1:12392", HelloMessage.CAPABILITY_COMPRESSION);
+
+        HelloMessage messageIn = (HelloMessage) Message.fromByteBuffer(ByteBuffer.wrap(messageOut.toBytes()).asReadOnlyBuffer());
+
+        assertEquals(1234L, messageIn.getTimestamp());
+        assertEquals("aquila-1.2.3", messageIn.getVersionString());
+        assertEquals("127.0.0.1:12392", messageIn.getSenderPeerAddress());
+        assertEquals(HelloMessage.CAPABILITY_COMPRESSION, messageIn.getCapabilities());
+    }
+
+    @Test
+    public void testFrameLength() throws MessageException {
+        // No payload, so frame is just header
+        byte[] pingBytes = new PingMessage().toBytes();
+        assertEquals(pingBytes.length, Message.getFrameLength(ByteBuffer.wrap(pingBytes).asReadOnlyBuffer()));
+
+        Message message = new SignaturesMessage(List.of(new byte[Transformer.SIGNATURE_LENGTH]));
+        message.setId(1234);
+        byte[] messageBytes = message.toBytes();
+
+        // MAGIC(4) + TYPE(4) + FLAGS(1) + ID(4) + DATA-SIZE(4)
+        final int headerLength = 4 + 4 + 1 + 4 + 4;
+
+        // Known from header alone, so also while rest of frame is still in flight
+        for (int length : new int[] { messageBytes.length, messageBytes.length - 1, headerLength })
+            assertEquals(messageBytes.length, Message.getFrameLength(ByteBuffer.wrap(messageBytes, 0, length).slice().asReadOnlyBuffer()));
+
+        // Header incomplete
+        assertEquals(-1, Message.getFrameLength(ByteBuffer.wrap(messageBytes, 0, headerLength - 1).slice().asReadOnlyBuffer()));
+    }
+
+    private static void assertDecompressionFails(int declaredSize, byte[] deflated) {
+        ByteBuffer payload = ByteBuffer.allocate(4 + deflated.length);
+        payload.putInt(declaredSize);
+        payload.put(deflated);
+
+        // MAGIC(4) + TYPE(4) + FLAGS(1) + DATA-SIZE(4) + CHECKSUM(4) + DATA(*)
+        ByteBuffer messageBytes = ByteBuffer.allocate(4 + 4 + 1 + 4 + 4 + payload.capacity());
+        messageBytes.put(Network.getInstance().getMessageMagic());
+        messageBytes.putInt(MessageType.SIGNATURES.value);
+        messageBytes.put((byte) 0x02); // compressed
+        messageBytes.putInt(payload.capacity());
+        messageBytes.put(Arrays.copyOfRange(Crypto.digest(payload.array()), 0, 4));
+        messageBytes.put(payload.array());
+
+        try {
+            Message.fromByteBuffer(messageBytes.flip().asReadOnlyBuffer());
+            fail("Decompression should fail with declared size " + declaredSize);
+        } catch (MessageException e) {
+            // Expected
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+
+        byte[] output = new byte[data.length];
+        int outputLength = deflater.deflate(output);
+        deflater.end();
+
+        return Arrays.copyOf(output, outputLength);
+    }
+
+    private static byte[] concat(ByteBuffer[] buffers) {
+        int length = 0;
+        for (ByteBuffer buffer : buffers)
+            length += buffer.remaining();
+
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        for (ByteBuffer buffer : buffers)
+            bytes.put(buffer.duplicate());
+
+        return bytes.array();
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.aquila.test.network;
+
+import org.aquila.controller.OnlineAccountsManager;
+import org.aquila.controller.OnlineAccountsStore;
+import org.aquila.data.network.OnlineAccountData;
+import org.aquila.transform.Transformer;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OnlineAccountsStoreTests {
+
+    private static final Random RANDOM = new Random();
+
+    private static final long TIMESTAMP = 1_700_000_000_000L;
+
+    @Test
+    public void testIncrementalHashes() {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+        List<OnlineAccountData> onlineAccounts = new ArrayList<>();
+
+        for (int t = 0; t < 2; ++t)
+            for (int a = 0; a < 2000; ++a) {
+                OnlineAccountData onlineAccountData = generateOnlineAccount(TIMESTAMP + t, null);
+
+                onlineAccounts.add(onlineAccountData);
+                assertTrue(store.add(onlineAccountData));
+            }
+
+        assertHashesMatch(onlineAccounts, store);
+
+        // Remove some accounts
+        Iterator<OnlineAccountData> iterator = onlineAccounts.iterator();
+        while (iterator.hasNext()) {
+            OnlineAccountData onlineAccountData = iterator.next();
+
+            if (RANDOM.nextInt(3) == 0) {
+                assertTrue(store.remove(onlineAccountData));
+                iterator.remove();
+            }
+        }
+
+        assertHashesMatch(onlineAccounts, store);
+
+        // Remove all accounts with same leading byte, so shard is empty
+        byte leadingByte = onlineAccounts.get(0).getPublicKey()[0];
+        iterator = onlineAccounts.iterator();
+        while (iterator.hasNext()) {
+            OnlineAccountData onlineAccountData = iterator.next();
+
+            if (onlineAccountData.getTimestamp() == TIMESTAMP && onlineAccountData.getPublicKey()[0] == leadingByte) {
+                assertTrue(store.remove(onlineAccountData));
+                iterator.remove();
+            }
+        }
+
+        assertHashesMatch(onlineAccounts, store);
+        assertFalse(store.getHashes().get(TIMESTAMP).containsKey(leadingByte));
+        assertTrue(store.getAccounts(TIMESTAMP, leadingByte).isEmpty());
+    }
+
+    @Test
+    public void testDuplicatesAndReplacement() {
+        OnlineAccountsStore store = new OnlineAccountsStore();
+
+        OnlineAccountData withoutNonce = generateOnlineAccount(TIMESTAMP, null);
+        assertTrue(store.add(withoutNonce));
+
+        byte[] hashBefore = store.getHashes().get(TIMESTAMP).get(withoutNonce.getPublicKey()[0]);
+
+        // Same timestamp and public key, but with nonce
+        OnlineAccountData withNonce = new OnlineAccountData(TIMESTAMP, withoutNonce.getSignature(), withoutNonce.getPublicKey(), 1234);
+
+        assertFalse("Duplicate shouldn't be added", store.add(withNonce));
+        assertNull(store.get(TIMESTAMP, withoutNonce.getPublicKey()).getNonce());
+
+        assertFalse("Replacement isn't a new public key", store.put(withNonce));
+        assertEquals(Integer.valueOf(1234), store.get(TIMESTAMP, withoutNonce.getPublicKey()).getNonce());
+
+        byte[] hashAfter = store.getHashes().get(TIMESTAMP).get(withoutNonce.getPublicKey()[0]);
+        assertArrayEquals("Replacement shouldn't change hash", hashBefore, hashAfter);
+
+        assertTrue(store.contains(withoutNonce));
+        assertTrue(store.hasAccounts(TIMESTAMP));
+        assertFalse(store.hasAccounts(TIMESTAMP + 1));
+        assertEquals(1, store.getAccounts(TIMESTAMP).size());
+
+        store.removeTimestampsBefore(TIMESTAMP + 1);
+        assertFalse(store.hasAccounts(TIMESTAMP));
+        assertTrue(store.getHashes().isEmpty());
+    }
+
+    private static void assertHashesMatch(List<OnlineAccountData> onlineAccounts, OnlineAccountsStore store) {
+        // Rebuild hashes from scratch
+        Map<Long, Map<Byte, byte[]>> expectedHashes = new HashMap<>();
+
+        for (OnlineAccountData onlineAccountData : onlineAccounts)
+            expectedHashes
+                    .computeIfAbsent(onlineAccountData.getTimestamp(), k -> new HashMap<>())
+                    .compute(onlineAccountData.getPublicKey()[0], (k, v) -> OnlineAccountsManager.xorByteArrayInPlace(v, onlineAccountData.getPublicKey()));
+
+        Map<Long, Map<Byte, byte[]>> actualHashes = store.getHashes();
+        assertEquals(expectedHashes.keySet(), actualHashes.keySet());
+
+        for (Long timestamp : expectedHashes.keySet()) {
+            Map<Byte, byte[]> expectedHashesByByte = expectedHashes.get(timestamp);
+            Map<Byte, byte[]> actualHashesByByte = actualHashes.get(timestamp);
+            assertEquals(expectedHashesByByte.keySet(), actualHashesByByte.keySet());
+
+            for (Byte leadingByte : expectedHashesByByte.keySet()) {
+                assertArrayEquals("pubkey hash mismatch", expectedHashesByByte.get(leadingByte), actualHashesByByte.get(leadingByte));
+
+                long expectedCount = onlineAccounts.stream()
+                        .filter(onlineAccountData -> onlineAccountData.getTimestamp() == timestamp && onlineAccountData.getPublicKey()[0] == leadingByte)
+                        .count();
+                assertEquals(expectedCount, store.getAccounts(timestamp, leadingByte).size());
+            }
+        }
+    }
+
+    private static OnlineAccountData generateOnlineAccount(long timestamp, Integer nonce) {
+        byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
+        RANDOM.nextBytes(signature);
+
+        byte[] publicKey = new byte[Transformer.PUBLIC_KEY_LENGTH];
+        RANDOM.nextBytes(publicKey);
+
+        return new OnlineAccountData(timestamp, signature, publicKey, nonce);
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.aquila.test.network;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.aquila.network.Peer;
+import org.aquila.network.SendPriority;
+import org.aquila.network.message.ArbitraryDataMessage;
+import org.aquila.network.message.Message;
+import org.aquila.network.message.MessageType;
+import org.aquila.network.message.PingMessage;
+import org.aquila.repository.DataException;
+import org.aquila.test.common.Common;
+import org.aquila.transform.Transformer;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class PeerTests extends Common {
+
+    @Before
+    public void beforeTest() throws DataException {
+        Common.useDefaultSettings();
+    }
+
+    @Test
+    public void testControlMessagesOvertakeBulk() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            SocketChannel sendingChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            SocketChannel receivingChannel = serverChannel.accept();
+
+            Peer sendingPeer = new Peer(sendingChannel);
+            Peer receivingPeer = new Peer(receivingChannel);
+
+            @SuppressWarnings("unchecked")
+            Queue<Message> pendingMessages = (Queue<Message>) FieldUtils.readField(receivingPeer, "pendingMessages", true);
+
+            byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
+            byte[] data = new byte[100 * 1024];
+
+            // Queue bulk message first, then a ping
+            Future<Boolean> bulkFuture = executor.submit(() -> sendingPeer.sendMessageWithTimeout(new ArbitraryDataMessage(signature, data), 10000));
+            while (sendingPeer.getSendQueueDepth(SendPriority.BULK) == 0)
+                Thread.sleep(1);
+
+            Future<Boolean> pingFuture = executor.submit(() -> sendingPeer.sendMessageWithTimeout(new PingMessage(), 10000));
+            while (sendingPeer.getSendQueueDepth(SendPriority.CONTROL) == 0)
+                Thread.sleep(1);
+
+            List<MessageType> receivedTypes = new ArrayList<>();
+            while (receivedTypes.size() < 2) {
+                sendingPeer.writeChannel();
+                receivingPeer.readChannel();
+
+                Message message;
+                while ((message = pendingMessages.poll()) != null)
+                    receivedTypes.add(message.getType());
+            }
+
+            assertTrue(bulkFuture.get());
+            assertTrue(pingFuture.get());
+            assertEquals(List.of(MessageType.PING, MessageType.ARBITRARY_DATA), receivedTypes);
+            assertEquals(1L, sendingPeer.getSendQueueMessageCount(SendPriority.CONTROL));
+            assertEquals(1L, sendingPeer.getSendQueueMessageCount(SendPriority.BULK));
+
+            sendingPeer.shutdown();
+            receivingPeer.shutdown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Ignore(value = "Benchmark, not a test")
+    @Test
+    public void testLoopbackAllocationRate() throws Exception {
+        final int maxMessageCount = 20000;
+        // Messages are built up front, so limit their total payload to fit in heap
+        final long maxPayloadBytes = 256L * 1024 * 1024;
+        final int[] dataSizes = new int[] { 256, 16 * 1024, 256 * 1024 };
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threadMXBean.isThreadAllocatedMemorySupported());
+
+        // Network isn't started, so there are no reactors and we drive peers' reads/writes ourselves
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            SocketChannel sendingChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            SocketChannel receivingChannel = serverChannel.accept();
+
+            Peer sendingPeer = new Peer(sendingChannel);
+            Peer receivingPeer = new Peer(receivingChannel);
+
+            @SuppressWarnings("unchecked")
+            Queue<Message> pendingMessages = (Queue<Message>) FieldUtils.readField(receivingPeer, "pendingMessages", true);
+
+            Selector readSelector = Selector.open();
+            receivingChannel.register(readSelector, SelectionKey.OP_READ);
+
+            Random random = new Random();
+
+            for (int dataSize : dataSizes) {
+                final int messageCount = (int) Math.min(maxMessageCount, maxPayloadBytes / dataSize);
+
+                byte[] signature = new byte[Transformer.SIGNATURE_LENGTH];
+                byte[] data = new byte[dataSize];
+                random.nextBytes(signature);
+                random.nextBytes(data);
+
+                // Build messages up front so only Peer's own allocations are counted by writing thread
+                Message[] messages = new Message[messageCount];
+                for (int i = 0; i < messageCount; ++i)
+                    messages[i] = new ArbitraryDataMessage(signature, data);
+
+                // Messages are queued by one thread, as by network threads, and written by another, as by a reactor.
+                // Either side may serialize messages, depending on Peer version, so both threads are counted.
+                Future<Long> senderFuture = executor.submit(() -> {
+                    long threadId = Thread.currentThread().getId();
+                    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+                    for (Message message : messages)
+                        assertTrue(sendingPeer.sendMessageWithTimeout(message, 10000));
+
+                    return threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                });
+
+                Future<Long> writerFuture = executor.submit(() -> {
+                    long threadId = Thread.currentThread().getId();
+                    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+                    // Keep writing until every message has been taken from send queue and flushed
+                    while (sendingPeer.writeChannel() || !senderFuture.isDone())
+                        Thread.yield();
+
+                    return threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                });
+
+                long readerThreadId = Thread.currentThread().getId();
+                long readerAllocatedBefore = threadMXBean.getThreadAllocatedBytes(readerThreadId);
+                long startTime = System.nanoTime();
+
+                int messagesReceived = 0;
+                while (messagesReceived < messageCount) {
+                    // Wait for data rather than spinning, so only allocations per message are counted
+                    if (readSelector.select(1000) > 0)
+                        readSelector.selectedKeys().clear();
+
+                    receivingPeer.readChannel();
+
+                    while (pendingMessages.poll() != null)
+                        ++messagesReceived;
+                }
+
+                long duration = System.nanoTime() - startTime;
+                long readerAllocated = threadMXBean.getThreadAllocatedBytes(readerThreadId) - readerAllocatedBefore;
+                long writerAllocated = senderFuture.get() + writerFuture.get();
+
+                System.out.println(String.format("%d messages with %d byte payload took %dms, allocated per message: read %d bytes, write %d bytes",
+                        messageCount, dataSize, duration / 1_000_000L,
+                        readerAllocated / messageCount, writerAllocated / messageCount));
+            }
+
+            readSelector.close();
+            sendingPeer.shutdown();
+            receivingPeer.shutdown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}